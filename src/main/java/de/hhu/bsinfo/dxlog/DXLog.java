@@ -19,6 +19,7 @@ package de.hhu.bsinfo.dxlog;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -26,11 +27,14 @@ import org.apache.logging.log4j.Logger;
 import de.hhu.bsinfo.dxlog.storage.BackupRangeCatalog;
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
 import de.hhu.bsinfo.dxlog.storage.Scheduler;
+import de.hhu.bsinfo.dxlog.storage.StartupMode;
+import de.hhu.bsinfo.dxlog.storage.diskaccess.DurabilityMode;
 import de.hhu.bsinfo.dxlog.storage.diskaccess.HarddriveAccessMode;
 import de.hhu.bsinfo.dxlog.storage.header.AbstractLogEntryHeader;
 import de.hhu.bsinfo.dxlog.storage.header.ChecksumHandler;
 import de.hhu.bsinfo.dxlog.storage.logs.Log;
 import de.hhu.bsinfo.dxlog.storage.logs.LogHandler;
+import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.SecondaryLog;
 import de.hhu.bsinfo.dxlog.storage.recovery.FileRecoveryHandler;
 import de.hhu.bsinfo.dxlog.storage.recovery.LogRecoveryHandler;
 import de.hhu.bsinfo.dxlog.storage.recovery.RecoveryMetadata;
@@ -110,9 +114,20 @@ public final class DXLog {
 
             loadJNIModules(p_pathJniDirectory);
 
-            purgeLogDirectory(m_backupDirectory);
+            boolean reopen = StartupMode.convert(p_config.getStartupMode()) == StartupMode.REOPEN;
+            if (!reopen) {
+                purgeLogDirectory(m_backupDirectory);
+            }
+
+            createHandlers(reopen);
 
-            createHandlers();
+            if (reopen) {
+                // Restore all backup ranges of the last run and replay the primary log
+                m_logHandler.reopenBackupRanges(m_secondaryLogSize, (int) m_config.getLogSegmentSize().getBytes(),
+                        (int) m_config.getSecondaryLogBufferSize().getBytes(),
+                        (int) m_config.getFlashPageSize().getBytes(), m_config.getUtilizationPromptReorganization(),
+                        m_config.isUseChecksums(), m_config.isUseTimestamps(), m_initTime, m_backupDirectory);
+            }
 
             m_dxmemRecoveryOp = p_dxmemRecoveryOp;
         } else {
@@ -175,6 +190,10 @@ public final class DXLog {
         ChecksumHandler.setCRCSize(p_config.isUseChecksums());
         // Set the hard drive access mode (must be called before the first log is created)
         Log.setAccessMode(m_mode);
+        // Set the durability mode (must be called before the first log is created)
+        Log.setDurabilityMode(DurabilityMode.convert(p_config.getDurability()));
+        // Set the hot version threshold (must be called before the first secondary log is created)
+        SecondaryLog.setHotVersionThreshold(p_config.getHotVersionThreshold());
 
         m_initTime = System.currentTimeMillis();
     }
@@ -201,23 +220,23 @@ public final class DXLog {
 
     /**
      * Create all handlers and the backup range catalog.
+     *
+     * @param p_reopen
+     *         whether to reopen the primary log of the last run or not
      */
-    private void createHandlers() {
+    private void createHandlers(final boolean p_reopen) {
         m_backupRangeCatalog = new BackupRangeCatalog();
 
         Scheduler scheduler = new Scheduler();
         BufferPool bufferPool = new BufferPool((int) m_config.getLogSegmentSize().getBytes());
-        m_versionHandler = new VersionHandler(scheduler, m_backupRangeCatalog, m_secondaryLogSize);
-        m_logHandler = new LogHandler(m_versionHandler, scheduler, m_backupRangeCatalog, bufferPool,
-                m_config.getPrimaryLogSize().getBytes(), m_secondaryLogSize,
-                (int) m_config.getSecondaryLogBufferSize().getBytes(), (int) m_config.getLogSegmentSize().getBytes(),
-                (int) m_config.getFlashPageSize().getBytes(), m_config.isUseChecksums(),
-                m_config.getUtilizationActivateReorganization(), m_config.isUseTimestamps(),
-                m_config.getColdDataThresholdInSec(), m_backupDirectory, m_nodeID);
+        m_versionHandler =
+                new VersionHandler(scheduler, m_backupRangeCatalog, m_secondaryLogSize, m_config.isSortedVersionLogs());
+        m_logHandler = new LogHandler(m_config, m_versionHandler, scheduler, m_backupRangeCatalog, bufferPool,
+                m_secondaryLogSize, p_reopen, m_backupDirectory, m_nodeID);
         m_writeBufferHandler = new WriteBufferHandler(m_logHandler, m_versionHandler, scheduler, bufferPool,
-                (int) m_config.getWriteBufferSize().getBytes(), (int) m_config.getSecondaryLogBufferSize().getBytes(),
-                (int) m_config.getFlashPageSize().getBytes(), m_config.isUseChecksums(), m_config.isUseTimestamps(),
-                m_initTime);
+                (int) m_config.getWriteBufferSize().getBytes(), m_config.getWriteBufferStripes(),
+                (int) m_config.getSecondaryLogBufferSize().getBytes(), (int) m_config.getFlashPageSize().getBytes(),
+                m_config.isUseChecksums(), m_config.isUseTimestamps(), m_initTime);
         scheduler.set(m_writeBufferHandler, m_logHandler);
 
         m_logRecoveryHandler =
@@ -270,6 +289,71 @@ public final class DXLog {
         m_writeBufferHandler.postData(p_owner, p_rangeID, p_numberOfDataStructures, p_buffer);
     }
 
+    /**
+     * Logs chunks like logChunks() but returns a completion which is completed as soon as all chunks are written to
+     * the primary or secondary log on disk. The completion is completed by a DXLog thread, so dependent actions
+     * should be short or executed asynchronously. If the write buffer is full, the caller is parked until the process
+     * thread flushed; use tryLogChunks() to never wait.
+     *
+     * @param p_messageHeader
+     *         the message header (the payload is yet to be deserialized)
+     * @return the completion
+     */
+    public CompletableFuture<Void> logChunksAsync(final MessageHeader p_messageHeader) {
+        CompletableFuture<Void> ret = new CompletableFuture<>();
+
+        m_writeBufferHandler.postData(p_messageHeader, ret);
+
+        return ret;
+    }
+
+    /**
+     * Logs chunks like logChunks() but returns a completion which is completed as soon as all chunks are written to
+     * the primary or secondary log on disk. The completion is completed by a DXLog thread, so dependent actions
+     * should be short or executed asynchronously. If the write buffer is full, the caller is parked until the process
+     * thread flushed; use tryLogChunks() to never wait.
+     *
+     * @param p_owner
+     *         the Chunks' owner
+     * @param p_rangeID
+     *         the RangeID
+     * @param p_numberOfDataStructures
+     *         the number of data structures stored in p_buffer
+     * @param p_buffer
+     *         the Chunk buffer
+     * @return the completion
+     */
+    public CompletableFuture<Void> logChunksAsync(final short p_owner, final short p_rangeID,
+            final int p_numberOfDataStructures, final ByteBuffer p_buffer) {
+        CompletableFuture<Void> ret = new CompletableFuture<>();
+
+        m_writeBufferHandler.postData(p_owner, p_rangeID, p_numberOfDataStructures, p_buffer, ret);
+
+        return ret;
+    }
+
+    /**
+     * Tries to log a buffer with Chunks without blocking. Fails fast if the write buffer is full, so the caller can
+     * apply backpressure instead of waiting. A flush is triggered in that case.
+     *
+     * @param p_owner
+     *         the Chunks' owner
+     * @param p_rangeID
+     *         the RangeID
+     * @param p_numberOfDataStructures
+     *         the number of data structures stored in p_buffer
+     * @param p_buffer
+     *         the Chunk buffer
+     * @param p_completion
+     *         completed as soon as all chunks are written to disk (may be null; untouched if the chunks were not
+     *         logged)
+     * @return 0 if the chunks were logged, otherwise the number of bytes that must be flushed before retrying
+     */
+    public int tryLogChunks(final short p_owner, final short p_rangeID, final int p_numberOfDataStructures,
+            final ByteBuffer p_buffer, final CompletableFuture<Void> p_completion) {
+        return m_writeBufferHandler.tryPostData(p_owner, p_rangeID, p_numberOfDataStructures, p_buffer, p_completion);
+    }
+
     /**
      * Removes Chunks from log
      *
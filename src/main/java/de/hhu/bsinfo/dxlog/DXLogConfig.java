@@ -9,6 +9,10 @@ import com.google.gson.annotations.Expose;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.hhu.bsinfo.dxlog.storage.StartupMode;
+import de.hhu.bsinfo.dxlog.storage.diskaccess.DurabilityMode;
+import de.hhu.bsinfo.dxlog.storage.diskaccess.HarddriveAccessMode;
+import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.SegmentSelectionMode;
 import de.hhu.bsinfo.dxutils.unit.StorageUnit;
 
 /**
@@ -26,7 +30,9 @@ public final class DXLogConfig {
     private static final int COLD_DATA_THRESHOLD = 9000;
 
     /**
-     * Harddrive access mode ("raf" -> RandomAccessFile, "dir" -> file access with ODirect (skips kernel buffer),
+     * Harddrive access mode ("raf" -> RandomAccessFile, "nio" -> FileChannel with direct buffers (no JNI library
+     * for file access), "map" -> like "nio" but segments are read in place from memory-mapped secondary logs,
+     * "dir" -> file access with ODirect (skips kernel buffer),
      * "raw" -> direct access to raw partition).
      */
     @Expose
@@ -38,6 +44,27 @@ public final class DXLogConfig {
     @Expose
     private String m_rawDevicePath = "/dev/raw/raw1";
 
+    /**
+     * Durability mode ("none" -> logs are never synced, "periodic" -> all written logs are synced every
+     * syncIntervalInMs, "job" -> written logs are synced after every write job; syncs of queued jobs are coalesced).
+     */
+    @Expose
+    private String m_durability = "none";
+
+    /**
+     * Interval for syncing written logs (only used for durability mode "periodic").
+     */
+    @Expose
+    private int m_syncIntervalInMs = 10;
+
+    /**
+     * Startup mode ("purge" -> all logs in the backup directory are deleted at startup, "reopen" -> secondary logs
+     * and version logs of the last run are reopened and the primary log is replayed; not supported by harddrive
+     * access modes "dir" and "raw").
+     */
+    @Expose
+    private String m_startupMode = "purge";
+
     /**
      * Whether to log with checksum for every log entry or not (if true, checksum is verified during recovery).
      */
@@ -75,6 +102,20 @@ public final class DXLogConfig {
     @Expose
     private StorageUnit m_writeBufferSize = new StorageUnit(32, StorageUnit.MB);
 
+    /**
+     * Number of write buffer stripes (power of two). The write buffer is split into stripes with separate ring
+     * buffers to serve several producer threads concurrently.
+     */
+    @Expose
+    private int m_writeBufferStripes = 1;
+
+    /**
+     * Number of writer threads. Write jobs are partitioned by backup range (the order within a backup range is
+     * preserved) to allow several outstanding writes, e.g., on NVMe devices.
+     */
+    @Expose
+    private int m_writerThreads = 1;
+
     /**
      * Number of bytes buffered until data is flushed to specific secondary log.
      */
@@ -93,6 +134,98 @@ public final class DXLogConfig {
     @Expose
     private int m_utilizationPromptReorganization = 75;
 
+    /**
+     * Number of reorganization threads. Secondary logs are partitioned by backup range, every thread reorganizes
+     * its own subset of secondary logs.
+     */
+    @Expose
+    private int m_reorganizationThreads = 1;
+
+    /**
+     * Maximum number of segment reads/writes of all reorganization threads at the same time (to not saturate the
+     * device with reorganization I/O).
+     */
+    @Expose
+    private int m_reorganizationIOBudget = 1;
+
+    /**
+     * Maximum reorganization throughput per second of all reorganization threads (0 -> unlimited). The actual rate
+     * is reduced while foreground writes are slow and increased again when secondary logs fill up.
+     */
+    @Expose
+    private StorageUnit m_reorganizationThroughputLimit = new StorageUnit(512, StorageUnit.MB);
+
+    /**
+     * Latency of writes to secondary logs above which the reorganization backs off.
+     */
+    @Expose
+    private int m_reorganizationLatencyTargetInUs = 2000;
+
+    /**
+     * Policy to choose the next segment to reorganize ("costbenefit" -> highest utilization * age, "greedy" -> lowest
+     * number of live bytes, "agebucketed" -> lowest number of live bytes of the oldest segments, "dchoices" -> lowest
+     * number of live bytes of a few randomly sampled segments).
+     */
+    @Expose
+    private String m_segmentSelection = "costbenefit";
+
+    /**
+     * Maximum number of sparsely used segments the reorganization copies into one empty segment (copy-forward
+     * compaction, frees whole segments). 1 -> segments are reorganized in place, only.
+     */
+    @Expose
+    private int m_compactionSegments = 1;
+
+    /**
+     * Whether the reorganization moves cold log entries of reorganized segments to separate cold segments which are
+     * reorganized rarely. Log entries are cold if older than the cold data threshold (timestamps enabled) or not
+     * updated for the cold epoch distance (timestamps disabled).
+     */
+    @Expose
+    private boolean m_hotColdSeparation = false;
+
+    /**
+     * Number of epochs (version buffer flushes) without update after which a log entry is considered cold
+     * (relevant, only, if hot/cold separation is enabled and timestamps are disabled).
+     */
+    @Expose
+    private int m_coldEpochDistance = 8;
+
+    /**
+     * Log entries of chunks updated at least this often within the current epoch are written to a separate hot
+     * segment to concentrate their garbage (0 -> disabled).
+     */
+    @Expose
+    private int m_hotVersionThreshold = 0;
+
+    /**
+     * Whether the reorganization relocates mostly live segments by copying runs of contiguous live log entries
+     * within the log file in the kernel instead of staging them in user space (not supported by DIR and RAW).
+     */
+    @Expose
+    private boolean m_liveRunTransfer = false;
+
+    /**
+     * Whether every reorganization thread reads the next segment to reorganize while processing the current one
+     * (requires a second segment-sized buffer and a prefetch thread per reorganization thread).
+     */
+    @Expose
+    private boolean m_reorganizationPrefetch = false;
+
+    /**
+     * Memory for cached version snapshots of recently reorganized backup ranges, shared by all reorganization
+     * threads. Entering a cached range applies the versions flushed since the last visit, only (0 -> disabled).
+     */
+    @Expose
+    private StorageUnit m_versionSnapshotCacheSize = new StorageUnit(0, StorageUnit.MB);
+
+    /**
+     * Whether version logs consist of runs sorted by chunk ID. The runs are merged by the reorganization (with or
+     * without version snapshot cache) which bounds the version log size.
+     */
+    @Expose
+    private boolean m_sortedVersionLogs = false;
+
     /**
      * Log entries older than this threshold are not considered for segment age calculation
      * (relevant, only, if timestamps are enabled).
@@ -139,11 +272,81 @@ public final class DXLogConfig {
             return false;
         }
 
+        if (m_writeBufferStripes < 1 || Integer.bitCount(m_writeBufferStripes) != 1 ||
+                m_writeBufferSize.getBytes() / m_writeBufferStripes <= m_logSegmentSize.getBytes()) {
+            LOGGER.error("Number of write buffer stripes must be a power of two and the stripe size must be greater " +
+                    "than segment size");
+            return false;
+        }
+
+        if (m_writerThreads < 1) {
+            LOGGER.error("Number of writer threads must be at least 1");
+            return false;
+        }
+
+        if (m_reorganizationThreads < 1 || m_reorganizationIOBudget < 1) {
+            LOGGER.error("Number of reorganization threads and reorganization I/O budget must be at least 1");
+            return false;
+        }
+
+        if (m_compactionSegments < 1) {
+            LOGGER.error("Number of compaction segments must be at least 1");
+            return false;
+        }
+
+        if (m_hotVersionThreshold < 0) {
+            LOGGER.error("Hot version threshold must not be negative");
+            return false;
+        }
+
+        if (m_coldEpochDistance <= 0) {
+            LOGGER.error("Cold epoch distance must be greater than 0");
+            return false;
+        }
+
+        if (m_reorganizationLatencyTargetInUs <= 0) {
+            LOGGER.error("Reorganization latency target must be greater than 0");
+            return false;
+        }
+
         if (m_secondaryLogBufferSize.getBytes() > m_logSegmentSize.getBytes()) {
             LOGGER.error("Secondary log buffer size must not exceed segment size!");
             return false;
         }
 
+        if (!DurabilityMode.isValid(m_durability)) {
+            LOGGER.error("Invalid durability mode %s! Valid modes: none, periodic, job", m_durability);
+            return false;
+        }
+
+        if (m_syncIntervalInMs <= 0 && DurabilityMode.convert(m_durability) == DurabilityMode.PERIODIC) {
+            LOGGER.error("Sync interval must be greater than 0 for periodic durability mode!");
+            return false;
+        }
+
+        if (HarddriveAccessMode.convert(m_harddriveAccess) == HarddriveAccessMode.RAW_DEVICE &&
+                DurabilityMode.convert(m_durability) != DurabilityMode.NONE) {
+            LOGGER.warn("Raw device access cannot sync logs. Durability depends on the device's write cache!");
+        }
+
+        if (!SegmentSelectionMode.isValid(m_segmentSelection)) {
+            LOGGER.error("Invalid segment selection %s! Valid policies: costbenefit, greedy, agebucketed, dchoices",
+                    m_segmentSelection);
+            return false;
+        }
+
+        if (!StartupMode.isValid(m_startupMode)) {
+            LOGGER.error("Invalid startup mode %s! Valid modes: purge, reopen", m_startupMode);
+            return false;
+        }
+
+        if (StartupMode.convert(m_startupMode) == StartupMode.REOPEN &&
+                (HarddriveAccessMode.convert(m_harddriveAccess) == HarddriveAccessMode.ODIRECT ||
+                        HarddriveAccessMode.convert(m_harddriveAccess) == HarddriveAccessMode.RAW_DEVICE)) {
+            LOGGER.error("Startup mode reopen is not supported by harddrive access modes dir and raw!");
+            return false;
+        }
+
         if (m_utilizationPromptReorganization <= 50) {
             LOGGER.warn("Reorganization threshold is < 50. Reorganization is triggered continuously!");
             return true;
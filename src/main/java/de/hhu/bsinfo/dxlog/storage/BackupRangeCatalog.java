@@ -17,6 +17,7 @@
 package de.hhu.bsinfo.dxlog.storage;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -41,6 +42,10 @@ public final class BackupRangeCatalog {
     private int m_numberOfNodes = 0;
     private int m_numberOfRanges = 0;
 
+    // All active backup ranges sorted by owner and range ID (copy-on-write, ranges are rarely inserted or removed)
+    private long[] m_activeRangeIDs = new long[0];
+    private volatile SecondaryLogBuffer[] m_activeRanges = new SecondaryLogBuffer[0];
+
     /**
      * Creates an instance of BackupRangeCatalog.
      */
@@ -179,6 +184,7 @@ public final class BackupRangeCatalog {
 
         m_secondaryLogBuffers[p_owner & 0xFFFF][p_range & 0xFFFF] = p_buffer;
         m_versionBuffers[p_owner & 0xFFFF][p_range & 0xFFFF] = p_versionBuffer;
+        addActiveRange(p_owner, p_range, p_buffer);
 
         m_numberOfRanges++;
     }
@@ -255,6 +261,7 @@ public final class BackupRangeCatalog {
         }
         buffers[p_rangeID & 0xFFFF] = null;
         versionBuffers[p_rangeID & 0xFFFF] = null;
+        removeActiveRange(p_creatorID, p_rangeID);
 
         boolean isNodeEmpty = true;
         for (int i = 0; i < buffers.length; i++) {
@@ -301,30 +308,36 @@ public final class BackupRangeCatalog {
             }
         }
         m_numberOfRanges = 0;
+        synchronized (this) {
+            m_activeRangeIDs = new long[0];
+            m_activeRanges = new SecondaryLogBuffer[0];
+        }
     }
 
     /**
-     * Returns all secondary log buffers for a random peer.
+     * Returns the secondary log buffers of all backup ranges sorted by owner and range ID. The returned array is
+     * not modified (inserting or removing a range creates a new array).
+     *
+     * @return the secondary log buffers of all backup ranges
+     */
+    public SecondaryLogBuffer[] getActiveSecondaryLogBuffers() {
+        return m_activeRanges;
+    }
+
+    /**
+     * Returns the secondary log buffer of a random backup range.
      * Used for reorganization, only.
      *
-     * @return an array of secondary log buffers or null
+     * @return a secondary log buffer or null if there is no backup range
      */
-    public SecondaryLogBuffer[] getSecondaryLogBuffersOfRandomNode() {
-        int index = 0;
-        int counter = 0;
-        int randomNumber = RandomUtils.getRandomValue(m_numberOfNodes);
-
-        while (counter < randomNumber || m_secondaryLogBuffers[index] == null) {
-            if (m_secondaryLogBuffers[index] != null) {
-                counter++;
-            }
+    public SecondaryLogBuffer getRandomSecondaryLogBuffer() {
+        SecondaryLogBuffer[] activeRanges = m_activeRanges;
 
-            if (++index == Short.MAX_VALUE * 2 + 1) {
-                return null;
-            }
+        if (activeRanges.length == 0) {
+            return null;
         }
 
-        return m_secondaryLogBuffers[index];
+        return activeRanges[RandomUtils.getRandomValue(activeRanges.length - 1)];
     }
 
     /**
@@ -336,6 +349,72 @@ public final class BackupRangeCatalog {
         return m_numberOfRanges;
     }
 
+    /**
+     * Adds a backup range to the sorted active ranges.
+     *
+     * @param p_owner
+     *         the owner
+     * @param p_range
+     *         the range ID
+     * @param p_buffer
+     *         the secondary log buffer
+     */
+    private synchronized void addActiveRange(final short p_owner, final short p_range,
+            final SecondaryLogBuffer p_buffer) {
+        long rangeID = (long) (p_owner & 0xFFFF) << 16 | p_range & 0xFFFF;
+        int index = Arrays.binarySearch(m_activeRangeIDs, rangeID);
+        SecondaryLogBuffer[] activeRanges = m_activeRanges;
+
+        if (index >= 0) {
+            // Replace existing range
+            activeRanges = Arrays.copyOf(activeRanges, activeRanges.length);
+            activeRanges[index] = p_buffer;
+            m_activeRanges = activeRanges;
+            return;
+        }
+
+        index = -(index + 1);
+        long[] newRangeIDs = new long[m_activeRangeIDs.length + 1];
+        SecondaryLogBuffer[] newRanges = new SecondaryLogBuffer[activeRanges.length + 1];
+        System.arraycopy(m_activeRangeIDs, 0, newRangeIDs, 0, index);
+        System.arraycopy(activeRanges, 0, newRanges, 0, index);
+        newRangeIDs[index] = rangeID;
+        newRanges[index] = p_buffer;
+        System.arraycopy(m_activeRangeIDs, index, newRangeIDs, index + 1, m_activeRangeIDs.length - index);
+        System.arraycopy(activeRanges, index, newRanges, index + 1, activeRanges.length - index);
+
+        m_activeRangeIDs = newRangeIDs;
+        m_activeRanges = newRanges;
+    }
+
+    /**
+     * Removes a backup range from the sorted active ranges.
+     *
+     * @param p_owner
+     *         the owner
+     * @param p_range
+     *         the range ID
+     */
+    private synchronized void removeActiveRange(final short p_owner, final short p_range) {
+        long rangeID = (long) (p_owner & 0xFFFF) << 16 | p_range & 0xFFFF;
+        int index = Arrays.binarySearch(m_activeRangeIDs, rangeID);
+        SecondaryLogBuffer[] activeRanges = m_activeRanges;
+
+        if (index < 0) {
+            return;
+        }
+
+        long[] newRangeIDs = new long[m_activeRangeIDs.length - 1];
+        SecondaryLogBuffer[] newRanges = new SecondaryLogBuffer[activeRanges.length - 1];
+        System.arraycopy(m_activeRangeIDs, 0, newRangeIDs, 0, index);
+        System.arraycopy(activeRanges, 0, newRanges, 0, index);
+        System.arraycopy(m_activeRangeIDs, index + 1, newRangeIDs, index, newRangeIDs.length - index);
+        System.arraycopy(activeRanges, index + 1, newRanges, index, newRanges.length - index);
+
+        m_activeRangeIDs = newRangeIDs;
+        m_activeRanges = newRanges;
+    }
+
     @Override
     public String toString() {
         StringBuilder ret = new StringBuilder("BackupRanges:\n");
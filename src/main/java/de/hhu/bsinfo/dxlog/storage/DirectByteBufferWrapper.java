@@ -68,6 +68,18 @@ public final class DirectByteBufferWrapper {
         }
     }
 
+    /**
+     * Creates an instance of DirectBufferWrapper wrapping an existing direct ByteBuffer
+     * (e.g., a memory-mapped region of a log).
+     *
+     * @param p_buffer
+     *         the direct ByteBuffer
+     */
+    public DirectByteBufferWrapper(final ByteBuffer p_buffer) {
+        m_buffer = p_buffer.order(ByteOrder.LITTLE_ENDIAN);
+        m_addr = ByteBufferHelper.getDirectAddress(p_buffer);
+    }
+
     /**
      * Set page size. Must be called before logging is started.
      *
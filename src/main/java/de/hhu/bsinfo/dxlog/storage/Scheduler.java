@@ -59,8 +59,8 @@ public final class Scheduler {
     }
 
     /**
-     * Wakes up the reorganization thread.
-     * Must not be called by any other thread than the writer thread.
+     * Wakes up the reorganization thread responsible for the secondary log.
+     * Can be called by all writer threads concurrently.
      *
      * @param p_secondaryLog
      *         the secondary log to reorganize
@@ -70,8 +70,9 @@ public final class Scheduler {
     }
 
     /**
-     * Wakes up the reorganization thread and waits until reorganization is finished.
-     * Must not be called by any other thread than the writer thread.
+     * Wakes up the reorganization thread responsible for the secondary log and waits until reorganization is
+     * finished. Can be called by all writer threads concurrently; urgent requests for the same reorganization thread
+     * are processed one after another.
      *
      * @param p_secondaryLog
      *         the secondary log to reorganize
@@ -80,6 +81,37 @@ public final class Scheduler {
         m_logHandler.signalReorganizationBlocking(p_secondaryLog);
     }
 
+    /**
+     * Updates the reorganization priority of a secondary log (after writing to or reorganizing it).
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     */
+    public void updateReorganizationPriority(final SecondaryLog p_secondaryLog) {
+        if (m_logHandler != null) {
+            m_logHandler.updateReorganizationPriority(p_secondaryLog);
+        }
+    }
+
+    /**
+     * Wakes up the process thread (e.g., to grant access to the reorganization thread or to complete durable data).
+     */
+    public void wakeUpProcessThread() {
+        if (m_writeBufferHandler != null) {
+            m_writeBufferHandler.wakeUpProcessThread();
+        }
+    }
+
+    /**
+     * Returns whether a completion waits for its data to be written to disk (the process thread must be woken up
+     * when the durable watermark advances).
+     *
+     * @return true if there is a pending completion
+     */
+    public boolean hasPendingCompletions() {
+        return m_writeBufferHandler != null && m_writeBufferHandler.hasPendingCompletions();
+    }
+
     /**
      * Grants the reorganization thread access to a log.
      * Is called by process thread, only.
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage;
+
+/**
+ * Represents the startup modes, i.e., how existing logs in the backup directory are handled.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public enum StartupMode {
+    PURGE, REOPEN;
+
+    private static final String PURGE_STR = "purge";
+    private static final String REOPEN_STR = "reopen";
+
+    /**
+     * Get the startup mode from a full string.
+     *
+     * @param p_str
+     *         String to parse.
+     * @return StartupMode
+     */
+    public static StartupMode convert(final String p_str) {
+        String str = p_str.toLowerCase();
+        switch (str) {
+            case REOPEN_STR:
+                return REOPEN;
+            default:
+                return PURGE;
+        }
+    }
+
+    /**
+     * Checks if the given string is a valid startup mode.
+     *
+     * @param p_str
+     *         String to check.
+     * @return whether the string is valid or not
+     */
+    public static boolean isValid(final String p_str) {
+        String str = p_str.toLowerCase();
+        return PURGE_STR.equals(str) || REOPEN_STR.equals(str);
+    }
+}
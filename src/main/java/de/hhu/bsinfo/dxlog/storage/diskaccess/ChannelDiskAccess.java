@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.diskaccess;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
+
+/**
+ * Disk access using a FileChannel with positional reads and writes. Works on the (page-aligned) direct buffers
+ * without copying and without a JNI library. There is no seek and no truncation per write access.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public final class ChannelDiskAccess implements DiskAccessInterface {
+
+    @Override
+    public long getFileSize(final Object p_log) throws IOException {
+        return ((FileChannel) p_log).size();
+    }
+
+    @Override
+    public Object createLog(final File p_file, final long p_logSize) throws IOException {
+        boolean success = true;
+
+        if (p_file.exists()) {
+            success = p_file.delete();
+        }
+
+        if (success && !p_file.getParentFile().exists()) {
+            // Create folders
+            success = p_file.getParentFile().mkdirs();
+        }
+
+        if (success) {
+            return FileChannel
+                    .open(p_file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Object openLog(final File p_file) throws IOException {
+        return FileChannel.open(p_file.toPath(), StandardOpenOption.READ);
+    }
+
+    @Override
+    public Object reopenLog(final File p_file, final long p_logSize) throws IOException {
+        return FileChannel.open(p_file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void renameLog(final File p_file, final File p_newFile) throws IOException {
+        Files.move(p_file.toPath(), p_newFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void closeLog(final Object p_log) throws IOException {
+        if (p_log != null) {
+            ((FileChannel) p_log).close();
+        }
+    }
+
+    @Override
+    public void closeAndRemoveLog(final Object p_log, final File p_file) throws IOException {
+        ((FileChannel) p_log).close();
+
+        if (p_file.exists()) {
+            if (!p_file.delete()) {
+                throw new FileNotFoundException();
+            }
+        }
+    }
+
+    @Override
+    public void read(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_length,
+            final long p_readPos) throws IOException {
+        FileChannel channel = (FileChannel) p_log;
+        // Duplicate to not modify position and limit of the buffer which might be accessed concurrently
+        ByteBuffer buffer = p_bufferWrapper.getBuffer().duplicate();
+        buffer.position(0);
+        buffer.limit(p_length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, p_readPos + buffer.position()) < 0) {
+                throw new EOFException("Error reading from log. End of file reached");
+            }
+        }
+    }
+
+    @Override
+    public void write(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
+            final long p_writePos, final int p_length, final boolean p_setLength) throws IOException {
+        FileChannel channel = (FileChannel) p_log;
+
+        writeToChannel(channel, p_bufferWrapper, p_bufferOffset, p_writePos, p_length);
+        if (p_setLength && channel.size() > p_writePos + p_length) {
+            // Truncate only if the file is larger (writing behind the end enlarges the file anyway)
+            channel.truncate(p_writePos + p_length);
+        }
+    }
+
+    @Override
+    public void write(final Object p_log, final DirectByteBufferWrapper[] p_bufferWrappers,
+            final int[] p_bufferOffsets, final int[] p_lengths, final long p_writePos) throws IOException {
+        FileChannel channel = (FileChannel) p_log;
+        ByteBuffer[] buffers = new ByteBuffer[p_bufferWrappers.length];
+        long remaining = 0;
+
+        for (int i = 0; i < buffers.length; i++) {
+            // Duplicate to not modify position and limit of the buffers which might be accessed concurrently
+            buffers[i] = p_bufferWrappers[i].getBuffer().duplicate();
+            buffers[i].position(p_bufferOffsets[i]);
+            buffers[i].limit(p_bufferOffsets[i] + p_lengths[i]);
+            remaining += p_lengths[i];
+        }
+
+        // There is no positional gather-write -> set the channel's position (it is not used by any other access)
+        synchronized (channel) {
+            channel.position(p_writePos);
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+        }
+    }
+
+    @Override
+    public void append(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
+            final long p_writePos, final int p_length) throws IOException {
+        // p_writePos is the end of the file -> the file is enlarged by writing
+        writeToChannel((FileChannel) p_log, p_bufferWrapper, p_bufferOffset, p_writePos, p_length);
+    }
+
+    @Override
+    public void sync(final Object p_log, final File p_file) throws IOException {
+        ((FileChannel) p_log).force(false);
+    }
+
+    @Override
+    public ByteBuffer map(final Object p_log, final long p_position, final int p_length) throws IOException {
+        return null;
+    }
+
+    @Override
+    public boolean transfer(final Object p_log, final long p_sourcePos, final long p_destinationPos,
+            final int p_length) throws IOException {
+        transferWithinChannel((FileChannel) p_log, p_sourcePos, p_destinationPos, p_length);
+
+        return true;
+    }
+
+    /**
+     * Copies a region of a file to another region of the same file. The JVM uses an in-kernel copy if supported by
+     * the operating system.
+     *
+     * @param p_channel
+     *         the file channel
+     * @param p_sourcePos
+     *         the position of the region to copy
+     * @param p_destinationPos
+     *         the position to copy the region to
+     * @param p_length
+     *         the length of the region
+     * @throws IOException
+     *         if the region could not be copied
+     */
+    static void transferWithinChannel(final FileChannel p_channel, final long p_sourcePos,
+            final long p_destinationPos, final int p_length) throws IOException {
+        long transferred = 0;
+        long count;
+
+        // transferTo() writes to the target's position -> set the channel's position (it is not used by any other
+        // access)
+        synchronized (p_channel) {
+            p_channel.position(p_destinationPos);
+            while (transferred < p_length) {
+                count = p_channel.transferTo(p_sourcePos + transferred, p_length - transferred, p_channel);
+                if (count <= 0) {
+                    throw new EOFException("Error transferring within log. End of file reached");
+                }
+                transferred += count;
+            }
+        }
+    }
+
+    /**
+     * Writes to log.
+     *
+     * @param p_channel
+     *         the file channel
+     * @param p_bufferWrapper
+     *         the buffer wrapper containing the byte buffer to written
+     * @param p_bufferOffset
+     *         the offset within the byte buffer
+     * @param p_writePos
+     *         the log position to write to
+     * @param p_length
+     *         the number of bytes to write
+     * @throws IOException
+     *         if the log could not be written
+     */
+    private static void writeToChannel(final FileChannel p_channel, final DirectByteBufferWrapper p_bufferWrapper,
+            final int p_bufferOffset, final long p_writePos, final int p_length) throws IOException {
+        // Duplicate to not modify position and limit of the buffer which might be accessed concurrently
+        ByteBuffer buffer = p_bufferWrapper.getBuffer().duplicate();
+        buffer.position(p_bufferOffset);
+        buffer.limit(p_bufferOffset + p_length);
+
+        while (buffer.hasRemaining()) {
+            p_channel.write(buffer, p_writePos + buffer.position() - p_bufferOffset);
+        }
+    }
+}
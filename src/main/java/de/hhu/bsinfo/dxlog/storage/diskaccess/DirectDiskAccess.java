@@ -3,8 +3,11 @@ package de.hhu.bsinfo.dxlog.storage.diskaccess;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
 import de.hhu.bsinfo.dxutils.jni.JNIFileDirect;
@@ -47,6 +50,12 @@ public final class DirectDiskAccess implements DiskAccessInterface {
         return JNIFileDirect.open(p_file.getPath(), 1, 0);
     }
 
+    @Override
+    public Object reopenLog(final File p_file, final long p_logSize) throws IOException {
+        // JNIFileDirect can either create (and truncate) a log or open it read-only
+        throw new IOException("Reopening logs is not supported by this access mode");
+    }
+
     @Override
     public void renameLog(File p_file, File p_newFile) throws IOException {
         Files.move(p_file.toPath(), p_newFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
@@ -88,12 +97,44 @@ public final class DirectDiskAccess implements DiskAccessInterface {
         writeToFile(p_log, p_bufferWrapper, p_bufferOffset, p_writePos, p_length, p_setLength);
     }
 
+    @Override
+    public void write(final Object p_log, final DirectByteBufferWrapper[] p_bufferWrappers,
+            final int[] p_bufferOffsets, final int[] p_lengths, final long p_writePos) throws IOException {
+        // JNIFileDirect does not offer a vectored write (pwritev) -> write the buffers one after another
+        long writePos = p_writePos;
+        for (int i = 0; i < p_bufferWrappers.length; i++) {
+            writeToFile(p_log, p_bufferWrappers[i], p_bufferOffsets[i], writePos, p_lengths[i], false);
+            writePos += p_lengths[i];
+        }
+    }
+
     @Override
     public void append(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
             final long p_writePos, final int p_length) throws IOException {
         writeToFile(p_log, p_bufferWrapper, p_bufferOffset, p_writePos, p_length, true);
     }
 
+    @Override
+    public void sync(final Object p_log, final File p_file) throws IOException {
+        // JNIFileDirect does not offer fsync -> sync the file via a second descriptor (fsync flushes the file, not
+        // only the descriptor's data). Data is written with O_DIRECT, anyway, so only the device cache and the file
+        // metadata are affected
+        try (FileChannel channel = FileChannel.open(p_file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public ByteBuffer map(final Object p_log, final long p_position, final int p_length) throws IOException {
+        return null;
+    }
+
+    @Override
+    public boolean transfer(final Object p_log, final long p_sourcePos, final long p_destinationPos,
+            final int p_length) throws IOException {
+        return false;
+    }
+
     /**
      * Writes to log.
      *
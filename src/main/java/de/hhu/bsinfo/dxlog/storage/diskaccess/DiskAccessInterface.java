@@ -2,6 +2,7 @@ package de.hhu.bsinfo.dxlog.storage.diskaccess;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
 
@@ -47,6 +48,19 @@ public interface DiskAccessInterface {
      */
     Object openLog(final File p_file) throws IOException;
 
+    /**
+     * Reopens an existing log for reading and writing without truncating it (e.g., after a restart).
+     *
+     * @param p_file
+     *         the file containing the path
+     * @param p_logSize
+     *         the log size
+     * @return the log as either a RandomAccessFile or an Integer (file id)
+     * @throws IOException
+     *         if the log could not be reopened or the access mode does not support reopening logs
+     */
+    Object reopenLog(final File p_file, final long p_logSize) throws IOException;
+
     /**
      * Renames a log from file.
      *
@@ -119,6 +133,26 @@ public interface DiskAccessInterface {
     void write(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
             final long p_writePos, final int p_length, final boolean p_setLength) throws IOException;
 
+    /**
+     * Writes several buffers to the log with one (vectored) access if supported by the access mode (gather-write).
+     * The buffers are written consecutively starting at given log position.
+     *
+     * @param p_log
+     *         either a RandomAccessFile or an Integer storing the file id (DIR and RAW)
+     * @param p_bufferWrappers
+     *         the buffer wrappers containing the byte buffers to be written
+     * @param p_bufferOffsets
+     *         the offsets within the byte buffers
+     * @param p_lengths
+     *         the number of bytes to write from every byte buffer
+     * @param p_writePos
+     *         the log position to write to
+     * @throws IOException
+     *         if the log could not be written
+     */
+    void write(final Object p_log, final DirectByteBufferWrapper[] p_bufferWrappers, final int[] p_bufferOffsets,
+            final int[] p_lengths, final long p_writePos) throws IOException;
+
     /**
      * Writes to log (at the end).
      *
@@ -137,4 +171,50 @@ public interface DiskAccessInterface {
      */
     void append(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
             final long p_writePos, final int p_length) throws IOException;
+
+    /**
+     * Forces all written data of the log to the storage device.
+     *
+     * @param p_log
+     *         either a RandomAccessFile or an Integer storing the file id (DIR and RAW)
+     * @param p_file
+     *         the file containing the path
+     * @throws IOException
+     *         if the log could not be synced
+     */
+    void sync(final Object p_log, final File p_file) throws IOException;
+
+    /**
+     * Maps a region of the log into memory for reading in place. Optional operation.
+     *
+     * @param p_log
+     *         either a RandomAccessFile, a FileChannel or an Integer storing the file id (DIR and RAW)
+     * @param p_position
+     *         the position of the region within the log
+     * @param p_length
+     *         the length of the region
+     * @return the mapped region (direct ByteBuffer) or null if the access mode does not support memory mapping
+     * @throws IOException
+     *         if the region could not be mapped
+     */
+    ByteBuffer map(final Object p_log, final long p_position, final int p_length) throws IOException;
+
+    /**
+     * Copies a region of the log to another (not overlapping) region of the same log without staging the data in
+     * user space (in-kernel copy, e.g. sendfile or copy_file_range). Optional operation.
+     *
+     * @param p_log
+     *         either a RandomAccessFile, a FileChannel or an Integer storing the file id (DIR and RAW)
+     * @param p_sourcePos
+     *         the position of the region to copy
+     * @param p_destinationPos
+     *         the position to copy the region to
+     * @param p_length
+     *         the length of the region
+     * @return whether the region was copied or not (the access mode does not support in-kernel copies)
+     * @throws IOException
+     *         if the region could not be copied
+     */
+    boolean transfer(final Object p_log, final long p_sourcePos, final long p_destinationPos, final int p_length)
+            throws IOException;
 }
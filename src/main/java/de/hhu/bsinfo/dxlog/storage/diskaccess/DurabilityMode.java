@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.diskaccess;
+
+/**
+ * Represents the durability modes, i.e., when written log data is synced to the storage device.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public enum DurabilityMode {
+    NONE, PERIODIC, PER_JOB;
+
+    private static final String NONE_STR = "none";
+    private static final String PERIODIC_STR = "periodic";
+    private static final String PER_JOB_STR = "job";
+
+    /**
+     * Get the durability mode from a full string.
+     *
+     * @param p_str
+     *         String to parse.
+     * @return DurabilityMode
+     */
+    public static DurabilityMode convert(final String p_str) {
+        String str = p_str.toLowerCase();
+        switch (str) {
+            case PERIODIC_STR:
+                return PERIODIC;
+            case PER_JOB_STR:
+                return PER_JOB;
+            default:
+                return NONE;
+        }
+    }
+
+    /**
+     * Checks if the given string is a valid durability mode.
+     *
+     * @param p_str
+     *         String to check.
+     * @return whether the string is valid or not
+     */
+    public static boolean isValid(final String p_str) {
+        String str = p_str.toLowerCase();
+        return NONE_STR.equals(str) || PERIODIC_STR.equals(str) || PER_JOB_STR.equals(str);
+    }
+}
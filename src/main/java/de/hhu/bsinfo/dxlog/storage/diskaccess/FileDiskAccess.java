@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 
@@ -52,6 +54,15 @@ public final class FileDiskAccess implements DiskAccessInterface {
         return new RandomAccessFile(p_file, "r");
     }
 
+    @Override
+    public Object reopenLog(final File p_file, final long p_logSize) throws IOException {
+        if (!p_file.exists()) {
+            throw new FileNotFoundException("Log " + p_file + " does not exist");
+        }
+
+        return new RandomAccessFile(p_file, "rw");
+    }
+
     @Override
     public void renameLog(File p_file, File p_newFile) throws IOException {
         Files.move(p_file.toPath(), p_newFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
@@ -92,6 +103,22 @@ public final class FileDiskAccess implements DiskAccessInterface {
         }
     }
 
+    @Override
+    public void write(final Object p_log, final DirectByteBufferWrapper[] p_bufferWrappers,
+            final int[] p_bufferOffsets, final int[] p_lengths, final long p_writePos) throws IOException {
+        ByteBuffer buffer;
+        long writePos = p_writePos;
+
+        // Positional writes do not modify the file pointer the channel shares with the RandomAccessFile
+        FileChannel channel = ((RandomAccessFile) p_log).getChannel();
+        for (int i = 0; i < p_bufferWrappers.length; i++) {
+            buffer = ByteBuffer.wrap(p_bufferWrappers[i].getBuffer().array(), p_bufferOffsets[i], p_lengths[i]);
+            while (buffer.hasRemaining()) {
+                writePos += channel.write(buffer, writePos);
+            }
+        }
+    }
+
     @Override
     public void append(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
             final long p_writePos, final int p_length) throws IOException {
@@ -99,4 +126,24 @@ public final class FileDiskAccess implements DiskAccessInterface {
         ((RandomAccessFile) p_log).write(p_bufferWrapper.getBuffer().array(), p_bufferOffset, p_length);
         ((RandomAccessFile) p_log).setLength(p_writePos + p_length);
     }
+
+    @Override
+    public void sync(final Object p_log, final File p_file) throws IOException {
+        ((RandomAccessFile) p_log).getFD().sync();
+    }
+
+    @Override
+    public ByteBuffer map(final Object p_log, final long p_position, final int p_length) throws IOException {
+        return null;
+    }
+
+    @Override
+    public boolean transfer(final Object p_log, final long p_sourcePos, final long p_destinationPos,
+            final int p_length) throws IOException {
+        // The channel shares the file pointer with the RandomAccessFile
+        ChannelDiskAccess.transferWithinChannel(((RandomAccessFile) p_log).getChannel(), p_sourcePos,
+                p_destinationPos, p_length);
+
+        return true;
+    }
 }
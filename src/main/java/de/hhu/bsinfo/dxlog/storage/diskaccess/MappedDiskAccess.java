@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.diskaccess;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
+
+/**
+ * Disk access using memory-mapped files for reading segments in place. Writes and regular reads are executed with
+ * positional FileChannel accesses (see ChannelDiskAccess); the page cache is shared with the mappings.
+ * Logs are mapped lazily in windows of up to 1 GB which are kept until the log is closed. Mappings never exceed the
+ * file size (mapping beyond would enlarge the file); a window is remapped if a region was written behind its end.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public final class MappedDiskAccess implements DiskAccessInterface {
+
+    // Must be a multiple of the segment size to not split segments (segment sizes are powers of two)
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final ChannelDiskAccess m_channelAccess = new ChannelDiskAccess();
+
+    @Override
+    public long getFileSize(final Object p_log) throws IOException {
+        return m_channelAccess.getFileSize(((MappedLog) p_log).m_channel);
+    }
+
+    @Override
+    public Object createLog(final File p_file, final long p_logSize) throws IOException {
+        FileChannel channel = (FileChannel) m_channelAccess.createLog(p_file, p_logSize);
+
+        if (channel == null) {
+            return null;
+        }
+
+        return new MappedLog(channel, p_logSize);
+    }
+
+    @Override
+    public Object openLog(final File p_file) throws IOException {
+        FileChannel channel = (FileChannel) m_channelAccess.openLog(p_file);
+
+        return new MappedLog(channel, channel.size());
+    }
+
+    @Override
+    public Object reopenLog(final File p_file, final long p_logSize) throws IOException {
+        return new MappedLog((FileChannel) m_channelAccess.reopenLog(p_file, p_logSize), p_logSize);
+    }
+
+    @Override
+    public void renameLog(final File p_file, final File p_newFile) throws IOException {
+        m_channelAccess.renameLog(p_file, p_newFile);
+    }
+
+    @Override
+    public void closeLog(final Object p_log) throws IOException {
+        if (p_log != null) {
+            ((MappedLog) p_log).close();
+            m_channelAccess.closeLog(((MappedLog) p_log).m_channel);
+        }
+    }
+
+    @Override
+    public void closeAndRemoveLog(final Object p_log, final File p_file) throws IOException {
+        ((MappedLog) p_log).close();
+        m_channelAccess.closeAndRemoveLog(((MappedLog) p_log).m_channel, p_file);
+    }
+
+    @Override
+    public void read(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_length,
+            final long p_readPos) throws IOException {
+        m_channelAccess.read(((MappedLog) p_log).m_channel, p_bufferWrapper, p_length, p_readPos);
+    }
+
+    @Override
+    public void write(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
+            final long p_writePos, final int p_length, final boolean p_setLength) throws IOException {
+        m_channelAccess
+                .write(((MappedLog) p_log).m_channel, p_bufferWrapper, p_bufferOffset, p_writePos, p_length,
+                        p_setLength);
+    }
+
+    @Override
+    public void write(final Object p_log, final DirectByteBufferWrapper[] p_bufferWrappers,
+            final int[] p_bufferOffsets, final int[] p_lengths, final long p_writePos) throws IOException {
+        m_channelAccess.write(((MappedLog) p_log).m_channel, p_bufferWrappers, p_bufferOffsets, p_lengths, p_writePos);
+    }
+
+    @Override
+    public void append(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
+            final long p_writePos, final int p_length) throws IOException {
+        m_channelAccess.append(((MappedLog) p_log).m_channel, p_bufferWrapper, p_bufferOffset, p_writePos, p_length);
+    }
+
+    @Override
+    public void sync(final Object p_log, final File p_file) throws IOException {
+        m_channelAccess.sync(((MappedLog) p_log).m_channel, p_file);
+    }
+
+    @Override
+    public ByteBuffer map(final Object p_log, final long p_position, final int p_length) throws IOException {
+        return ((MappedLog) p_log).getRegion(p_position, p_length);
+    }
+
+    @Override
+    public boolean transfer(final Object p_log, final long p_sourcePos, final long p_destinationPos,
+            final int p_length) throws IOException {
+        // Mappings are shared -> copies within the page cache are visible in all mapped regions
+        return m_channelAccess.transfer(((MappedLog) p_log).m_channel, p_sourcePos, p_destinationPos, p_length);
+    }
+
+    /**
+     * A log file with its (lazily created) mappings.
+     */
+    private static final class MappedLog {
+        private final FileChannel m_channel;
+        private final long m_logSize;
+        private final MappedByteBuffer[] m_windows;
+
+        /**
+         * Creates an instance of MappedLog.
+         *
+         * @param p_channel
+         *         the file channel
+         * @param p_logSize
+         *         the log size
+         */
+        private MappedLog(final FileChannel p_channel, final long p_logSize) {
+            m_channel = p_channel;
+            m_logSize = p_logSize;
+            m_windows = new MappedByteBuffer[(int) ((p_logSize + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+        }
+
+        /**
+         * Returns a view on the given region. The region is read from the page cache on access.
+         *
+         * @param p_position
+         *         the position within the log
+         * @param p_length
+         *         the length of the region
+         * @return the region (position 0, limit and capacity p_length)
+         * @throws IOException
+         *         if the region could not be mapped
+         */
+        private ByteBuffer getRegion(final long p_position, final int p_length) throws IOException {
+            int windowIndex = (int) (p_position / WINDOW_SIZE);
+            int offset = (int) (p_position % WINDOW_SIZE);
+            MappedByteBuffer window = getWindow(windowIndex, offset + p_length);
+
+            if (window == null) {
+                // The region exceeds the log or file size -> not mappable
+                return null;
+            }
+
+            // Duplicate to not modify the shared window (the duplicate is accessed by one thread, only)
+            ByteBuffer region = window.duplicate();
+            region.position(offset);
+            region.limit(offset + p_length);
+
+            return region.slice();
+        }
+
+        /**
+         * Returns the window with given index covering at least the given number of bytes. Maps the window (again)
+         * if necessary.
+         *
+         * @param p_windowIndex
+         *         the window index
+         * @param p_minSize
+         *         the number of bytes the window must cover
+         * @return the window or null if the index is out of range or the file is too small
+         * @throws IOException
+         *         if the window could not be mapped
+         */
+        private synchronized MappedByteBuffer getWindow(final int p_windowIndex, final int p_minSize)
+                throws IOException {
+            if (p_windowIndex >= m_windows.length) {
+                return null;
+            }
+
+            MappedByteBuffer ret = m_windows[p_windowIndex];
+            if (ret == null || ret.capacity() < p_minSize) {
+                long position = p_windowIndex * WINDOW_SIZE;
+                // Do not map behind the end of file: mapping would enlarge the file up to the log size (the end of
+                // data is determined by the file size when reopening the log)
+                long size = Math.min(Math.min(WINDOW_SIZE, m_logSize - position), m_channel.size() - position);
+
+                if (size < p_minSize) {
+                    return null;
+                }
+                ret = m_channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                m_windows[p_windowIndex] = ret;
+            }
+
+            return ret;
+        }
+
+        /**
+         * Drops all mappings. Mappings are released by the garbage collector.
+         */
+        private synchronized void close() {
+            for (int i = 0; i < m_windows.length; i++) {
+                m_windows[i] = null;
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package de.hhu.bsinfo.dxlog.storage.diskaccess;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
 import de.hhu.bsinfo.dxutils.jni.JNIFileRaw;
@@ -35,6 +36,12 @@ public final class RawDiskAccess implements DiskAccessInterface {
         return JNIFileRaw.open(p_file.getName(), 0);
     }
 
+    @Override
+    public Object reopenLog(final File p_file, final long p_logSize) throws IOException {
+        // JNIFileRaw can either create (and truncate) a log or open it read-only
+        throw new IOException("Reopening logs is not supported by this access mode");
+    }
+
     @Override
     public void renameLog(File p_file, File p_newFile) throws IOException {
         // TODO: rename the log file in JNIFileRaw
@@ -72,12 +79,40 @@ public final class RawDiskAccess implements DiskAccessInterface {
         writeToDisk(p_log, p_bufferWrapper, p_bufferOffset, p_writePos, p_length, p_setLength);
     }
 
+    @Override
+    public void write(final Object p_log, final DirectByteBufferWrapper[] p_bufferWrappers,
+            final int[] p_bufferOffsets, final int[] p_lengths, final long p_writePos) throws IOException {
+        // JNIFileRaw does not offer a vectored write (pwritev) -> write the buffers one after another
+        long writePos = p_writePos;
+        for (int i = 0; i < p_bufferWrappers.length; i++) {
+            writeToDisk(p_log, p_bufferWrappers[i], p_bufferOffsets[i], writePos, p_lengths[i], false);
+            writePos += p_lengths[i];
+        }
+    }
+
     @Override
     public void append(final Object p_log, final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
             final long p_writePos, final int p_length) throws IOException {
         writeToDisk(p_log, p_bufferWrapper, p_bufferOffset, p_writePos, p_length, true);
     }
 
+    @Override
+    public void sync(final Object p_log, final File p_file) throws IOException {
+        // JNIFileRaw does not offer a flush operation and logs are no files on the raw device -> nothing to sync.
+        // Durability depends on the device's write cache
+    }
+
+    @Override
+    public ByteBuffer map(final Object p_log, final long p_position, final int p_length) throws IOException {
+        return null;
+    }
+
+    @Override
+    public boolean transfer(final Object p_log, final long p_sourcePos, final long p_destinationPos,
+            final int p_length) throws IOException {
+        return false;
+    }
+
     /**
      * Writes to log.
      *
@@ -111,7 +111,7 @@ public abstract class AbstractLogEntryHeader {
      *
      * @return the maximum header size
      */
-    static int getMaxHeaderSize() {
+    public static int getMaxHeaderSize() {
         return LOG_ENTRY_TYP_SIZE + LOG_ENTRY_RID_SIZE + LOG_ENTRY_OWN_SIZE + MAX_LOG_ENTRY_CID_SIZE +
                 MAX_LOG_ENTRY_LEN_SIZE + ms_timestampSize + LOG_ENTRY_EPO_SIZE + MAX_LOG_ENTRY_VER_SIZE +
                 LOG_ENTRY_CHA_SIZE + ChecksumHandler.getCRCSize();
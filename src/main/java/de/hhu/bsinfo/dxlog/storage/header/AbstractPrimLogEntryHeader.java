@@ -20,7 +20,6 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
-import de.hhu.bsinfo.dxlog.storage.versioncontrol.Version;
 
 /**
  * Extends AbstractLogEntryHeader for implementing access to primary log entry header.
@@ -46,7 +45,7 @@ public abstract class AbstractPrimLogEntryHeader extends AbstractLogEntryHeader
      * @param p_size
      *         the payload length
      * @param p_version
-     *         the version
+     *         the packed epoch and version (see Version.pack())
      * @param p_rangeID
      *         the RangeID
      * @param p_owner
@@ -54,7 +53,7 @@ public abstract class AbstractPrimLogEntryHeader extends AbstractLogEntryHeader
      * @param p_timestamp
      *         the timestamp or 0 if timestamps are disabled
      */
-    public abstract ByteBuffer createLogEntryHeader(final long p_chunkID, final int p_size, final Version p_version,
+    public abstract ByteBuffer createLogEntryHeader(final long p_chunkID, final int p_size, final long p_version,
             final short p_rangeID, final short p_owner, final int p_timestamp);
 
     /**
@@ -42,7 +42,7 @@ public final class PrimLogEntryHeader extends AbstractPrimLogEntryHeader {
     private static byte ms_nidOffset;
     private static byte ms_lidOffset;
 
-    private static ByteBuffer ms_result;
+    private static ThreadLocal<ByteBuffer> ms_result;
 
     /**
      * Creates an instance of MigrationPrimLogEntryHeader
@@ -53,8 +53,15 @@ public final class PrimLogEntryHeader extends AbstractPrimLogEntryHeader {
         ms_nidOffset = (byte) (ms_ownOffset + LOG_ENTRY_OWN_SIZE);
         ms_lidOffset = (byte) (ms_nidOffset + LOG_ENTRY_NID_SIZE);
 
-        ms_result = ByteBuffer.allocateDirect(AbstractLogEntryHeader.getMaxHeaderSize());
-        ms_result.order(ByteOrder.LITTLE_ENDIAN);
+        // One header buffer per producer thread as several write buffer stripes are filled concurrently
+        ms_result = new ThreadLocal<ByteBuffer>() {
+            @Override
+            protected ByteBuffer initialValue() {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(AbstractLogEntryHeader.getMaxHeaderSize());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                return buffer;
+            }
+        };
     }
 
     @Override
@@ -72,7 +79,7 @@ public final class PrimLogEntryHeader extends AbstractPrimLogEntryHeader {
     }
 
     @Override
-    public ByteBuffer createLogEntryHeader(final long p_chunkID, final int p_size, final Version p_version,
+    public ByteBuffer createLogEntryHeader(final long p_chunkID, final int p_size, final long p_version,
             final short p_rangeID, final short p_owner, final int p_timestamp) {
         byte lengthSize;
         byte localIDSize;
@@ -83,7 +90,7 @@ public final class PrimLogEntryHeader extends AbstractPrimLogEntryHeader {
 
         localIDSize = getSizeForLocalIDField(ChunkID.getLocalID(p_chunkID));
         lengthSize = getSizeForLengthField(p_size);
-        versionSize = getSizeForVersionField(p_version.getVersion());
+        versionSize = getSizeForVersionField(Version.getPackedVersion(p_version));
 
         if (ChecksumHandler.checksumsEnabled()) {
             checksumSize = ChecksumHandler.getCRCSize();
@@ -107,37 +114,39 @@ public final class PrimLogEntryHeader extends AbstractPrimLogEntryHeader {
 
         // It is faster to fill a pooled byte buffer in Java heap and copy it to native memory than filling
         // the native primary write buffer directly
-        ms_result.clear();
-        ms_result.limit(headerSize);
+        ByteBuffer result = ms_result.get();
+        result.clear();
+        result.limit(headerSize);
 
-        putType(ms_result, type);
-        putRangeID(ms_result, p_rangeID, ms_ridOffset);
-        putOwner(ms_result, p_owner, ms_ownOffset);
+        putType(result, type);
+        putRangeID(result, p_rangeID, ms_ridOffset);
+        putOwner(result, p_owner, ms_ownOffset);
 
-        putChunkID(ms_result, p_chunkID, localIDSize, ms_nidOffset);
+        putChunkID(result, p_chunkID, localIDSize, ms_nidOffset);
 
         if (lengthSize == 1) {
-            putLength(ms_result, (byte) p_size, getLENOffset(type));
+            putLength(result, (byte) p_size, getLENOffset(type));
         } else if (lengthSize == 2) {
-            putLength(ms_result, (short) p_size, getLENOffset(type));
+            putLength(result, (short) p_size, getLENOffset(type));
         } else {
-            putLength(ms_result, p_size, getLENOffset(type));
+            putLength(result, p_size, getLENOffset(type));
         }
 
         if (ms_timestampSize != 0) {
-            putTimestamp(ms_result, p_timestamp, getTSPOffset(type));
+            putTimestamp(result, p_timestamp, getTSPOffset(type));
         }
 
-        putEpoch(ms_result, p_version.getEpoch(), getVEROffset(type));
+        int version = Version.getPackedVersion(p_version);
+        putEpoch(result, Version.getPackedEpoch(p_version), getVEROffset(type));
         if (versionSize == 1) {
-            putVersion(ms_result, (byte) p_version.getVersion(), getVEROffset(type) + LOG_ENTRY_EPO_SIZE);
+            putVersion(result, (byte) version, getVEROffset(type) + LOG_ENTRY_EPO_SIZE);
         } else if (versionSize == 2) {
-            putVersion(ms_result, (short) p_version.getVersion(), getVEROffset(type) + LOG_ENTRY_EPO_SIZE);
+            putVersion(result, (short) version, getVEROffset(type) + LOG_ENTRY_EPO_SIZE);
         } else if (versionSize > 2) {
-            putVersion(ms_result, p_version.getVersion(), getVEROffset(type) + LOG_ENTRY_EPO_SIZE);
+            putVersion(result, version, getVEROffset(type) + LOG_ENTRY_EPO_SIZE);
         }
 
-        return ms_result;
+        return result;
     }
 
     @Override
@@ -18,15 +18,20 @@ package de.hhu.bsinfo.dxlog.storage.logs;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
+import de.hhu.bsinfo.dxlog.storage.diskaccess.ChannelDiskAccess;
 import de.hhu.bsinfo.dxlog.storage.diskaccess.DirectDiskAccess;
 import de.hhu.bsinfo.dxlog.storage.diskaccess.DiskAccessInterface;
+import de.hhu.bsinfo.dxlog.storage.diskaccess.DurabilityMode;
 import de.hhu.bsinfo.dxlog.storage.diskaccess.FileDiskAccess;
 import de.hhu.bsinfo.dxlog.storage.diskaccess.HarddriveAccessMode;
+import de.hhu.bsinfo.dxlog.storage.diskaccess.MappedDiskAccess;
 import de.hhu.bsinfo.dxlog.storage.diskaccess.RawDiskAccess;
 
 /**
@@ -40,11 +45,18 @@ public class Log {
 
     protected static DiskAccessInterface ms_logAccess;
 
+    // Logs written to since the last sync; only tracked if a durability mode is set
+    private static final ConcurrentLinkedQueue<Log> DIRTY_LOGS = new ConcurrentLinkedQueue<>();
+    private static volatile boolean ms_trackDirtyLogs;
+
     protected Object m_log;
     protected long m_logSize;
 
     private File m_file;
 
+    private final AtomicBoolean m_dirty = new AtomicBoolean(false);
+    private boolean m_closed;
+
     /**
      * Initializes the common resources of a log
      *
@@ -67,6 +79,10 @@ public class Log {
     public static void setAccessMode(final HarddriveAccessMode p_mode) {
         if (p_mode == HarddriveAccessMode.RANDOM_ACCESS_FILE) {
             ms_logAccess = new FileDiskAccess();
+        } else if (p_mode == HarddriveAccessMode.FILE_CHANNEL) {
+            ms_logAccess = new ChannelDiskAccess();
+        } else if (p_mode == HarddriveAccessMode.MAPPED_FILE) {
+            ms_logAccess = new MappedDiskAccess();
         } else if (p_mode == HarddriveAccessMode.ODIRECT) {
             ms_logAccess = new DirectDiskAccess();
         } else {
@@ -74,6 +90,44 @@ public class Log {
         }
     }
 
+    /**
+     * Sets the durability mode. Must be called before the first log is created!
+     *
+     * @param p_mode
+     *         the durability mode
+     */
+    public static void setDurabilityMode(final DurabilityMode p_mode) {
+        ms_trackDirtyLogs = p_mode != DurabilityMode.NONE;
+    }
+
+    /**
+     * Syncs all logs written to since the last call. Synchronized as a log polled by one writer thread might
+     * contain data of another writer thread which must not return before the log is synced.
+     *
+     * @return the number of synced logs
+     * @throws IOException
+     *         if a log could not be synced; the remaining logs are synced with the next call
+     */
+    public static synchronized int syncDirtyLogs() throws IOException {
+        int ret = 0;
+        Log log = DIRTY_LOGS.poll();
+        while (log != null) {
+            // Reset flag before syncing to not miss writes which are executed concurrently
+            log.m_dirty.set(false);
+            try {
+                log.sync();
+            } catch (final IOException e) {
+                log.markDirty();
+                throw e;
+            }
+            ret++;
+
+            log = DIRTY_LOGS.poll();
+        }
+
+        return ret;
+    }
+
     /**
      * Returns the number of bytes in log
      *
@@ -107,7 +161,14 @@ public class Log {
      *         if the closing fails
      */
     public final void close() throws IOException {
-        ms_logAccess.closeLog(m_log);
+        synchronized (this) {
+            m_closed = true;
+            try {
+                persistMetadata(true);
+            } finally {
+                ms_logAccess.closeLog(m_log);
+            }
+        }
     }
 
     /**
@@ -117,7 +178,10 @@ public class Log {
      *         if the closing fails
      */
     public void closeAndRemove() throws IOException {
-        ms_logAccess.closeAndRemoveLog(m_log, m_file);
+        synchronized (this) {
+            m_closed = true;
+            ms_logAccess.closeAndRemoveLog(m_log, m_file);
+        }
     }
 
     /**
@@ -134,6 +198,58 @@ public class Log {
         }
     }
 
+    /**
+     * Reopens the existing log without truncating it
+     *
+     * @throws IOException
+     *         if the log could not be reopened
+     */
+    protected final void reopenLog() throws IOException {
+        m_log = ms_logAccess.reopenLog(m_file, m_logSize);
+
+        if (m_log == null) {
+            throw new IOException("Log could not be reopened.");
+        }
+    }
+
+    /**
+     * Marks the log as dirty after writing to it. Dirty logs are synced by the writer thread depending on the
+     * durability mode.
+     */
+    protected final void markDirty() {
+        if (ms_trackDirtyLogs && !m_dirty.get() && m_dirty.compareAndSet(false, true)) {
+            DIRTY_LOGS.add(this);
+        }
+    }
+
+    /**
+     * Forces all written data of this log to the storage device. Closed logs are skipped.
+     *
+     * @throws IOException
+     *         if the log could not be synced
+     */
+    private void sync() throws IOException {
+        synchronized (this) {
+            if (!m_closed) {
+                // Data first: the metadata must not describe data which did not reach the storage device
+                ms_logAccess.sync(m_log, m_file);
+                persistMetadata(false);
+            }
+        }
+    }
+
+    /**
+     * Persists metadata belonging to this log (e.g., a segment table) after the log was synced or before it is
+     * closed. Logs without metadata do nothing.
+     *
+     * @param p_close
+     *         whether the log is closed afterwards or synced (metadata is forced to the storage device, too)
+     * @throws IOException
+     *         if the metadata could not be written
+     */
+    protected void persistMetadata(final boolean p_close) throws IOException {
+    }
+
     /**
      * Renames the log. Used after the recovery.
      *
@@ -16,19 +16,38 @@
 
 package de.hhu.bsinfo.dxlog.storage.logs;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.hhu.bsinfo.dxlog.DXLog;
+import de.hhu.bsinfo.dxlog.DXLogConfig;
 import de.hhu.bsinfo.dxlog.storage.BackupRangeCatalog;
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
 import de.hhu.bsinfo.dxlog.storage.Scheduler;
+import de.hhu.bsinfo.dxlog.storage.diskaccess.DurabilityMode;
+import de.hhu.bsinfo.dxlog.storage.header.AbstractPrimLogEntryHeader;
+import de.hhu.bsinfo.dxlog.storage.header.ChecksumHandler;
+import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.AbstractSegmentSelectionPolicy;
+import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.ReorganizationRateLimiter;
 import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.ReorganizationThread;
 import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.SecondaryLog;
 import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.SecondaryLogBuffer;
+import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.SegmentSelectionMode;
+import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.SegmentSelectionPolicy;
+import de.hhu.bsinfo.dxlog.storage.versioncontrol.Version;
 import de.hhu.bsinfo.dxlog.storage.versioncontrol.VersionBuffer;
 import de.hhu.bsinfo.dxlog.storage.versioncontrol.VersionHandler;
 import de.hhu.bsinfo.dxlog.storage.writebuffer.BufferPool;
@@ -56,15 +75,19 @@ public class LogHandler {
     private final int m_logSegmentSize;
 
     private PrimaryLog m_primaryLog = null;
-    private final WriterJobQueue m_writerJobQueue;
-    private final WriterThread m_writerThread;
-    private final ReorganizationThread m_reorgThread;
+    private final WriterJobQueue[] m_writerJobQueues;
+    private final WriterThread[] m_writerThreads;
+    private final ReorganizationThread[] m_reorgThreads;
+    private final SegmentSelectionPolicy m_segmentSelectionPolicy;
+    private final ReorganizationRateLimiter m_rateLimiter;
 
     private ReentrantReadWriteLock m_secondaryLogCreationLock;
 
     /**
      * Creates an instance of LogHandler.
      *
+     * @param p_config
+     *         the DXLog configuration (log sizes, durability, writer and reorganization settings)
      * @param p_versionHandler
      *         the version handler accessed by the reorganization thread to gather all versions for a log and to
      *         create a version buffer when a new backup range is created
@@ -77,75 +100,81 @@ public class LogHandler {
      *         the process thread to buffer data in secondary log buffer
      * @param p_bufferPool
      *         the buffer pool used by writer thread to return buffers
-     * @param p_primaryLogSize
-     *         the primary log size
      * @param p_secondaryLogSize
      *         the secondary log size
-     * @param p_secondaryLogBufferSize
-     *         the secondary log buffer size
-     * @param p_logSegmentSize
-     *         the log segment size
-     * @param p_flashPageSize
-     *         the flash page size
-     * @param p_useChecksums
-     *         whether to use checksums or not
-     * @param p_utilizationActivateReorganization
-     *         the threshold to trigger the reorganization
-     * @param p_useTimestamps
-     *         whether to use timestamps or not
-     * @param p_coldDataThreshold
-     *         the threshold for hot to cold data transformation
+     * @param p_reopen
+     *         whether to reopen the primary log of the last run (see reopenBackupRanges()) or create a new one
      * @param p_backupDirectory
      *         the backup directory
      * @param p_nodeID
      *         this node's node ID
      */
-    public LogHandler(final VersionHandler p_versionHandler, final Scheduler p_scheduler,
-            final BackupRangeCatalog p_backupRangeCatalog, final BufferPool p_bufferPool, final long p_primaryLogSize,
-            final long p_secondaryLogSize, final int p_secondaryLogBufferSize, final int p_logSegmentSize,
-            final int p_flashPageSize, final boolean p_useChecksums, final int p_utilizationActivateReorganization,
-            final boolean p_useTimestamps, final int p_coldDataThreshold, final String p_backupDirectory,
+    public LogHandler(final DXLogConfig p_config, final VersionHandler p_versionHandler, final Scheduler p_scheduler,
+            final BackupRangeCatalog p_backupRangeCatalog, final BufferPool p_bufferPool,
+            final long p_secondaryLogSize, final boolean p_reopen, final String p_backupDirectory,
             final short p_nodeID) {
+        int numberOfWriterThreads = p_config.getWriterThreads();
+        int numberOfReorganizationThreads = p_config.getReorganizationThreads();
+
         m_versionHandler = p_versionHandler;
 
         m_scheduler = p_scheduler;
         m_backupRangeCatalog = p_backupRangeCatalog;
 
-        m_logSegmentSize = p_logSegmentSize;
+        m_logSegmentSize = (int) p_config.getLogSegmentSize().getBytes();
 
         m_secondaryLogCreationLock = new ReentrantReadWriteLock(false);
 
-        if (p_secondaryLogBufferSize == 0 || !DXLog.TWO_LEVEL_LOGGING_ACTIVATED) {
+        if (p_config.getSecondaryLogBufferSize().getBytes() == 0 || !DXLog.TWO_LEVEL_LOGGING_ACTIVATED) {
 
             LOGGER.info("Two-level logging is disabled. Performance might be impaired!");
         } else {
             // Create primary log
+            long primaryLogSize = p_config.getPrimaryLogSize().getBytes();
             try {
                 String primaryLogFileName = p_backupDirectory + PRIMLOG_PREFIX_FILENAME + 'N' + p_nodeID + '_' +
-                        (p_useChecksums ? "1" : "0") + '_' + (p_useTimestamps ? "1" : "0") + '_' + POSTFIX_FILENAME;
-                m_primaryLog =
-                        new PrimaryLog(m_backupRangeCatalog, primaryLogFileName, p_primaryLogSize, p_flashPageSize);
+                        (p_config.isUseChecksums() ? "1" : "0") + '_' + (p_config.isUseTimestamps() ? "1" : "0") +
+                        '_' + POSTFIX_FILENAME;
+                m_primaryLog = new PrimaryLog(m_backupRangeCatalog, primaryLogFileName, primaryLogSize,
+                        (int) p_config.getFlashPageSize().getBytes(), p_reopen);
             } catch (final IOException e) {
 
                 LOGGER.error("Primary log creation failed", e);
 
             }
 
-            LOGGER.trace("Initialized primary log (%d)", p_primaryLogSize);
+            LOGGER.trace("Initialized primary log (%d)", primaryLogSize);
 
         }
 
-        m_writerJobQueue = new WriterJobQueue();
-
-        m_writerThread = new WriterThread(m_primaryLog, m_backupRangeCatalog, m_writerJobQueue, p_bufferPool);
-        m_writerThread.setName("Logging: Writer Thread");
-        m_writerThread.start();
+        // One job queue per writer thread. Jobs of a backup range are always pushed to the same queue to preserve
+        // the order. Primary log jobs are pushed to the first queue
+        m_writerJobQueues = new WriterJobQueue[numberOfWriterThreads];
+        m_writerThreads = new WriterThread[numberOfWriterThreads];
+        for (int i = 0; i < numberOfWriterThreads; i++) {
+            m_writerJobQueues[i] = new WriterJobQueue();
+
+            m_writerThreads[i] = new WriterThread(m_primaryLog, m_backupRangeCatalog, p_scheduler,
+                    m_writerJobQueues[i], p_bufferPool, DurabilityMode.convert(p_config.getDurability()),
+                    p_config.getSyncIntervalInMs());
+            m_writerThreads[i].setName("Logging: Writer Thread " + i);
+            m_writerThreads[i].start();
+        }
 
-        m_reorgThread =
-                new ReorganizationThread(p_versionHandler, m_backupRangeCatalog, p_secondaryLogSize, p_logSegmentSize,
-                        p_utilizationActivateReorganization, p_coldDataThreshold, p_useTimestamps);
-        m_reorgThread.setName("Logging: Reorganization Thread");
-        m_reorgThread.start();
+        // Every reorganization thread works on its own subset of secondary logs; all threads share the I/O budget
+        Semaphore reorganizationIOBudget = new Semaphore(p_config.getReorganizationIOBudget());
+        m_rateLimiter = new ReorganizationRateLimiter(p_config.getReorganizationThroughputLimit().getBytes(),
+                p_config.getReorganizationLatencyTargetInUs(), p_config.getUtilizationActivateReorganization(),
+                m_logSegmentSize);
+        m_segmentSelectionPolicy = AbstractSegmentSelectionPolicy
+                .create(SegmentSelectionMode.convert(p_config.getSegmentSelection()), m_logSegmentSize);
+        m_reorgThreads = new ReorganizationThread[numberOfReorganizationThreads];
+        for (int i = 0; i < numberOfReorganizationThreads; i++) {
+            m_reorgThreads[i] = new ReorganizationThread(p_config, p_versionHandler, m_backupRangeCatalog, p_scheduler,
+                    p_secondaryLogSize, reorganizationIOBudget, m_rateLimiter, m_segmentSelectionPolicy, i);
+            m_reorgThreads[i].setName("Logging: Reorganization Thread " + i);
+            m_reorgThreads[i].start();
+        }
     }
 
     /**
@@ -160,25 +189,31 @@ public class LogHandler {
             }
         }
 
-        m_writerThread.shutdown();
-        try {
-            m_writerThread.join();
+        for (WriterThread writerThread : m_writerThreads) {
+            writerThread.shutdown();
+            try {
+                writerThread.join();
 
-            LOGGER.info("Shutdown of WriterThread successful");
-        } catch (final InterruptedException e) {
-            LOGGER.warn("Could not wait for writer thread to finish. Interrupted.", e);
+                LOGGER.info("Shutdown of %s successful", writerThread.getName());
+            } catch (final InterruptedException e) {
+                LOGGER.warn("Could not wait for writer thread to finish. Interrupted.", e);
+            }
         }
 
-        m_reorgThread.interrupt();
-        m_reorgThread.shutdown();
-        try {
-            m_reorgThread.join();
+        for (ReorganizationThread reorgThread : m_reorgThreads) {
+            reorgThread.interrupt();
+            reorgThread.shutdown();
+            try {
+                reorgThread.join();
 
-            LOGGER.info("Shutdown of ReorganizationThread successful");
-        } catch (final InterruptedException e) {
-            LOGGER.warn("Could not wait for reorganization thread to finish. Interrupted.", e);
+                LOGGER.info("Shutdown of %s successful", reorgThread.getName());
+            } catch (final InterruptedException e) {
+                LOGGER.warn("Could not wait for reorganization thread to finish. Interrupted.", e);
+            }
         }
 
+        LOGGER.info("Reorganization: %s", m_segmentSelectionPolicy);
+
         // Secondary logs, secondary log buffers, version buffers and version logs are closed via backup range
         // catalog
     }
@@ -237,11 +272,12 @@ public class LogHandler {
                     p_backupDirectory + 'N' + NodeID.toHexString(p_owner) + '_' + VERLOG_PREFIX_FILENAME +
                             NodeID.toHexString(p_owner) + '_' + p_rangeID + POSTFIX_FILENAME;
             try {
-                VersionBuffer versionBuffer = m_versionHandler.createVersionBuffer(p_owner, verLogFileName);
+                VersionBuffer versionBuffer = m_versionHandler.createVersionBuffer(p_owner, verLogFileName, false);
                 SecondaryLogBuffer secLogBuffer =
                         new SecondaryLogBuffer(m_scheduler, versionBuffer, p_owner, p_owner, p_rangeID,
                                 p_secondaryLogBufferSize, p_secondaryLogSize, p_flashPageSize, p_logSegmentSize,
-                                p_utilizationPromptReorganization, p_useTimestamps, p_initTime, secLogFileName);
+                                p_utilizationPromptReorganization, m_rateLimiter, p_useTimestamps, p_initTime,
+                                secLogFileName, false);
                 m_backupRangeCatalog.insertRange(p_owner, p_rangeID, secLogBuffer, versionBuffer);
             } catch (final IOException e) {
 
@@ -316,11 +352,12 @@ public class LogHandler {
             if (!m_backupRangeCatalog.exists(p_owner, p_rangeID)) {
 
                 try {
-                    VersionBuffer versionBuffer = m_versionHandler.createVersionBuffer(p_owner, verLogFileName);
+                    VersionBuffer versionBuffer = m_versionHandler.createVersionBuffer(p_owner, verLogFileName, false);
                     SecondaryLogBuffer secLogBuffer =
                             new SecondaryLogBuffer(m_scheduler, versionBuffer, p_owner, p_originalOwner, p_rangeID,
                                     p_secondaryLogBufferSize, p_secondaryLogSize, p_flashPageSize, p_logSegmentSize,
-                                    p_utilizationPromptReorganization, p_useTimestamps, p_initTime, secLogFileName);
+                                    p_utilizationPromptReorganization, m_rateLimiter, p_useTimestamps, p_initTime,
+                                    secLogFileName, false);
                     m_backupRangeCatalog.insertRange(p_owner, p_rangeID, secLogBuffer, versionBuffer);
                 } catch (final IOException e) {
 
@@ -362,6 +399,239 @@ public class LogHandler {
         return ret;
     }
 
+    /**
+     * Reopens all backup ranges in the backup directory after a restart (startup mode "reopen"). The secondary logs
+     * and version logs are restored in parallel (segment headers, epoch and versions of the current epoch).
+     * Afterwards, all log entries of the primary log which did not reach their secondary log before the restart
+     * are replayed.
+     *
+     * @param p_secondaryLogSize
+     *         the secondary log size
+     * @param p_logSegmentSize
+     *         the log segment size
+     * @param p_secondaryLogBufferSize
+     *         the secondary log buffer size
+     * @param p_flashPageSize
+     *         the flash page size
+     * @param p_utilizationPromptReorganization
+     *         the threshold to trigger the reorganization
+     * @param p_useChecksums
+     *         whether to use checksums or not
+     * @param p_useTimestamps
+     *         whether to use timestamps or not
+     * @param p_initTime
+     *         the initialization time or 0 if timestamps are disabled
+     * @param p_backupDirectory
+     *         the backup directory
+     * @return the number of reopened backup ranges
+     */
+    public int reopenBackupRanges(final long p_secondaryLogSize, final int p_logSegmentSize,
+            final int p_secondaryLogBufferSize, final int p_flashPageSize,
+            final int p_utilizationPromptReorganization, final boolean p_useChecksums, final boolean p_useTimestamps,
+            final long p_initTime, final String p_backupDirectory) {
+        int numberOfThreads;
+        int primaryLogLength = 0;
+        DirectByteBufferWrapper primaryLogData = null;
+        Map<Long, Long> primaryLogVersions = new ConcurrentHashMap<Long, Long>();
+        long[] primaryLogChunkIDs;
+        AtomicInteger nextFile = new AtomicInteger(0);
+        AtomicInteger reopenedRanges = new AtomicInteger(0);
+        ReopenThread[] threads;
+
+        Pattern secLogPattern = Pattern.compile(
+                "N([^_]+)_" + SECLOG_PREFIX_FILENAME + "([^_]+)_(-?\\d+)_" + (p_useChecksums ? '1' : '0') + '_' +
+                        (p_useTimestamps ? '1' : '0') + Pattern.quote(POSTFIX_FILENAME));
+        File[] files = new File(p_backupDirectory).listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        // Determine the newest version of all chunks in primary log
+        if (m_primaryLog != null) {
+            try {
+                primaryLogData = m_primaryLog.readLogEntries();
+                if (primaryLogData != null) {
+                    primaryLogLength = readPrimaryLogVersions(primaryLogData, primaryLogVersions, p_useChecksums);
+                }
+            } catch (final IOException e) {
+                LOGGER.error("Could not read primary log. Log entries might be lost!", e);
+            }
+        }
+
+        // Sorted chunk IDs to determine the segments which might contain primary log entries
+        primaryLogChunkIDs = new long[primaryLogVersions.size()];
+        int index = 0;
+        for (long chunkID : primaryLogVersions.keySet()) {
+            primaryLogChunkIDs[index++] = chunkID;
+        }
+        Arrays.sort(primaryLogChunkIDs);
+
+        // Restore backup ranges in parallel
+        numberOfThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), files.length));
+        threads = new ReopenThread[numberOfThreads];
+        for (int i = 0; i < numberOfThreads; i++) {
+            threads[i] = new ReopenThread(files, secLogPattern, nextFile, reopenedRanges, primaryLogVersions,
+                    primaryLogChunkIDs, p_secondaryLogSize, p_logSegmentSize, p_secondaryLogBufferSize, p_flashPageSize,
+                    p_utilizationPromptReorganization, p_useTimestamps, p_initTime, p_backupDirectory);
+            threads[i].setName("Logging: Reopen Thread " + i);
+            threads[i].start();
+        }
+        for (ReopenThread thread : threads) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                LOGGER.warn("Could not wait for reopen thread to finish. Interrupted.", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Replay log entries which are not stored in the secondary logs
+        if (primaryLogLength > 0) {
+            replayPrimaryLog(primaryLogData, primaryLogLength, primaryLogVersions, p_logSegmentSize);
+        }
+
+        LOGGER.info("Reopened %d backup ranges", reopenedRanges.get());
+
+        return reopenedRanges.get();
+    }
+
+    /**
+     * Reads the newest version of all chunks in primary log. Stops at the end of the last write access or at the
+     * first incomplete (or corrupted) log entry.
+     *
+     * @param p_primaryLogData
+     *         the primary log's content
+     * @param p_versions
+     *         the table to put the newest packed version for every chunk ID in
+     * @param p_useChecksums
+     *         whether log entries contain a checksum or not
+     * @return the number of bytes with valid log entries
+     */
+    private static int readPrimaryLogVersions(final DirectByteBufferWrapper p_primaryLogData,
+            final Map<Long, Long> p_versions, final boolean p_useChecksums) {
+        int offset = 0;
+        int headerSize;
+        int payloadSize;
+        ByteBuffer buffer = p_primaryLogData.getBuffer();
+        int length = buffer.capacity();
+        Version version;
+        AbstractPrimLogEntryHeader logEntryHeader = AbstractPrimLogEntryHeader.getHeader();
+
+        while (offset < length && buffer.get(offset) != 0) {
+            short type = (short) (buffer.get(offset) & 0xFF);
+            if (!logEntryHeader.isReadable(type, length - offset)) {
+                break;
+            }
+            headerSize = logEntryHeader.getHeaderSize(type);
+            payloadSize = logEntryHeader.getLength(type, buffer, offset);
+            if (offset + headerSize + payloadSize > length || p_useChecksums &&
+                    ChecksumHandler.calculateChecksumOfPayload(p_primaryLogData, offset + headerSize, payloadSize) !=
+                            logEntryHeader.getChecksum(type, buffer, offset)) {
+                break;
+            }
+
+            version = logEntryHeader.getVersion(type, buffer, offset);
+            // Later log entries are newer
+            p_versions.put(logEntryHeader.getCID(type, buffer, offset),
+                    Version.pack(version.getEpoch(), version.getVersion()));
+
+            offset += headerSize + payloadSize;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Replays all log entries of the primary log whose version is still in given table (the newest version of the
+     * chunk was not found in the secondary log). The log entries are appended to their secondary log buffers which
+     * are flushed afterwards.
+     *
+     * @param p_primaryLogData
+     *         the primary log's content
+     * @param p_length
+     *         the number of bytes with valid log entries
+     * @param p_versions
+     *         the versions of all log entries to replay
+     * @param p_logSegmentSize
+     *         the log segment size
+     */
+    private void replayPrimaryLog(final DirectByteBufferWrapper p_primaryLogData, final int p_length,
+            final Map<Long, Long> p_versions, final int p_logSegmentSize) {
+        int offset = 0;
+        int logEntrySize;
+        int replayedEntries = 0;
+        long chunkID;
+        short owner;
+        short rangeID;
+        Long newestVersion;
+        Version version;
+        SecondaryLogBuffer secLogBuffer;
+        VersionBuffer versionBuffer;
+        DirectByteBufferWrapper combinedBuffer;
+        ByteBuffer buffer = p_primaryLogData.getBuffer();
+        DirectByteBufferWrapper entryWrapper = new DirectByteBufferWrapper(p_logSegmentSize, true);
+        AbstractPrimLogEntryHeader logEntryHeader = AbstractPrimLogEntryHeader.getHeader();
+
+        while (offset < p_length) {
+            short type = (short) (buffer.get(offset) & 0xFF);
+            logEntrySize = logEntryHeader.getHeaderSize(type) + logEntryHeader.getLength(type, buffer, offset);
+            chunkID = logEntryHeader.getCID(type, buffer, offset);
+            version = logEntryHeader.getVersion(type, buffer, offset);
+            owner = logEntryHeader.getOwner(buffer, offset);
+            rangeID = logEntryHeader.getRangeID(buffer, offset);
+
+            newestVersion = p_versions.get(chunkID);
+            if (newestVersion != null && newestVersion == Version.pack(version.getEpoch(), version.getVersion()) &&
+                    m_backupRangeCatalog.exists(owner, rangeID)) {
+                secLogBuffer = m_backupRangeCatalog.getSecondaryLogBuffer(owner, rangeID);
+                versionBuffer = m_backupRangeCatalog.getVersionBuffer(owner, rangeID);
+                if (version.getEpoch() == (short) (versionBuffer.getEpoch() + (versionBuffer.getEon() << 15))) {
+                    versionBuffer.restoreVersion(chunkID, version.getVersion());
+                }
+
+                buffer.position(offset);
+                buffer.limit(offset + logEntrySize);
+                entryWrapper.getBuffer().clear();
+                entryWrapper.getBuffer().put(buffer);
+                entryWrapper.getBuffer().clear();
+                buffer.clear();
+
+                try {
+                    combinedBuffer = secLogBuffer.bufferData(entryWrapper, logEntrySize);
+                    if (combinedBuffer != null) {
+                        // Flush combined buffer (old data in secondary log buffer + new data)
+                        int length = combinedBuffer.getBuffer().limit();
+                        combinedBuffer.getBuffer().limit(combinedBuffer.getBuffer().capacity());
+                        secLogBuffer.flushAllDataToSecLog(combinedBuffer, length);
+                    }
+                    replayedEntries++;
+                } catch (final IOException e) {
+                    LOGGER.error("Could not replay log entry of chunk 0x%X", chunkID, e);
+                }
+            }
+
+            offset += logEntrySize;
+        }
+
+        // Write replayed log entries to secondary logs as the primary log is overwritten from now on
+        for (SecondaryLogBuffer activeBuffer : m_backupRangeCatalog.getActiveSecondaryLogBuffers()) {
+            if (!activeBuffer.isBufferEmpty()) {
+                try {
+                    activeBuffer.flushSecLogBuffer();
+                } catch (final IOException e) {
+                    LOGGER.error("Secondary log buffer could not be flushed. Data loss possible!", e);
+                }
+            }
+        }
+        try {
+            Log.syncDirtyLogs();
+        } catch (final IOException e) {
+            LOGGER.error("Could not sync secondary logs after replaying primary log", e);
+        }
+
+        LOGGER.info("Replayed %d log entries of primary log", replayedEntries);
+    }
+
     /**
      * Removes a backup range.
      *
@@ -372,6 +642,11 @@ public class LogHandler {
      */
     public void removeBackupRange(final short p_owner, final short p_rangeID) {
         m_secondaryLogCreationLock.writeLock().lock();
+        SecondaryLogBuffer secLogBuffer = m_backupRangeCatalog.getSecondaryLogBuffer(p_owner, p_rangeID);
+        if (secLogBuffer != null) {
+            m_reorgThreads[ReorganizationThread.getWorkerIndex(secLogBuffer.getLog(), m_reorgThreads.length)]
+                    .removeFromQueue(secLogBuffer.getLog());
+        }
         try {
             m_backupRangeCatalog.removeAndCloseBuffersAndLogs(p_owner, p_rangeID);
         } catch (final IOException e) {
@@ -419,11 +694,11 @@ public class LogHandler {
      */
     public void writeToSecondaryLog(final DirectByteBufferWrapper p_buffer, final int p_logEntrySize,
             final int p_combinedRangeID, final boolean p_returnBuffer) {
+        WriterJobQueue queue = m_writerJobQueues[getWriterIndex(p_combinedRangeID)];
         if (p_returnBuffer) {
-            m_writerJobQueue
-                    .pushJob(WriterJobQueue.JobID.SEC_LOG_RETURN_BUFFER, p_buffer, p_logEntrySize, p_combinedRangeID);
+            queue.pushJob(WriterJobQueue.JobID.SEC_LOG_RETURN_BUFFER, p_buffer, p_logEntrySize, p_combinedRangeID);
         } else {
-            m_writerJobQueue.pushJob(WriterJobQueue.JobID.SEC_LOG, p_buffer, p_logEntrySize, p_combinedRangeID);
+            queue.pushJob(WriterJobQueue.JobID.SEC_LOG, p_buffer, p_logEntrySize, p_combinedRangeID);
         }
     }
 
@@ -436,48 +711,291 @@ public class LogHandler {
      *         the write size
      */
     public void writeToPrimaryLog(final DirectByteBufferWrapper p_buffer, final int p_logEntrySize) {
-        m_writerJobQueue.pushJob(WriterJobQueue.JobID.PRIM_LOG, p_buffer, p_logEntrySize, -1);
+        m_writerJobQueues[0].pushJob(WriterJobQueue.JobID.PRIM_LOG, p_buffer, p_logEntrySize, -1);
+    }
+
+    /**
+     * Returns the number of writer threads (and writer job queues).
+     *
+     * @return the number of writer threads
+     */
+    public int getNumberOfWriterThreads() {
+        return m_writerThreads.length;
+    }
+
+    /**
+     * Returns the number of write jobs posted by the process thread so far (per writer job queue).
+     *
+     * @param p_postedJobs
+     *         the array to store the number of posted write jobs for every writer job queue in
+     */
+    public void getNumberOfPostedWriteJobs(final long[] p_postedJobs) {
+        for (int i = 0; i < m_writerJobQueues.length; i++) {
+            p_postedJobs[i] = m_writerJobQueues[i].getNumberOfPushedJobs();
+        }
+    }
+
+    /**
+     * Returns the number of durable write jobs (the durable watermark) per writer job queue. The jobs of one queue
+     * are executed in order. All data of the first n posted write jobs of a queue is written to disk (and synced if
+     * a durability mode is set) if the entry of this queue is n.
+     *
+     * @param p_durableJobs
+     *         the array to store the number of durable write jobs for every writer job queue in
+     */
+    public void getNumberOfDurableWriteJobs(final long[] p_durableJobs) {
+        for (int i = 0; i < m_writerJobQueues.length; i++) {
+            p_durableJobs[i] = m_writerJobQueues[i].getNumberOfDurableJobs();
+        }
+    }
+
+    /**
+     * Collects the write jobs which could not be written or synced since the last call. Failed jobs are reported
+     * before the durable watermark of their queue is moved past them. Thus, the failed jobs must be collected after
+     * reading the durable watermarks.
+     *
+     * @param p_failedJobs
+     *         the list to add the failed job ranges to ({writer job queue, first job, last job})
+     */
+    public void collectFailedWriteJobs(final List<long[]> p_failedJobs) {
+        long[] failedJobs;
+
+        for (int i = 0; i < m_writerJobQueues.length; i++) {
+            while ((failedJobs = m_writerJobQueues[i].pollFailedJobs()) != null) {
+                p_failedJobs.add(new long[] {i, failedJobs[0], failedJobs[1]});
+            }
+        }
+    }
+
+    /**
+     * Determines the writer job queue for a backup range.
+     *
+     * @param p_combinedRangeID
+     *         the combined range ID
+     * @return the index of the writer job queue
+     */
+    private int getWriterIndex(final int p_combinedRangeID) {
+        return ((p_combinedRangeID ^ p_combinedRangeID >>> 16) & 0x7FFFFFFF) % m_writerJobQueues.length;
     }
 
     /**
-     * Wakes up the reorganization thread.
+     * Wakes up the reorganization thread responsible for given secondary log.
      *
      * @param p_secondaryLog
      *         the secondary log to reorganize
      */
     public void signalReorganization(final SecondaryLog p_secondaryLog) {
-        m_reorgThread.setLogToReorgImmediately(p_secondaryLog, false);
+        m_reorgThreads[ReorganizationThread.getWorkerIndex(p_secondaryLog, m_reorgThreads.length)]
+                .setLogToReorgImmediately(p_secondaryLog, false);
+    }
+
+    /**
+     * Updates the reorganization priority of given secondary log in the queue of the responsible reorganization
+     * thread.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     */
+    public void updateReorganizationPriority(final SecondaryLog p_secondaryLog) {
+        m_reorgThreads[ReorganizationThread.getWorkerIndex(p_secondaryLog, m_reorgThreads.length)]
+                .updatePriority(p_secondaryLog);
     }
 
     /**
-     * Wakes up the reorganization thread and waits until reorganization is finished.
+     * Wakes up the reorganization thread responsible for given secondary log and waits until reorganization is
+     * finished.
      *
      * @param p_secondaryLog
      *         the secondary log to reorganize
      */
     public void signalReorganizationBlocking(final SecondaryLog p_secondaryLog) {
-        m_reorgThread.setLogToReorgImmediately(p_secondaryLog, true);
+        m_reorgThreads[ReorganizationThread.getWorkerIndex(p_secondaryLog, m_reorgThreads.length)]
+                .setLogToReorgImmediately(p_secondaryLog, true);
     }
 
     /**
-     * Grants access to a log to be reorganized by the reorganization thread.
+     * Grants access to a log to be reorganized by the reorganization threads.
      */
     public void grantAccessToReorganization() {
-        m_reorgThread.grantAccessToCurrentLog();
+        for (ReorganizationThread reorgThread : m_reorgThreads) {
+            reorgThread.grantAccessToCurrentLog();
+        }
     }
 
     /**
-     * Blocks the reorganization thread.
+     * Blocks all reorganization threads.
      */
     public void blockReorganizationThread() {
-        m_reorgThread.block();
+        for (ReorganizationThread reorgThread : m_reorgThreads) {
+            reorgThread.block();
+        }
     }
 
     /**
-     * Unblocks the reorganization thread.
+     * Unblocks all reorganization threads.
      */
     public void unblockReorganizationThread() {
-        m_reorgThread.unblock();
+        for (ReorganizationThread reorgThread : m_reorgThreads) {
+            reorgThread.unblock();
+        }
+    }
+
+    /**
+     * Reopens backup ranges (secondary log, secondary log buffer, version buffer and version log) in parallel.
+     * The files are assigned dynamically to balance differently filled logs.
+     */
+    private final class ReopenThread extends Thread {
+
+        private final File[] m_files;
+        private final Pattern m_secLogPattern;
+        private final AtomicInteger m_nextFile;
+        private final AtomicInteger m_reopenedRanges;
+        private final Map<Long, Long> m_primaryLogVersions;
+        private final long[] m_primaryLogChunkIDs;
+        private final long m_secondaryLogSize;
+        private final int m_logSegmentSize;
+        private final int m_secondaryLogBufferSize;
+        private final int m_flashPageSize;
+        private final int m_utilizationPromptReorganization;
+        private final boolean m_useTimestamps;
+        private final long m_initTime;
+        private final String m_backupDirectory;
+
+        /**
+         * Creates an instance of ReopenThread.
+         *
+         * @param p_files
+         *         all files in the backup directory
+         * @param p_secLogPattern
+         *         the pattern of secondary log file names (owner, original owner and range ID)
+         * @param p_nextFile
+         *         the index of the next file to process (shared by all reopen threads)
+         * @param p_reopenedRanges
+         *         the number of reopened backup ranges (shared by all reopen threads)
+         * @param p_primaryLogVersions
+         *         the newest version of every chunk in primary log
+         * @param p_primaryLogChunkIDs
+         *         all chunk IDs in primary log (sorted)
+         * @param p_secondaryLogSize
+         *         the secondary log size
+         * @param p_logSegmentSize
+         *         the log segment size
+         * @param p_secondaryLogBufferSize
+         *         the secondary log buffer size
+         * @param p_flashPageSize
+         *         the flash page size
+         * @param p_utilizationPromptReorganization
+         *         the threshold to trigger the reorganization
+         * @param p_useTimestamps
+         *         whether to use timestamps or not
+         * @param p_initTime
+         *         the initialization time or 0 if timestamps are disabled
+         * @param p_backupDirectory
+         *         the backup directory
+         */
+        private ReopenThread(final File[] p_files, final Pattern p_secLogPattern, final AtomicInteger p_nextFile,
+                final AtomicInteger p_reopenedRanges, final Map<Long, Long> p_primaryLogVersions,
+                final long[] p_primaryLogChunkIDs, final long p_secondaryLogSize, final int p_logSegmentSize,
+                final int p_secondaryLogBufferSize, final int p_flashPageSize,
+                final int p_utilizationPromptReorganization, final boolean p_useTimestamps, final long p_initTime,
+                final String p_backupDirectory) {
+            m_files = p_files;
+            m_secLogPattern = p_secLogPattern;
+            m_nextFile = p_nextFile;
+            m_reopenedRanges = p_reopenedRanges;
+            m_primaryLogVersions = p_primaryLogVersions;
+            m_primaryLogChunkIDs = p_primaryLogChunkIDs;
+            m_secondaryLogSize = p_secondaryLogSize;
+            m_logSegmentSize = p_logSegmentSize;
+            m_secondaryLogBufferSize = p_secondaryLogBufferSize;
+            m_flashPageSize = p_flashPageSize;
+            m_utilizationPromptReorganization = p_utilizationPromptReorganization;
+            m_useTimestamps = p_useTimestamps;
+            m_initTime = p_initTime;
+            m_backupDirectory = p_backupDirectory;
+        }
+
+        @Override
+        public void run() {
+            int index;
+            Matcher matcher;
+            DirectByteBufferWrapper segmentWrapper = new DirectByteBufferWrapper(m_logSegmentSize, true);
+
+            index = m_nextFile.getAndIncrement();
+            while (index < m_files.length) {
+                matcher = m_secLogPattern.matcher(m_files[index].getName());
+                if (m_files[index].isFile() && matcher.matches()) {
+                    reopenBackupRange(m_files[index], matcher.group(1), matcher.group(2),
+                            Short.parseShort(matcher.group(3)), segmentWrapper);
+                }
+
+                index = m_nextFile.getAndIncrement();
+            }
+        }
+
+        /**
+         * Reopens one backup range.
+         *
+         * @param p_secLogFile
+         *         the secondary log file
+         * @param p_originalOwnerHex
+         *         the original owner (hex string as in file name)
+         * @param p_ownerHex
+         *         the owner (hex string as in file name)
+         * @param p_rangeID
+         *         the range ID
+         * @param p_segmentWrapper
+         *         the buffer to read segments into
+         */
+        private void reopenBackupRange(final File p_secLogFile, final String p_originalOwnerHex,
+                final String p_ownerHex, final short p_rangeID, final DirectByteBufferWrapper p_segmentWrapper) {
+            short owner = parseNodeID(p_ownerHex);
+            short originalOwner = parseNodeID(p_originalOwnerHex);
+            File verLogFile = new File(m_backupDirectory + 'N' + p_originalOwnerHex + '_' + VERLOG_PREFIX_FILENAME +
+                    p_ownerHex + '_' + p_rangeID + POSTFIX_FILENAME);
+
+            try {
+                VersionBuffer versionBuffer =
+                        m_versionHandler.createVersionBuffer(owner, verLogFile.getPath(), verLogFile.exists());
+                if (verLogFile.exists()) {
+                    versionBuffer.restoreFromLog();
+                } else {
+                    LOGGER.warn("Version log of range %d of 0x%X is missing. Versions are lost!", p_rangeID, owner);
+                }
+
+                SecondaryLogBuffer secLogBuffer =
+                        new SecondaryLogBuffer(m_scheduler, versionBuffer, owner, originalOwner, p_rangeID,
+                                m_secondaryLogBufferSize, m_secondaryLogSize, m_flashPageSize, m_logSegmentSize,
+                                m_utilizationPromptReorganization, m_rateLimiter, m_useTimestamps, m_initTime,
+                                p_secLogFile.getPath(), true);
+                secLogBuffer.getLog().restoreFromFile(p_segmentWrapper, m_primaryLogVersions,
+                        m_primaryLogChunkIDs);
+
+                m_secondaryLogCreationLock.writeLock().lock();
+                m_backupRangeCatalog.insertRange(owner, p_rangeID, secLogBuffer, versionBuffer);
+                m_secondaryLogCreationLock.writeLock().unlock();
+
+                m_reopenedRanges.incrementAndGet();
+            } catch (final IOException e) {
+                LOGGER.error("Reopening backup range %d of 0x%X failed: %s", p_rangeID, owner, e);
+            }
+        }
+    }
+
+    /**
+     * Parses a node ID from a file name.
+     *
+     * @param p_hexString
+     *         the node ID as hex string (with or without prefix 0x)
+     * @return the node ID
+     */
+    private static short parseNodeID(final String p_hexString) {
+        String hexString = p_hexString;
+        if (hexString.startsWith("0x") || hexString.startsWith("0X")) {
+            hexString = hexString.substring(2);
+        }
+
+        return (short) Integer.parseInt(hexString, 16);
     }
 
     /**
@@ -489,11 +1007,12 @@ public class LogHandler {
         StringBuilder ret;
         long allBytesAllocated = 0;
         long allBytesOccupied = 0;
-        long counterAllocated;
-        long counterOccupied;
+        long counterAllocated = 0;
+        long counterOccupied = 0;
         long occupiedInRange;
-        SecondaryLogBuffer[] secLogBuffers;
-        VersionBuffer[] versionBuffers;
+        int currentOwner = -1;
+        SecondaryLog secLog;
+        VersionBuffer versionBuffer;
 
         ret = new StringBuilder(
                 "***********************************************************************\n" + "*Primary log: " +
@@ -502,35 +1021,41 @@ public class LogHandler {
                         "+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++\n" +
                         "+Secondary logs:\n");
 
-        for (int i = 0; i < Short.MAX_VALUE * 2 + 1; i++) {
-            secLogBuffers = m_backupRangeCatalog.getAllSecondaryLogBuffers((short) i);
-            if (secLogBuffers != null) {
-                versionBuffers = m_backupRangeCatalog.getAllVersionBuffers((short) i);
+        // Active backup ranges are sorted by owner
+        for (SecondaryLogBuffer secLogBuffer : m_backupRangeCatalog.getActiveSecondaryLogBuffers()) {
+            secLog = secLogBuffer.getLog();
+            if ((secLog.getOwner() & 0xFFFF) != currentOwner) {
+                if (currentOwner != -1) {
+                    ret.append("++Bytes per node: allocated -> ").append(counterAllocated).append(", occupied -> ")
+                            .append(counterOccupied).append('\n');
+                    allBytesAllocated += counterAllocated;
+                    allBytesOccupied += counterOccupied;
+                }
+                currentOwner = secLog.getOwner() & 0xFFFF;
                 counterAllocated = 0;
                 counterOccupied = 0;
-                ret.append("++Node ").append(NodeID.toHexString((short) i)).append(":\n");
-                for (int j = 0; j < secLogBuffers.length; j++) {
-                    if (secLogBuffers[j] != null) {
-                        ret.append("+++Backup range ").append(j).append(": ");
-                        if (secLogBuffers[j].getLog().isAccessed()) {
-                            ret.append("#Active log# ");
-                        }
-
-                        counterAllocated +=
-                                secLogBuffers[j].getLog().getFileSize() + versionBuffers[j].getLogFileSize();
-                        occupiedInRange = secLogBuffers[j].getOccupiedSpace();
-                        counterOccupied += occupiedInRange;
-
-                        ret.append(occupiedInRange).append(" bytes (in buffer: ")
-                                .append(secLogBuffers[j].getOccupiedSpace()).append(" bytes)\n");
-                        ret.append(secLogBuffers[j].getLog().getSegmentDistribution()).append('\n');
-                    }
-                }
-                ret.append("++Bytes per node: allocated -> ").append(counterAllocated).append(", occupied -> ")
-                        .append(counterOccupied).append('\n');
-                allBytesAllocated += counterAllocated;
-                allBytesOccupied += counterOccupied;
+                ret.append("++Node ").append(NodeID.toHexString(secLog.getOwner())).append(":\n");
             }
+
+            ret.append("+++Backup range ").append(secLog.getRangeID()).append(": ");
+            if (secLog.isAccessed()) {
+                ret.append("#Active log# ");
+            }
+
+            versionBuffer = m_backupRangeCatalog.getVersionBuffer(secLog.getOwner(), secLog.getRangeID());
+            counterAllocated += secLog.getFileSize() + (versionBuffer != null ? versionBuffer.getLogFileSize() : 0);
+            occupiedInRange = secLogBuffer.getOccupiedSpace();
+            counterOccupied += occupiedInRange;
+
+            ret.append(occupiedInRange).append(" bytes (in buffer: ").append(secLogBuffer.getOccupiedSpace())
+                    .append(" bytes)\n");
+            ret.append(secLog.getSegmentDistribution()).append('\n');
+        }
+        if (currentOwner != -1) {
+            ret.append("++Bytes per node: allocated -> ").append(counterAllocated).append(", occupied -> ")
+                    .append(counterOccupied).append('\n');
+            allBytesAllocated += counterAllocated;
+            allBytesOccupied += counterOccupied;
         }
         ret.append("Complete size: allocated -> ").append(allBytesAllocated).append(", occupied -> ")
                 .append(allBytesOccupied).append('\n');
@@ -62,11 +62,13 @@ public final class PrimaryLog extends Log {
      *         the size of a primary log
      * @param p_flashPageSize
      *         the size of flash page
+     * @param p_reopen
+     *         whether to reopen an existing primary log (to be replayed) instead of creating a new one
      * @throws IOException
      *         if primary log could not be created
      */
     PrimaryLog(final BackupRangeCatalog p_backupRangeCatalog, final String p_fileName, final long p_primaryLogSize,
-            final int p_flashPageSize) throws IOException {
+            final int p_flashPageSize, final boolean p_reopen) throws IOException {
         super(new File(p_fileName), p_primaryLogSize);
 
         m_backupRangeCatalog = p_backupRangeCatalog;
@@ -79,7 +81,13 @@ public final class PrimaryLog extends Log {
         }
 
         try {
-            createLog();
+            if (p_reopen && new File(p_fileName).exists()) {
+                // The log is written from the beginning again after the replay; the log entries of the last run
+                // are not read anymore as every write is terminated
+                reopenLog();
+            } else {
+                createLog();
+            }
         } catch (final IOException e) {
             throw new IOException("Error: primary log could not be created");
         }
@@ -105,24 +113,37 @@ public final class PrimaryLog extends Log {
         m_numberOfBytes += p_length;
     }
 
+    /**
+     * Reads the log entries written before the restart (startup mode "reopen"). The log entries end with the
+     * terminator of the last write access or an incomplete log entry.
+     *
+     * @return a buffer with the primary log's content or null if the primary log is empty
+     * @throws IOException
+     *         if the primary log could not be read
+     */
+    DirectByteBufferWrapper readLogEntries() throws IOException {
+        DirectByteBufferWrapper ret = null;
+        int length = (int) Math.min(getFileSize(), m_logSize);
+
+        if (length > 0) {
+            ret = new DirectByteBufferWrapper(length, true);
+            readFromLog(ret, length, 0);
+        }
+
+        return ret;
+    }
+
     /**
      * Flushes all secondary log buffers in order to clear the primary log (everything written to secondary log
      * can be deleted from primary log)
      */
     private void clearPrimaryBuffer() {
-        SecondaryLogBuffer[] buffers;
-
-        for (int i = 0; i < Short.MAX_VALUE * 2 + 1; i++) {
-            buffers = m_backupRangeCatalog.getAllSecondaryLogBuffers((short) i);
-            if (buffers != null) {
-                for (int j = 0; j < buffers.length; j++) {
-                    if (buffers[j] != null && !buffers[j].isBufferEmpty()) {
-                        try {
-                            buffers[j].flushSecLogBuffer();
-                        } catch (final IOException e) {
-                            LOGGER.error("Secondary log buffer could not be flushed. Data loss possible!", e);
-                        }
-                    }
+        for (SecondaryLogBuffer buffer : m_backupRangeCatalog.getActiveSecondaryLogBuffers()) {
+            if (!buffer.isBufferEmpty()) {
+                try {
+                    buffer.flushSecLogBuffer();
+                } catch (final IOException e) {
+                    LOGGER.error("Secondary log buffer could not be flushed. Data loss possible!", e);
                 }
             }
         }
@@ -136,6 +157,16 @@ public final class PrimaryLog extends Log {
         return m_numberOfBytes;
     }
 
+    @Override
+    public void readFromLog(final DirectByteBufferWrapper p_bufferWrapper, final int p_length, final long p_readPos)
+            throws IOException {
+        if (p_length > 0) {
+            assert p_readPos + p_length <= getFileSize();
+
+            ms_logAccess.read(m_log, p_bufferWrapper, p_length, p_readPos);
+        }
+    }
+
     @Override
     public final long appendToLog(final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset, int p_length)
             throws IOException {
@@ -155,6 +186,7 @@ public final class PrimaryLog extends Log {
         p_bufferWrapper.getBuffer().put(p_length, (byte) 0);
 
         ms_logAccess.write(m_log, p_bufferWrapper, 0, m_writePos, p_length + 1, false);
+        markDirty();
 
         ret = m_writePos + p_length;
 
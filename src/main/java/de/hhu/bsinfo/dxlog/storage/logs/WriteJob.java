@@ -20,12 +20,11 @@ import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
 
 /**
  * This class is used to return a job for writing to a log.
- * There is only one instance of this class as the writer thread is the only user.
+ * There is one instance of this class per writer job queue as every queue is consumed by one writer thread, only.
  *
  * @author Kevin Beineke, kevin.beineke@hhu.de, 15.09.2018
  */
 final class WriteJob {
-    private static final WriteJob INSTANCE = new WriteJob();
 
     private WriterJobQueue.JobID m_jobID;
     private int m_entrySize;
@@ -33,9 +32,9 @@ final class WriteJob {
     private int m_combinedRangeID;
 
     /**
-     * Private constructor.
+     * Creates an instance of WriteJob.
      */
-    private WriteJob() {
+    WriteJob() {
     }
 
     /**
@@ -51,14 +50,14 @@ final class WriteJob {
      *         the RangeID and owner NodeID
      * @return the instance
      */
-    static WriteJob getInstance(final WriterJobQueue.JobID p_jobID, final int p_entrySize,
+    WriteJob set(final WriterJobQueue.JobID p_jobID, final int p_entrySize,
             final DirectByteBufferWrapper p_bufferWrapper, final int p_combinedRangeID) {
-        INSTANCE.m_jobID = p_jobID;
-        INSTANCE.m_entrySize = p_entrySize;
-        INSTANCE.m_bufferWrapper = p_bufferWrapper;
-        INSTANCE.m_combinedRangeID = p_combinedRangeID;
+        m_jobID = p_jobID;
+        m_entrySize = p_entrySize;
+        m_bufferWrapper = p_bufferWrapper;
+        m_combinedRangeID = p_combinedRangeID;
 
-        return INSTANCE;
+        return this;
     }
 
     /**
@@ -16,8 +16,13 @@
 
 package de.hhu.bsinfo.dxlog.storage.logs;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
+import de.hhu.bsinfo.dxlog.storage.WakeupSignal;
 import de.hhu.bsinfo.dxutils.UnsafeHandler;
+import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
+import de.hhu.bsinfo.dxutils.stats.ValuePool;
 
 /**
  * The WriterJobQueue stores jobs in order to write to disk.
@@ -33,16 +38,46 @@ final class WriterJobQueue {
     // If you change this value, consider changing the buffer pool defaults as well
     private static final int SIZE = 4;
 
+    // Upper bound for parking if the queue is full; the consumer signals after every pop
+    private static final long FULL_QUEUE_PARK_TIMEOUT_NS = 1000 * 1000;
+
+    private static final ValuePool SOP_JOB_SPIN_WAKEUPS = new ValuePool(WriterJobQueue.class, "JobSpinWakeups");
+    private static final ValuePool SOP_JOB_PARK_WAKEUPS = new ValuePool(WriterJobQueue.class, "JobParkWakeups");
+    private static final ValuePool SOP_FULL_QUEUE_SPIN_WAKEUPS =
+            new ValuePool(WriterJobQueue.class, "FullQueueSpinWakeups");
+    private static final ValuePool SOP_FULL_QUEUE_PARK_WAKEUPS =
+            new ValuePool(WriterJobQueue.class, "FullQueueParkWakeups");
+
+    static {
+        StatisticsManager.get().registerOperation(WriterJobQueue.class, SOP_JOB_SPIN_WAKEUPS);
+        StatisticsManager.get().registerOperation(WriterJobQueue.class, SOP_JOB_PARK_WAKEUPS);
+        StatisticsManager.get().registerOperation(WriterJobQueue.class, SOP_FULL_QUEUE_SPIN_WAKEUPS);
+        StatisticsManager.get().registerOperation(WriterJobQueue.class, SOP_FULL_QUEUE_PARK_WAKEUPS);
+    }
+
     private final JobID[] m_jobIDs;
     private final int[] m_entrySizes;
     private final DirectByteBufferWrapper[] m_bufferWrappers;
     private final int[] m_combinedRangeIDs;
+    private final WriteJob m_job;
 
     // single producer, single consumer lock free queue (posBack and posFront are synchronized
     // with fences and byte counter)
     private int m_posBack; // 31 bits used (see incrementation)
     private int m_posFront; // 31 bits used (see incrementation)
 
+    // Job counters to determine which jobs have been written to disk (not wrapped around)
+    private volatile long m_pushedJobs;
+    private volatile long m_executedJobs;
+    private volatile long m_durableJobs;
+    // Ranges of failed jobs (first and last job number, starting with 1) which have not been collected, yet.
+    // Failed jobs are added before the durable watermark is moved past them
+    private final ConcurrentLinkedQueue<long[]> m_failedJobs;
+
+    // Wakes up the consumer if a job was pushed and the producer if a job was popped (queue not full anymore)
+    private final WakeupSignal m_jobSignal;
+    private final WakeupSignal m_spaceSignal;
+
     /**
      * Creates an instance of WriterJobQueue.
      */
@@ -55,9 +90,14 @@ final class WriterJobQueue {
         m_entrySizes = new int[SIZE];
         m_bufferWrappers = new DirectByteBufferWrapper[SIZE];
         m_combinedRangeIDs = new int[SIZE];
+        m_job = new WriteJob();
+        m_failedJobs = new ConcurrentLinkedQueue<>();
 
         m_posBack = 0;
         m_posFront = 0;
+
+        m_jobSignal = new WakeupSignal(SOP_JOB_SPIN_WAKEUPS, SOP_JOB_PARK_WAKEUPS);
+        m_spaceSignal = new WakeupSignal(SOP_FULL_QUEUE_SPIN_WAKEUPS, SOP_FULL_QUEUE_PARK_WAKEUPS);
     }
 
     /**
@@ -69,6 +109,92 @@ final class WriterJobQueue {
         return SIZE;
     }
 
+    /**
+     * Returns the number of jobs pushed so far. Must be called by the producer or after the producer
+     * published the jobs of interest.
+     *
+     * @return the number of pushed jobs
+     */
+    long getNumberOfPushedJobs() {
+        return m_pushedJobs;
+    }
+
+    /**
+     * Returns the number of jobs executed (written to disk) so far. Jobs are executed in order.
+     *
+     * @return the number of executed jobs
+     */
+    long getNumberOfExecutedJobs() {
+        return m_executedJobs;
+    }
+
+    /**
+     * Marks the last popped job as executed. Called by the consumer, only.
+     */
+    void jobExecuted() {
+        m_executedJobs = m_executedJobs + 1;
+    }
+
+    /**
+     * Returns the durable watermark: all jobs up to the watermark have been written to disk and synced, if required,
+     * except the ones reported as failed before (see pollFailedJobs()).
+     *
+     * @return the durable watermark
+     */
+    long getNumberOfDurableJobs() {
+        return m_durableJobs;
+    }
+
+    /**
+     * Sets the durable watermark. Called by the consumer, only.
+     *
+     * @param p_durableJobs
+     *         the number of jobs which are durable
+     */
+    void setNumberOfDurableJobs(final long p_durableJobs) {
+        m_durableJobs = p_durableJobs;
+    }
+
+    /**
+     * Reports a range of jobs which could not be written or synced. Called by the consumer before moving the durable
+     * watermark past the jobs, only.
+     *
+     * @param p_firstJob
+     *         the number of the first failed job (starting with 1)
+     * @param p_lastJob
+     *         the number of the last failed job
+     */
+    void jobsFailed(final long p_firstJob, final long p_lastJob) {
+        m_failedJobs.add(new long[] {p_firstJob, p_lastJob});
+    }
+
+    /**
+     * Returns and removes the oldest reported range of failed jobs.
+     *
+     * @return the first and last job number of the failed range or null if there is none
+     */
+    long[] pollFailedJobs() {
+        return m_failedJobs.poll();
+    }
+
+    /**
+     * Waits until a job was pushed or the timeout is exceeded. Called by the consumer, only.
+     * Might return spuriously; the consumer must check the queue afterwards.
+     *
+     * @param p_timeoutNs
+     *         the maximum time to park in ns
+     */
+    void awaitJob(final long p_timeoutNs) {
+        m_jobSignal.await(p_timeoutNs);
+    }
+
+    /**
+     * Wakes up the consumer without pushing a job (e.g., for shutting down).
+     */
+    void wakeUpConsumer() {
+        m_jobSignal.signal();
+    }
+
     /**
      * Removes an job from queue.
      */
@@ -90,8 +216,9 @@ final class WriterJobQueue {
         // & 0x7FFFFFFF kill sign
         m_posBack = m_posBack + 1 & 0x7FFFFFFF;
         UnsafeHandler.getInstance().getUnsafe().storeFence();
+        m_spaceSignal.signal();
 
-        return WriteJob.getInstance(jobID, entrySize, bufferWrapper, combinedRangeID);
+        return m_job.set(jobID, entrySize, bufferWrapper, combinedRangeID);
     }
 
     /**
@@ -114,8 +241,7 @@ final class WriterJobQueue {
         if ((m_posBack + SIZE & 0x7FFFFFFF) == m_posFront) {
             // Queue is full -> wait
             while ((m_posBack + SIZE & 0x7FFFFFFF) == m_posFront) {
-                //LockSupport.parkNanos(100);
-                Thread.yield();
+                m_spaceSignal.await(FULL_QUEUE_PARK_TIMEOUT_NS);
                 UnsafeHandler.getInstance().getUnsafe().loadFence();
             }
         }
@@ -129,7 +255,9 @@ final class WriterJobQueue {
 
         // & 0x7FFFFFFF kill sign
         m_posFront = m_posFront + 1 & 0x7FFFFFFF;
+        m_pushedJobs = m_pushedJobs + 1;
         UnsafeHandler.getInstance().getUnsafe().storeFence();
+        m_jobSignal.signal();
     }
 
     /**
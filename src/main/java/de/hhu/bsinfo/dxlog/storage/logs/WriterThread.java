@@ -23,8 +23,13 @@ import org.apache.logging.log4j.Logger;
 
 import de.hhu.bsinfo.dxlog.storage.BackupRangeCatalog;
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
+import de.hhu.bsinfo.dxlog.storage.Scheduler;
+import de.hhu.bsinfo.dxlog.storage.diskaccess.DurabilityMode;
 import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.SecondaryLogBuffer;
 import de.hhu.bsinfo.dxlog.storage.writebuffer.BufferPool;
+import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
+import de.hhu.bsinfo.dxutils.stats.TimePool;
+import de.hhu.bsinfo.dxutils.stats.ValuePool;
 
 /**
  * Writer thread. Pops jobs from job queue and writes containing data to disk.
@@ -35,12 +40,29 @@ final class WriterThread extends Thread {
 
     private static final Logger LOGGER = LogManager.getFormatterLogger(WriterThread.class.getSimpleName());
 
+    // Upper bound for parking if the queue is empty (pushing a job wakes up the writer thread)
+    private static final long IDLE_PARK_TIMEOUT_NS = 100 * 1000 * 1000;
+
+    private static final TimePool SOP_SYNC_LOGS = new TimePool(WriterThread.class, "SyncLogs");
+    private static final ValuePool SOP_JOBS_PER_SYNC = new ValuePool(WriterThread.class, "JobsPerSync");
+
+    static {
+        StatisticsManager.get().registerOperation(WriterThread.class, SOP_SYNC_LOGS);
+        StatisticsManager.get().registerOperation(WriterThread.class, SOP_JOBS_PER_SYNC);
+    }
+
     private final PrimaryLog m_primaryLog;
     private final BackupRangeCatalog m_backupRangeCatalog;
+    private final Scheduler m_scheduler;
 
     private final WriterJobQueue m_jobQueue;
     private final BufferPool m_bufferPool;
 
+    private final DurabilityMode m_durabilityMode;
+    private final long m_syncIntervalNs;
+    private long m_timeLastSync;
+    private long m_jobsLastWakeUp; // Durable jobs when the process thread was woken up last (NONE durability mode)
+
     private volatile boolean m_isShuttingDown;
 
     /**
@@ -50,18 +72,30 @@ final class WriterThread extends Thread {
      *         the primary log
      * @param p_backupRangeCatalog
      *         the backup range catalog to find corresponding secondary log buffers
+     * @param p_scheduler
+     *         the scheduler to wake up the process thread when the durable watermark advances
      * @param p_jobQueue
      *         the job queue
      * @param p_bufferPool
      *         the buffer pool to return buffers after writing
+     * @param p_durabilityMode
+     *         the durability mode determining when written logs are synced
+     * @param p_syncIntervalMs
+     *         the interval for syncing logs in ms (periodic durability mode, only)
      */
     WriterThread(final PrimaryLog p_primaryLog, final BackupRangeCatalog p_backupRangeCatalog,
-            final WriterJobQueue p_jobQueue, final BufferPool p_bufferPool) {
+            final Scheduler p_scheduler, final WriterJobQueue p_jobQueue, final BufferPool p_bufferPool,
+            final DurabilityMode p_durabilityMode, final int p_syncIntervalMs) {
         m_primaryLog = p_primaryLog;
         m_backupRangeCatalog = p_backupRangeCatalog;
+        m_scheduler = p_scheduler;
 
         m_jobQueue = p_jobQueue;
         m_bufferPool = p_bufferPool;
+
+        m_durabilityMode = p_durabilityMode;
+        m_syncIntervalNs = p_syncIntervalMs * 1000L * 1000L;
+        m_timeLastSync = System.nanoTime();
     }
 
     /**
@@ -69,6 +103,7 @@ final class WriterThread extends Thread {
      */
     public void shutdown() {
         m_isShuttingDown = true;
+        m_jobQueue.wakeUpConsumer();
 
         try {
             join();
@@ -82,43 +117,156 @@ final class WriterThread extends Thread {
         while (!m_isShuttingDown) {
             try {
                 if (!popAndExecuteJob()) {
-                    //LockSupport.parkNanos(1);
-                    Thread.yield();
+                    // Queue is empty -> all jobs executed since the last sync are covered by one sync
+                    if (m_durabilityMode == DurabilityMode.PER_JOB ||
+                            m_durabilityMode == DurabilityMode.PERIODIC && isSyncIntervalOver()) {
+                        syncLogs();
+                    } else if (m_durabilityMode == DurabilityMode.NONE &&
+                            m_jobsLastWakeUp != m_jobQueue.getNumberOfDurableJobs()) {
+                        wakeUpProcessThread();
+                    }
+
+                    m_jobQueue.awaitJob(getParkTimeout());
+                } else if (m_durabilityMode == DurabilityMode.NONE) {
+                    m_jobQueue.setNumberOfDurableJobs(m_jobQueue.getNumberOfExecutedJobs());
+                    // Do not wake up the process thread for every job; the queue draining wakes it up as well
+                    if (m_scheduler.hasPendingCompletions()) {
+                        wakeUpProcessThread();
+                    }
+                } else if (m_durabilityMode == DurabilityMode.PER_JOB &&
+                        m_jobQueue.getNumberOfExecutedJobs() - m_jobQueue.getNumberOfDurableJobs() >=
+                                WriterJobQueue.getCapacity() ||
+                        m_durabilityMode == DurabilityMode.PERIODIC && isSyncIntervalOver()) {
+                    // Do not postpone the sync forever if the queue never runs empty
+                    syncLogs();
                 }
             } catch (final IOException e) {
                 LOGGER.error(e);
             }
         }
+
+        if (m_durabilityMode != DurabilityMode.NONE) {
+            try {
+                syncLogs();
+            } catch (final IOException e) {
+                LOGGER.error("Could not sync logs on shutdown", e);
+            }
+        }
     }
 
     /**
-     * Removes an job from queue and executes it.
+     * Returns the maximum time to park if the queue is empty. In periodic durability mode, the writer thread
+     * wakes up in time for the next sync if there are unsynced jobs.
+     *
+     * @return the park timeout in ns
+     */
+    private long getParkTimeout() {
+        if (m_durabilityMode == DurabilityMode.PERIODIC &&
+                m_jobQueue.getNumberOfExecutedJobs() != m_jobQueue.getNumberOfDurableJobs()) {
+            return Math.max(1, Math.min(IDLE_PARK_TIMEOUT_NS, m_timeLastSync + m_syncIntervalNs - System.nanoTime()));
+        }
+
+        return IDLE_PARK_TIMEOUT_NS;
+    }
+
+    /**
+     * Wakes up the process thread to complete durable data (NONE durability mode).
+     */
+    private void wakeUpProcessThread() {
+        m_jobsLastWakeUp = m_jobQueue.getNumberOfDurableJobs();
+        m_scheduler.wakeUpProcessThread();
+    }
+
+    /**
+     * Checks if the sync interval has passed since the last sync.
+     *
+     * @return whether the interval is over or not
+     */
+    private boolean isSyncIntervalOver() {
+        return System.nanoTime() - m_timeLastSync >= m_syncIntervalNs;
+    }
+
+    /**
+     * Syncs all logs written to since the last sync and advances the durable watermark to all jobs executed before.
+     * Jobs are executed by this thread, only. Thus, all executed jobs are covered by the sync. If the sync fails,
+     * all jobs executed since the last sync are reported as failed before advancing the watermark.
+     *
+     * @throws IOException
+     *         if a log could not be synced
+     */
+    private void syncLogs() throws IOException {
+        long executedJobs = m_jobQueue.getNumberOfExecutedJobs();
+        long durableJobs = m_jobQueue.getNumberOfDurableJobs();
+
+        m_timeLastSync = System.nanoTime();
+        if (executedJobs == durableJobs) {
+            // Nothing to do (logs written by the reorganization are synced with the next job)
+            return;
+        }
+
+        SOP_SYNC_LOGS.start();
+
+        try {
+            Log.syncDirtyLogs();
+        } catch (final IOException e) {
+            // None of the jobs executed since the last sync is known to be on disk
+            m_jobQueue.jobsFailed(durableJobs + 1, executedJobs);
+            throw e;
+        } finally {
+            m_jobQueue.setNumberOfDurableJobs(executedJobs);
+            m_scheduler.wakeUpProcessThread();
+
+            SOP_SYNC_LOGS.stop();
+        }
+        SOP_JOBS_PER_SYNC.add(executedJobs - durableJobs);
+    }
+
+    /**
+     * Removes an job from queue and executes it. Jobs which could not be executed are reported as failed.
      */
     private boolean popAndExecuteJob() throws IOException {
         WriteJob job = m_jobQueue.popJob();
 
         if (job != null) {
-            DirectByteBufferWrapper bufferWrapper = job.getBuffer();
-            if (job.getJobID() == WriterJobQueue.JobID.SEC_LOG ||
-                    job.getJobID() == WriterJobQueue.JobID.SEC_LOG_RETURN_BUFFER) {
-                SecondaryLogBuffer secLogBuffer = m_backupRangeCatalog
-                        .getSecondaryLogBuffer((short) (job.getCombinedRangeID() >> 16),
-                                (short) job.getCombinedRangeID());
-                if (secLogBuffer == null) {
-                    LOGGER.error("Could not execute job as backup range does not exist");
-                } else {
-                    secLogBuffer.flushAllDataToSecLog(bufferWrapper, job.getEntrySize());
-                }
+            try {
+                DirectByteBufferWrapper bufferWrapper = job.getBuffer();
+                if (job.getJobID() == WriterJobQueue.JobID.SEC_LOG ||
+                        job.getJobID() == WriterJobQueue.JobID.SEC_LOG_RETURN_BUFFER) {
+                    SecondaryLogBuffer secLogBuffer = m_backupRangeCatalog
+                            .getSecondaryLogBuffer((short) (job.getCombinedRangeID() >> 16),
+                                    (short) job.getCombinedRangeID());
+                    if (secLogBuffer == null) {
+                        LOGGER.error("Could not execute job as backup range does not exist");
+                        jobFailed();
+                    } else {
+                        secLogBuffer.flushAllDataToSecLog(bufferWrapper, job.getEntrySize());
+                    }
 
-                if (job.getJobID() == WriterJobQueue.JobID.SEC_LOG_RETURN_BUFFER) {
-                    m_bufferPool.returnBuffer(job.getBuffer());
+                    if (job.getJobID() == WriterJobQueue.JobID.SEC_LOG_RETURN_BUFFER) {
+                        m_bufferPool.returnBuffer(job.getBuffer());
+                    }
+                } else {
+                    m_primaryLog.postData(bufferWrapper, bufferWrapper.getBuffer().position());
                 }
-            } else {
-                m_primaryLog.postData(bufferWrapper, bufferWrapper.getBuffer().position());
+            } catch (final IOException e) {
+                jobFailed();
+                throw e;
+            } finally {
+                // Errors are logged and reported, only -> count the job as executed in any case to not block waiting
+                // producers
+                m_jobQueue.jobExecuted();
             }
 
             return true;
         }
         return false;
     }
+
+    /**
+     * Reports the currently executed job as failed. Must be called before the job is counted as executed.
+     */
+    private void jobFailed() {
+        long job = m_jobQueue.getNumberOfExecutedJobs() + 1;
+        m_jobQueue.jobsFailed(job, job);
+    }
 }
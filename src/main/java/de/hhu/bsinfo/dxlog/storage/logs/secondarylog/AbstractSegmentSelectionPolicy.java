@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
+import de.hhu.bsinfo.dxutils.stats.ValuePool;
+
+/**
+ * Base class for segment selection policies. Accounts the copied and freed bytes of all segments reorganized with a
+ * policy (shared by all reorganization threads using the policy). Cold segments are not chosen by the policies;
+ * they are reorganized once per eon (see ReorganizationThread.chooseSegment()).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public abstract class AbstractSegmentSelectionPolicy implements SegmentSelectionPolicy {
+
+    // Statistics of every implementing policy (copied and freed bytes), registered with the first instance
+    private static final Map<Class<?>, ValuePool[]> STATISTICS = new HashMap<>();
+
+    private final ValuePool m_bytesCopiedPool;
+    private final ValuePool m_bytesFreedPool;
+    private final AtomicLong m_bytesCopied;
+    private final AtomicLong m_bytesFreed;
+
+    final int m_logSegmentSize;
+
+    /**
+     * Creates an instance of AbstractSegmentSelectionPolicy.
+     *
+     * @param p_logSegmentSize
+     *         the segment size
+     */
+    AbstractSegmentSelectionPolicy(final int p_logSegmentSize) {
+        ValuePool[] statistics = getStatistics(getClass());
+
+        m_logSegmentSize = p_logSegmentSize;
+        m_bytesCopiedPool = statistics[0];
+        m_bytesFreedPool = statistics[1];
+        m_bytesCopied = new AtomicLong(0);
+        m_bytesFreed = new AtomicLong(0);
+    }
+
+    /**
+     * Creates the policy for given mode.
+     *
+     * @param p_mode
+     *         the segment selection mode
+     * @param p_logSegmentSize
+     *         the segment size
+     * @return the segment selection policy
+     */
+    public static SegmentSelectionPolicy create(final SegmentSelectionMode p_mode, final int p_logSegmentSize) {
+        if (p_mode == SegmentSelectionMode.GREEDY) {
+            return new GreedySegmentSelection(p_logSegmentSize);
+        } else if (p_mode == SegmentSelectionMode.AGE_BUCKETED) {
+            return new AgeBucketedSegmentSelection(p_logSegmentSize);
+        } else if (p_mode == SegmentSelectionMode.D_CHOICES) {
+            return new DChoicesSegmentSelection(p_logSegmentSize);
+        } else {
+            return new CostBenefitSegmentSelection(p_logSegmentSize);
+        }
+    }
+
+    /**
+     * Returns the statistics of a policy. The statistics are created and registered once per policy (shared by all
+     * reorganization threads).
+     *
+     * @param p_policyClass
+     *         the class of the implementing policy
+     * @return the statistics for copied and freed bytes
+     */
+    private static ValuePool[] getStatistics(final Class<?> p_policyClass) {
+        ValuePool[] ret;
+
+        synchronized (STATISTICS) {
+            ret = STATISTICS.get(p_policyClass);
+            if (ret == null) {
+                ret = new ValuePool[] {new ValuePool(p_policyClass, "BytesCopied"),
+                        new ValuePool(p_policyClass, "BytesFreed")};
+                StatisticsManager.get().registerOperation(p_policyClass, ret[0]);
+                StatisticsManager.get().registerOperation(p_policyClass, ret[1]);
+                STATISTICS.put(p_policyClass, ret);
+            }
+        }
+
+        return ret;
+    }
+
+    @Override
+    public void recordReorganization(final int p_readBytes, final int p_writtenBytes) {
+        if (p_readBytes > p_writtenBytes) {
+            m_bytesCopied.addAndGet(p_writtenBytes);
+            m_bytesFreed.addAndGet(p_readBytes - p_writtenBytes);
+            m_bytesCopiedPool.add(p_writtenBytes);
+            m_bytesFreedPool.add(p_readBytes - p_writtenBytes);
+        }
+    }
+
+    @Override
+    public double getWriteAmplification() {
+        long freed = m_bytesFreed.get();
+        if (freed == 0) {
+            return 0;
+        }
+
+        return (double) (m_bytesCopied.get() + freed) / freed;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[write amplification: " + getWriteAmplification() + ']';
+    }
+
+    /**
+     * Checks if a segment can be chosen: it must not be empty, cold or reorganized in this epoch already.
+     *
+     * @param p_header
+     *         the segment header
+     * @param p_index
+     *         the segment index
+     * @param p_reorgVector
+     *         the segments already reorganized in this epoch
+     * @return true if the segment can be chosen
+     */
+    static boolean isCandidate(final SegmentHeader p_header, final int p_index, final BitSet p_reorgVector) {
+        return p_header != null && !p_header.isCold() && !p_reorgVector.get(p_index);
+    }
+
+    /**
+     * Returns the number of live bytes in a segment. For segments with an unknown number of invalidated bytes
+     * (restored after a restart), the used bytes are an upper bound.
+     *
+     * @param p_header
+     *         the segment header
+     * @return the number of live bytes
+     */
+    static int getLiveBytes(final SegmentHeader p_header) {
+        return p_header.getLiveBytes();
+    }
+}
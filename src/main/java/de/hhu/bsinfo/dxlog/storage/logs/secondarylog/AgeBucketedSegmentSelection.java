@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.BitSet;
+
+/**
+ * Age-bucketed segment selection: segments are grouped into buckets by the binary logarithm of their age. The
+ * segment with the lowest number of live bytes within the oldest non-empty bucket is chosen. Old segments are
+ * cleaned first without being outranked by young segments that are still being invalidated.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class AgeBucketedSegmentSelection extends AbstractSegmentSelectionPolicy {
+
+    /**
+     * Creates an instance of AgeBucketedSegmentSelection.
+     *
+     * @param p_logSegmentSize
+     *         the segment size
+     */
+    AgeBucketedSegmentSelection(final int p_logSegmentSize) {
+        super(p_logSegmentSize);
+    }
+
+    @Override
+    public int chooseSegment(final SecondaryLog p_secondaryLog, final SegmentHeader[] p_segmentHeaders,
+            final BitSet p_reorgVector) {
+        int ret = -1;
+        int bucket;
+        int liveBytes;
+        int maxBucket = -1;
+        int min = Integer.MAX_VALUE;
+        int currentTime = p_secondaryLog.getCurrentTimeInSec();
+        SegmentHeader currentSegment;
+
+        for (int i = 0; i < p_segmentHeaders.length; i++) {
+            currentSegment = p_segmentHeaders[i];
+            if (isCandidate(currentSegment, i, p_reorgVector)) {
+                bucket = getBucket(currentSegment.getAge(currentTime));
+                liveBytes = getLiveBytes(currentSegment);
+                if (bucket > maxBucket || bucket == maxBucket && liveBytes < min) {
+                    maxBucket = bucket;
+                    min = liveBytes;
+                    ret = i;
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the age bucket (binary logarithm of the age in seconds).
+     *
+     * @param p_age
+     *         the age in seconds
+     * @return the bucket
+     */
+    private static int getBucket(final int p_age) {
+        if (p_age <= 0) {
+            return 0;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(p_age);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.hhu.bsinfo.dxlog.storage.header.AbstractSecLogEntryHeader;
+import de.hhu.bsinfo.dxutils.hashtable.LongHashTable;
+
+/**
+ * Location hints for the newest log entry of every chunk in a secondary log (chunk ID -> segment index and entry
+ * size). Used to account invalidated bytes per segment when a chunk is updated or removed without reading the
+ * segments. Segments which were not written since the log was opened are not covered (see
+ * SegmentHeader.isInvalidBytesKnown()).
+ * The table is sized from the secondary log: it stores at most MAX_ENTRIES_PER_SEGMENT locations per segment (two
+ * longs each, i.e. 16 KB per segment plus the hash table's headroom). If the table is full, new chunks are not
+ * tracked and the invalidated bytes of the segments they are written to become unknown.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class ChunkLocationTable {
+
+    private static final int ENTRIES_PER_SEGMENT = 64;
+    private static final int MAX_ENTRIES_PER_SEGMENT = 1024;
+
+    private final short m_originalOwner;
+    private final SegmentSpaceIndex m_spaceIndex;
+    private final LongHashTable m_locations;
+    private final int m_maxEntries;
+    private final ReentrantLock m_lock;
+
+    /**
+     * Creates an instance of ChunkLocationTable.
+     *
+     * @param p_numberOfSegments
+     *         the number of segments of the secondary log
+     * @param p_originalOwner
+     *         the original owner of the backup range (to complete chunk IDs of non-migrated log entries)
+     * @param p_spaceIndex
+     *         the free space index of the secondary log (tracks segments with invalidated bytes)
+     */
+    ChunkLocationTable(final int p_numberOfSegments, final short p_originalOwner,
+            final SegmentSpaceIndex p_spaceIndex) {
+        m_originalOwner = p_originalOwner;
+        m_spaceIndex = p_spaceIndex;
+        // Grows if necessary (up to the maximum number of entries)
+        m_locations = new LongHashTable(p_numberOfSegments * ENTRIES_PER_SEGMENT);
+        m_maxEntries = p_numberOfSegments * MAX_ENTRIES_PER_SEGMENT;
+        m_lock = new ReentrantLock(false);
+    }
+
+    /**
+     * Registers the log entries appended to a segment. The bytes of the previous log entries of the same chunks are
+     * invalidated.
+     *
+     * @param p_segmentHeaders
+     *         the segment headers
+     * @param p_segmentIndex
+     *         the segment the data was written to
+     * @param p_data
+     *         the written data
+     * @param p_dataOffset
+     *         the offset of the written data within the buffer
+     * @param p_length
+     *         the number of written bytes
+     */
+    void recordWrite(final SegmentHeader[] p_segmentHeaders, final int p_segmentIndex, final ByteBuffer p_data,
+            final int p_dataOffset, final int p_length) {
+        int dataOffset = p_dataOffset;
+        int entrySize;
+        long location;
+        long chunkID;
+
+        m_lock.lock();
+        while (dataOffset < p_dataOffset + p_length) {
+            short type = (short) (p_data.get(dataOffset) & 0xFF);
+            AbstractSecLogEntryHeader logEntryHeader = AbstractSecLogEntryHeader.getHeader(type);
+            chunkID = getChunkID(logEntryHeader, type, p_data, dataOffset);
+            entrySize = logEntryHeader.getHeaderSize(type) + logEntryHeader.getLength(type, p_data, dataOffset);
+
+            location = m_locations.get(chunkID + 1);
+            if (location != -1) {
+                invalidate(p_segmentHeaders, location);
+            }
+            putLocation(p_segmentHeaders, chunkID, location, p_segmentIndex, entrySize);
+
+            dataOffset += entrySize;
+        }
+        m_lock.unlock();
+    }
+
+    /**
+     * Registers the log entries of a reorganized segment. Log entries of chunks with a newer log entry in
+     * another segment (written during the reorganization) are invalidated immediately.
+     *
+     * @param p_segmentHeaders
+     *         the segment headers
+     * @param p_segmentIndex
+     *         the reorganized segment
+     * @param p_data
+     *         the new segment content
+     * @param p_length
+     *         the segment length
+     * @param p_sourceSegments
+     *         the segments the log entries were copied from (the reorganized segment itself or compacted segments)
+     */
+    void recordRewrite(final SegmentHeader[] p_segmentHeaders, final int p_segmentIndex, final ByteBuffer p_data,
+            final int p_length, final int[] p_sourceSegments) {
+        recordRewrite(p_segmentHeaders, p_segmentIndex, p_data, 0, p_length, p_sourceSegments);
+    }
+
+    /**
+     * Registers a part of the log entries of a reorganized segment (e.g. a relocated run of live log entries).
+     *
+     * @param p_segmentHeaders
+     *         the segment headers
+     * @param p_segmentIndex
+     *         the reorganized segment
+     * @param p_data
+     *         the buffer containing the log entries
+     * @param p_dataOffset
+     *         the offset of the first log entry within the buffer
+     * @param p_length
+     *         the number of bytes to register
+     * @param p_sourceSegments
+     *         the segments the log entries were copied from
+     */
+    void recordRewrite(final SegmentHeader[] p_segmentHeaders, final int p_segmentIndex, final ByteBuffer p_data,
+            final int p_dataOffset, final int p_length, final int[] p_sourceSegments) {
+        int dataOffset = p_dataOffset;
+        int entrySize;
+        long location;
+        long chunkID;
+
+        m_lock.lock();
+        while (dataOffset < p_dataOffset + p_length) {
+            short type = (short) (p_data.get(dataOffset) & 0xFF);
+            AbstractSecLogEntryHeader logEntryHeader = AbstractSecLogEntryHeader.getHeader(type);
+            chunkID = getChunkID(logEntryHeader, type, p_data, dataOffset);
+            entrySize = logEntryHeader.getHeaderSize(type) + logEntryHeader.getLength(type, p_data, dataOffset);
+
+            location = m_locations.get(chunkID + 1);
+            if (location == -1 || contains(p_sourceSegments, (int) (location >> 32))) {
+                // Log entry was moved or written before the log was opened
+                putLocation(p_segmentHeaders, chunkID, location, p_segmentIndex, entrySize);
+            } else {
+                p_segmentHeaders[p_segmentIndex].addInvalidBytes(entrySize);
+                m_spaceIndex.markReclaimable(p_segmentIndex);
+            }
+
+            dataOffset += entrySize;
+        }
+        m_lock.unlock();
+    }
+
+    /**
+     * Invalidates the newest log entries of removed chunks.
+     *
+     * @param p_segmentHeaders
+     *         the segment headers
+     * @param p_chunkIDs
+     *         the chunk IDs
+     */
+    void remove(final SegmentHeader[] p_segmentHeaders, final long[] p_chunkIDs) {
+        long location;
+
+        m_lock.lock();
+        for (long chunkID : p_chunkIDs) {
+            location = m_locations.get(chunkID + 1);
+            if (location != -1) {
+                invalidate(p_segmentHeaders, location);
+                m_locations.put(chunkID + 1, -1);
+            }
+        }
+        m_lock.unlock();
+    }
+
+    /**
+     * Stores the location of the newest log entry of a chunk. If the table is full and the chunk is not tracked, yet,
+     * the location is dropped and the invalidated bytes of the segment become unknown (the log entry cannot be
+     * invalidated when the chunk is updated or removed).
+     *
+     * @param p_segmentHeaders
+     *         the segment headers
+     * @param p_chunkID
+     *         the chunk ID
+     * @param p_oldLocation
+     *         the previous location of the chunk or -1 if the chunk is not tracked
+     * @param p_segmentIndex
+     *         the segment the log entry was written to
+     * @param p_entrySize
+     *         the size of the log entry
+     */
+    private void putLocation(final SegmentHeader[] p_segmentHeaders, final long p_chunkID, final long p_oldLocation,
+            final int p_segmentIndex, final int p_entrySize) {
+        SegmentHeader header;
+
+        if (p_oldLocation == -1 && m_locations.size() >= m_maxEntries) {
+            header = p_segmentHeaders[p_segmentIndex];
+            if (header != null) {
+                header.markInvalidBytesUnknown();
+                m_spaceIndex.markReclaimable(p_segmentIndex);
+            }
+
+            return;
+        }
+
+        m_locations.put(p_chunkID + 1, (long) p_segmentIndex << 32 | p_entrySize);
+    }
+
+    /**
+     * Adds the size of a log entry to the invalidated bytes of its segment.
+     *
+     * @param p_segmentHeaders
+     *         the segment headers
+     * @param p_location
+     *         the location of the log entry (segment index and entry size)
+     */
+    private void invalidate(final SegmentHeader[] p_segmentHeaders, final long p_location) {
+        SegmentHeader header = p_segmentHeaders[(int) (p_location >> 32)];
+
+        // The segment might have been freed by the reorganization in the meantime
+        if (header != null) {
+            header.addInvalidBytes((int) p_location);
+            m_spaceIndex.markReclaimable((int) (p_location >> 32));
+        }
+    }
+
+    /**
+     * Checks if an array contains given segment index.
+     *
+     * @param p_segments
+     *         the segment indices
+     * @param p_segmentIndex
+     *         the segment index to look for
+     * @return true if the segment index is contained
+     */
+    private static boolean contains(final int[] p_segments, final int p_segmentIndex) {
+        for (int segment : p_segments) {
+            if (segment == p_segmentIndex) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the full chunk ID of a log entry.
+     *
+     * @param p_logEntryHeader
+     *         the log entry header
+     * @param p_type
+     *         the log entry type
+     * @param p_data
+     *         the buffer
+     * @param p_offset
+     *         the offset of the log entry within the buffer
+     * @return the chunk ID
+     */
+    private long getChunkID(final AbstractSecLogEntryHeader p_logEntryHeader, final short p_type,
+            final ByteBuffer p_data, final int p_offset) {
+        long chunkID = p_logEntryHeader.getCID(p_type, p_data, p_offset);
+        if (!p_logEntryHeader.isMigrated()) {
+            chunkID = ((long) m_originalOwner << 48) + chunkID;
+        }
+
+        return chunkID;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.BitSet;
+
+/**
+ * Cost-benefit segment selection: chooses the segment with the highest cost-benefit ratio ((1-u)*age)/(1+u) with u
+ * being the fraction of live bytes in the segment. Segments with an unknown number of invalidated bytes (restored
+ * after a restart) are rated by the product of utilization and age (old and full segments are most likely to
+ * contain invalid data).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class CostBenefitSegmentSelection extends AbstractSegmentSelectionPolicy {
+
+    /**
+     * Creates an instance of CostBenefitSegmentSelection.
+     *
+     * @param p_logSegmentSize
+     *         the segment size
+     */
+    CostBenefitSegmentSelection(final int p_logSegmentSize) {
+        super(p_logSegmentSize);
+    }
+
+    @Override
+    public int chooseSegment(final SecondaryLog p_secondaryLog, final SegmentHeader[] p_segmentHeaders,
+            final BitSet p_reorgVector) {
+        int ret = -1;
+        int currentTime = p_secondaryLog.getCurrentTimeInSec();
+        double utilization;
+        double costBenefitRatio;
+        double max = -1;
+        SegmentHeader currentSegment;
+
+        for (int i = 0; i < p_segmentHeaders.length; i++) {
+            currentSegment = p_segmentHeaders[i];
+            if (isCandidate(currentSegment, i, p_reorgVector)) {
+                if (currentSegment.isInvalidBytesKnown()) {
+                    utilization = currentSegment.getLiveRatio();
+                    costBenefitRatio = (1 - utilization) * currentSegment.getAge(currentTime) / (1 + utilization);
+                } else {
+                    costBenefitRatio =
+                            currentSegment.getUtilization(m_logSegmentSize) * currentSegment.getAge(currentTime);
+                }
+                if (costBenefitRatio > max) {
+                    max = costBenefitRatio;
+                    ret = i;
+                }
+            }
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.BitSet;
+
+import de.hhu.bsinfo.dxutils.RandomUtils;
+
+/**
+ * d-choices segment selection: samples d random segments and chooses the one with the lowest number of live bytes.
+ * Approximates greedy without scanning all segment headers.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class DChoicesSegmentSelection extends AbstractSegmentSelectionPolicy {
+
+    private static final int NUMBER_OF_CHOICES = 8;
+    private static final int TRIES_PER_CHOICE = 4;
+
+    /**
+     * Creates an instance of DChoicesSegmentSelection.
+     *
+     * @param p_logSegmentSize
+     *         the segment size
+     */
+    DChoicesSegmentSelection(final int p_logSegmentSize) {
+        super(p_logSegmentSize);
+    }
+
+    @Override
+    public int chooseSegment(final SecondaryLog p_secondaryLog, final SegmentHeader[] p_segmentHeaders,
+            final BitSet p_reorgVector) {
+        int ret = -1;
+        int index;
+        int liveBytes;
+        int choices = 0;
+        int tries = NUMBER_OF_CHOICES * TRIES_PER_CHOICE;
+        int min = Integer.MAX_VALUE;
+        SegmentHeader currentSegment;
+
+        // Empty and cold segments and segments reorganized in this epoch are skipped without counting as a choice
+        while (choices < NUMBER_OF_CHOICES && tries-- > 0) {
+            index = RandomUtils.getRandomValue(p_segmentHeaders.length - 1);
+            currentSegment = p_segmentHeaders[index];
+            if (isCandidate(currentSegment, index, p_reorgVector)) {
+                choices++;
+                liveBytes = getLiveBytes(currentSegment);
+                if (liveBytes < min) {
+                    min = liveBytes;
+                    ret = index;
+                }
+            }
+        }
+
+        if (ret == -1) {
+            // Sparsely filled log -> fall back to a full scan
+            for (int i = 0; i < p_segmentHeaders.length; i++) {
+                currentSegment = p_segmentHeaders[i];
+                if (isCandidate(currentSegment, i, p_reorgVector)) {
+                    liveBytes = getLiveBytes(currentSegment);
+                    if (liveBytes < min) {
+                        min = liveBytes;
+                        ret = i;
+                    }
+                }
+            }
+        }
+
+        return ret;
+    }
+}
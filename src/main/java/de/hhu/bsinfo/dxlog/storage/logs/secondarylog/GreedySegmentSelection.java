@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.BitSet;
+
+/**
+ * Greedy segment selection: chooses the segment with the lowest number of live bytes (least data to copy).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class GreedySegmentSelection extends AbstractSegmentSelectionPolicy {
+
+    /**
+     * Creates an instance of GreedySegmentSelection.
+     *
+     * @param p_logSegmentSize
+     *         the segment size
+     */
+    GreedySegmentSelection(final int p_logSegmentSize) {
+        super(p_logSegmentSize);
+    }
+
+    @Override
+    public int chooseSegment(final SecondaryLog p_secondaryLog, final SegmentHeader[] p_segmentHeaders,
+            final BitSet p_reorgVector) {
+        int ret = -1;
+        int liveBytes;
+        int min = Integer.MAX_VALUE;
+        SegmentHeader currentSegment;
+
+        for (int i = 0; i < p_segmentHeaders.length; i++) {
+            currentSegment = p_segmentHeaders[i];
+            if (isCandidate(currentSegment, i, p_reorgVector)) {
+                liveBytes = getLiveBytes(currentSegment);
+                if (liveBytes < min) {
+                    min = liveBytes;
+                    ret = i;
+                }
+            }
+        }
+
+        return ret;
+    }
+}
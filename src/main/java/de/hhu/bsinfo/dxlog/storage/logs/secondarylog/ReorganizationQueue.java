@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.Arrays;
+
+/**
+ * Indexed max-heap of the secondary logs of one reorganization thread, keyed by the reorganization priority
+ * (see SecondaryLog.getReorganizationPriority()). The priority of a log is updated by the writer and reorganization
+ * threads whenever the log changes. Updating, removing and choosing a log is in O(log n) with n being the number of
+ * logs in the queue.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class ReorganizationQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private SecondaryLog[] m_logs;
+    private long[] m_priorities;
+    private int m_size;
+
+    /**
+     * Creates an instance of ReorganizationQueue.
+     */
+    ReorganizationQueue() {
+        m_logs = new SecondaryLog[INITIAL_CAPACITY];
+        m_priorities = new long[INITIAL_CAPACITY];
+        m_size = 0;
+    }
+
+    /**
+     * Inserts a secondary log or updates its priority. Removed logs (see SecondaryLog.markRemoved()) are ignored.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @param p_priority
+     *         the new priority
+     */
+    synchronized void update(final SecondaryLog p_secondaryLog, final long p_priority) {
+        int index = p_secondaryLog.getReorganizationQueueIndex();
+
+        if (p_secondaryLog.isRemoved()) {
+            // A writer might update the priority while the backup range is removed
+            return;
+        }
+
+        if (index == -1) {
+            if (m_size == m_logs.length) {
+                m_logs = Arrays.copyOf(m_logs, m_size * 2);
+                m_priorities = Arrays.copyOf(m_priorities, m_size * 2);
+            }
+            index = m_size++;
+            m_logs[index] = p_secondaryLog;
+            m_priorities[index] = p_priority;
+            p_secondaryLog.setReorganizationQueueIndex(index);
+            siftUp(index);
+        } else if (p_priority > m_priorities[index]) {
+            m_priorities[index] = p_priority;
+            siftUp(index);
+        } else if (p_priority < m_priorities[index]) {
+            m_priorities[index] = p_priority;
+            siftDown(index);
+        }
+    }
+
+    /**
+     * Removes a secondary log (backup range was removed).
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     */
+    synchronized void remove(final SecondaryLog p_secondaryLog) {
+        int index = p_secondaryLog.getReorganizationQueueIndex();
+
+        if (index == -1 || index >= m_size || m_logs[index] != p_secondaryLog) {
+            return;
+        }
+
+        m_size--;
+        p_secondaryLog.setReorganizationQueueIndex(-1);
+        if (index != m_size) {
+            move(m_size, index);
+            siftDown(index);
+            siftUp(index);
+        }
+        m_logs[m_size] = null;
+    }
+
+    /**
+     * Returns the secondary log with the highest priority.
+     *
+     * @return the secondary log or null if no log has a priority greater than 0
+     */
+    synchronized SecondaryLog peek() {
+        if (m_size == 0 || m_priorities[0] <= 0) {
+            return null;
+        }
+
+        return m_logs[0];
+    }
+
+    /**
+     * Moves the element at given index upwards until the heap property is restored.
+     *
+     * @param p_index
+     *         the index
+     */
+    private void siftUp(final int p_index) {
+        int index = p_index;
+        int parent;
+        SecondaryLog log = m_logs[index];
+        long priority = m_priorities[index];
+
+        while (index > 0) {
+            parent = (index - 1) / 2;
+            if (m_priorities[parent] >= priority) {
+                break;
+            }
+            move(parent, index);
+            index = parent;
+        }
+        m_logs[index] = log;
+        m_priorities[index] = priority;
+        log.setReorganizationQueueIndex(index);
+    }
+
+    /**
+     * Moves the element at given index downwards until the heap property is restored.
+     *
+     * @param p_index
+     *         the index
+     */
+    private void siftDown(final int p_index) {
+        int index = p_index;
+        int child;
+        SecondaryLog log = m_logs[index];
+        long priority = m_priorities[index];
+
+        while (true) {
+            child = 2 * index + 1;
+            if (child >= m_size) {
+                break;
+            }
+            if (child + 1 < m_size && m_priorities[child + 1] > m_priorities[child]) {
+                child++;
+            }
+            if (m_priorities[child] <= priority) {
+                break;
+            }
+            move(child, index);
+            index = child;
+        }
+        m_logs[index] = log;
+        m_priorities[index] = priority;
+        log.setReorganizationQueueIndex(index);
+    }
+
+    /**
+     * Moves an element to another position.
+     *
+     * @param p_from
+     *         the current position
+     * @param p_to
+     *         the new position
+     */
+    private void move(final int p_from, final int p_to) {
+        m_logs[p_to] = m_logs[p_from];
+        m_priorities[p_to] = m_priorities[p_from];
+        m_logs[p_to].setReorganizationQueueIndex(p_to);
+    }
+}
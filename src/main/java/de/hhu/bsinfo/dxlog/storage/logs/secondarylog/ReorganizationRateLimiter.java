@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the I/O throughput of all reorganization threads. The rate adapts to the latency of
+ * foreground writes to secondary logs (reorganization backs off while ingest is hot) and to the utilization of the
+ * secondary log being reorganized (reorganization speeds up when space gets tight).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public final class ReorganizationRateLimiter {
+
+    // Foreground writes older than this are not considered (no ingest -> no back off)
+    private static final long LATENCY_SAMPLE_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(1);
+    // The rate is never decreased below 1/16 of the maximum rate to guarantee progress
+    private static final int MIN_RATE_DIVISOR = 16;
+
+    private final long m_maxRate;
+    private final long m_targetLatencyNs;
+    private final double m_activateUtilization;
+    private final long m_bucketCapacity;
+
+    private volatile long m_writeLatencyNs;
+    private volatile long m_lastWriteNs;
+
+    private double m_tokens;
+    private long m_lastRefillNs;
+
+    /**
+     * Creates an instance of ReorganizationRateLimiter.
+     *
+     * @param p_maxRate
+     *         the maximum throughput in bytes per second (0 -> unlimited)
+     * @param p_targetLatencyUs
+     *         the foreground write latency in us above which the reorganization backs off
+     * @param p_utilizationActivateReorganization
+     *         the utilization (in percent) at which secondary logs are reorganized
+     * @param p_logSegmentSize
+     *         the segment size (the bucket holds two segments)
+     */
+    public ReorganizationRateLimiter(final long p_maxRate, final int p_targetLatencyUs,
+            final int p_utilizationActivateReorganization, final int p_logSegmentSize) {
+        m_maxRate = p_maxRate;
+        m_targetLatencyNs = TimeUnit.MICROSECONDS.toNanos(p_targetLatencyUs);
+        m_activateUtilization = (double) p_utilizationActivateReorganization / 100;
+        m_bucketCapacity = 2L * p_logSegmentSize;
+
+        m_tokens = m_bucketCapacity;
+        m_lastRefillNs = System.nanoTime();
+    }
+
+    /**
+     * Records the latency of a foreground write to a secondary log (exponentially weighted moving average).
+     * Executed by writer threads; concurrent updates might get lost which is negligible.
+     *
+     * @param p_latencyNs
+     *         the write latency in ns
+     */
+    void recordWriteLatency(final long p_latencyNs) {
+        long average = m_writeLatencyNs;
+        m_writeLatencyNs = average + (p_latencyNs - average) / 8;
+        m_lastWriteNs = System.nanoTime();
+    }
+
+    /**
+     * Takes tokens for reading or writing given number of bytes. Waits until enough tokens are available.
+     *
+     * @param p_bytes
+     *         the number of bytes to read or write
+     * @param p_utilization
+     *         the utilization of the secondary log (0 to 1)
+     */
+    void acquire(final int p_bytes, final double p_utilization) {
+        long waitNs;
+
+        if (m_maxRate <= 0 || p_bytes <= 0) {
+            return;
+        }
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            double rate = getCurrentRate(p_utilization, now);
+
+            m_tokens = Math.min(m_bucketCapacity, m_tokens + (now - m_lastRefillNs) * rate / 1000000000);
+            m_lastRefillNs = now;
+
+            // Reserve the tokens (the bucket might become negative) and wait for the deficit to be refilled
+            m_tokens -= p_bytes;
+            waitNs = m_tokens < 0 ? (long) (-m_tokens / rate * 1000000000) : 0;
+        }
+
+        if (waitNs > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNs);
+            } catch (final InterruptedException ignored) {
+                // Reorganization thread is blocked (recovery) or shut down
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Determines the current rate.
+     *
+     * @param p_utilization
+     *         the utilization of the secondary log (0 to 1)
+     * @param p_now
+     *         the current time in ns
+     * @return the rate in bytes per second
+     */
+    private double getCurrentRate(final double p_utilization, final long p_now) {
+        double latencyFactor = 1.0;
+        double urgency;
+
+        long latency = m_writeLatencyNs;
+        if (p_now - m_lastWriteNs < LATENCY_SAMPLE_TIMEOUT_NS && latency > m_targetLatencyNs) {
+            // Ingest is hot -> back off proportionally
+            latencyFactor = (double) m_targetLatencyNs / latency;
+        }
+
+        // Between activation threshold (0) and a full log (1)
+        urgency = Math.max(0.0, Math.min(1.0, (p_utilization - m_activateUtilization) /
+                Math.max(0.01, 1 - m_activateUtilization)));
+
+        return Math.max((double) m_maxRate / MIN_RATE_DIVISOR, m_maxRate * Math.max(latencyFactor, urgency));
+    }
+}
@@ -19,9 +19,11 @@ package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -29,20 +31,25 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.hhu.bsinfo.dxlog.DXLogConfig;
 import de.hhu.bsinfo.dxlog.storage.BackupRangeCatalog;
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
+import de.hhu.bsinfo.dxlog.storage.Scheduler;
 import de.hhu.bsinfo.dxlog.storage.header.AbstractSecLogEntryHeader;
 import de.hhu.bsinfo.dxlog.storage.versioncontrol.TemporaryVersionStorage;
 import de.hhu.bsinfo.dxlog.storage.versioncontrol.Version;
 import de.hhu.bsinfo.dxlog.storage.versioncontrol.VersionBuffer;
 import de.hhu.bsinfo.dxlog.storage.versioncontrol.VersionHandler;
+import de.hhu.bsinfo.dxlog.storage.versioncontrol.VersionSnapshotCache;
 import de.hhu.bsinfo.dxutils.RandomUtils;
 import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
 import de.hhu.bsinfo.dxutils.stats.TimePool;
 import de.hhu.bsinfo.dxutils.stats.ValuePool;
 
 /**
- * Reorganization thread.
+ * Reorganization thread. Several reorganization threads (workers) can be used; every worker is responsible for a
+ * disjoint subset of the secondary logs (partitioned by original owner and range ID) and has its own version
+ * storage and segment buffer. Segment reads and writes of all workers are limited by a shared I/O budget.
  *
  * @author Kevin Beineke, kevin.beineke@hhu.de, 20.06.2014
  */
@@ -50,12 +57,21 @@ public final class ReorganizationThread extends Thread {
 
     private static final Logger LOGGER = LogManager.getFormatterLogger(ReorganizationThread.class.getSimpleName());
 
+    // Cold segments are reorganized only if less than this fraction of their bytes is live (or an eon is pending)
+    private static final double COLD_SEGMENT_LIVE_RATIO = 0.5;
+    // Live log entries are relocated with in-kernel copies only if this fraction of the segment is live and the
+    // runs of contiguous live log entries are this long on average (otherwise, staging them is cheaper)
+    private static final double LIVE_RUN_MIN_LIVE_RATIO = 0.5;
+    private static final int LIVE_RUN_MIN_LENGTH = 4096;
+
     private static final TimePool SOP_REORG_GET_VERSIONS = new TimePool(ReorganizationThread.class, "GetVersions");
     private static final TimePool SOP_REORG_READ_SEGMENT = new TimePool(ReorganizationThread.class, "ReadSegment");
     private static final TimePool SOP_REORG_PROCESS_SEGMENT =
             new TimePool(ReorganizationThread.class, "ProcessSegment");
     private static final TimePool SOP_REORG_WRITE_SEGMENT = new TimePool(ReorganizationThread.class, "WriteSegment");
     private static final ValuePool SOP_REORG_BYTES_FREED = new ValuePool(ReorganizationThread.class, "BytesFreed");
+    private static final ValuePool SOP_REORG_COLD_BYTES =
+            new ValuePool(ReorganizationThread.class, "ColdBytesSeparated");
 
     static {
         StatisticsManager.get().registerOperation(ReorganizationThread.class, SOP_REORG_GET_VERSIONS);
@@ -63,20 +79,30 @@ public final class ReorganizationThread extends Thread {
         StatisticsManager.get().registerOperation(ReorganizationThread.class, SOP_REORG_PROCESS_SEGMENT);
         StatisticsManager.get().registerOperation(ReorganizationThread.class, SOP_REORG_WRITE_SEGMENT);
         StatisticsManager.get().registerOperation(ReorganizationThread.class, SOP_REORG_BYTES_FREED);
+        StatisticsManager.get().registerOperation(ReorganizationThread.class, SOP_REORG_COLD_BYTES);
     }
 
     private final BackupRangeCatalog m_backupRangeCatalog;
+    private final Scheduler m_scheduler;
     private final VersionHandler m_versionHandler;
 
     private final LinkedHashSet<SecondaryLog> m_reorganizationRequests;
-    private final TemporaryVersionStorage m_allVersions;
+    private final VersionSnapshotCache m_versionSnapshots;
+    private final ReorganizationQueue m_queue;
 
     private final ReentrantLock m_reorganizationLock;
     private final Condition m_reorganizationFinishedCondition;
     private final ReentrantLock m_requestLock;
+    private final ReentrantLock m_urgentRequestLock;
     private final ReentrantLock m_recoveryLock;
 
-    private final DirectByteBufferWrapper m_reorgSegmentData;
+    private final DirectByteBufferWrapper m_compactionData;
+    private final DirectByteBufferWrapper m_coldData;
+    private final Semaphore m_ioBudget;
+    private final ReorganizationRateLimiter m_rateLimiter;
+    private final SegmentSelectionPolicy m_selectionPolicy;
+    private final int m_workerIndex;
+    private final int m_numberOfWorkers;
 
     private final long m_secondaryLogSize;
     private final int m_logSegmentSize;
@@ -84,9 +110,29 @@ public final class ReorganizationThread extends Thread {
     private final int m_coldDataThreshold;
     private final boolean m_useTimestamps;
     private final int m_iterationsPerLog;
+    private final int m_compactionSegments;
+    private final boolean m_hotColdSeparation;
+    private final int m_coldEpochDistance;
+    private final int[] m_runOffsets;
+    private final int[] m_runLengths;
+    private final SegmentPrefetcher m_prefetcher;
 
     private byte m_counter;
     private int m_segmentReorgCounter;
+    private long m_ageAllBytes;
+    private int m_coldBytes;
+    private int m_firstModifiedOffset;
+
+    // Swapped after every prefetched segment (double buffering)
+    private DirectByteBufferWrapper m_reorgSegmentData;
+    private DirectByteBufferWrapper m_prefetchData;
+    private int m_prefetchSegment;
+
+    // The versions of the current secondary log (a cached snapshot if the version snapshot cache is enabled)
+    private TemporaryVersionStorage m_allVersions;
+
+    private boolean m_urgent;
+    private boolean m_liveRunTransfer;
 
     private volatile SecondaryLog m_secLog;
     private volatile boolean m_reorgThreadWaits;
@@ -96,44 +142,125 @@ public final class ReorganizationThread extends Thread {
     /**
      * Creates an instance of ReorganizationThread.
      *
+     * @param p_config
+     *         the DXLog configuration (segment size, thresholds and reorganization settings)
+     * @param p_versionHandler
+     *         the version handler to gather all versions of a secondary log
      * @param p_backupRangeCatalog
      *         the backup range catalog
+     * @param p_scheduler
+     *         the scheduler to wake up the process thread which grants access to secondary logs
      * @param p_secondaryLogSize
      *         the secondary log size
-     * @param p_logSegmentSize
-     *         the segment size
-     * @param p_utilizationActivateReorganization
-     *         the threshold to consider a log for reorganization
-     */
-    public ReorganizationThread(final VersionHandler p_versionHandler, final BackupRangeCatalog p_backupRangeCatalog,
-            final long p_secondaryLogSize, final int p_logSegmentSize, final int p_utilizationActivateReorganization,
-            final int p_coldDataThreshold, final boolean p_useTimestamps) {
+     * @param p_ioBudget
+     *         the I/O budget shared by all reorganization threads (one permit per concurrent segment access)
+     * @param p_rateLimiter
+     *         the rate limiter shared by all reorganization threads (not applied to urgent requests)
+     * @param p_selectionPolicy
+     *         the segment selection policy shared by all reorganization threads
+     * @param p_workerIndex
+     *         the index of this reorganization thread
+     */
+    public ReorganizationThread(final DXLogConfig p_config, final VersionHandler p_versionHandler,
+            final BackupRangeCatalog p_backupRangeCatalog, final Scheduler p_scheduler, final long p_secondaryLogSize,
+            final Semaphore p_ioBudget, final ReorganizationRateLimiter p_rateLimiter,
+            final SegmentSelectionPolicy p_selectionPolicy, final int p_workerIndex) {
+        int logSegmentSize = (int) p_config.getLogSegmentSize().getBytes();
+        int compactionSegments = p_config.getCompactionSegments();
+        boolean hotColdSeparation = p_config.isHotColdSeparation();
+        boolean liveRunTransfer = p_config.isLiveRunTransfer();
+        // The memory budget for cached version snapshots is shared by all reorganization threads
+        long versionSnapshotCacheSize =
+                p_config.getVersionSnapshotCacheSize().getBytes() / p_config.getReorganizationThreads();
+
         m_backupRangeCatalog = p_backupRangeCatalog;
+        m_scheduler = p_scheduler;
         m_versionHandler = p_versionHandler;
 
         m_secondaryLogSize = p_secondaryLogSize;
-        m_logSegmentSize = p_logSegmentSize;
-        m_iterationsPerLog = (int) (p_secondaryLogSize / p_logSegmentSize * 0.33f);
+        m_logSegmentSize = logSegmentSize;
+        m_iterationsPerLog = (int) (p_secondaryLogSize / logSegmentSize * 0.33f);
         m_activateReorganizationThreshold =
-                (int) ((float) p_utilizationActivateReorganization / 100 * m_secondaryLogSize);
-        m_coldDataThreshold = p_coldDataThreshold;
-        m_useTimestamps = p_useTimestamps;
+                (int) ((float) p_config.getUtilizationActivateReorganization() / 100 * m_secondaryLogSize);
+        m_coldDataThreshold = p_config.getColdDataThresholdInSec();
+        m_useTimestamps = p_config.isUseTimestamps();
 
-        m_allVersions = new TemporaryVersionStorage(m_secondaryLogSize);
+        if (versionSnapshotCacheSize > 0) {
+            m_versionSnapshots = new VersionSnapshotCache(m_secondaryLogSize, versionSnapshotCacheSize);
+            m_allVersions = null;
+        } else {
+            m_versionSnapshots = null;
+            m_allVersions = new TemporaryVersionStorage(m_secondaryLogSize);
+        }
+        m_queue = new ReorganizationQueue();
 
         m_reorganizationLock = new ReentrantLock(false);
         m_reorganizationFinishedCondition = m_reorganizationLock.newCondition();
 
         m_reorganizationRequests = new LinkedHashSet<SecondaryLog>();
         m_requestLock = new ReentrantLock(false);
+        m_urgentRequestLock = new ReentrantLock(false);
 
         m_recoveryLock = new ReentrantLock(false);
 
-        m_reorgSegmentData = new DirectByteBufferWrapper(p_logSegmentSize, true);
+        m_reorgSegmentData = new DirectByteBufferWrapper(logSegmentSize, true);
+        m_compactionSegments = compactionSegments;
+        if (compactionSegments > 1) {
+            m_compactionData = new DirectByteBufferWrapper(logSegmentSize, true);
+        } else {
+            m_compactionData = null;
+        }
+        m_hotColdSeparation = hotColdSeparation;
+        m_coldEpochDistance = p_config.getColdEpochDistance();
+        if (hotColdSeparation) {
+            m_coldData = new DirectByteBufferWrapper(logSegmentSize, true);
+        } else {
+            m_coldData = null;
+        }
+        m_liveRunTransfer = liveRunTransfer;
+        if (liveRunTransfer) {
+            // With more runs, the average run would be shorter than LIVE_RUN_MIN_LENGTH
+            m_runOffsets = new int[logSegmentSize / LIVE_RUN_MIN_LENGTH];
+            m_runLengths = new int[logSegmentSize / LIVE_RUN_MIN_LENGTH];
+        } else {
+            m_runOffsets = null;
+            m_runLengths = null;
+        }
+        m_ioBudget = p_ioBudget;
+        m_prefetchSegment = -1;
+        if (p_config.isReorganizationPrefetch()) {
+            m_prefetchData = new DirectByteBufferWrapper(logSegmentSize, true);
+            m_prefetcher = new SegmentPrefetcher(p_ioBudget);
+            m_prefetcher.setName("Logging: Segment Prefetcher " + p_workerIndex);
+        } else {
+            m_prefetchData = null;
+            m_prefetcher = null;
+        }
+        m_rateLimiter = p_rateLimiter;
+        m_selectionPolicy = p_selectionPolicy;
+        m_workerIndex = p_workerIndex;
+        m_numberOfWorkers = p_config.getReorganizationThreads();
 
         m_counter = 0;
     }
 
+    /**
+     * Returns the index of the reorganization thread responsible for given secondary log.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @param p_numberOfWorkers
+     *         the number of reorganization threads
+     * @return the index of the reorganization thread
+     */
+    public static int getWorkerIndex(final SecondaryLog p_secondaryLog, final int p_numberOfWorkers) {
+        // The original owner and range ID do not change during recovery (unlike owner and range ID)
+        int combinedRangeID = (p_secondaryLog.getOriginalOwner() & 0xFFFF) << 16 |
+                p_secondaryLog.getOriginalRangeID() & 0xFFFF;
+
+        return ((combinedRangeID ^ combinedRangeID >>> 16) & 0x7FFFFFFF) % p_numberOfWorkers;
+    }
+
     /**
      * Get access to secondary log for reorganization thread.
      *
@@ -151,6 +278,9 @@ public final class ReorganizationThread extends Thread {
      */
     public void shutdown() {
         m_shutdown = true;
+        if (m_prefetcher != null) {
+            m_prefetcher.shutdown();
+        }
     }
 
     /**
@@ -177,6 +307,10 @@ public final class ReorganizationThread extends Thread {
         long lowestLID = 0;
         SecondaryLog secondaryLog = null;
 
+        if (m_prefetcher != null) {
+            m_prefetcher.start();
+        }
+
         while (!m_shutdown) {
             m_recoveryLock.lock();
             m_reorganizationLock.lock();
@@ -209,8 +343,7 @@ public final class ReorganizationThread extends Thread {
             if (counter == 0) {
                 // First iteration or counter reset -> choose secondary log and gather versions
                 secondaryLog = chooseLog();
-                if (secondaryLog != null && (secondaryLog.getOccupiedSpace() > m_activateReorganizationThreshold ||
-                        secondaryLog.needToBeReorganized())) {
+                if (secondaryLog != null && mustBeReorganized(secondaryLog)) {
                     lowestLID = enterSecondaryLog(secondaryLog);
                     if (lowestLID == -1 || interrupted()) {
                         m_recoveryLock.unlock();
@@ -236,7 +369,8 @@ public final class ReorganizationThread extends Thread {
 
                 if (!interrupted()) {
                     final long start = System.currentTimeMillis();
-                    if (!reorganizeIteratively(secondaryLog, m_reorgSegmentData, m_allVersions, lowestLID)) {
+                    if (!reorganizeIteratively(secondaryLog, m_allVersions, lowestLID,
+                            counter == m_iterationsPerLog)) {
                         // Reorganization failed -> switch log
                         counter = m_iterationsPerLog;
                     }
@@ -252,8 +386,7 @@ public final class ReorganizationThread extends Thread {
 
                     }
 
-                    if (counter++ == m_iterationsPerLog || !secondaryLog.needToBeReorganized() &&
-                            secondaryLog.getOccupiedSpace() < m_activateReorganizationThreshold) {
+                    if (counter++ == m_iterationsPerLog || !mustBeReorganized(secondaryLog)) {
                         // This was the last iteration for current secondary log or
                         // further reorganization not necessary -> clean-up
                         counter = leaveSecondaryLog(secondaryLog, counter);
@@ -280,9 +413,7 @@ public final class ReorganizationThread extends Thread {
             SOP_REORG_GET_VERSIONS.start();
 
             try {
-                ret = m_versionHandler
-                        .getCurrentVersions(p_secondaryLog.getOwner(), p_secondaryLog.getRangeID(), m_allVersions,
-                                true);
+                ret = readCurrentVersions(p_secondaryLog);
             } catch (IOException e) {
                 LOGGER.error(e);
             }
@@ -302,6 +433,49 @@ public final class ReorganizationThread extends Thread {
         return ret;
     }
 
+    /**
+     * Reads all current versions of a secondary log (from the version log and buffer or by updating the cached
+     * snapshot) and makes them available in m_allVersions.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @return the lowest CID at the time the versions are read-in or -1
+     * @throws IOException
+     *         if the versions could not be read
+     */
+    private long readCurrentVersions(final SecondaryLog p_secondaryLog) throws IOException {
+        long ret;
+
+        if (m_versionSnapshots != null) {
+            ret = m_versionHandler
+                    .getCurrentVersions(p_secondaryLog.getOwner(), p_secondaryLog.getRangeID(), m_versionSnapshots);
+            if (ret != -1) {
+                m_allVersions = m_versionSnapshots.getCurrentVersions();
+                if (m_versionSnapshots.takeEonBegun()) {
+                    // The version buffer was flushed by this thread
+                    p_secondaryLog.beginEon();
+                }
+            }
+        } else {
+            ret = m_versionHandler
+                    .getCurrentVersions(p_secondaryLog.getOwner(), p_secondaryLog.getRangeID(), m_allVersions, true);
+        }
+
+        // The epoch was incremented (the priority depends on the epoch)
+        updatePriority(p_secondaryLog);
+
+        return ret;
+    }
+
+    /**
+     * Releases the versions of the secondary log left. Cached snapshots are kept to be updated the next time.
+     */
+    private void releaseVersions() {
+        if (m_versionSnapshots == null) {
+            m_allVersions.clear();
+        }
+    }
+
     /**
      * Process urgent request by reorganizing the entire secondary log.
      *
@@ -323,8 +497,7 @@ public final class ReorganizationThread extends Thread {
 
             long lowestLID;
             try {
-                lowestLID = m_versionHandler
-                        .getCurrentVersions(secondaryLog.getOwner(), secondaryLog.getRangeID(), m_allVersions, true);
+                lowestLID = readCurrentVersions(secondaryLog);
             } catch (IOException e) {
                 LOGGER.error(e);
                 SOP_REORG_GET_VERSIONS.stop();
@@ -346,10 +519,13 @@ public final class ReorganizationThread extends Thread {
                    to avoid this problem but this might impair reorganization performance.
                  */
 
+                // A writer is waiting for free space -> do not throttle
+                m_urgent = true;
                 reorganizeAll(secondaryLog, m_reorgSegmentData, m_allVersions, lowestLID);
+                m_urgent = false;
                 secondaryLog.resetReorgSegment();
                 leaveSecLog(secondaryLog);
-                m_allVersions.clear();
+                releaseVersions();
 
                 if (!interrupted()) {
                     m_secLog = null;
@@ -358,7 +534,7 @@ public final class ReorganizationThread extends Thread {
             } else {
                 secondaryLog.resetReorgSegment();
                 leaveSecLog(secondaryLog);
-                m_allVersions.clear();
+                releaseVersions();
             }
             m_reorganizationLock.unlock();
         }
@@ -401,9 +577,7 @@ public final class ReorganizationThread extends Thread {
                 SOP_REORG_GET_VERSIONS.start();
 
                 try {
-                    lowestLID = m_versionHandler
-                            .getCurrentVersions(secondaryLog.getOwner(), secondaryLog.getRangeID(), m_allVersions,
-                                    true);
+                    lowestLID = readCurrentVersions(secondaryLog);
                 } catch (IOException e) {
                     LOGGER.error(e);
                     SOP_REORG_GET_VERSIONS.stop();
@@ -428,19 +602,20 @@ public final class ReorganizationThread extends Thread {
                      */
 
                     int counter = 0;
-                    while (secondaryLog.getOccupiedSpace() > m_activateReorganizationThreshold ||
-                            secondaryLog.needToBeReorganized()) {
+                    while (mustBeReorganized(secondaryLog)) {
                         // Reorganize if any updates arrived, only
-                        reorganizeIteratively(secondaryLog, m_reorgSegmentData, m_allVersions, lowestLID);
+                        reorganizeIteratively(secondaryLog, m_allVersions, lowestLID,
+                                counter + 1 == m_iterationsPerLog);
                         if (++counter == m_iterationsPerLog) {
                             break;
                         }
                     }
                 }
             }
+            discardPrefetch();
             secondaryLog.resetReorgSegment();
             leaveSecLog(secondaryLog);
-            m_allVersions.clear();
+            releaseVersions();
 
             LOGGER.trace("Time to reorganize complete log: %d", System.currentTimeMillis() - start);
 
@@ -458,9 +633,10 @@ public final class ReorganizationThread extends Thread {
      */
     private int leaveSecondaryLog(final SecondaryLog p_secondaryLog, final int p_counter) {
         if (p_counter > 0) {
+            discardPrefetch();
             p_secondaryLog.resetReorgSegment();
             leaveSecLog(p_secondaryLog);
-            m_allVersions.clear();
+            releaseVersions();
         }
         return 0;
     }
@@ -475,7 +651,29 @@ public final class ReorganizationThread extends Thread {
     }
 
     /**
-     * Sets the secondary log to reorganize next.
+     * Inserts a secondary log into the reorganization queue or updates its priority.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     */
+    public void updatePriority(final SecondaryLog p_secondaryLog) {
+        m_queue.update(p_secondaryLog, p_secondaryLog.getReorganizationPriority());
+    }
+
+    /**
+     * Removes a secondary log from the reorganization queue for good (the backup range is removed).
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     */
+    public void removeFromQueue(final SecondaryLog p_secondaryLog) {
+        // Flag first: a concurrent priority update must not insert the log again
+        p_secondaryLog.markRemoved();
+        m_queue.remove(p_secondaryLog);
+    }
+
+    /**
+     * Sets the secondary log to reorganize next. Can be called by several writer threads concurrently.
      *
      * @param p_secLog
      *         the Secondary Log
@@ -485,23 +683,30 @@ public final class ReorganizationThread extends Thread {
     public void setLogToReorgImmediately(final SecondaryLog p_secLog, final boolean p_await) {
 
         if (p_await) {
-            while (!m_reorganizationLock.tryLock()) {
-                // Grant access for reorganization thread to avoid deadlock
+            // There is one urgent request at a time: awaiting the condition releases the reorganization lock and
+            // another writer thread must not replace the secondary log before it was reorganized
+            m_urgentRequestLock.lock();
+            try {
+                while (!m_reorganizationLock.tryLock()) {
+                    // Grant access for reorganization thread to avoid deadlock
+                    grantAccessToCurrentLog();
+                }
+                m_secLog = p_secLog;
                 grantAccessToCurrentLog();
-            }
-            m_secLog = p_secLog;
-            grantAccessToCurrentLog();
-            while (p_secLog.equals(m_secLog)) {
-                try {
-                    if (!m_reorganizationFinishedCondition.await(10, TimeUnit.MICROSECONDS)) {
-                        // Grant access for reorganization thread to avoid deadlock
-                        grantAccessToCurrentLog();
+                while (p_secLog.equals(m_secLog)) {
+                    try {
+                        if (!m_reorganizationFinishedCondition.await(10, TimeUnit.MICROSECONDS)) {
+                            // Grant access for reorganization thread to avoid deadlock
+                            grantAccessToCurrentLog();
+                        }
+                    } catch (final InterruptedException ignore) {
                     }
-                } catch (final InterruptedException ignore) {
                 }
-            }
 
-            m_reorganizationLock.unlock();
+                m_reorganizationLock.unlock();
+            } finally {
+                m_urgentRequestLock.unlock();
+            }
         } else {
             m_requestLock.lock();
             m_reorganizationRequests.add(p_secLog);
@@ -520,6 +725,8 @@ public final class ReorganizationThread extends Thread {
             p_secLog.setAccessFlag(true);
 
             m_reorgThreadWaits = true;
+            // The process thread grants access -> wake it up if it is parked
+            m_scheduler.wakeUpProcessThread();
             while (!m_accessGrantedForReorgThread && !isInterrupted()) {
                 Thread.yield();
             }
@@ -535,53 +742,25 @@ public final class ReorganizationThread extends Thread {
      */
     private SecondaryLog chooseLog() {
         SecondaryLog ret = null;
-        final int numberOfLogs = m_backupRangeCatalog.getNumberOfLogs();
-        long max = 0;
-        long current;
-        SecondaryLogBuffer[] secLogBuffers;
         SecondaryLogBuffer secLogBuffer;
 
-        if (numberOfLogs > 0) {
+        if (m_backupRangeCatalog.getNumberOfLogs() > 0) {
             /*
-             * Choose the largest log (or a log that has un-reorganized segments within an advanced eon)
-             * To avoid starvation choose every third log randomly
+             * Choose the log with the highest priority (a log that has un-reorganized segments within an advanced eon
+             * or the largest log with reclaimable space). To avoid starvation choose every third log randomly
              */
             if (m_counter++ < 2) {
-                outerloop:
-                for (int i = 0; i < Short.MAX_VALUE * 2 + 1; i++) {
-                    secLogBuffers = m_backupRangeCatalog.getAllSecondaryLogBuffers((short) i);
-                    if (secLogBuffers != null) {
-                        for (int j = 0; j < secLogBuffers.length; j++) {
-                            secLogBuffer = secLogBuffers[j];
-                            if (secLogBuffer != null) {
-                                SecondaryLog secLog = secLogBuffer.getLog();
-                                if (secLog.needToBeReorganized()) {
-                                    ret = secLog;
-                                    break outerloop;
-                                }
-                                current = secLog.getOccupiedSpace();
-                                if (current > max) {
-                                    max = current;
-                                    ret = secLog;
-                                }
-                            }
-                        }
-                    }
-                }
+                ret = m_queue.peek();
             } else {
                 m_counter = 0;
             }
-            if (m_counter == 0 && numberOfLogs > 1) {
+            if (m_counter == 0 && m_backupRangeCatalog.getNumberOfLogs() > 1) {
                 // Choose one secondary log randomly
-                secLogBuffers = m_backupRangeCatalog.getSecondaryLogBuffersOfRandomNode();
-                if (secLogBuffers != null && secLogBuffers.length > 0) {
-                    int tries = 0;
-                    while (ret == null && ++tries < 100) {
-                        // Skip last log to speed up loading phase
-                        SecondaryLogBuffer tmp = secLogBuffers[RandomUtils.getRandomValue(secLogBuffers.length - 2)];
-                        if (tmp != null) {
-                            ret = tmp.getLog();
-                        }
+                int tries = 0;
+                while (ret == null && ++tries < 100) {
+                    secLogBuffer = m_backupRangeCatalog.getRandomSecondaryLogBuffer();
+                    if (secLogBuffer != null && isResponsible(secLogBuffer.getLog())) {
+                        ret = secLogBuffer.getLog();
                     }
                 }
             }
@@ -590,6 +769,44 @@ public final class ReorganizationThread extends Thread {
         return ret;
     }
 
+    /**
+     * Checks if a secondary log must be reorganized: it is filled above the activation threshold and contains
+     * reclaimable space or it contains segments not reorganized within an advanced eon.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @return whether the secondary log must be reorganized or not
+     */
+    private boolean mustBeReorganized(final SecondaryLog p_secondaryLog) {
+        return p_secondaryLog.getOccupiedSpace() > m_activateReorganizationThreshold &&
+                p_secondaryLog.hasReclaimableSpace() || p_secondaryLog.needToBeReorganized();
+    }
+
+    /**
+     * Waits until the rate limiter grants reading or writing given number of bytes (not for urgent requests).
+     *
+     * @param p_secondaryLog
+     *         the secondary log being reorganized
+     * @param p_bytes
+     *         the number of bytes to read or write
+     */
+    private void throttle(final SecondaryLog p_secondaryLog, final int p_bytes) {
+        if (!m_urgent) {
+            m_rateLimiter.acquire(p_bytes, (double) p_secondaryLog.getOccupiedSpace() / m_secondaryLogSize);
+        }
+    }
+
+    /**
+     * Checks if this reorganization thread is responsible for given secondary log.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @return true if the secondary log is reorganized by this thread
+     */
+    private boolean isResponsible(final SecondaryLog p_secondaryLog) {
+        return m_numberOfWorkers == 1 || getWorkerIndex(p_secondaryLog, m_numberOfWorkers) == m_workerIndex;
+    }
+
     /**
      * Determines the next segment to reorganize.
      *
@@ -598,16 +815,14 @@ public final class ReorganizationThread extends Thread {
     private int chooseSegment(final SecondaryLog p_secondaryLog) {
         int ret = -1;
         int tries;
-        double costBenefitRatio;
-        double max = -1;
-        SegmentHeader currentSegment;
         SegmentHeader[] segmentHeaders = p_secondaryLog.getSegmentHeaders();
         BitSet reorgVector = p_secondaryLog.getReorgVector();
 
         /*
-         * Choose a segment based on the cost-benefit formula (the utilization does not contain an invalid counter).
+         * Choose a segment with the configured segment selection policy.
          *
          * Every tenth segment is chosen randomly out of all segments that have not been reorganized in this eon.
+         * Cold segments are reorganized this way only as the policies do not choose them.
          * Avoid segments that already have been reorganized within this epoch (-> m_reorgVector).
          */
         if (m_segmentReorgCounter++ == 10) {
@@ -623,18 +838,7 @@ public final class ReorganizationThread extends Thread {
         }
 
         if (ret == -1 || segmentHeaders[ret] == null) {
-            // Original cost-benefit ratio: ((1-u)*age)/(1+u)
-            for (int i = 0; i < segmentHeaders.length; i++) {
-                currentSegment = segmentHeaders[i];
-                if (currentSegment != null && !reorgVector.get(i)) {
-                    costBenefitRatio = currentSegment.getUtilization(m_logSegmentSize) *
-                            currentSegment.getAge(p_secondaryLog.getCurrentTimeInSec());
-                    if (costBenefitRatio > max) {
-                        max = costBenefitRatio;
-                        ret = i;
-                    }
-                }
-            }
+            ret = m_selectionPolicy.chooseSegment(p_secondaryLog, segmentHeaders, reorgVector);
         }
 
         if (ret != -1) {
@@ -662,7 +866,7 @@ public final class ReorganizationThread extends Thread {
         SegmentHeader[] segmentHeaders = p_secondarayLog.getSegmentHeaders();
         for (int i = 0; i < segmentHeaders.length; i++) {
             if (segmentHeaders[i] != null && !Thread.currentThread().isInterrupted()) {
-                if (!reorganizeSegment(p_secondarayLog, i, p_bufferWrapper, p_allVersions, p_lowestLID)) {
+                if (!reorganizeSegment(p_secondarayLog, i, p_bufferWrapper, p_allVersions, p_lowestLID, -1)) {
                     // Reorganization failed because of an I/O error -> abort
                     break;
                 }
@@ -673,36 +877,202 @@ public final class ReorganizationThread extends Thread {
     }
 
     /**
-     * Reorganizes one segment by choosing the segment with best cost-benefit ratio.
+     * Reorganizes one segment chosen by the segment selection policy. If prefetching is enabled, the segment chosen
+     * next is read while the current segment is reorganized.
      *
      * @param p_secondarayLog
      *         the secondary log to reorganize
-     * @param p_bufferWrapper
-     *         aligned buffer to be filled with segment data (avoiding lots of allocations)
      * @param p_allVersions
      *         an array and a hash table (for migrations) with all versions for this secondary log
      * @param p_lowestLID
      *         the lowest LID at the time the versions are read-in
+     * @param p_lastIteration
+     *         whether this is the last iteration for the secondary log (no segment is prefetched)
      * @return whether the reorganization was successful or not
      */
     private boolean reorganizeIteratively(final SecondaryLog p_secondarayLog,
-            final DirectByteBufferWrapper p_bufferWrapper, final TemporaryVersionStorage p_allVersions,
-            final long p_lowestLID) {
+            final TemporaryVersionStorage p_allVersions, final long p_lowestLID, final boolean p_lastIteration) {
+        int segment;
+        int prefetchedBytes = -1;
+        boolean prefetched = m_prefetchSegment != -1;
+        DirectByteBufferWrapper bufferWrapper;
+
+        if (prefetched) {
+            // Chosen and checked in the last iteration
+            segment = m_prefetchSegment;
+            m_prefetchSegment = -1;
+
+            SOP_REORG_READ_SEGMENT.start();
+            prefetchedBytes = m_prefetcher.await();
+            SOP_REORG_READ_SEGMENT.stop();
+
+            bufferWrapper = m_prefetchData;
+            m_prefetchData = m_reorgSegmentData;
+            m_reorgSegmentData = bufferWrapper;
+        } else {
+            segment = chooseSegment(p_secondarayLog);
+            if (segment == -1) {
+                return false;
+            }
+            if (!isWorthReorganizing(p_secondarayLog.getSegmentHeader(segment))) {
+                return true;
+            }
+        }
 
-        int segment = chooseSegment(p_secondarayLog);
+        if (m_prefetcher != null && !p_lastIteration) {
+            prefetchNextSegment(p_secondarayLog, segment);
+        }
+
+        try {
+            if (m_compactionSegments > 1) {
+                int[] sources = chooseCompactionSegments(p_secondarayLog, segment);
+                if (sources.length > 1) {
+                    return compactSegments(p_secondarayLog, sources, m_reorgSegmentData, p_allVersions,
+                            p_lowestLID);
+                }
+            }
 
-        if (segment != -1) {
-            return reorganizeSegment(p_secondarayLog, segment, p_bufferWrapper, p_allVersions, p_lowestLID);
+            return reorganizeSegment(p_secondarayLog, segment, m_reorgSegmentData, p_allVersions, p_lowestLID,
+                    prefetchedBytes);
+        } finally {
+            if (prefetched) {
+                p_secondarayLog.releaseSegment(segment);
+            }
         }
+    }
 
-        return false;
+    /**
+     * Checks if reorganizing a segment can free space.
+     *
+     * @param p_header
+     *         the segment header
+     * @return false if the segment has no invalidated log entries or is a cold segment with mostly live log entries
+     */
+    private boolean isWorthReorganizing(final SegmentHeader p_header) {
+        if (p_header != null && p_header.isInvalidBytesKnown() && p_header.getInvalidBytes() == 0 &&
+                !p_header.wasNotReorganized()) {
+            // No invalidated log entries and no eon change pending -> nothing to gain
+            return false;
+        }
+        if (p_header != null && p_header.isCold() && !m_urgent && !p_header.wasNotReorganized() &&
+                p_header.getLiveRatio() > COLD_SEGMENT_LIVE_RATIO) {
+            // Cold segments are reorganized rarely: most log entries are expected to stay valid
+            return false;
+        }
+
+        return true;
     }
 
     /**
-     * Reorganizes one given segment of a normal secondary log.
+     * Chooses the next segment to reorganize and starts reading it. The segment is reserved until it is reorganized
+     * (or the prefetched segment is discarded).
      *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @param p_currentSegment
+     *         the segment reorganized now
+     */
+    private void prefetchNextSegment(final SecondaryLog p_secondaryLog, final int p_currentSegment) {
+        int next = chooseSegment(p_secondaryLog);
+
+        if (next != -1 && next != p_currentSegment) {
+            SegmentHeader header = p_secondaryLog.getSegmentHeader(next);
+            if (header != null && isWorthReorganizing(header) && p_secondaryLog.reserveSegments(new int[] {next})) {
+                throttle(p_secondaryLog, header.getUsedBytes());
+                m_prefetcher.prefetch(p_secondaryLog, next, m_prefetchData);
+                m_prefetchSegment = next;
+            }
+        }
+    }
+
+    /**
+     * Waits for a pending prefetch and drops the prefetched segment. Must be called before leaving the secondary log
+     * (the reservation is released by resetReorgSegment()).
+     */
+    private void discardPrefetch() {
+        if (m_prefetchSegment != -1) {
+            m_prefetcher.await();
+            m_prefetchSegment = -1;
+        }
+    }
+
+    /**
+     * Chooses further segments to compact together with the given segment. Only segments with a known number of
+     * live bytes not exceeding half of the segment size are compacted (no cold segments); the live bytes of all
+     * chosen segments must fit in one segment. Segments with the lowest number of live bytes are chosen first.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
      * @param p_segmentIndex
-     *         the segments index
+     *         the segment chosen for reorganization
+     * @return the segments to compact (the given segment, only, if compaction is not possible)
+     */
+    private int[] chooseCompactionSegments(final SecondaryLog p_secondaryLog, final int p_segmentIndex) {
+        int count = 1;
+        int next;
+        int liveBytes;
+        int min;
+        long allLiveBytes;
+        int[] segments = new int[m_compactionSegments];
+        SegmentHeader currentSegment;
+        SegmentHeader[] segmentHeaders = p_secondaryLog.getSegmentHeaders();
+        BitSet reorgVector = p_secondaryLog.getReorgVector();
+
+        segments[0] = p_segmentIndex;
+        currentSegment = segmentHeaders[p_segmentIndex];
+        if (currentSegment == null || !isCompactionCandidate(currentSegment)) {
+            return Arrays.copyOf(segments, 1);
+        }
+        allLiveBytes = currentSegment.getLiveBytes();
+
+        while (count < m_compactionSegments) {
+            next = -1;
+            min = Integer.MAX_VALUE;
+            for (int i = 0; i < segmentHeaders.length; i++) {
+                currentSegment = segmentHeaders[i];
+                if (currentSegment != null && !reorgVector.get(i) && isCompactionCandidate(currentSegment)) {
+                    liveBytes = currentSegment.getLiveBytes();
+                    if (liveBytes < min && allLiveBytes + liveBytes <= m_logSegmentSize) {
+                        min = liveBytes;
+                        next = i;
+                    }
+                }
+            }
+
+            if (next == -1) {
+                break;
+            }
+
+            // Mark segment as being reorganized in this epoch
+            reorgVector.set(next);
+            segments[count++] = next;
+            allLiveBytes += min;
+        }
+
+        return Arrays.copyOf(segments, count);
+    }
+
+    /**
+     * Checks if a segment can be compacted with other segments.
+     *
+     * @param p_segmentHeader
+     *         the segment header
+     * @return true if the segment can be compacted
+     */
+    private boolean isCompactionCandidate(final SegmentHeader p_segmentHeader) {
+        return p_segmentHeader.isInvalidBytesKnown() && !p_segmentHeader.isCold() &&
+                p_segmentHeader.getLiveBytes() <= m_logSegmentSize / 2;
+    }
+
+    /**
+     * Compacts several segments (copy-forward): the live log entries of all segments are written densely into an
+     * empty segment and the compacted segments are freed afterwards. Segments whose live log entries do not fit
+     * are reorganized in place. If there is no empty segment, the first segment is reorganized in place, only.
+     *
+     * @param p_secondaryLog
+     *         the secondary log to reorganize
+     * @param p_segments
+     *         the segments to compact
      * @param p_bufferWrapper
      *         aligned buffer to be filled with segment data (avoiding lots of allocations)
      * @param p_allVersions
@@ -711,22 +1081,521 @@ public final class ReorganizationThread extends Thread {
      *         the lowest CID at the time the versions were read-in
      * @return whether the reorganization was successful or not
      */
-    private boolean reorganizeSegment(final SecondaryLog p_secondaryLog, final int p_segmentIndex,
+    private boolean compactSegments(final SecondaryLog p_secondaryLog, final int[] p_segments,
             final DirectByteBufferWrapper p_bufferWrapper, final TemporaryVersionStorage p_allVersions,
             final long p_lowestCID) {
         boolean ret = true;
-        int length;
         int readBytes = 0;
         int writtenBytes = 0;
         int segmentLength;
-        long chunkID;
-        long ageAllBytes = 0;
+        int offset;
+        int compacted = 0;
+        int targetSegment;
+        long ageAllBytes;
+        boolean mapped;
         ByteBuffer segmentData;
+        ByteBuffer writeCopy;
+        DirectByteBufferWrapper segmentWrapper;
+
+        VersionBuffer versionBuffer =
+                m_versionHandler.getVersionBuffer(p_secondaryLog.getOwner(), p_secondaryLog.getRangeID());
+
+        if (!p_secondaryLog.reserveSegments(p_segments)) {
+            // One of the segments is filled by the writer thread currently
+            return reorganizeSegment(p_secondaryLog, p_segments[0], p_bufferWrapper, p_allVersions, p_lowestCID, -1);
+        }
+
+        targetSegment = p_secondaryLog.reserveFreeSegment();
+        if (targetSegment == -1) {
+            // Release the own reservations, only (the next segment might be reserved for prefetching)
+            p_secondaryLog.releaseSegments(p_segments);
+            return reorganizeSegment(p_secondaryLog, p_segments[0], p_bufferWrapper, p_allVersions, p_lowestCID, -1);
+        }
+
+        writeCopy = m_compactionData.getBuffer().duplicate();
+        writeCopy.order(ByteOrder.LITTLE_ENDIAN);
+        m_ageAllBytes = 0;
+        try {
+            while (compacted < p_segments.length && !Thread.currentThread().isInterrupted()) {
+
+                SOP_REORG_READ_SEGMENT.start();
+
+                throttle(p_secondaryLog, p_secondaryLog.getSegmentHeader(p_segments[compacted]).getUsedBytes());
+                m_ioBudget.acquireUninterruptibly();
+                try {
+                    segmentWrapper = p_secondaryLog.mapSegment(p_segments[compacted]);
+                    mapped = segmentWrapper != null;
+                    if (mapped) {
+                        segmentLength = segmentWrapper.getBuffer().capacity();
+                        segmentData = segmentWrapper.getBuffer();
+                    } else {
+                        segmentLength = p_secondaryLog.readSegment(p_bufferWrapper, p_segments[compacted]);
+                        segmentData = p_bufferWrapper.getBuffer();
+                    }
+                } finally {
+                    m_ioBudget.release();
+                }
+
+                SOP_REORG_READ_SEGMENT.stop();
+
+                SOP_REORG_PROCESS_SEGMENT.start();
+
+                ageAllBytes = m_ageAllBytes;
+                offset = copyLiveEntries(p_secondaryLog, segmentData, segmentLength, writeCopy, writtenBytes, false,
+                        p_allVersions, p_lowestCID, versionBuffer, null, 0);
+
+                SOP_REORG_PROCESS_SEGMENT.stop();
+
+                if (offset == -1) {
+                    // More live log entries than estimated -> this segment is not compacted
+                    m_ageAllBytes = ageAllBytes;
+                    break;
+                }
+                writtenBytes = offset;
+                readBytes += segmentLength;
+                compacted++;
+            }
+
+            if (compacted > 0 && !Thread.currentThread().isInterrupted()) {
+
+                SOP_REORG_WRITE_SEGMENT.start();
+
+                throttle(p_secondaryLog, writtenBytes);
+                m_ioBudget.acquireUninterruptibly();
+                try {
+                    p_secondaryLog.compactSegments(m_compactionData, writtenBytes, targetSegment,
+                            Arrays.copyOf(p_segments, compacted));
+                    if (m_useTimestamps && writtenBytes > 0) {
+                        // Calculate current age of segment
+                        p_secondaryLog.getSegmentHeader(targetSegment).setAge((int) (m_ageAllBytes / writtenBytes));
+                    }
+                } finally {
+                    m_ioBudget.release();
+                }
+
+                SOP_REORG_WRITE_SEGMENT.stop();
+
+                SOP_REORG_BYTES_FREED.add(readBytes - writtenBytes);
+                m_selectionPolicy.recordReorganization(readBytes, writtenBytes);
+
+                LOGGER.info("Freed %d bytes during compaction of %d segments into segment %d in range 0x%X,%d\t " +
+                                "total log size: %d", readBytes - writtenBytes, compacted, targetSegment,
+                        p_secondaryLog.getOwner(), p_secondaryLog.getRangeID(),
+                        p_secondaryLog.getOccupiedSpace() / 1024 / 1024);
+            }
+        } catch (final IOException e) {
+
+            LOGGER.warn("Compaction failed.", e);
+
+            ret = false;
+        } finally {
+            p_secondaryLog.releaseSegments(p_segments);
+            p_secondaryLog.releaseSegment(targetSegment);
+        }
+
+        // Reorganize all segments that could not be compacted in place
+        for (int i = compacted; i < p_segments.length && ret && !Thread.currentThread().isInterrupted(); i++) {
+            ret = reorganizeSegment(p_secondaryLog, p_segments[i], p_bufferWrapper, p_allVersions, p_lowestCID, -1);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Copies all live log entries (current version) of a segment to given buffer. The eon of copied log entries is
+     * updated if necessary. The age of all copied bytes is added to m_ageAllBytes. If a buffer for cold log entries
+     * is given, cold log entries are copied to this buffer as long as there is space left (the number of copied
+     * bytes is stored in m_coldBytes). The offset of the first byte in p_writeCopy which differs from the segment
+     * content at the same offset is stored in m_firstModifiedOffset (meaningful for p_writeOffset == 0, only).
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @param p_segmentData
+     *         the segment content
+     * @param p_segmentLength
+     *         the segment length
+     * @param p_writeCopy
+     *         the buffer to copy the live log entries to
+     * @param p_writeOffset
+     *         the offset within p_writeCopy to copy the first live log entry to
+     * @param p_inPlace
+     *         whether p_writeCopy is a view of p_segmentData and p_writeOffset is 0 (entries already in place are not
+     *         copied)
+     * @param p_allVersions
+     *         an array and a hash table (for migrations) with all versions for this secondary log
+     * @param p_lowestCID
+     *         the lowest CID at the time the versions were read-in
+     * @param p_versionBuffer
+     *         the version buffer of the secondary log
+     * @param p_coldCopy
+     *         the buffer to copy cold log entries to or null to keep cold log entries
+     * @param p_coldCapacity
+     *         the number of bytes that can be copied to p_coldCopy
+     * @return the offset within p_writeCopy behind the last copied log entry or -1 if the live log entries do not fit
+     */
+    private int copyLiveEntries(final SecondaryLog p_secondaryLog, final ByteBuffer p_segmentData,
+            final int p_segmentLength, final ByteBuffer p_writeCopy, final int p_writeOffset, final boolean p_inPlace,
+            final TemporaryVersionStorage p_allVersions, final long p_lowestCID, final VersionBuffer p_versionBuffer,
+            final ByteBuffer p_coldCopy, final int p_coldCapacity) {
+        int length;
+        int readBytes = 0;
+        int writtenBytes = p_writeOffset;
+        int destinationOffset;
+        long chunkID;
         Version currentVersion;
         Version entryVersion;
+        ByteBuffer destination;
         AbstractSecLogEntryHeader logEntryHeader;
+        short originalOwner = p_secondaryLog.getOriginalOwner();
+        short currentEpoch = (short) (p_versionBuffer.getEpoch() + (p_versionBuffer.getEon() << 15));
+
+        m_coldBytes = 0;
+        m_firstModifiedOffset = Integer.MAX_VALUE;
+
+        while (readBytes < p_segmentLength && !Thread.currentThread().isInterrupted()) {
+            short type = (short) (p_segmentData.get(readBytes) & 0xFF);
+            logEntryHeader = AbstractSecLogEntryHeader.getHeader(type);
+            length = logEntryHeader.getHeaderSize(type) +
+                    logEntryHeader.getLength(type, p_segmentData, readBytes);
+            chunkID = logEntryHeader.getCID(type, p_segmentData, readBytes);
+            if (!logEntryHeader.isMigrated()) {
+                chunkID = ((long) originalOwner << 48) + chunkID;
+            }
+            entryVersion = logEntryHeader.getVersion(type, p_segmentData, readBytes);
+            currentVersion = getCurrentVersion(logEntryHeader.isMigrated(), chunkID, entryVersion, p_allVersions,
+                    p_lowestCID, p_versionBuffer);
+
+            if (currentVersion == null || currentVersion.getVersion() == 0) {
+                LOGGER.error(
+                        "Version unknown for chunk 0x%X! Distance to lowest CID (0x%X): %d. Secondary" +
+                                " log: %s,%d; Current position in segment: %d", chunkID, p_lowestCID,
+                        chunkID - p_lowestCID, this, AbstractSecLogEntryHeader
+                                .getMaximumNumberOfVersions(m_secondaryLogSize / 2, 256, false),
+                        readBytes);
 
+            } else if (currentVersion.isEqual(entryVersion)) {
+
+                /* Possible data loss after cluster failure (e.g. power outage):
+                   We might remove log entries of a chunk here whose current entry has not been written
+                   yet because version information can be more current.
+                   This is not a problem if we assume battery backup is used which enables flushing all
+                   buffers during shut down.
+                   Otherwise, we could spare all log entries from current epoch to avoid this problem
+                   but this might impair reorganization performance.
+                 */
+
+                if (p_coldCopy != null && m_coldBytes + length <= p_coldCapacity &&
+                        isColdEntry(p_secondaryLog, logEntryHeader, type, p_segmentData, readBytes, entryVersion,
+                                currentEpoch)) {
+                    // Separate cold log entry from hot ones
+                    destination = p_coldCopy;
+                    destinationOffset = m_coldBytes;
+                    m_coldBytes += length;
+                } else {
+                    if (writtenBytes + length > p_writeCopy.capacity()) {
+                        // Live log entries do not fit (compaction of several segments)
+                        return -1;
+                    }
+
+                    destination = p_writeCopy;
+                    destinationOffset = writtenBytes;
+                    writtenBytes += length;
+
+                    if (m_useTimestamps) {
+                        int entryAge = p_secondaryLog.getCurrentTimeInSec() -
+                                logEntryHeader.getTimestamp(type, p_segmentData, readBytes);
+                        if (entryAge < m_coldDataThreshold) {
+                            // Do not consider cold data for calculation
+                            m_ageAllBytes += entryAge * length;
+                        }
+                    }
+                }
+
+                // Compare current version with element
+                if (destination != p_writeCopy || !p_inPlace || readBytes != destinationOffset) {
+                    p_segmentData.position(readBytes);
+                    int limit = p_segmentData.limit();
+                    p_segmentData.limit(readBytes + length);
+
+                    destination.position(destinationOffset);
+                    destination.put(p_segmentData);
+
+                    p_segmentData.limit(limit);
+                }
+
+                if (destination == p_writeCopy && readBytes != destinationOffset &&
+                        m_firstModifiedOffset == Integer.MAX_VALUE) {
+                    // First log entry which was moved (a log entry in front of it was removed)
+                    m_firstModifiedOffset = destinationOffset;
+                }
+
+                if (currentVersion.getEon() != p_versionBuffer.getEon()) {
+                    // Update eon in both versions
+                    logEntryHeader.flipEon(destination, destinationOffset);
+                    if (destination == p_writeCopy) {
+                        m_firstModifiedOffset = Math.min(m_firstModifiedOffset, destinationOffset);
+                    }
+
+                    // Add to version buffer; all entries will get current eon during flushing
+                    p_versionBuffer.tryPut(chunkID, currentVersion.getVersion());
+                }
+            } else {
+                // Version, epoch and/or eon is different -> remove entry
+            }
+            readBytes += length;
+        }
+        m_firstModifiedOffset = Math.min(m_firstModifiedOffset, writtenBytes);
+
+        return writtenBytes;
+    }
+
+    /**
+     * Returns the current version of a chunk.
+     *
+     * @param p_migrated
+     *         whether the log entry belongs to a migrated chunk
+     * @param p_chunkID
+     *         the chunk ID
+     * @param p_entryVersion
+     *         the version of the log entry
+     * @param p_allVersions
+     *         an array and a hash table (for migrations) with all versions for this secondary log
+     * @param p_lowestCID
+     *         the lowest CID at the time the versions were read-in
+     * @param p_versionBuffer
+     *         the version buffer of the secondary log
+     * @return the current version or null if the version is unknown
+     */
+    private static Version getCurrentVersion(final boolean p_migrated, final long p_chunkID,
+            final Version p_entryVersion, final TemporaryVersionStorage p_allVersions, final long p_lowestCID,
+            final VersionBuffer p_versionBuffer) {
+        Version currentVersion;
+
+        if (p_migrated) {
+            currentVersion = p_allVersions.get(p_chunkID);
+        } else {
+            currentVersion = p_allVersions.get(p_chunkID, p_lowestCID);
+        }
+        if (currentVersion == null || p_versionBuffer.getEpoch() == p_entryVersion.getEpoch()) {
+            // There is no entry in hash table or element is more current -> get latest
+            // version from cache (Epoch can only be 1 greater because there is no flushing during
+            // reorganization)
+            currentVersion = p_versionBuffer.getVersion(p_chunkID);
+        }
+
+        return currentVersion;
+    }
+
+    /**
+     * Relocates the live log entries of a mostly live segment to an empty segment: runs of contiguous live log
+     * entries are copied within the log file by the kernel instead of being staged in user space and written back.
+     * Not applicable if a live log entry must be modified (eon flip), a version is unknown, less than
+     * LIVE_RUN_MIN_LIVE_RATIO of the segment is live, the runs are shorter than LIVE_RUN_MIN_LENGTH on average or
+     * there is no empty segment.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @param p_segmentIndex
+     *         the reorganized segment
+     * @param p_segmentData
+     *         the segment content
+     * @param p_segmentLength
+     *         the segment length
+     * @param p_allVersions
+     *         an array and a hash table (for migrations) with all versions for this secondary log
+     * @param p_lowestCID
+     *         the lowest CID at the time the versions were read-in
+     * @param p_versionBuffer
+     *         the version buffer of the secondary log
+     * @return the number of relocated bytes or -1 if the segment must be reorganized by copying
+     * @throws IOException
+     *         if the secondary log could not be written
+     */
+    private int relocateLiveRuns(final SecondaryLog p_secondaryLog, final int p_segmentIndex,
+            final ByteBuffer p_segmentData, final int p_segmentLength, final TemporaryVersionStorage p_allVersions,
+            final long p_lowestCID, final VersionBuffer p_versionBuffer) throws IOException {
+        int length;
+        int readBytes = 0;
+        int liveBytes = 0;
+        int runs = 0;
+        int runEnd = -1;
+        int targetSegment;
+        boolean relocated;
+        long chunkID;
+        long ageAllBytes = 0;
+        Version currentVersion;
+        Version entryVersion;
+        AbstractSecLogEntryHeader logEntryHeader;
+        SegmentHeader segmentHeader;
         short originalOwner = p_secondaryLog.getOriginalOwner();
+
+        // Do not scan the segment if the segment header already tells that too little of it is live
+        segmentHeader = p_secondaryLog.getSegmentHeader(p_segmentIndex);
+        if (segmentHeader != null && segmentHeader.isInvalidBytesKnown() &&
+                segmentHeader.getLiveRatio() < LIVE_RUN_MIN_LIVE_RATIO) {
+            return -1;
+        }
+
+        while (readBytes < p_segmentLength) {
+            if (Thread.currentThread().isInterrupted()) {
+                return -1;
+            }
+
+            short type = (short) (p_segmentData.get(readBytes) & 0xFF);
+            logEntryHeader = AbstractSecLogEntryHeader.getHeader(type);
+            length = logEntryHeader.getHeaderSize(type) + logEntryHeader.getLength(type, p_segmentData, readBytes);
+            chunkID = logEntryHeader.getCID(type, p_segmentData, readBytes);
+            if (!logEntryHeader.isMigrated()) {
+                chunkID = ((long) originalOwner << 48) + chunkID;
+            }
+            entryVersion = logEntryHeader.getVersion(type, p_segmentData, readBytes);
+            currentVersion = getCurrentVersion(logEntryHeader.isMigrated(), chunkID, entryVersion, p_allVersions,
+                    p_lowestCID, p_versionBuffer);
+
+            if (currentVersion == null || currentVersion.getVersion() == 0 ||
+                    currentVersion.isEqual(entryVersion) && currentVersion.getEon() != p_versionBuffer.getEon()) {
+                // Unknown version (reported by copyLiveEntries()) or the log entry must be modified
+                return -1;
+            }
+
+            if (currentVersion.isEqual(entryVersion)) {
+                if (readBytes == runEnd) {
+                    m_runLengths[runs - 1] += length;
+                } else if (runs < m_runOffsets.length) {
+                    m_runOffsets[runs] = readBytes;
+                    m_runLengths[runs] = length;
+                    runs++;
+                } else {
+                    // Too fragmented
+                    return -1;
+                }
+                runEnd = readBytes + length;
+                liveBytes += length;
+
+                if (m_useTimestamps) {
+                    int entryAge = p_secondaryLog.getCurrentTimeInSec() -
+                            logEntryHeader.getTimestamp(type, p_segmentData, readBytes);
+                    if (entryAge < m_coldDataThreshold) {
+                        // Do not consider cold data for calculation
+                        ageAllBytes += entryAge * length;
+                    }
+                }
+            }
+            readBytes += length;
+        }
+
+        if (liveBytes == p_segmentLength) {
+            // Nothing to free
+            return liveBytes;
+        }
+        if (liveBytes < p_segmentLength * LIVE_RUN_MIN_LIVE_RATIO || liveBytes / runs < LIVE_RUN_MIN_LENGTH) {
+            return -1;
+        }
+
+        targetSegment = p_secondaryLog.reserveFreeSegment();
+        if (targetSegment == -1) {
+            return -1;
+        }
+
+        try {
+            SOP_REORG_WRITE_SEGMENT.start();
+
+            throttle(p_secondaryLog, liveBytes);
+            m_ioBudget.acquireUninterruptibly();
+            try {
+                relocated = p_secondaryLog.relocateLiveRuns(p_segmentData, m_runOffsets, m_runLengths, runs,
+                        targetSegment, p_segmentIndex);
+                if (relocated && m_useTimestamps) {
+                    // Calculate current age of segment
+                    p_secondaryLog.getSegmentHeader(targetSegment).setAge((int) (ageAllBytes / liveBytes));
+                }
+            } finally {
+                m_ioBudget.release();
+            }
+
+            SOP_REORG_WRITE_SEGMENT.stop();
+        } finally {
+            p_secondaryLog.releaseSegment(targetSegment);
+        }
+
+        if (!relocated) {
+            LOGGER.info("Disk access mode does not support in-kernel copies. Live log entries are staged, only");
+            m_liveRunTransfer = false;
+
+            return -1;
+        }
+
+        return liveBytes;
+    }
+
+    /**
+     * Checks if a live log entry is cold: its timestamp is older than the cold data threshold or, if timestamps are
+     * disabled, it was not updated for the configured number of epochs.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @param p_logEntryHeader
+     *         the log entry header
+     * @param p_type
+     *         the log entry type
+     * @param p_segmentData
+     *         the segment content
+     * @param p_offset
+     *         the offset of the log entry within the segment
+     * @param p_entryVersion
+     *         the version of the log entry
+     * @param p_currentEpoch
+     *         the current epoch including the eon bit
+     * @return true if the log entry is cold
+     */
+    private boolean isColdEntry(final SecondaryLog p_secondaryLog, final AbstractSecLogEntryHeader p_logEntryHeader,
+            final short p_type, final ByteBuffer p_segmentData, final int p_offset, final Version p_entryVersion,
+            final short p_currentEpoch) {
+        if (m_useTimestamps) {
+            return p_secondaryLog.getCurrentTimeInSec() - p_logEntryHeader.getTimestamp(p_type, p_segmentData,
+                    p_offset) >= m_coldDataThreshold;
+        }
+
+        // Epoch and eon form a 16-bit counter incremented with every version buffer flush
+        return (p_currentEpoch - p_entryVersion.getEpoch() & 0xFFFF) >= m_coldEpochDistance;
+    }
+
+    /**
+     * Reorganizes one given segment of a normal secondary log. If hot/cold separation is enabled, cold log entries of
+     * a hot segment are moved to a cold segment. If live run transfer is enabled, mostly live segments are relocated
+     * with in-kernel copies (see relocateLiveRuns()).
+     *
+     * @param p_segmentIndex
+     *         the segments index
+     * @param p_bufferWrapper
+     *         aligned buffer to be filled with segment data (avoiding lots of allocations)
+     * @param p_allVersions
+     *         a hash table and int array with all versions for this secondary log
+     * @param p_lowestCID
+     *         the lowest CID at the time the versions were read-in
+     * @param p_prefetchedBytes
+     *         the number of bytes already read into p_bufferWrapper (prefetched segment) or -1 to read the segment;
+     *         the segment is read again if its length changed in the meantime
+     * @return whether the reorganization was successful or not
+     */
+    private boolean reorganizeSegment(final SecondaryLog p_secondaryLog, final int p_segmentIndex,
+            final DirectByteBufferWrapper p_bufferWrapper, final TemporaryVersionStorage p_allVersions,
+            final long p_lowestCID, final int p_prefetchedBytes) {
+        boolean ret = true;
+        int readBytes = 0;
+        int writtenBytes = 0;
+        int coldBytes = 0;
+        int coldSegment = -1;
+        int relocatedBytes = -1;
+        int firstModifiedOffset = 0;
+        int segmentLength;
+        boolean mapped;
+        ByteBuffer segmentData;
+        ByteBuffer writeCopy;
+        ByteBuffer coldCopy = null;
+        DirectByteBufferWrapper segmentWrapper;
+        SegmentHeader header;
+
         VersionBuffer versionBuffer =
                 m_versionHandler.getVersionBuffer(p_secondaryLog.getOwner(), p_secondaryLog.getRangeID());
 
@@ -734,116 +1603,107 @@ public final class ReorganizationThread extends Thread {
             if (p_secondaryLog.assignReorgSegment(p_segmentIndex)) {
 
                 try {
+                    header = p_secondaryLog.getSegmentHeader(p_segmentIndex);
+                    if (m_hotColdSeparation && header != null && !header.isCold()) {
+                        coldSegment = p_secondaryLog.reserveColdSegment();
+                        if (coldSegment != -1) {
+                            coldCopy = m_coldData.getBuffer().duplicate();
+                            coldCopy.order(ByteOrder.LITTLE_ENDIAN);
+                        }
+                    }
 
                     SOP_REORG_READ_SEGMENT.start();
 
-                    segmentLength = p_secondaryLog.readSegment(p_bufferWrapper, p_segmentIndex);
-                    segmentData = p_bufferWrapper.getBuffer();
-                    ByteBuffer writeCopy = segmentData.duplicate();
+                    if (p_prefetchedBytes != -1 && header != null && header.getUsedBytes() == p_prefetchedBytes) {
+                        // Read (and throttled) while the last segment was reorganized
+                        mapped = false;
+                        segmentLength = p_prefetchedBytes;
+                        segmentData = p_bufferWrapper.getBuffer();
+                    } else {
+                        // If the log is memory-mapped, parse the segment in place and copy live entries, only.
+                        // The mapping must not be modified -> live entries are always compacted into the buffer
+                        throttle(p_secondaryLog, p_secondaryLog.getSegmentHeader(p_segmentIndex).getUsedBytes());
+                        m_ioBudget.acquireUninterruptibly();
+                        try {
+                            segmentWrapper = p_secondaryLog.mapSegment(p_segmentIndex);
+                            mapped = segmentWrapper != null;
+                            if (mapped) {
+                                segmentLength = segmentWrapper.getBuffer().capacity();
+                                segmentData = segmentWrapper.getBuffer();
+                            } else {
+                                segmentLength = p_secondaryLog.readSegment(p_bufferWrapper, p_segmentIndex);
+                                segmentData = p_bufferWrapper.getBuffer();
+                            }
+                        } finally {
+                            m_ioBudget.release();
+                        }
+                    }
+                    writeCopy = p_bufferWrapper.getBuffer().duplicate();
                     writeCopy.order(ByteOrder.LITTLE_ENDIAN);
 
                     SOP_REORG_READ_SEGMENT.stop();
 
-                    if (segmentLength > 0) {
-
-                        SOP_REORG_PROCESS_SEGMENT.start();
-
-                        while (readBytes < segmentLength && !Thread.currentThread().isInterrupted()) {
-                            short type = (short) (segmentData.get(readBytes) & 0xFF);
-                            logEntryHeader = AbstractSecLogEntryHeader.getHeader(type);
-                            length = logEntryHeader.getHeaderSize(type) +
-                                    logEntryHeader.getLength(type, segmentData, readBytes);
-                            chunkID = logEntryHeader.getCID(type, segmentData, readBytes);
-                            entryVersion = logEntryHeader.getVersion(type, segmentData, readBytes);
-
-                            // Get current version
-                            if (logEntryHeader.isMigrated()) {
-                                currentVersion = p_allVersions.get(chunkID);
-                            } else {
-                                chunkID = ((long) originalOwner << 48) + chunkID;
-                                currentVersion = p_allVersions.get(chunkID, p_lowestCID);
-                            }
-                            if (currentVersion == null || versionBuffer.getEpoch() == entryVersion.getEpoch()) {
-                                // There is no entry in hash table or element is more current -> get latest
-                                // version from cache (Epoch can only be 1 greater because there is no flushing during
-                                // reorganization)
-                                currentVersion = versionBuffer.getVersion(chunkID);
+                    if (segmentLength > 0 && m_liveRunTransfer && coldCopy == null) {
+                        relocatedBytes = relocateLiveRuns(p_secondaryLog, p_segmentIndex, segmentData, segmentLength,
+                                p_allVersions, p_lowestCID, versionBuffer);
+                        if (relocatedBytes != -1) {
+                            writtenBytes = relocatedBytes;
+                            readBytes = segmentLength;
+                            if (writtenBytes < readBytes) {
+                                SOP_REORG_BYTES_FREED.add(readBytes - writtenBytes);
+                                m_selectionPolicy.recordReorganization(readBytes, writtenBytes);
                             }
+                        }
+                    }
 
-                            if (currentVersion == null || currentVersion.getVersion() == 0) {
-                                LOGGER.error(
-                                        "Version unknown for chunk 0x%X! Distance to lowest CID (0x%X): %d. Secondary" +
-                                                " log: %s,%d; Current position in segment: %d", chunkID, p_lowestCID,
-                                        chunkID - p_lowestCID, this, AbstractSecLogEntryHeader
-                                                .getMaximumNumberOfVersions(m_secondaryLogSize / 2, 256, false),
-                                        readBytes);
-
-                            } else if (currentVersion.isEqual(entryVersion)) {
-
-                                /* Possible data loss after cluster failure (e.g. power outage):
-                                   We might remove log entries of a chunk here whose current entry has not been written
-                                   yet because version information can be more current.
-                                   This is not a problem if we assume battery backup is used which enables flushing all
-                                   buffers during shut down.
-                                   Otherwise, we could spare all log entries from current epoch to avoid this problem
-                                   but this might impair reorganization performance.
-                                 */
-
-                                // Compare current version with element
-                                if (readBytes != writtenBytes) {
-                                    segmentData.position(readBytes);
-                                    int limit = segmentData.limit();
-                                    segmentData.limit(readBytes + length);
-
-                                    writeCopy.position(writtenBytes);
-                                    writeCopy.put(segmentData);
-
-                                    segmentData.limit(limit);
-                                }
-                                writtenBytes += length;
-
-                                if (m_useTimestamps) {
-                                    int entryAge = p_secondaryLog.getCurrentTimeInSec() -
-                                            logEntryHeader.getTimestamp(type, segmentData, writtenBytes - length);
-                                    if (entryAge < m_coldDataThreshold) {
-                                        // Do not consider cold data for calculation
-                                        ageAllBytes += entryAge * length;
-                                    }
-                                }
+                    if (segmentLength > 0 && relocatedBytes == -1) {
 
-                                if (currentVersion.getEon() != versionBuffer.getEon()) {
-                                    // Update eon in both versions
-                                    logEntryHeader.flipEon(segmentData, writtenBytes - length);
+                        SOP_REORG_PROCESS_SEGMENT.start();
 
-                                    // Add to version buffer; all entries will get current eon during flushing
-                                    versionBuffer.tryPut(chunkID, currentVersion.getVersion());
-                                }
-                            } else {
-                                // Version, epoch and/or eon is different -> remove entry
-                            }
-                            readBytes += length;
-                        }
+                        m_ageAllBytes = 0;
+                        writtenBytes = copyLiveEntries(p_secondaryLog, segmentData, segmentLength, writeCopy, 0,
+                                !mapped, p_allVersions, p_lowestCID, versionBuffer, coldCopy,
+                                coldCopy != null ? p_secondaryLog.getFreeBytes(coldSegment) : 0);
+                        coldBytes = m_coldBytes;
+                        firstModifiedOffset = m_firstModifiedOffset;
+                        readBytes = segmentLength;
 
                         SOP_REORG_PROCESS_SEGMENT.stop();
 
-                        if (writtenBytes < readBytes && !Thread.currentThread().isInterrupted()) {
+                        if ((writtenBytes + coldBytes < readBytes || coldBytes > 0) &&
+                                !Thread.currentThread().isInterrupted()) {
 
                             SOP_REORG_WRITE_SEGMENT.start();
 
-                            if (writtenBytes > 0) {
-                                p_secondaryLog.updateSegment(p_bufferWrapper, writtenBytes, p_segmentIndex);
-                                if (m_useTimestamps) {
-                                    // Calculate current age of segment
-                                    p_secondaryLog.getSegmentHeader(p_segmentIndex)
-                                            .setAge((int) (ageAllBytes / writtenBytes));
+                            throttle(p_secondaryLog, writtenBytes + coldBytes);
+                            m_ioBudget.acquireUninterruptibly();
+                            try {
+                                if (coldBytes > 0) {
+                                    // Write cold log entries first: a failure before the segment is updated leaves
+                                    // duplicates, only
+                                    p_secondaryLog.appendColdEntries(m_coldData, coldBytes, coldSegment,
+                                            p_segmentIndex);
                                 }
-                            } else {
-                                p_secondaryLog.freeSegment(p_segmentIndex);
+                                if (writtenBytes > 0) {
+                                    p_secondaryLog.updateSegment(p_bufferWrapper, writtenBytes, p_segmentIndex,
+                                            firstModifiedOffset);
+                                    if (m_useTimestamps) {
+                                        // Calculate current age of segment
+                                        p_secondaryLog.getSegmentHeader(p_segmentIndex)
+                                                .setAge((int) (m_ageAllBytes / writtenBytes));
+                                    }
+                                } else {
+                                    p_secondaryLog.freeSegment(p_segmentIndex);
+                                }
+                            } finally {
+                                m_ioBudget.release();
                             }
 
                             SOP_REORG_WRITE_SEGMENT.stop();
 
-                            SOP_REORG_BYTES_FREED.add(readBytes - writtenBytes);
+                            SOP_REORG_BYTES_FREED.add(readBytes - writtenBytes - coldBytes);
+                            SOP_REORG_COLD_BYTES.add(coldBytes);
+                            m_selectionPolicy.recordReorganization(readBytes, writtenBytes + coldBytes);
                         }
                     }
                 } catch (final IOException e) {
@@ -851,14 +1711,18 @@ public final class ReorganizationThread extends Thread {
                     LOGGER.warn("Reorganization failed.", e);
 
                     ret = false;
+                } finally {
+                    if (coldSegment != -1) {
+                        p_secondaryLog.releaseSegment(coldSegment);
+                    }
                 }
             }
 
             if (!Thread.currentThread().isInterrupted()) {
-                if (readBytes - writtenBytes > 0) {
+                if (readBytes - writtenBytes - coldBytes > 0) {
                     LOGGER.info(
                             "Freed %d bytes during reorganization of segment %d in range 0x%X,%d\t total log size: %d",
-                            readBytes - writtenBytes, p_segmentIndex, p_secondaryLog.getOwner(),
+                            readBytes - writtenBytes - coldBytes, p_segmentIndex, p_secondaryLog.getOwner(),
                             p_secondaryLog.getRangeID(), p_secondaryLog.getOccupiedSpace() / 1024 / 1024);
                 }
             } else {
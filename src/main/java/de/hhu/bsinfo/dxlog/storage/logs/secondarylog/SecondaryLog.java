@@ -18,7 +18,10 @@ package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.LogManager;
@@ -28,6 +31,7 @@ import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
 import de.hhu.bsinfo.dxlog.storage.Scheduler;
 import de.hhu.bsinfo.dxlog.storage.header.AbstractSecLogEntryHeader;
 import de.hhu.bsinfo.dxlog.storage.logs.Log;
+import de.hhu.bsinfo.dxlog.storage.versioncontrol.Version;
 import de.hhu.bsinfo.dxlog.storage.versioncontrol.VersionBuffer;
 import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
 import de.hhu.bsinfo.dxutils.stats.TimePool;
@@ -46,13 +50,27 @@ public final class SecondaryLog extends Log {
     private static final TimePool SOP_READ_SECONDARY_LOG = new TimePool(SecondaryLog.class, "ReadSecondaryLog");
     private static final ValuePool SOP_WRITE_SECONDARY_LOG_DATA =
             new ValuePool(SecondaryLog.class, "WriteSecondaryLogSize");
+    private static final ValuePool SOP_WRITE_HOT_SEGMENT_DATA =
+            new ValuePool(SecondaryLog.class, "WriteHotSegmentSize");
+    private static final ValuePool SOP_TRANSFER_SECONDARY_LOG_DATA =
+            new ValuePool(SecondaryLog.class, "TransferSecondaryLogSize");
+    private static final ValuePool SOP_UPDATE_SEGMENT_SAVED_DATA =
+            new ValuePool(SecondaryLog.class, "UpdateSegmentSavedSize");
+
+    // Buffer to gather hot log entries in; one per thread posting data (writer threads)
+    private static final ThreadLocal<DirectByteBufferWrapper> HOT_LOG_ENTRIES =
+            new ThreadLocal<DirectByteBufferWrapper>();
 
     private static DirectByteBufferWrapper ms_nullSegmentWrapper;
+    private static int ms_hotVersionThreshold;
 
     static {
         StatisticsManager.get().registerOperation(SecondaryLog.class, SOP_WRITE_SECONDARY_LOG);
         StatisticsManager.get().registerOperation(SecondaryLog.class, SOP_READ_SECONDARY_LOG);
         StatisticsManager.get().registerOperation(SecondaryLog.class, SOP_WRITE_SECONDARY_LOG_DATA);
+        StatisticsManager.get().registerOperation(SecondaryLog.class, SOP_WRITE_HOT_SEGMENT_DATA);
+        StatisticsManager.get().registerOperation(SecondaryLog.class, SOP_TRANSFER_SECONDARY_LOG_DATA);
+        StatisticsManager.get().registerOperation(SecondaryLog.class, SOP_UPDATE_SEGMENT_SAVED_DATA);
     }
 
     private final Scheduler m_scheduler;
@@ -62,22 +80,33 @@ public final class SecondaryLog extends Log {
     private final long m_secondaryLogReorgThreshold;
     private final long m_secondaryLogSize;
     private final int m_logSegmentSize;
+    private final int m_flashPageSize;
     private final boolean m_useTimestamps;
+    private final ReorganizationRateLimiter m_rateLimiter;
     private final long m_initializationTimestamp;
 
     private final VersionBuffer m_versionBuffer;
     private final SegmentHeader[] m_segmentHeaders;
+    private final SegmentSpaceIndex m_spaceIndex;
+    private final SegmentTable m_segmentTable;
+    private final ChunkLocationTable m_chunkLocations;
     private final ReentrantLock m_segmentAssignmentlock;
     private final ReentrantLock m_fileAccessLock;
     private final BitSet m_reorgVector;
+    private final BitSet m_reservedSegments;
 
     private short m_owner;
     private short m_rangeID;
 
     private SegmentHeader m_activeSegment;
     private SegmentHeader m_reorgSegment;
+    private SegmentHeader m_hotSegment;
 
     private volatile boolean m_isAccessedByReorgThread;
+    private volatile boolean m_removed;
+
+    // Position in the reorganization queue; accessed with the queue's lock, only
+    private int m_reorganizationQueueIndex = -1;
 
     /**
      * Creates an instance of SecondaryLog with default configuration except
@@ -97,20 +126,24 @@ public final class SecondaryLog extends Log {
      *         the segment size
      * @param p_reorgUtilizationThreshold
      *         the threshold size for a secondary size to trigger reorganization
+     * @param p_rateLimiter
+     *         the rate limiter of the reorganization threads (foreground write latencies are reported to it)
      * @param p_useTimestamps
      *         whether timestamps are used for segment selection
      * @param p_initializationTimestamp
      *         time of initialization of the logging component. Used for relative age of log entries
      * @param p_fileName
      *         the file name (including backup directory) for the log
+     * @param p_reopen
+     *         whether to reopen an existing log (see restoreFromFile()) instead of creating a new one
      * @throws IOException
      *         if secondary log could not be created
      */
     SecondaryLog(final Scheduler p_scheduler, final VersionBuffer p_versionBuffer, final short p_owner,
             final short p_originalOwner, final short p_rangeID, final long p_secondaryLogSize,
             final int p_flashPageSize, final int p_logSegmentSize, final int p_reorgUtilizationThreshold,
-            final boolean p_useTimestamps, final long p_initializationTimestamp, final String p_fileName)
-            throws IOException {
+            final ReorganizationRateLimiter p_rateLimiter, final boolean p_useTimestamps,
+            final long p_initializationTimestamp, final String p_fileName, final boolean p_reopen) throws IOException {
         super(new File(p_fileName), p_secondaryLogSize);
 
         if (p_secondaryLogSize < p_flashPageSize) {
@@ -121,7 +154,9 @@ public final class SecondaryLog extends Log {
 
         m_secondaryLogSize = p_secondaryLogSize;
         m_logSegmentSize = p_logSegmentSize;
+        m_flashPageSize = p_flashPageSize;
         m_useTimestamps = p_useTimestamps;
+        m_rateLimiter = p_rateLimiter;
         m_initializationTimestamp = p_initializationTimestamp;
 
         m_segmentAssignmentlock = new ReentrantLock(false);
@@ -135,21 +170,41 @@ public final class SecondaryLog extends Log {
 
         m_secondaryLogReorgThreshold = (int) (p_secondaryLogSize * ((double) p_reorgUtilizationThreshold / 100));
         m_segmentHeaders = new SegmentHeader[(int) (p_secondaryLogSize / p_logSegmentSize)];
+        m_spaceIndex = new SegmentSpaceIndex(m_segmentHeaders.length, p_logSegmentSize);
         m_reorgVector = new BitSet((int) (p_secondaryLogSize / p_logSegmentSize));
+        m_reservedSegments = new BitSet((int) (p_secondaryLogSize / p_logSegmentSize));
 
         m_fileAccessLock = new ReentrantLock(false);
         ms_nullSegmentWrapper = new DirectByteBufferWrapper(p_flashPageSize, true);
 
         try {
-            createLog();
+            if (p_reopen) {
+                reopenLog();
+            } else {
+                createLog();
+            }
         } catch (final IOException e) {
             throw new IOException("Error: Secondary log " + p_rangeID + " could not be created");
         }
+        m_segmentTable = new SegmentTable(new File(p_fileName), m_segmentHeaders.length, p_logSegmentSize,
+                p_originalOwner, p_reopen);
+        m_chunkLocations = new ChunkLocationTable(m_segmentHeaders.length, p_originalOwner, m_spaceIndex);
 
         LOGGER.trace("Initialized secondary log (%d)", m_secondaryLogSize);
 
     }
 
+    /**
+     * Sets the hot version threshold. Must be called before the first secondary log is created!
+     *
+     * @param p_threshold
+     *         log entries with at least this version (number of updates within the current epoch) are written to a
+     *         separate hot segment; 0 -> all log entries are written to the same segments
+     */
+    public static void setHotVersionThreshold(final int p_threshold) {
+        ms_hotVersionThreshold = p_threshold;
+    }
+
     @Override
     public long getOccupiedSpace() {
         return determineLogSize();
@@ -180,10 +235,35 @@ public final class SecondaryLog extends Log {
     @Override
     public final void writeToLog(final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
             final long p_writePos, final int p_length, final boolean p_accessed) throws IOException {
+        writeToLog(p_bufferWrapper, p_bufferOffset, p_writePos, p_length, p_accessed, true);
+    }
+
+    /**
+     * Writes data to secondary log.
+     *
+     * @param p_bufferWrapper
+     *         the buffer
+     * @param p_bufferOffset
+     *         the buffer offset
+     * @param p_writePos
+     *         the position within the log file
+     * @param p_length
+     *         the number of bytes to write
+     * @param p_accessed
+     *         whether the log is accessed by another thread (lock file)
+     * @param p_newLogEntries
+     *         whether the data contains new log entries (superseding older ones) or a reorganized segment
+     * @throws IOException
+     *         if the data could not be written to disk
+     */
+    private void writeToLog(final DirectByteBufferWrapper p_bufferWrapper, final int p_bufferOffset,
+            final long p_writePos, final int p_length, final boolean p_accessed, final boolean p_newLogEntries)
+            throws IOException {
 
         if (p_length > 0) {
             SOP_WRITE_SECONDARY_LOG_DATA.add(p_length);
             SOP_WRITE_SECONDARY_LOG.start();
+            long start = System.nanoTime();
 
             if (p_accessed) {
                 m_fileAccessLock.lock();
@@ -219,16 +299,92 @@ public final class SecondaryLog extends Log {
                         ms_logAccess.write(m_log, ms_nullSegmentWrapper, 0, p_writePos + p_length, 1, false);
                     }
                 }
+
+                m_segmentTable.recordWrite((int) (p_writePos / m_logSegmentSize),
+                        (int) (p_writePos % m_logSegmentSize), p_bufferWrapper.getBuffer(), p_bufferOffset, p_length,
+                        getCurrentEpoch());
+                if (p_newLogEntries) {
+                    m_chunkLocations.recordWrite(m_segmentHeaders, (int) (p_writePos / m_logSegmentSize),
+                            p_bufferWrapper.getBuffer(), p_bufferOffset, p_length);
+                }
             }
 
+            markDirty();
+
             if (p_accessed) {
                 m_fileAccessLock.unlock();
             }
 
+            recordWriteLatency(start);
             SOP_WRITE_SECONDARY_LOG.stop();
         }
     }
 
+    /**
+     * Writes the data of two buffers to secondary log with a single (vectored) access. Both buffers are written to
+     * one segment, one after another, without merging them in a new buffer first. The data is not written if this
+     * requires further handling (reorganization in progress, epoch change, not enough space in one segment).
+     *
+     * @param p_firstBufferWrapper
+     *         the buffer containing the data to write first
+     * @param p_firstLength
+     *         the write size of the first buffer
+     * @param p_secondBufferWrapper
+     *         the buffer containing the data to write second
+     * @param p_secondLength
+     *         the write size of the second buffer
+     * @return whether the data was written or not (the caller has to merge and post the data, then)
+     * @throws IOException
+     *         if the data could not be written to disk
+     */
+    final boolean postData(final DirectByteBufferWrapper p_firstBufferWrapper, final int p_firstLength,
+            final DirectByteBufferWrapper p_secondBufferWrapper, final int p_secondLength) throws IOException {
+        int length = p_firstLength + p_secondLength;
+        int segment = -1;
+        SegmentHeader header;
+
+        if (m_isAccessedByReorgThread || m_versionBuffer.isThresholdReached() || length > m_logSegmentSize ||
+                m_secondaryLogSize - determineLogSize() < length || ms_hotVersionThreshold > 0) {
+            // Hot log entries must be separated -> the caller merges and posts the data
+            return false;
+        }
+
+        if (m_activeSegment != null) {
+            m_activeSegment = null;
+        }
+
+        if (prefersNewSegment(length)) {
+            // Prefer a new segment for large ranges
+            segment = getFreeSegment();
+        }
+        if (segment == -1) {
+            segment = getUsedSegment(length);
+        }
+        if (segment == -1) {
+            return false;
+        }
+
+        header = m_segmentHeaders[segment];
+        if (header == null) {
+            header = new SegmentHeader(segment, length, getCurrentTimeInSec());
+            setSegmentHeader(segment, header);
+            writeToLog(p_firstBufferWrapper, p_firstLength, p_secondBufferWrapper, p_secondLength,
+                    (long) segment * m_logSegmentSize);
+        } else if (length <= header.getFreeBytes(m_logSegmentSize)) {
+            writeToLog(p_firstBufferWrapper, p_firstLength, p_secondBufferWrapper, p_secondLength,
+                    (long) segment * m_logSegmentSize + header.getUsedBytes());
+            addUsedBytes(header, length);
+        } else {
+            return false;
+        }
+
+        updateSegmentAge(header, length);
+
+        checkReorganizationThreshold(false);
+
+        return true;
+    }
+
     /**
      * Writes data to secondary log. The given buffer might be allocated to different segments if there is not enough
      * space.
@@ -265,11 +421,7 @@ public final class SecondaryLog extends Log {
             if (!m_isAccessedByReorgThread) {
                 // Write versions buffer to SSD
                 if (m_versionBuffer.flush()) {
-                    for (SegmentHeader segmentHeader : m_segmentHeaders) {
-                        if (segmentHeader != null) {
-                            segmentHeader.beginEon();
-                        }
-                    }
+                    beginEon();
                 }
             } else {
                 // Force reorganization thread to flush all versions (even though it is reorganizing this log
@@ -287,6 +439,7 @@ public final class SecondaryLog extends Log {
          * 2.
          * a. Buffer is large (at least 75% of segment size): Create new segment and append it
          * b. Fill partly used segments and put the rest (if there is data left) in a new segment and append it
+         * In case 2, hot log entries are appended to the hot segment first (if enabled)
          */
         if (m_isAccessedByReorgThread) {
             // Reorganization thread is working on this secondary log -> only write in active segment
@@ -295,14 +448,8 @@ public final class SecondaryLog extends Log {
                 writeToLog(p_bufferWrapper, 0,
                         (long) m_activeSegment.getIndex() * m_logSegmentSize + m_activeSegment.getUsedBytes(), length,
                         true);
-                m_activeSegment.updateUsedBytes(length, getCurrentTimeInSec());
-                if (m_useTimestamps) {
-                    // Modify segment age
-                    int currentAge = m_activeSegment.getAge(getCurrentTimeInSec());
-                    m_activeSegment.setAge(currentAge -
-                            (currentAge + getCurrentTimeInSec() - m_activeSegment.getLastAccess()) * length /
-                                    m_activeSegment.getUsedBytes() /* contains length already */);
-                }
+                addUsedBytes(m_activeSegment, length);
+                updateSegmentAge(m_activeSegment, length);
             } else {
                 if (m_activeSegment != null) {
                     // There is not enough space in active segment to store the whole buffer -> first fill current one
@@ -321,14 +468,8 @@ public final class SecondaryLog extends Log {
                     if (rangeSize > 0) {
                         writeToLog(p_bufferWrapper, 0,
                                 (long) header.getIndex() * m_logSegmentSize + header.getUsedBytes(), rangeSize, true);
-                        header.updateUsedBytes(rangeSize, getCurrentTimeInSec());
-                        if (m_useTimestamps) {
-                            // Modify segment age
-                            int currentAge = header.getAge(getCurrentTimeInSec());
-                            header.setAge(currentAge -
-                                    (currentAge + getCurrentTimeInSec() - header.getLastAccess()) * rangeSize /
-                                            header.getUsedBytes() /* contains rangeSize already */);
-                        }
+                        addUsedBytes(header, rangeSize);
+                        updateSegmentAge(header, rangeSize);
                         length -= rangeSize;
                     }
                 }
@@ -350,7 +491,11 @@ public final class SecondaryLog extends Log {
                 m_activeSegment = null;
             }
 
-            if (length >= m_logSegmentSize * 0.75) {
+            if (ms_hotVersionThreshold > 0) {
+                length = writeHotLogEntries(p_bufferWrapper, length);
+            }
+
+            if (prefersNewSegment(length)) {
                 // Create new segment and fill it
                 length = createNewSegmentAndFill(p_bufferWrapper, 0, length, false);
             }
@@ -365,37 +510,424 @@ public final class SecondaryLog extends Log {
             }
         }
 
-        if (determineLogSize() >= m_secondaryLogReorgThreshold && !isSignaled) {
+        checkReorganizationThreshold(isSignaled);
+    }
+
+    /**
+     * Signals the reorganization thread if the reorganization threshold is reached after writing to this secondary
+     * log and updates the reorganization priority.
+     *
+     * @param p_isSignaled
+     *         whether the reorganization thread has been signaled already
+     */
+    private void checkReorganizationThreshold(final boolean p_isSignaled) {
+        if (determineLogSize() >= m_secondaryLogReorgThreshold && !p_isSignaled) {
             signalReorganization();
 
             LOGGER.trace("Threshold breached (%d) for secondary log %d of 0x%X. Initializing reorganization.",
                     determineLogSize(), m_rangeID, m_owner);
 
         }
+        updateReorganizationPriority();
     }
 
     /**
-     * Returns the index of a free segment.
+     * Checks if data should be written to a new segment instead of filling partly used segments.
      *
-     * @return the index of a free segment
+     * @param p_length
+     *         the number of bytes to write
+     * @return true if the data is large (at least 75% of the segment size)
      */
-    private byte getFreeSegment() {
-        byte ret = -1;
-        byte b = 0;
+    private boolean prefersNewSegment(final int p_length) {
+        return p_length >= m_logSegmentSize * 0.75;
+    }
 
-        while (b < m_segmentHeaders.length) {
-            // Empty segment headers are null
-            if (m_segmentHeaders[b] == null) {
-                // Avoid reorganization segment
-                if (m_reorgSegment == null || b != m_reorgSegment.getIndex()) {
-                    ret = b;
-                    break;
+    /**
+     * Adjusts the age of a segment after appending data. The age is weighted by the number of appended bytes.
+     *
+     * @param p_header
+     *         the segment header (the used bytes contain the appended bytes already)
+     * @param p_length
+     *         the number of appended bytes
+     */
+    private void updateSegmentAge(final SegmentHeader p_header, final int p_length) {
+        if (m_useTimestamps) {
+            int currentAge = p_header.getAge(getCurrentTimeInSec());
+            p_header.setAge(currentAge - (currentAge + getCurrentTimeInSec() - p_header.getLastAccess()) * p_length /
+                    p_header.getUsedBytes());
+        }
+    }
+
+    /**
+     * Writes two buffers to secondary log with one access. The end of the segment is marked with the same access.
+     *
+     * @param p_firstBufferWrapper
+     *         the buffer to write first
+     * @param p_firstLength
+     *         the number of bytes to write from the first buffer
+     * @param p_secondBufferWrapper
+     *         the buffer to write second
+     * @param p_secondLength
+     *         the number of bytes to write from the second buffer
+     * @param p_writePos
+     *         the log position to write to
+     * @throws IOException
+     *         if the secondary log could not be written
+     */
+    private void writeToLog(final DirectByteBufferWrapper p_firstBufferWrapper, final int p_firstLength,
+            final DirectByteBufferWrapper p_secondBufferWrapper, final int p_secondLength, final long p_writePos)
+            throws IOException {
+        int length = p_firstLength + p_secondLength;
+
+        SOP_WRITE_SECONDARY_LOG_DATA.add(length);
+        SOP_WRITE_SECONDARY_LOG.start();
+        long start = System.nanoTime();
+
+        assert p_writePos + length <= m_logSize;
+        assert p_writePos % m_logSegmentSize + length <= m_logSegmentSize;
+
+        if (p_writePos % m_logSegmentSize + length < m_logSegmentSize) {
+            // Mark the end of the segment
+            ms_logAccess.write(m_log,
+                    new DirectByteBufferWrapper[] {p_firstBufferWrapper, p_secondBufferWrapper, ms_nullSegmentWrapper},
+                    new int[] {0, 0, 0}, new int[] {p_firstLength, p_secondLength, 1}, p_writePos);
+        } else {
+            ms_logAccess.write(m_log, new DirectByteBufferWrapper[] {p_firstBufferWrapper, p_secondBufferWrapper},
+                    new int[] {0, 0}, new int[] {p_firstLength, p_secondLength}, p_writePos);
+        }
+
+        int segment = (int) (p_writePos / m_logSegmentSize);
+        int segmentOffset = (int) (p_writePos % m_logSegmentSize);
+        m_segmentTable.recordWrite(segment, segmentOffset, p_firstBufferWrapper.getBuffer(), 0, p_firstLength,
+                getCurrentEpoch());
+        m_segmentTable.recordWrite(segment, segmentOffset + p_firstLength, p_secondBufferWrapper.getBuffer(), 0,
+                p_secondLength, getCurrentEpoch());
+        m_chunkLocations.recordWrite(m_segmentHeaders, segment, p_firstBufferWrapper.getBuffer(), 0, p_firstLength);
+        m_chunkLocations.recordWrite(m_segmentHeaders, segment, p_secondBufferWrapper.getBuffer(), 0,
+                p_secondLength);
+
+        markDirty();
+
+        recordWriteLatency(start);
+        SOP_WRITE_SECONDARY_LOG.stop();
+    }
+
+    /**
+     * Rebuilds the segment headers of a reopened secondary log. Segments with a valid and up-to-date record in the
+     * segment table are restored without reading them. All other segments are scanned up to the segment terminator;
+     * incomplete log entries at the end of a segment (e.g., torn writes) are ignored. Segments which might contain
+     * log entries of the current epoch (versions not flushed to the version log before the restart) or chunks of
+     * the primary log are always scanned: the versions of the current epoch are restored in the version buffer and
+     * versions of primary log entries which are stored in this secondary log already are removed from given table.
+     *
+     * @param p_bufferWrapper
+     *         the buffer to read segments into (segment size)
+     * @param p_primaryLogVersions
+     *         the newest packed version of every chunk in the primary log (chunk ID -> packed version)
+     * @param p_primaryLogChunkIDs
+     *         all chunk IDs in the primary log (sorted)
+     * @return the number of bytes in this secondary log
+     * @throws IOException
+     *         if the secondary log could not be read
+     */
+    public long restoreFromFile(final DirectByteBufferWrapper p_bufferWrapper,
+            final Map<Long, Long> p_primaryLogVersions, final long[] p_primaryLogChunkIDs) throws IOException {
+        int usedBytes;
+        int scannedSegments = 0;
+        long segmentStart;
+        long fileSize = getFileSize();
+        short currentEpoch = getCurrentEpoch();
+        SegmentHeader header;
+
+        for (int i = 0; i < m_segmentHeaders.length; i++) {
+            // Segments behind the end of the file have never been written
+            segmentStart = (long) i * m_logSegmentSize;
+            if (segmentStart >= fileSize) {
+                break;
+            }
+
+            if (m_segmentTable.isValid(i) && !mustBeScanned(i, currentEpoch, p_primaryLogChunkIDs)) {
+                // The record is up-to-date if nothing was appended after the last update (segment terminator).
+                // A record reaching the end of the file might describe a torn or unsynced tail -> scan
+                usedBytes = m_segmentTable.getUsedBytes(i);
+                if (usedBytes == m_logSegmentSize || segmentStart + usedBytes < fileSize &&
+                        readByte(p_bufferWrapper, segmentStart + usedBytes) == 0) {
+                    if (usedBytes > 0) {
+                        header = new SegmentHeader(i, usedBytes, getCurrentTimeInSec());
+                        header.setAge(m_segmentTable.getAge(i));
+                        header.markInvalidBytesUnknown();
+                        if (!m_segmentTable.wasReorganized(i)) {
+                            header.beginEon();
+                        }
+                        setSegmentHeader(i, header);
+                    }
+                    continue;
                 }
             }
-            b++;
+
+            scanSegment(p_bufferWrapper, i, (int) Math.min(m_logSegmentSize, fileSize - segmentStart), currentEpoch,
+                    p_primaryLogVersions);
+            scannedSegments++;
         }
 
-        return ret;
+        LOGGER.debug("Restored secondary log for range %d of 0x%X: %d bytes, %d of %d segments scanned", m_rangeID,
+                m_owner, determineLogSize(), scannedSegments, m_segmentHeaders.length);
+        updateReorganizationPriority();
+
+        return determineLogSize();
+    }
+
+    /**
+     * Checks if a segment with a valid record must be scanned nevertheless (it might contain log entries of the
+     * current epoch or chunks of the primary log).
+     *
+     * @param p_segmentIndex
+     *         the segment index
+     * @param p_currentEpoch
+     *         the current epoch (including eon bit)
+     * @param p_primaryLogChunkIDs
+     *         all chunk IDs in the primary log (sorted)
+     * @return true if the segment must be scanned
+     */
+    private boolean mustBeScanned(final int p_segmentIndex, final short p_currentEpoch,
+            final long[] p_primaryLogChunkIDs) {
+        if (m_segmentTable.getEntryCount(p_segmentIndex) == 0) {
+            return false;
+        }
+        if (m_segmentTable.getLastWriteEpoch(p_segmentIndex) == p_currentEpoch) {
+            return true;
+        }
+
+        // Is there a chunk ID of the primary log within the segment's chunk ID range?
+        int index = Arrays.binarySearch(p_primaryLogChunkIDs, m_segmentTable.getMinChunkID(p_segmentIndex));
+        if (index >= 0) {
+            return true;
+        }
+        index = -index - 1;
+
+        return index < p_primaryLogChunkIDs.length &&
+                p_primaryLogChunkIDs[index] <= m_segmentTable.getMaxChunkID(p_segmentIndex);
+    }
+
+    /**
+     * Scans a segment of a reopened secondary log and creates its segment header and segment table record.
+     *
+     * @param p_bufferWrapper
+     *         the buffer to read the segment into
+     * @param p_segmentIndex
+     *         the segment index
+     * @param p_length
+     *         the number of bytes to read
+     * @param p_currentEpoch
+     *         the current epoch (including eon bit)
+     * @param p_primaryLogVersions
+     *         the newest packed version of every chunk in the primary log (chunk ID -> packed version)
+     * @throws IOException
+     *         if the segment could not be read
+     */
+    private void scanSegment(final DirectByteBufferWrapper p_bufferWrapper, final int p_segmentIndex,
+            final int p_length, final short p_currentEpoch, final Map<Long, Long> p_primaryLogVersions)
+            throws IOException {
+        int offset = 0;
+        int logEntrySize;
+        int entryCount = 0;
+        long chunkID;
+        long minChunkID = Long.MAX_VALUE;
+        long maxChunkID = Long.MIN_VALUE;
+        Long primaryLogVersion;
+        ByteBuffer segment = p_bufferWrapper.getBuffer();
+        Version version;
+        SegmentHeader header;
+        AbstractSecLogEntryHeader logEntryHeader;
+
+        segment.clear();
+        readFromLog(p_bufferWrapper, p_length, (long) p_segmentIndex * m_logSegmentSize);
+
+        while (offset < p_length && segment.get(offset) != 0) {
+            short type = (short) (segment.get(offset) & 0xFF);
+            logEntryHeader = AbstractSecLogEntryHeader.getHeader(type);
+            if (!logEntryHeader.isReadable(type, p_length - offset)) {
+                break;
+            }
+            logEntrySize = logEntryHeader.getHeaderSize(type) + logEntryHeader.getLength(type, segment, offset);
+            if (offset + logEntrySize > p_length) {
+                break;
+            }
+
+            chunkID = logEntryHeader.getCID(type, segment, offset);
+            if (!logEntryHeader.isMigrated()) {
+                chunkID = ((long) m_originalOwner << 48) + chunkID;
+            }
+            version = logEntryHeader.getVersion(type, segment, offset);
+
+            if (version.getEpoch() == p_currentEpoch) {
+                m_versionBuffer.restoreVersion(chunkID, version.getVersion());
+            }
+
+            primaryLogVersion = p_primaryLogVersions.get(chunkID);
+            if (primaryLogVersion != null && Version.getPackedEpoch(primaryLogVersion) == version.getEpoch() &&
+                    Version.getPackedVersion(primaryLogVersion) <= version.getVersion()) {
+                // The primary log entry was written to this secondary log before the restart
+                p_primaryLogVersions.remove(chunkID, primaryLogVersion);
+            }
+
+            minChunkID = Math.min(minChunkID, chunkID);
+            maxChunkID = Math.max(maxChunkID, chunkID);
+            entryCount++;
+            offset += logEntrySize;
+        }
+
+        if (offset > 0) {
+            header = new SegmentHeader(p_segmentIndex, offset, getCurrentTimeInSec());
+            header.markInvalidBytesUnknown();
+            setSegmentHeader(p_segmentIndex, header);
+            m_segmentTable.recordScan(header, entryCount, minChunkID, maxChunkID, p_currentEpoch);
+        } else {
+            m_segmentTable.clear(p_segmentIndex);
+        }
+    }
+
+    /**
+     * Reads a single byte from secondary log.
+     *
+     * @param p_bufferWrapper
+     *         the buffer to read into
+     * @param p_readPos
+     *         the position within the log
+     * @return the byte
+     * @throws IOException
+     *         if the secondary log could not be read
+     */
+    private byte readByte(final DirectByteBufferWrapper p_bufferWrapper, final long p_readPos) throws IOException {
+        p_bufferWrapper.getBuffer().clear();
+        readFromLog(p_bufferWrapper, 1, p_readPos);
+
+        return p_bufferWrapper.getBuffer().get(0);
+    }
+
+    /**
+     * Appends all hot log entries (version at least the hot version threshold) of given buffer to the hot segment.
+     * Hot log entries of frequently updated chunks are invalidated soon; gathering them in one segment concentrates
+     * the garbage which makes the hot segment cheap to reorganize. The remaining log entries are moved to the front
+     * of the buffer (the buffer is not used after posting).
+     *
+     * @param p_bufferWrapper
+     *         the buffer containing the data
+     * @param p_length
+     *         the write size
+     * @return the number of bytes left in the buffer
+     * @throws IOException
+     *         if the data could not be written to disk
+     */
+    private int writeHotLogEntries(final DirectByteBufferWrapper p_bufferWrapper, final int p_length)
+            throws IOException {
+        int readBytes = 0;
+        int keptBytes = 0;
+        int hotBytes = 0;
+        int freeBytes = -1;
+        int logEntrySize;
+        int limit;
+        ByteBuffer buffer = p_bufferWrapper.getBuffer();
+        ByteBuffer front = buffer.duplicate();
+        ByteBuffer hotBuffer = null;
+        DirectByteBufferWrapper hotLogEntries = null;
+        SegmentHeader header = null;
+        AbstractSecLogEntryHeader logEntryHeader;
+
+        while (readBytes < p_length) {
+            short type = (short) (buffer.get(readBytes) & 0xFF);
+            logEntryHeader = AbstractSecLogEntryHeader.getHeader(type);
+            logEntrySize = logEntryHeader.getHeaderSize(type) + logEntryHeader.getLength(type, buffer, readBytes);
+
+            if (logEntryHeader.getVersion(type, buffer, readBytes).getVersion() >= ms_hotVersionThreshold) {
+                if (freeBytes == -1) {
+                    header = getHotSegment();
+                    freeBytes = header != null ? header.getFreeBytes(m_logSegmentSize) : 0;
+
+                    hotLogEntries = HOT_LOG_ENTRIES.get();
+                    if (hotLogEntries == null || hotLogEntries.getBuffer().capacity() < m_logSegmentSize) {
+                        hotLogEntries = new DirectByteBufferWrapper(m_logSegmentSize, true);
+                        HOT_LOG_ENTRIES.set(hotLogEntries);
+                    }
+                    hotBuffer = hotLogEntries.getBuffer().duplicate();
+                }
+
+                if (hotBytes + logEntrySize <= freeBytes) {
+                    buffer.position(readBytes);
+                    limit = buffer.limit();
+                    buffer.limit(readBytes + logEntrySize);
+
+                    hotBuffer.position(hotBytes);
+                    hotBuffer.put(buffer);
+
+                    buffer.limit(limit);
+                    hotBytes += logEntrySize;
+                    readBytes += logEntrySize;
+                    continue;
+                }
+            }
+
+            if (keptBytes != readBytes) {
+                // Move log entry to the front (the regions might overlap; the destination is in front of the source)
+                buffer.position(readBytes);
+                limit = buffer.limit();
+                buffer.limit(readBytes + logEntrySize);
+
+                front.position(keptBytes);
+                front.put(buffer);
+
+                buffer.limit(limit);
+            }
+            keptBytes += logEntrySize;
+            readBytes += logEntrySize;
+        }
+        buffer.position(0);
+
+        if (hotBytes > 0) {
+            writeToLog(hotLogEntries, 0, (long) header.getIndex() * m_logSegmentSize + header.getUsedBytes(), hotBytes,
+                    false);
+            addUsedBytes(header, hotBytes);
+            updateSegmentAge(header, hotBytes);
+            SOP_WRITE_HOT_SEGMENT_DATA.add(hotBytes);
+        }
+
+        return keptBytes;
+    }
+
+    /**
+     * Returns the hot segment. A new hot segment is started if the current one was freed or has less than an eighth
+     * of a segment left.
+     *
+     * @return the hot segment or null if there is no hot segment and no free segment
+     */
+    private SegmentHeader getHotSegment() {
+        int segment;
+
+        if (m_hotSegment != null && m_segmentHeaders[m_hotSegment.getIndex()] != m_hotSegment) {
+            // Hot segment was freed by the reorganization
+            m_hotSegment = null;
+        }
+
+        if (m_hotSegment == null || m_hotSegment.getFreeBytes(m_logSegmentSize) < m_logSegmentSize / 8) {
+            segment = getFreeSegment();
+            if (segment != -1) {
+                m_hotSegment = new SegmentHeader(segment, 0, getCurrentTimeInSec());
+                setSegmentHeader(segment, m_hotSegment);
+            }
+        }
+
+        return m_hotSegment;
+    }
+
+    /**
+     * Returns the index of a free segment.
+     *
+     * @return the index of a free segment or -1 if there is no free segment
+     */
+    private int getFreeSegment() {
+        // Avoid reorganization segment and segments reserved for compaction
+        return m_spaceIndex.getEmptySegment(m_reservedSegments,
+                m_reorgSegment != null ? m_reorgSegment.getIndex() : -1);
     }
 
     /**
@@ -415,7 +947,7 @@ public final class SecondaryLog extends Log {
      */
     private int fillPartlyUsedSegments(final DirectByteBufferWrapper p_bufferWrapper, final int p_offset,
             final int p_length, final boolean p_isAccessed) throws IOException {
-        short segment;
+        int segment;
         int offset = p_offset;
         int rangeSize;
         int logEntrySize;
@@ -437,7 +969,7 @@ public final class SecondaryLog extends Log {
             if (header == null) {
                 // This segment is empty (there was no best fitting segment)
                 header = new SegmentHeader(segment, length, getCurrentTimeInSec());
-                m_segmentHeaders[segment] = header;
+                setSegmentHeader(segment, header);
 
                 if (p_isAccessed) {
                     // Set active segment. Must be synchronized.
@@ -447,12 +979,7 @@ public final class SecondaryLog extends Log {
                 writeToLog(p_bufferWrapper, offset, (long) segment * m_logSegmentSize, length, p_isAccessed);
                 // We do not have to update the header's utilization here as the new header was initialized with
                 // correct utilization
-                if (m_useTimestamps) {
-                    // Modify segment age
-                    int currentAge = header.getAge(getCurrentTimeInSec());
-                    header.setAge(currentAge - (currentAge + getCurrentTimeInSec() - header.getLastAccess()) * length /
-                            header.getUsedBytes() /* contains length already */);
-                }
+                updateSegmentAge(header, length);
                 length = 0;
 
                 break;
@@ -467,14 +994,8 @@ public final class SecondaryLog extends Log {
                     // All data fits in this segment
                     writeToLog(p_bufferWrapper, offset, (long) segment * m_logSegmentSize + header.getUsedBytes(),
                             length, p_isAccessed);
-                    header.updateUsedBytes(length, getCurrentTimeInSec());
-                    if (m_useTimestamps) {
-                        // Modify segment age
-                        int currentAge = header.getAge(getCurrentTimeInSec());
-                        header.setAge(currentAge -
-                                (currentAge + getCurrentTimeInSec() - header.getLastAccess()) * length /
-                                        header.getUsedBytes() /* contains length already */);
-                    }
+                    addUsedBytes(header, length);
+                    updateSegmentAge(header, length);
                     length = 0;
 
                     break;
@@ -495,14 +1016,8 @@ public final class SecondaryLog extends Log {
                     if (rangeSize > 0) {
                         writeToLog(p_bufferWrapper, offset, (long) segment * m_logSegmentSize + header.getUsedBytes(),
                                 rangeSize, p_isAccessed);
-                        header.updateUsedBytes(rangeSize, getCurrentTimeInSec());
-                        if (m_useTimestamps) {
-                            // Modify segment age
-                            int currentAge = header.getAge(getCurrentTimeInSec());
-                            header.setAge(currentAge -
-                                    (currentAge + getCurrentTimeInSec() - header.getLastAccess()) * rangeSize /
-                                            header.getUsedBytes() /* contains rangeSize already */);
-                        }
+                        addUsedBytes(header, rangeSize);
+                        updateSegmentAge(header, rangeSize);
                         length -= rangeSize;
                         offset += rangeSize;
                     } else {
@@ -538,7 +1053,7 @@ public final class SecondaryLog extends Log {
     private int createNewSegmentAndFill(final DirectByteBufferWrapper p_bufferWrapper, final int p_offset,
             final int p_length, final boolean p_isAccessed) throws IOException {
         int ret = p_length;
-        short segment;
+        int segment;
         SegmentHeader header;
 
         if (p_isAccessed) {
@@ -548,7 +1063,7 @@ public final class SecondaryLog extends Log {
         segment = getFreeSegment();
         if (segment != -1) {
             header = new SegmentHeader(segment, p_length, getCurrentTimeInSec());
-            m_segmentHeaders[segment] = header;
+            setSegmentHeader(segment, header);
 
             if (p_isAccessed) {
                 // Set active segment. Must be synchronized.
@@ -557,13 +1072,7 @@ public final class SecondaryLog extends Log {
             }
             writeToLog(p_bufferWrapper, p_offset, (long) segment * m_logSegmentSize, p_length, p_isAccessed);
             // We do not have to update the header's utilization here as the new header was initialized with
-            if (m_useTimestamps) {
-                // Modify segment age
-                int currentAge = header.getAge(getCurrentTimeInSec());
-                header.setAge(currentAge -
-                                (currentAge + getCurrentTimeInSec() - header.getLastAccess()) * p_length / header.getUsedBytes()
-                        /* contains p_length already */);
-            }
+            updateSegmentAge(header, p_length);
             ret = 0;
         } else {
             if (p_isAccessed) {
@@ -581,49 +1090,42 @@ public final class SecondaryLog extends Log {
      *         the length of the data
      * @return the index of the best-fitting segment
      */
-    private short getUsedSegment(final int p_length) {
-        short ret;
-        short bestFitSegment = -1;
-        short maxSegment = -1;
-        short emptySegment = -1;
-        int bestFit = Integer.MAX_VALUE;
-        int max = 0;
-        int freeBytes;
-
-        for (short index = 0; index < m_segmentHeaders.length; index++) {
-            if (m_segmentHeaders[index] == null) {
-                // This is an empty segment. We need it if there is no best fit.
-                if (emptySegment == -1) {
-                    emptySegment = index;
-                }
-            } else {
-                // Avoid reorganization segment
-                if (!m_segmentHeaders[index].equals(m_reorgSegment)) {
-                    freeBytes = m_segmentHeaders[index].getFreeBytes(m_logSegmentSize);
-                    if (freeBytes >= p_length) {
-                        if (freeBytes < bestFit) {
-                            // In current segment is more space than needed but less than in every segment before ->
-                            // current best fit
-                            bestFit = freeBytes;
-                            bestFitSegment = index;
-                        }
-                    } else if (freeBytes > max) {
-                        // In current segment is less space than needed but more than in every segment before -> current
-                        // maximum
-                        max = freeBytes;
-                        maxSegment = index;
-                    }
-                }
-            }
+    private int getUsedSegment(final int p_length) {
+        int ret;
+        int reorgSegment = m_reorgSegment != null ? m_reorgSegment.getIndex() : -1;
+        int hotSegment = m_hotSegment != null ? m_hotSegment.getIndex() : -1;
+
+        // Choose segment with following order: 1. best fit 2. empty segment 3. max space 4. cold segment
+        // Reserved segments (compacted or the compaction target) and the reorganization segment are skipped
+        ret = m_spaceIndex.getBestFit(p_length, m_reservedSegments, reorgSegment, hotSegment);
+        if (ret == -1) {
+            ret = m_spaceIndex.getEmptySegment(m_reservedSegments, reorgSegment);
+        }
+        if (ret == -1) {
+            ret = m_spaceIndex.getMaxFreeSegment(p_length, m_reservedSegments, reorgSegment, hotSegment);
+        }
+        if (ret == -1) {
+            ret = getColdSegment();
         }
 
-        // Choose segment with following order: 1. best fit 2. empty segment 3. max space
-        if (bestFitSegment != -1) {
-            ret = bestFitSegment;
-        } else if (emptySegment != -1) {
-            ret = emptySegment;
-        } else {
-            ret = maxSegment;
+        return ret;
+    }
+
+    /**
+     * Returns the cold (or hot) segment with most free space. Do not mix log entries with cold or hot ones; these
+     * segments are used if there is no space left, only.
+     *
+     * @return the index of the cold segment or -1 if there is no cold segment with free space
+     */
+    private int getColdSegment() {
+        int ret;
+        int reorgSegment = m_reorgSegment != null ? m_reorgSegment.getIndex() : -1;
+        SegmentHeader hotSegment = m_hotSegment;
+
+        ret = m_spaceIndex.getMaxFreeColdSegment(m_reservedSegments, reorgSegment, -1);
+        if (hotSegment != null && hotSegment != m_reorgSegment && !m_reservedSegments.get(hotSegment.getIndex()) &&
+                hotSegment.getFreeBytes(m_logSegmentSize) > (ret != -1 ? getFreeBytes(ret) : 0)) {
+            ret = hotSegment.getIndex();
         }
 
         return ret;
@@ -659,30 +1161,293 @@ public final class SecondaryLog extends Log {
     }
 
     /**
-     * Updates log segment.
+     * Returns given segment of secondary log without copying it, if the access mode supports memory mapping.
+     *
+     * @param p_segmentIndex
+     *         the segment
+     * @return the mapped segment data (capacity is the segment length) or null if the segment is empty or the
+     * access mode does not support memory mapping (use readSegment instead)
+     * @throws IOException
+     *         if the secondary log could not be mapped
+     */
+    public DirectByteBufferWrapper mapSegment(final int p_segmentIndex) throws IOException {
+        SegmentHeader header = m_segmentHeaders[p_segmentIndex];
+        if (header == null || header.getUsedBytes() == 0) {
+            return null;
+        }
+
+        ByteBuffer segment = ms_logAccess.map(m_log, (long) p_segmentIndex * m_logSegmentSize, header.getUsedBytes());
+        if (segment == null) {
+            return null;
+        }
+
+        LOGGER.debug("Mapped segment %d in range 0x%X,%d: %d", p_segmentIndex, m_owner, m_rangeID,
+                segment.capacity());
+
+        return new DirectByteBufferWrapper(segment);
+    }
+
+    /**
+     * Updates log segment. Flash pages in front of the first modified byte are not written again.
      *
      * @param p_bufferWrapper
-     *         the aligned buffer
+     *         the aligned buffer (segment-sized)
      * @param p_length
      *         the segment length
      * @param p_segmentIndex
      *         the segment index
+     * @param p_firstModifiedOffset
+     *         the offset of the first byte in the buffer which differs from the segment on disk
      * @throws IOException
      *         if the secondary log could not be read
      * @note executed only by reorganization thread
      */
-    void updateSegment(final DirectByteBufferWrapper p_bufferWrapper, final int p_length, final int p_segmentIndex)
-            throws IOException {
+    void updateSegment(final DirectByteBufferWrapper p_bufferWrapper, final int p_length, final int p_segmentIndex,
+            final int p_firstModifiedOffset) throws IOException {
         SegmentHeader header;
+        // The end of the segment is marked behind the last log entry -> the page containing p_length is dirty, too
+        int writeOffset = Math.min(p_firstModifiedOffset, p_length) / m_flashPageSize * m_flashPageSize;
+
+        // The segment might shrink -> the persisted record must not be trusted until it is updated
+        m_segmentTable.invalidate(p_segmentIndex);
 
         // Overwrite segment on log
-        writeToLog(p_bufferWrapper, 0, (long) p_segmentIndex * m_logSegmentSize, p_length, true);
+        if (writeOffset == 0) {
+            writeToLog(p_bufferWrapper, 0, (long) p_segmentIndex * m_logSegmentSize, p_length, true, false);
+        } else {
+            writeSegmentTail(p_bufferWrapper, p_length, p_segmentIndex, writeOffset);
+            SOP_UPDATE_SEGMENT_SAVED_DATA.add(writeOffset);
+        }
 
         // Update segment header
         header = m_segmentHeaders[p_segmentIndex];
         header.reset(getCurrentTimeInSec());
         header.updateUsedBytes(p_length, getCurrentTimeInSec());
         header.markSegmentAsReorganized();
+        m_spaceIndex.put(header);
+        m_chunkLocations.recordRewrite(m_segmentHeaders, p_segmentIndex, p_bufferWrapper.getBuffer(), p_length,
+                new int[] {p_segmentIndex});
+        updateReorganizationPriority();
+    }
+
+    /**
+     * Writes the tail of a reorganized segment. The log entries in front of the write offset are unchanged.
+     *
+     * @param p_bufferWrapper
+     *         the aligned buffer containing the whole segment (segment-sized)
+     * @param p_length
+     *         the segment length
+     * @param p_segmentIndex
+     *         the segment index
+     * @param p_writeOffset
+     *         the flash page aligned offset to start writing at
+     * @throws IOException
+     *         if the secondary log could not be written
+     * @note executed only by reorganization thread
+     */
+    private void writeSegmentTail(final DirectByteBufferWrapper p_bufferWrapper, final int p_length,
+            final int p_segmentIndex, final int p_writeOffset) throws IOException {
+        ByteBuffer buffer = p_bufferWrapper.getBuffer();
+        long writePos = (long) p_segmentIndex * m_logSegmentSize + p_writeOffset;
+
+        SOP_WRITE_SECONDARY_LOG_DATA.add(p_length - p_writeOffset);
+        SOP_WRITE_SECONDARY_LOG.start();
+        long start = System.nanoTime();
+
+        m_fileAccessLock.lock();
+        try {
+            if (p_length < m_logSegmentSize) {
+                // Mark the end of the segment
+                byte oldByte = buffer.get(p_length);
+                buffer.put(p_length, (byte) 0);
+
+                ms_logAccess.write(m_log, p_bufferWrapper, p_writeOffset, writePos, p_length - p_writeOffset + 1,
+                        false);
+
+                // Write back old byte at boundary
+                buffer.put(p_length, oldByte);
+            } else {
+                ms_logAccess.write(m_log, p_bufferWrapper, p_writeOffset, writePos, p_length - p_writeOffset, false);
+            }
+
+            // The written data does not start with a log entry -> record the whole segment
+            m_segmentTable.recordWrite(p_segmentIndex, 0, buffer, 0, p_length, getCurrentEpoch());
+
+            markDirty();
+        } finally {
+            m_fileAccessLock.unlock();
+        }
+
+        recordWriteLatency(start);
+        SOP_WRITE_SECONDARY_LOG.stop();
+    }
+
+    /**
+     * Replaces compacted segments: the live log entries of all source segments are written to the (empty) target
+     * segment and the source segments are freed afterwards. All segments must have been reserved before.
+     *
+     * @param p_bufferWrapper
+     *         the aligned buffer containing the live log entries of all source segments
+     * @param p_length
+     *         the number of bytes to write to the target segment
+     * @param p_targetIndex
+     *         the target segment
+     * @param p_sourceSegments
+     *         the compacted segments
+     * @throws IOException
+     *         if the secondary log could not be written
+     * @note executed only by reorganization thread
+     */
+    void compactSegments(final DirectByteBufferWrapper p_bufferWrapper, final int p_length, final int p_targetIndex,
+            final int[] p_sourceSegments) throws IOException {
+        SegmentHeader header;
+
+        if (p_length > 0) {
+            header = new SegmentHeader(p_targetIndex, p_length, getCurrentTimeInSec());
+            setSegmentHeader(p_targetIndex, header);
+
+            // Write the target first: a failure before freeing the source segments leaves duplicates, only
+            writeToLog(p_bufferWrapper, 0, (long) p_targetIndex * m_logSegmentSize, p_length, true, false);
+            m_chunkLocations.recordRewrite(m_segmentHeaders, p_targetIndex, p_bufferWrapper.getBuffer(), p_length,
+                    p_sourceSegments);
+        }
+
+        for (int source : p_sourceSegments) {
+            freeSegment(source);
+        }
+    }
+
+    /**
+     * Appends cold log entries separated from a reorganized segment to a cold segment. The cold segment must have
+     * been reserved before (see reserveColdSegment()). Must be called before the reorganized segment is updated: a
+     * failure in between leaves duplicates, only.
+     *
+     * @param p_bufferWrapper
+     *         the aligned buffer containing the cold log entries
+     * @param p_length
+     *         the number of bytes to append
+     * @param p_targetIndex
+     *         the cold segment
+     * @param p_sourceIndex
+     *         the reorganized segment
+     * @throws IOException
+     *         if the secondary log could not be written
+     * @note executed only by reorganization thread
+     */
+    void appendColdEntries(final DirectByteBufferWrapper p_bufferWrapper, final int p_length, final int p_targetIndex,
+            final int p_sourceIndex) throws IOException {
+        SegmentHeader header = m_segmentHeaders[p_targetIndex];
+
+        if (header == null) {
+            header = new SegmentHeader(p_targetIndex, 0, getCurrentTimeInSec());
+            header.markCold();
+            setSegmentHeader(p_targetIndex, header);
+        }
+
+        writeToLog(p_bufferWrapper, 0, (long) p_targetIndex * m_logSegmentSize + header.getUsedBytes(), p_length, true,
+                false);
+        header.markSegmentAsReorganized();
+        addUsedBytes(header, p_length);
+        m_chunkLocations.recordRewrite(m_segmentHeaders, p_targetIndex, p_bufferWrapper.getBuffer(), p_length,
+                new int[] {p_sourceIndex});
+    }
+
+    /**
+     * Relocates runs of live log entries of a reorganized segment to an empty segment with in-kernel copies (the log
+     * entries are not copied to user space again) and frees the reorganized segment afterwards. The target segment
+     * must have been reserved before.
+     *
+     * @param p_segmentData
+     *         the content of the reorganized segment (read or mapped before)
+     * @param p_runOffsets
+     *         the offsets of the runs within the reorganized segment
+     * @param p_runLengths
+     *         the lengths of the runs
+     * @param p_runs
+     *         the number of runs
+     * @param p_targetIndex
+     *         the empty segment to relocate the runs to
+     * @param p_sourceIndex
+     *         the reorganized segment
+     * @return whether the runs were relocated or not (the disk access mode does not support in-kernel copies)
+     * @throws IOException
+     *         if the secondary log could not be written
+     * @note executed only by reorganization thread
+     */
+    boolean relocateLiveRuns(final ByteBuffer p_segmentData, final int[] p_runOffsets, final int[] p_runLengths,
+            final int p_runs, final int p_targetIndex, final int p_sourceIndex) throws IOException {
+        int length = 0;
+        long sourcePos = (long) p_sourceIndex * m_logSegmentSize;
+        long targetPos = (long) p_targetIndex * m_logSegmentSize;
+        SegmentHeader header;
+        SegmentHeader sourceHeader;
+
+        SOP_WRITE_SECONDARY_LOG.start();
+        long start = System.nanoTime();
+
+        // Write the target first: a failure before freeing the reorganized segment leaves duplicates, only
+        m_fileAccessLock.lock();
+        try {
+            for (int i = 0; i < p_runs; i++) {
+                if (!ms_logAccess.transfer(m_log, sourcePos + p_runOffsets[i], targetPos + length, p_runLengths[i])) {
+                    // Not supported at all -> nothing has been written
+                    SOP_WRITE_SECONDARY_LOG.stop();
+                    return false;
+                }
+                length += p_runLengths[i];
+            }
+
+            if (length < m_logSegmentSize) {
+                // Mark the end of the segment
+                ms_logAccess.write(m_log, ms_nullSegmentWrapper, 0, targetPos + length, 1, false);
+            }
+
+            length = 0;
+            for (int i = 0; i < p_runs; i++) {
+                m_segmentTable.recordWrite(p_targetIndex, length, p_segmentData, p_runOffsets[i], p_runLengths[i],
+                        getCurrentEpoch());
+                length += p_runLengths[i];
+            }
+
+            markDirty();
+        } finally {
+            m_fileAccessLock.unlock();
+        }
+
+        SOP_TRANSFER_SECONDARY_LOG_DATA.add(length);
+        recordWriteLatency(start);
+        SOP_WRITE_SECONDARY_LOG.stop();
+
+        header = new SegmentHeader(p_targetIndex, length, getCurrentTimeInSec());
+        header.markSegmentAsReorganized();
+        sourceHeader = m_segmentHeaders[p_sourceIndex];
+        if (sourceHeader != null && sourceHeader.isCold()) {
+            // The relocated log entries are as cold as before
+            header.markCold();
+        }
+        setSegmentHeader(p_targetIndex, header);
+        for (int i = 0; i < p_runs; i++) {
+            m_chunkLocations.recordRewrite(m_segmentHeaders, p_targetIndex, p_segmentData, p_runOffsets[i],
+                    p_runLengths[i], new int[] {p_sourceIndex});
+        }
+
+        freeSegment(p_sourceIndex);
+
+        return true;
+    }
+
+    /**
+     * Begins a new eon after the epoch of the version buffer overflowed: all segments have to be reorganized in the
+     * new eon.
+     */
+    void beginEon() {
+        for (SegmentHeader segmentHeader : m_segmentHeaders) {
+            if (segmentHeader != null) {
+                segmentHeader.beginEon();
+                m_spaceIndex.put(segmentHeader);
+            }
+        }
+        m_segmentTable.markAllDirty();
     }
 
     /**
@@ -697,7 +1462,9 @@ public final class SecondaryLog extends Log {
     void freeSegment(final int p_segmentIndex) throws IOException {
         // Mark the end of the segment (a log entry header cannot start with a zero)
         writeToLog(null, 0, (long) p_segmentIndex * m_logSegmentSize, 1, true);
-        m_segmentHeaders[p_segmentIndex] = null;
+        setSegmentHeader(p_segmentIndex, null);
+        m_segmentTable.clear(p_segmentIndex);
+        updateReorganizationPriority();
     }
 
     /**
@@ -716,6 +1483,21 @@ public final class SecondaryLog extends Log {
         m_rangeID = p_newRangeID;
 
         renameLog(new File(p_newFile));
+        m_segmentTable.rename(new File(p_newFile));
+    }
+
+    @Override
+    public void closeAndRemove() throws IOException {
+        super.closeAndRemove();
+        m_segmentTable.closeAndRemove();
+    }
+
+    @Override
+    protected void persistMetadata(final boolean p_close) throws IOException {
+        m_segmentTable.flush(m_segmentHeaders, getCurrentTimeInSec(), !p_close);
+        if (p_close) {
+            m_segmentTable.close();
+        }
     }
 
     /**
@@ -727,6 +1509,15 @@ public final class SecondaryLog extends Log {
         return m_originalOwner;
     }
 
+    /**
+     * Returns the original range ID (does not change after recovery).
+     *
+     * @return the RangeID
+     */
+    public final short getOriginalRangeID() {
+        return m_originalRangeID;
+    }
+
     /**
      * Returns the current owner.
      *
@@ -814,11 +1605,111 @@ public final class SecondaryLog extends Log {
         return ret;
     }
 
+    /**
+     * Returns the reorganization priority of this log: logs with segments not reorganized within an advanced eon come
+     * first, followed by logs with reclaimable space ordered by occupied space. Logs without reclaimable space have
+     * priority 0. Determined from the free space index without scanning the segment headers; must be updated
+     * whenever the epoch changes (see ReorganizationThread.updatePriority()).
+     *
+     * @return the reorganization priority
+     */
+    final long getReorganizationPriority() {
+        long occupiedSpace = m_spaceIndex.getOccupiedBytes();
+
+        if (m_versionBuffer.getEpoch() > Math.pow(2, 14) && m_spaceIndex.hasSegmentsNotReorganized()) {
+            return Long.MAX_VALUE / 2 + occupiedSpace;
+        }
+
+        return m_spaceIndex.hasReclaimableSegments() ? occupiedSpace : 0;
+    }
+
+    /**
+     * Marks this log as removed (the backup range is removed). Removed logs are not inserted into the reorganization
+     * queue anymore.
+     */
+    void markRemoved() {
+        m_removed = true;
+    }
+
+    /**
+     * Returns whether this log was removed.
+     *
+     * @return true if the backup range was removed
+     */
+    boolean isRemoved() {
+        return m_removed;
+    }
+
+    /**
+     * Returns the position in the reorganization queue.
+     *
+     * @return the position or -1 if this log is not queued
+     */
+    int getReorganizationQueueIndex() {
+        return m_reorganizationQueueIndex;
+    }
+
+    /**
+     * Sets the position in the reorganization queue.
+     *
+     * @param p_index
+     *         the position or -1 if this log is not queued
+     */
+    void setReorganizationQueueIndex(final int p_index) {
+        m_reorganizationQueueIndex = p_index;
+    }
+
+    /**
+     * Returns true if reorganizing this log might free space: there are invalidated log entries or segments with an
+     * unknown number of invalidated bytes.
+     *
+     * @return whether this log contains reclaimable space or not
+     */
+    final boolean hasReclaimableSpace() {
+        for (SegmentHeader segmentHeader : m_segmentHeaders) {
+            if (segmentHeader != null &&
+                    (segmentHeader.getInvalidBytes() > 0 || !segmentHeader.isInvalidBytesKnown())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of invalidated bytes in this log (only segments with a known number of invalidated bytes).
+     *
+     * @return the number of invalidated bytes
+     */
+    public long getInvalidatedSpace() {
+        long ret = 0;
+
+        for (int i = 0; i < m_segmentHeaders.length; i++) {
+            if (m_segmentHeaders[i] != null) {
+                ret += Math.min(m_segmentHeaders[i].getInvalidBytes(), m_segmentHeaders[i].getUsedBytes());
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Invalidates the newest log entries of removed chunks.
+     *
+     * @param p_chunkIDs
+     *         the chunk IDs
+     */
+    public void invalidateChunks(final long[] p_chunkIDs) {
+        m_chunkLocations.remove(m_segmentHeaders, p_chunkIDs);
+        updateReorganizationPriority();
+    }
+
     /**
      * Resets the current reorganization segment.
      */
     final void resetReorgSegment() {
         m_reorgSegment = null;
+        releaseSegments();
     }
 
     /**
@@ -826,16 +1717,38 @@ public final class SecondaryLog extends Log {
      *
      * @return the sum of all segment sizes
      */
-    private int determineLogSize() {
-        int ret = 0;
+    private long determineLogSize() {
+        return m_spaceIndex.getOccupiedBytes();
+    }
 
-        for (int i = 0; i < m_segmentHeaders.length; i++) {
-            if (m_segmentHeaders[i] != null) {
-                ret += m_segmentHeaders[i].getUsedBytes();
-            }
+    /**
+     * Sets (or removes) the header of a segment and updates the free space index.
+     *
+     * @param p_segmentIndex
+     *         the segment
+     * @param p_header
+     *         the new segment header or null if the segment is freed
+     */
+    private void setSegmentHeader(final int p_segmentIndex, final SegmentHeader p_header) {
+        m_segmentHeaders[p_segmentIndex] = p_header;
+        if (p_header != null) {
+            m_spaceIndex.put(p_header);
+        } else {
+            m_spaceIndex.remove(p_segmentIndex);
         }
+    }
 
-        return ret;
+    /**
+     * Updates the number of used bytes of a segment and the free space index.
+     *
+     * @param p_header
+     *         the segment header
+     * @param p_writtenBytes
+     *         the number of written bytes
+     */
+    private void addUsedBytes(final SegmentHeader p_header, final int p_writtenBytes) {
+        p_header.updateUsedBytes(p_writtenBytes, getCurrentTimeInSec());
+        m_spaceIndex.put(p_header);
     }
 
     /**
@@ -887,6 +1800,132 @@ public final class SecondaryLog extends Log {
         return ret;
     }
 
+    /**
+     * Reserves segments for compaction. Reserved segments are neither filled nor reused by the writer thread.
+     *
+     * @param p_segments
+     *         the segments to compact
+     * @return whether the segments were reserved or not (one of the segments is the active segment)
+     */
+    boolean reserveSegments(final int[] p_segments) {
+        boolean ret = true;
+
+        m_segmentAssignmentlock.lock();
+        for (int segment : p_segments) {
+            if (m_activeSegment != null && m_activeSegment.getIndex() == segment) {
+                ret = false;
+                break;
+            }
+        }
+        if (ret) {
+            for (int segment : p_segments) {
+                m_reservedSegments.set(segment);
+            }
+        }
+        m_segmentAssignmentlock.unlock();
+
+        return ret;
+    }
+
+    /**
+     * Reserves an empty segment as compaction target.
+     *
+     * @return the segment index or -1 if there is no empty segment
+     */
+    int reserveFreeSegment() {
+        int ret;
+
+        m_segmentAssignmentlock.lock();
+        ret = getFreeSegment();
+        if (ret != -1) {
+            m_reservedSegments.set(ret);
+        }
+        m_segmentAssignmentlock.unlock();
+
+        return ret;
+    }
+
+    /**
+     * Reserves a segment to append cold log entries to: the cold segment with most free space or an empty segment if
+     * no cold segment has a quarter of a segment left. The segment is marked as cold when the first log entries are
+     * appended (see appendColdEntries()).
+     *
+     * @return the segment index or -1 if there is no suitable segment
+     */
+    int reserveColdSegment() {
+        int ret;
+        int max;
+        int freeSegment;
+        SegmentHeader activeSegment = m_activeSegment;
+        SegmentHeader reorgSegment = m_reorgSegment;
+
+        m_segmentAssignmentlock.lock();
+        ret = m_spaceIndex.getMaxFreeColdSegment(m_reservedSegments,
+                activeSegment != null ? activeSegment.getIndex() : -1,
+                reorgSegment != null ? reorgSegment.getIndex() : -1);
+        max = ret != -1 ? getFreeBytes(ret) : 0;
+        if (max < m_logSegmentSize / 4) {
+            freeSegment = getFreeSegment();
+            if (freeSegment != -1) {
+                ret = freeSegment;
+            }
+        }
+        if (ret != -1) {
+            m_reservedSegments.set(ret);
+        }
+        m_segmentAssignmentlock.unlock();
+
+        return ret;
+    }
+
+    /**
+     * Returns the number of free bytes of a segment.
+     *
+     * @param p_segmentIndex
+     *         the segment
+     * @return the number of free bytes (the segment size for empty segments)
+     */
+    int getFreeBytes(final int p_segmentIndex) {
+        SegmentHeader header = m_segmentHeaders[p_segmentIndex];
+
+        return header == null ? m_logSegmentSize : header.getFreeBytes(m_logSegmentSize);
+    }
+
+    /**
+     * Releases a segment reserved for compaction or cold log entries.
+     *
+     * @param p_segmentIndex
+     *         the segment
+     */
+    void releaseSegment(final int p_segmentIndex) {
+        m_segmentAssignmentlock.lock();
+        m_reservedSegments.clear(p_segmentIndex);
+        m_segmentAssignmentlock.unlock();
+    }
+
+    /**
+     * Releases segments reserved for compaction.
+     *
+     * @param p_segments
+     *         the segments
+     */
+    void releaseSegments(final int[] p_segments) {
+        m_segmentAssignmentlock.lock();
+        for (int segment : p_segments) {
+            m_reservedSegments.clear(segment);
+        }
+        m_segmentAssignmentlock.unlock();
+    }
+
+    /**
+     * Releases all segments reserved for compaction.
+     */
+    void releaseSegments() {
+        m_segmentAssignmentlock.lock();
+        m_reservedSegments.clear();
+        m_segmentAssignmentlock.unlock();
+    }
+
     /**
      * Returns the time since log creation in seconds (overflow occurs after 68+ years).
      *
@@ -896,6 +1935,35 @@ public final class SecondaryLog extends Log {
         return (int) ((System.currentTimeMillis() - m_initializationTimestamp) / 1000);
     }
 
+    /**
+     * Reports the latency of a foreground write (not issued by a reorganization thread) to the reorganization rate
+     * limiter.
+     *
+     * @param p_start
+     *         the start time of the write access in ns
+     */
+    private void recordWriteLatency(final long p_start) {
+        if (!(Thread.currentThread() instanceof ReorganizationThread)) {
+            m_rateLimiter.recordWriteLatency(System.nanoTime() - p_start);
+        }
+    }
+
+    /**
+     * Returns the current epoch including the eon bit (as stored in log entry headers).
+     *
+     * @return the current epoch
+     */
+    private short getCurrentEpoch() {
+        return (short) (m_versionBuffer.getEpoch() + (m_versionBuffer.getEon() << 15));
+    }
+
+    /**
+     * Updates the reorganization priority of this log.
+     */
+    private void updateReorganizationPriority() {
+        m_scheduler.updateReorganizationPriority(this);
+    }
+
     /**
      * Wakes up the reorganization thread.
      */
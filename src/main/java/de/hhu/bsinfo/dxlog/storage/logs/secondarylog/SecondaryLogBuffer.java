@@ -43,6 +43,9 @@ public final class SecondaryLogBuffer {
     private final int m_logSegmentSize;
 
     private final ReentrantLock m_lock;
+    // Serializes writes to the secondary log: the writer thread of this range and the writer thread flushing all
+    // secondary log buffers when the primary log is full might write concurrently
+    private final ReentrantLock m_writeLock;
 
     /**
      * Creates an instance of SecondaryLogBuffer. Create a secondary log as well.
@@ -63,31 +66,36 @@ public final class SecondaryLogBuffer {
      *         the segment size
      * @param p_reorgUtilizationThreshold
      *         the threshold size for a secondary size to trigger reorganization
+     * @param p_rateLimiter
+     *         the rate limiter of the reorganization threads (foreground write latencies are reported to it)
      * @param p_useTimestamps
      *         whether timestamps are used for segment selection
      * @param p_initializationTimestamp
      *         time of initialization of the logging component. Used for relative age of log entries
      * @param p_fileName
      *         the file name (including backup directory) for the log
+     * @param p_reopen
+     *         whether to reopen an existing secondary log instead of creating a new one
      * @throws IOException
      *         if the secondary log could not be created.
      */
     public SecondaryLogBuffer(final Scheduler p_scheduler, final VersionBuffer p_versionBuffer, final short p_owner,
             final short p_originalOwner, final short p_rangeID, final int p_bufferSize, final long p_secondaryLogSize,
             final int p_flashPageSize, final int p_logSegmentSize, final int p_reorgUtilizationThreshold,
-            final boolean p_useTimestamps, final long p_initializationTimestamp, final String p_fileName)
-            throws IOException {
+            final ReorganizationRateLimiter p_rateLimiter, final boolean p_useTimestamps,
+            final long p_initializationTimestamp, final String p_fileName, final boolean p_reopen) throws IOException {
 
         m_logSegmentSize = p_logSegmentSize;
         m_lock = new ReentrantLock(false);
+        m_writeLock = new ReentrantLock(false);
 
         m_buffer = new DirectByteBufferWrapper(p_bufferSize + 1,
                 true); // One byte for segment terminator (0) which is set before writing to secLog
 
         m_secondaryLog =
                 new SecondaryLog(p_scheduler, p_versionBuffer, p_owner, p_originalOwner, p_rangeID, p_secondaryLogSize,
-                        p_flashPageSize, p_logSegmentSize, p_reorgUtilizationThreshold, p_useTimestamps,
-                        p_initializationTimestamp, p_fileName);
+                        p_flashPageSize, p_logSegmentSize, p_reorgUtilizationThreshold, p_rateLimiter,
+                        p_useTimestamps, p_initializationTimestamp, p_fileName, p_reopen);
 
         LOGGER.trace("Initialized secondary log buffer (%d)", p_bufferSize);
 
@@ -157,12 +165,17 @@ public final class SecondaryLogBuffer {
      *         if the secondary log could not be written or buffer be read
      */
     public void flushSecLogBuffer() throws IOException {
+        m_writeLock.lock();
         m_lock.lock();
-        if (m_buffer.getBuffer().position() > 0) {
-            m_secondaryLog.postData(m_buffer, m_buffer.getBuffer().position());
-            m_buffer.getBuffer().rewind();
+        try {
+            if (m_buffer.getBuffer().position() > 0) {
+                m_secondaryLog.postData(m_buffer, m_buffer.getBuffer().position());
+                m_buffer.getBuffer().rewind();
+            }
+        } finally {
+            m_lock.unlock();
+            m_writeLock.unlock();
         }
-        m_lock.unlock();
     }
 
     /**
@@ -263,6 +276,26 @@ public final class SecondaryLogBuffer {
      */
     public void flushAllDataToSecLog(final DirectByteBufferWrapper p_buffer, final int p_entryOrRangeSize)
             throws IOException {
+        m_writeLock.lock();
+        try {
+            flushAllData(p_buffer, p_entryOrRangeSize);
+        } finally {
+            m_writeLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes all data in secondary log buffer and given data to secondary log. The caller must hold the write lock.
+     *
+     * @param p_buffer
+     *         buffer with data to append
+     * @param p_entryOrRangeSize
+     *         size of the log entry/range
+     * @throws IOException
+     *         if the secondary log could not be written or buffer be read
+     */
+    private void flushAllData(final DirectByteBufferWrapper p_buffer, final int p_entryOrRangeSize)
+            throws IOException {
         DirectByteBufferWrapper wrapper;
         ByteBuffer secLogBuffer;
         ByteBuffer dataToWrite;
@@ -299,8 +332,14 @@ public final class SecondaryLogBuffer {
 
                 m_lock.unlock();
                 m_secondaryLog.postData(p_buffer, secLogBufSize + p_entryOrRangeSize);
+            } else if (secLogBuffer.position() + p_entryOrRangeSize <= m_logSegmentSize &&
+                    m_secondaryLog.postData(m_buffer, secLogBuffer.position(), p_buffer, p_entryOrRangeSize)) {
+                // Data combined fits in one segment -> buffer and new data were written with one (vectored) access
+                secLogBuffer.rewind();
+                m_lock.unlock();
             } else if (secLogBuffer.position() + p_entryOrRangeSize <= m_logSegmentSize) {
-                // Data combined fits in one segment -> flush buffer and write new data in secondary log with one access
+                // Data combined fits in one segment but could not be written directly -> merge buffer and new data
+                // and write it in secondary log with one access
                 wrapper = new DirectByteBufferWrapper(secLogBuffer.position() + p_entryOrRangeSize + 1,
                         true); // One byte for segment terminator (0) which is set before writing to secLog
                 dataToWrite = wrapper.getBuffer();
@@ -12,6 +12,9 @@ public final class SegmentHeader {
     private volatile int m_lastAccess;
     private volatile int m_averageAge;
     private volatile boolean m_reorgInCurrEon;
+    private volatile int m_invalidBytes;
+    private volatile boolean m_invalidBytesKnown;
+    private volatile boolean m_cold;
 
     /**
      * Creates an instance of SegmentHeader.
@@ -29,6 +32,9 @@ public final class SegmentHeader {
         m_lastAccess = p_currentTime;
         m_averageAge = 0;
         m_reorgInCurrEon = true;
+        m_invalidBytes = 0;
+        m_invalidBytesKnown = true;
+        m_cold = false;
     }
 
     /**
@@ -42,6 +48,20 @@ public final class SegmentHeader {
         return (double) m_usedBytes / p_logSegmentSize;
     }
 
+    /**
+     * Returns the fraction of the used bytes that are still live (not invalidated).
+     *
+     * @return the live ratio
+     */
+    double getLiveRatio() {
+        int usedBytes = m_usedBytes;
+        if (usedBytes == 0) {
+            return 0;
+        }
+
+        return (double) getLiveBytes() / usedBytes;
+    }
+
     /**
      * Returns the index.
      *
@@ -69,6 +89,67 @@ public final class SegmentHeader {
         return m_usedBytes;
     }
 
+    /**
+     * Returns number of live bytes (used bytes without invalidated log entries).
+     *
+     * @return number of live bytes
+     */
+    int getLiveBytes() {
+        return Math.max(0, m_usedBytes - m_invalidBytes);
+    }
+
+    /**
+     * Returns number of invalidated bytes.
+     *
+     * @return number of invalidated bytes
+     */
+    int getInvalidBytes() {
+        return m_invalidBytes;
+    }
+
+    /**
+     * Returns whether the number of invalidated bytes is known. It is unknown for segments restored after a restart
+     * until they are reorganized (invalidated log entries are not tracked for unknown log entries).
+     *
+     * @return true if the number of invalidated bytes is known
+     */
+    boolean isInvalidBytesKnown() {
+        return m_invalidBytesKnown;
+    }
+
+    /**
+     * Marks the number of invalidated bytes as unknown.
+     */
+    void markInvalidBytesUnknown() {
+        m_invalidBytesKnown = false;
+    }
+
+    /**
+     * Adds invalidated bytes (a log entry in this segment was superseded or removed).
+     *
+     * @param p_invalidBytes
+     *         the number of invalidated bytes
+     */
+    void addInvalidBytes(final int p_invalidBytes) {
+        m_invalidBytes += p_invalidBytes; /* only called with the location table lock */
+    }
+
+    /**
+     * Returns whether this segment stores cold log entries (separated by the reorganization).
+     *
+     * @return true if this is a cold segment
+     */
+    boolean isCold() {
+        return m_cold;
+    }
+
+    /**
+     * Marks this segment as cold segment. Cold segments are not filled by the writer thread and reorganized rarely.
+     */
+    void markCold() {
+        m_cold = true;
+    }
+
     /**
      * Returns number of used bytes.
      *
@@ -156,5 +237,7 @@ public final class SegmentHeader {
         m_usedBytes = 0;
         m_lastAccess = p_currentTime;
         m_averageAge = 0;
+        m_invalidBytes = 0;
+        m_invalidBytesKnown = true;
     }
 }
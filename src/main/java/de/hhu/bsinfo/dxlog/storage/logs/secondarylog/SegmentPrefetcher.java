@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
+
+/**
+ * Reads the next segment chosen by a reorganization thread while the reorganization thread processes the current
+ * segment. At most one read is in flight. The segment must have been reserved before (writers must not append to
+ * it until it is reorganized).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class SegmentPrefetcher extends Thread {
+
+    private static final Logger LOGGER = LogManager.getFormatterLogger(SegmentPrefetcher.class.getSimpleName());
+
+    private final Semaphore m_ioBudget;
+
+    private final ReentrantLock m_lock;
+    private final Condition m_condition;
+
+    private SecondaryLog m_secondaryLog;
+    private int m_segmentIndex;
+    private DirectByteBufferWrapper m_bufferWrapper;
+    private int m_readBytes;
+    private boolean m_pending;
+
+    private volatile boolean m_shutdown;
+
+    /**
+     * Creates an instance of SegmentPrefetcher.
+     *
+     * @param p_ioBudget
+     *         the I/O budget shared by all reorganization threads (one permit per concurrent segment access)
+     */
+    SegmentPrefetcher(final Semaphore p_ioBudget) {
+        m_ioBudget = p_ioBudget;
+
+        m_lock = new ReentrantLock(false);
+        m_condition = m_lock.newCondition();
+
+        setDaemon(true);
+    }
+
+    /**
+     * Shuts down the prefetcher. A pending read is completed with -1.
+     */
+    public void shutdown() {
+        m_shutdown = true;
+
+        m_lock.lock();
+        m_condition.signalAll();
+        m_lock.unlock();
+    }
+
+    /**
+     * Starts reading a segment. The previous read must have been awaited.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @param p_segmentIndex
+     *         the (reserved) segment
+     * @param p_bufferWrapper
+     *         the aligned buffer to read the segment into (must not be used until the read was awaited)
+     */
+    void prefetch(final SecondaryLog p_secondaryLog, final int p_segmentIndex,
+            final DirectByteBufferWrapper p_bufferWrapper) {
+        m_lock.lock();
+        m_secondaryLog = p_secondaryLog;
+        m_segmentIndex = p_segmentIndex;
+        m_bufferWrapper = p_bufferWrapper;
+        m_readBytes = -1;
+        m_pending = true;
+        m_condition.signalAll();
+        m_lock.unlock();
+    }
+
+    /**
+     * Waits for the current read to complete.
+     *
+     * @return the number of read bytes or -1 if the segment could not be read
+     */
+    int await() {
+        int ret;
+
+        m_lock.lock();
+        while (m_pending && !m_shutdown) {
+            m_condition.awaitUninterruptibly();
+        }
+        ret = m_pending ? -1 : m_readBytes;
+        m_lock.unlock();
+
+        return ret;
+    }
+
+    @Override
+    public void run() {
+        int readBytes;
+
+        while (!m_shutdown) {
+            m_lock.lock();
+            while (!m_pending && !m_shutdown) {
+                m_condition.awaitUninterruptibly();
+            }
+            m_lock.unlock();
+
+            if (m_shutdown) {
+                break;
+            }
+
+            m_ioBudget.acquireUninterruptibly();
+            try {
+                readBytes = m_secondaryLog.readSegment(m_bufferWrapper, m_segmentIndex);
+            } catch (final IOException e) {
+                LOGGER.warn("Could not prefetch segment %d: %s", m_segmentIndex, e.getMessage());
+                readBytes = -1;
+            } finally {
+                m_ioBudget.release();
+            }
+
+            m_lock.lock();
+            m_readBytes = readBytes;
+            m_secondaryLog = null;
+            m_bufferWrapper = null;
+            m_pending = false;
+            m_condition.signalAll();
+            m_lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+/**
+ * Represents the segment selection modes of the reorganization (which segment is reorganized next).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public enum SegmentSelectionMode {
+    COST_BENEFIT, GREEDY, AGE_BUCKETED, D_CHOICES;
+
+    private static final String COST_BENEFIT_STR = "costbenefit";
+    private static final String GREEDY_STR = "greedy";
+    private static final String AGE_BUCKETED_STR = "agebucketed";
+    private static final String D_CHOICES_STR = "dchoices";
+
+    /**
+     * Get the segment selection mode from a full string.
+     *
+     * @param p_str
+     *         String to parse.
+     * @return SegmentSelectionMode
+     */
+    public static SegmentSelectionMode convert(final String p_str) {
+        String str = p_str.toLowerCase();
+        switch (str) {
+            case GREEDY_STR:
+                return GREEDY;
+            case AGE_BUCKETED_STR:
+                return AGE_BUCKETED;
+            case D_CHOICES_STR:
+                return D_CHOICES;
+            default:
+                return COST_BENEFIT;
+        }
+    }
+
+    /**
+     * Checks if the given string is a valid segment selection mode.
+     *
+     * @param p_str
+     *         String to check.
+     * @return whether the string is valid or not
+     */
+    public static boolean isValid(final String p_str) {
+        String str = p_str.toLowerCase();
+        return COST_BENEFIT_STR.equals(str) || GREEDY_STR.equals(str) || AGE_BUCKETED_STR.equals(str) ||
+                D_CHOICES_STR.equals(str);
+    }
+}
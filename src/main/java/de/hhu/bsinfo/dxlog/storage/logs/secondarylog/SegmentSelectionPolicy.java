@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.BitSet;
+
+/**
+ * Policy to choose the next segment of a secondary log to reorganize.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public interface SegmentSelectionPolicy {
+
+    /**
+     * Chooses the next segment to reorganize. Cold segments are not chosen.
+     *
+     * @param p_secondaryLog
+     *         the secondary log
+     * @param p_segmentHeaders
+     *         the segment headers (empty segments are null)
+     * @param p_reorgVector
+     *         the segments already reorganized in this epoch (to be avoided)
+     * @return the segment index or -1 if there is no segment to reorganize
+     */
+    int chooseSegment(SecondaryLog p_secondaryLog, SegmentHeader[] p_segmentHeaders, BitSet p_reorgVector);
+
+    /**
+     * Records the result of reorganizing a segment.
+     *
+     * @param p_readBytes
+     *         the number of bytes in the segment before the reorganization
+     * @param p_writtenBytes
+     *         the number of live bytes copied (rewritten)
+     */
+    void recordReorganization(int p_readBytes, int p_writtenBytes);
+
+    /**
+     * Returns the write amplification of the reorganization with this policy: bytes written to reclaim space
+     * ((copied + freed) / freed; 1 is optimal).
+     *
+     * @return the write amplification or 0 if nothing was freed, yet
+     */
+    double getWriteAmplification();
+}
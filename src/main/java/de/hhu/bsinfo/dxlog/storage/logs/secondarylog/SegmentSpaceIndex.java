@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Free space index of a secondary log. Tracks the number of occupied bytes and groups all segments with a header
+ * in buckets by free bytes (a bit mask marks non-empty buckets). Finding the best-fitting segment only scans the
+ * first bucket containing a fitting segment instead of all segment headers. Cold segments are kept in separate
+ * buckets as they are not filled by the writer thread but by the reorganization, only. Segments with reclaimable space
+ * and segments not reorganized in the current eon are tracked as well to determine the reorganization priority without
+ * scanning all segment headers.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class SegmentSpaceIndex {
+
+    private static final int NUMBER_OF_BUCKETS = Long.SIZE;
+
+    private final int m_logSegmentSize;
+    private final BitSet[] m_buckets;
+    private final BitSet[] m_coldBuckets;
+    private final BitSet m_emptySegments;
+    private final int[] m_usedBytes;
+    private final int[] m_segmentBuckets; // Cold buckets are stored with an offset of NUMBER_OF_BUCKETS
+    private final BitSet m_reclaimableSegments;
+    private final BitSet m_notReorganizedSegments;
+
+    private long m_nonEmptyBuckets;
+    private long m_nonEmptyColdBuckets;
+    private volatile long m_occupiedBytes;
+
+    /**
+     * Creates an instance of SegmentSpaceIndex. All segments are empty.
+     *
+     * @param p_numberOfSegments
+     *         the number of segments
+     * @param p_logSegmentSize
+     *         the segment size
+     */
+    SegmentSpaceIndex(final int p_numberOfSegments, final int p_logSegmentSize) {
+        m_logSegmentSize = p_logSegmentSize;
+
+        m_buckets = new BitSet[NUMBER_OF_BUCKETS];
+        m_coldBuckets = new BitSet[NUMBER_OF_BUCKETS];
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            m_buckets[i] = new BitSet(p_numberOfSegments);
+            m_coldBuckets[i] = new BitSet(p_numberOfSegments);
+        }
+        m_emptySegments = new BitSet(p_numberOfSegments);
+        m_emptySegments.set(0, p_numberOfSegments);
+        m_usedBytes = new int[p_numberOfSegments];
+        m_segmentBuckets = new int[p_numberOfSegments];
+        Arrays.fill(m_segmentBuckets, -1);
+        m_reclaimableSegments = new BitSet(p_numberOfSegments);
+        m_notReorganizedSegments = new BitSet(p_numberOfSegments);
+    }
+
+    /**
+     * Returns the number of occupied bytes in all segments.
+     *
+     * @return the number of occupied bytes
+     */
+    long getOccupiedBytes() {
+        return m_occupiedBytes;
+    }
+
+    /**
+     * Returns whether any segment has invalidated log entries or an unknown number of invalidated bytes.
+     *
+     * @return true if there is reclaimable space
+     */
+    synchronized boolean hasReclaimableSegments() {
+        return !m_reclaimableSegments.isEmpty();
+    }
+
+    /**
+     * Returns whether any non-empty segment was not reorganized in the current eon.
+     *
+     * @return true if there is a segment not reorganized in the current eon
+     */
+    synchronized boolean hasSegmentsNotReorganized() {
+        return !m_notReorganizedSegments.isEmpty();
+    }
+
+    /**
+     * Adds or updates a segment with a header. Must be called whenever the header is set, its used bytes, its
+     * reorganization status (see SegmentHeader.wasNotReorganized()) or its temperature (see SegmentHeader.isCold())
+     * change.
+     *
+     * @param p_header
+     *         the segment header
+     */
+    synchronized void put(final SegmentHeader p_header) {
+        int segment = p_header.getIndex();
+        int usedBytes = p_header.getUsedBytes();
+
+        m_occupiedBytes += usedBytes - m_usedBytes[segment];
+        m_usedBytes[segment] = usedBytes;
+        m_emptySegments.clear(segment);
+        m_reclaimableSegments.set(segment, p_header.getInvalidBytes() > 0 || !p_header.isInvalidBytesKnown());
+        m_notReorganizedSegments.set(segment, usedBytes > 0 && p_header.wasNotReorganized());
+
+        removeFromBucket(segment);
+        addToBucket(segment, getBucket(m_logSegmentSize - usedBytes), p_header.isCold());
+    }
+
+    /**
+     * Removes a segment (the segment is empty afterwards).
+     *
+     * @param p_segmentIndex
+     *         the segment
+     */
+    synchronized void remove(final int p_segmentIndex) {
+        m_occupiedBytes -= m_usedBytes[p_segmentIndex];
+        m_usedBytes[p_segmentIndex] = 0;
+        m_emptySegments.set(p_segmentIndex);
+        m_reclaimableSegments.clear(p_segmentIndex);
+        m_notReorganizedSegments.clear(p_segmentIndex);
+
+        removeFromBucket(p_segmentIndex);
+    }
+
+    /**
+     * Marks a segment as reclaimable (log entries in it were invalidated).
+     *
+     * @param p_segmentIndex
+     *         the segment
+     */
+    synchronized void markReclaimable(final int p_segmentIndex) {
+        // The segment might have been freed in the meantime
+        if (!m_emptySegments.get(p_segmentIndex)) {
+            m_reclaimableSegments.set(p_segmentIndex);
+        }
+    }
+
+    /**
+     * Returns the empty segment with the lowest index.
+     *
+     * @param p_reservedSegments
+     *         segments to skip
+     * @param p_excludedSegment
+     *         another segment to skip or -1
+     * @return the segment index or -1 if there is no empty segment
+     */
+    synchronized int getEmptySegment(final BitSet p_reservedSegments, final int p_excludedSegment) {
+        for (int i = m_emptySegments.nextSetBit(0); i >= 0; i = m_emptySegments.nextSetBit(i + 1)) {
+            if (i != p_excludedSegment && !p_reservedSegments.get(i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the used segment with the least free bytes that can store given number of bytes.
+     *
+     * @param p_length
+     *         the number of bytes to store
+     * @param p_reservedSegments
+     *         segments to skip
+     * @param p_excludedSegment1
+     *         another segment to skip or -1
+     * @param p_excludedSegment2
+     *         another segment to skip or -1
+     * @return the segment index or -1 if there is no used segment with enough free bytes
+     */
+    synchronized int getBestFit(final int p_length, final BitSet p_reservedSegments, final int p_excludedSegment1,
+            final int p_excludedSegment2) {
+        int bucket;
+        int freeBytes;
+        int bestFit;
+        int bestFitSegment;
+        long buckets = m_nonEmptyBuckets & -1L << getBucket(p_length);
+
+        // Buckets are ordered by free bytes -> the first bucket with a fitting segment contains the best fit
+        while (buckets != 0) {
+            bucket = Long.numberOfTrailingZeros(buckets);
+            bestFit = Integer.MAX_VALUE;
+            bestFitSegment = -1;
+            for (int i = m_buckets[bucket].nextSetBit(0); i >= 0; i = m_buckets[bucket].nextSetBit(i + 1)) {
+                freeBytes = m_logSegmentSize - m_usedBytes[i];
+                if (freeBytes >= p_length && freeBytes < bestFit && i != p_excludedSegment1 &&
+                        i != p_excludedSegment2 && !p_reservedSegments.get(i)) {
+                    bestFit = freeBytes;
+                    bestFitSegment = i;
+                }
+            }
+            if (bestFitSegment != -1) {
+                return bestFitSegment;
+            }
+            buckets &= buckets - 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the used segment with most free bytes among all segments that cannot store given number of bytes.
+     *
+     * @param p_length
+     *         the number of bytes to store
+     * @param p_reservedSegments
+     *         segments to skip
+     * @param p_excludedSegment1
+     *         another segment to skip or -1
+     * @param p_excludedSegment2
+     *         another segment to skip or -1
+     * @return the segment index or -1 if there is no used segment with free bytes
+     */
+    synchronized int getMaxFreeSegment(final int p_length, final BitSet p_reservedSegments,
+            final int p_excludedSegment1, final int p_excludedSegment2) {
+        int bucket = getBucket(p_length);
+        int freeBytes;
+        int max;
+        int maxSegment;
+        long buckets = m_nonEmptyBuckets & (bucket == NUMBER_OF_BUCKETS - 1 ? -1L : (1L << bucket + 1) - 1);
+
+        while (buckets != 0) {
+            bucket = NUMBER_OF_BUCKETS - 1 - Long.numberOfLeadingZeros(buckets);
+            max = 0;
+            maxSegment = -1;
+            for (int i = m_buckets[bucket].nextSetBit(0); i >= 0; i = m_buckets[bucket].nextSetBit(i + 1)) {
+                freeBytes = m_logSegmentSize - m_usedBytes[i];
+                if (freeBytes < p_length && freeBytes > max && i != p_excludedSegment1 && i != p_excludedSegment2 &&
+                        !p_reservedSegments.get(i)) {
+                    max = freeBytes;
+                    maxSegment = i;
+                }
+            }
+            if (maxSegment != -1) {
+                return maxSegment;
+            }
+            buckets &= ~(1L << bucket);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the cold segment with most free bytes.
+     *
+     * @param p_reservedSegments
+     *         segments to skip
+     * @param p_excludedSegment1
+     *         another segment to skip or -1
+     * @param p_excludedSegment2
+     *         another segment to skip or -1
+     * @return the segment index or -1 if there is no cold segment with free bytes
+     */
+    synchronized int getMaxFreeColdSegment(final BitSet p_reservedSegments, final int p_excludedSegment1,
+            final int p_excludedSegment2) {
+        int bucket;
+        int freeBytes;
+        int max;
+        int maxSegment;
+        long buckets = m_nonEmptyColdBuckets;
+
+        while (buckets != 0) {
+            bucket = NUMBER_OF_BUCKETS - 1 - Long.numberOfLeadingZeros(buckets);
+            max = 0;
+            maxSegment = -1;
+            for (int i = m_coldBuckets[bucket].nextSetBit(0); i >= 0; i = m_coldBuckets[bucket].nextSetBit(i + 1)) {
+                freeBytes = m_logSegmentSize - m_usedBytes[i];
+                if (freeBytes > max && i != p_excludedSegment1 && i != p_excludedSegment2 &&
+                        !p_reservedSegments.get(i)) {
+                    max = freeBytes;
+                    maxSegment = i;
+                }
+            }
+            if (maxSegment != -1) {
+                return maxSegment;
+            }
+            buckets &= ~(1L << bucket);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the bucket for given number of free bytes.
+     *
+     * @param p_freeBytes
+     *         the number of free bytes
+     * @return the bucket
+     */
+    private int getBucket(final int p_freeBytes) {
+        return (int) ((long) Math.min(p_freeBytes, m_logSegmentSize) * (NUMBER_OF_BUCKETS - 1) / m_logSegmentSize);
+    }
+
+    /**
+     * Adds a segment to a bucket.
+     *
+     * @param p_segmentIndex
+     *         the segment
+     * @param p_bucket
+     *         the bucket
+     * @param p_cold
+     *         whether the segment is a cold segment
+     */
+    private void addToBucket(final int p_segmentIndex, final int p_bucket, final boolean p_cold) {
+        if (p_cold) {
+            m_coldBuckets[p_bucket].set(p_segmentIndex);
+            m_segmentBuckets[p_segmentIndex] = p_bucket + NUMBER_OF_BUCKETS;
+            m_nonEmptyColdBuckets |= 1L << p_bucket;
+        } else {
+            m_buckets[p_bucket].set(p_segmentIndex);
+            m_segmentBuckets[p_segmentIndex] = p_bucket;
+            m_nonEmptyBuckets |= 1L << p_bucket;
+        }
+    }
+
+    /**
+     * Removes a segment from its bucket.
+     *
+     * @param p_segmentIndex
+     *         the segment
+     */
+    private void removeFromBucket(final int p_segmentIndex) {
+        int bucket = m_segmentBuckets[p_segmentIndex];
+
+        if (bucket >= NUMBER_OF_BUCKETS) {
+            bucket -= NUMBER_OF_BUCKETS;
+            m_coldBuckets[bucket].clear(p_segmentIndex);
+            m_segmentBuckets[p_segmentIndex] = -1;
+            if (m_coldBuckets[bucket].isEmpty()) {
+                m_nonEmptyColdBuckets &= ~(1L << bucket);
+            }
+        } else if (bucket != -1) {
+            m_buckets[bucket].clear(p_segmentIndex);
+            m_segmentBuckets[p_segmentIndex] = -1;
+            if (m_buckets[bucket].isEmpty()) {
+                m_nonEmptyBuckets &= ~(1L << bucket);
+            }
+        }
+    }
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.hhu.bsinfo.dxlog.storage.header.AbstractSecLogEntryHeader;
+
+/**
+ * Persistent table with the metadata of all segments of a secondary log (used bytes, age, number of log entries,
+ * min/max chunk ID, epoch of the last write). The table is stored in a sidecar file next to the secondary log and
+ * updated incrementally: appends only mark a record dirty (written with the next sync or on closing), rewrites and
+ * frees of a segment invalidate the record on disk first. A reopened secondary log only scans segments with an
+ * invalid or outdated record.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class SegmentTable {
+
+    private static final Logger LOGGER = LogManager.getFormatterLogger(SegmentTable.class.getSimpleName());
+
+    static final String POSTFIX_FILENAME = ".seg";
+
+    private static final int MAGIC = 0x44585347; // "DXSG"
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 40;
+    private static final int CHECKSUM_OFFSET = 32;
+
+    // Record layout
+    private static final int USED_BYTES_OFFSET = 0;
+    private static final int AGE_OFFSET = 4;
+    private static final int ENTRY_COUNT_OFFSET = 8;
+    private static final int EPOCH_OFFSET = 12;
+    private static final int FLAGS_OFFSET = 14;
+    private static final int MIN_CID_OFFSET = 16;
+    private static final int MAX_CID_OFFSET = 24;
+
+    private static final short FLAG_VALID = 1;
+    private static final short FLAG_REORGANIZED = 2;
+
+    private final int m_numberOfSegments;
+    private final int m_logSegmentSize;
+    private final short m_originalOwner;
+    private final ByteBuffer m_records;
+    private final BitSet m_dirtyRecords;
+    private final CRC32 m_crc;
+
+    private File m_file;
+    private FileChannel m_channel;
+
+    /**
+     * Creates an instance of SegmentTable.
+     *
+     * @param p_logFile
+     *         the secondary log file
+     * @param p_numberOfSegments
+     *         the number of segments of the secondary log
+     * @param p_logSegmentSize
+     *         the segment size
+     * @param p_originalOwner
+     *         the original owner (to complete the chunk IDs of not migrated log entries)
+     * @param p_reopen
+     *         whether to load the table of an existing secondary log or create a new one
+     * @throws IOException
+     *         if the table could not be created or read
+     */
+    SegmentTable(final File p_logFile, final int p_numberOfSegments, final int p_logSegmentSize,
+            final short p_originalOwner, final boolean p_reopen) throws IOException {
+        m_numberOfSegments = p_numberOfSegments;
+        m_logSegmentSize = p_logSegmentSize;
+        m_originalOwner = p_originalOwner;
+        m_records = ByteBuffer.allocate(p_numberOfSegments * RECORD_SIZE);
+        m_dirtyRecords = new BitSet(p_numberOfSegments);
+        m_crc = new CRC32();
+
+        m_file = new File(p_logFile.getPath() + POSTFIX_FILENAME);
+        if (p_reopen) {
+            m_channel = FileChannel.open(m_file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (!load()) {
+                LOGGER.warn("Segment table %s is missing or does not match the configuration. All segments are " +
+                        "scanned.", m_file.getName());
+                initialize(false);
+            }
+        } else {
+            m_channel = FileChannel.open(m_file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            initialize(true);
+        }
+    }
+
+    /**
+     * Returns whether the record of given segment is valid (consistent and written after the last modification
+     * which could shrink the segment).
+     *
+     * @param p_index
+     *         the segment index
+     * @return true if the record is valid
+     */
+    synchronized boolean isValid(final int p_index) {
+        int offset = p_index * RECORD_SIZE;
+
+        return (m_records.getShort(offset + FLAGS_OFFSET) & FLAG_VALID) != 0 &&
+                m_records.getInt(offset + CHECKSUM_OFFSET) == calculateChecksum(offset);
+    }
+
+    /**
+     * Returns the number of used bytes of given segment.
+     *
+     * @param p_index
+     *         the segment index
+     * @return the number of used bytes
+     */
+    synchronized int getUsedBytes(final int p_index) {
+        return m_records.getInt(p_index * RECORD_SIZE + USED_BYTES_OFFSET);
+    }
+
+    /**
+     * Returns the age of given segment when the record was written.
+     *
+     * @param p_index
+     *         the segment index
+     * @return the age in seconds
+     */
+    synchronized int getAge(final int p_index) {
+        return m_records.getInt(p_index * RECORD_SIZE + AGE_OFFSET);
+    }
+
+    /**
+     * Returns the number of log entries in given segment.
+     *
+     * @param p_index
+     *         the segment index
+     * @return the number of log entries
+     */
+    synchronized int getEntryCount(final int p_index) {
+        return m_records.getInt(p_index * RECORD_SIZE + ENTRY_COUNT_OFFSET);
+    }
+
+    /**
+     * Returns the epoch (including eon bit) of the last write access to given segment. All log entries in the
+     * segment have this epoch or an older one.
+     *
+     * @param p_index
+     *         the segment index
+     * @return the epoch
+     */
+    synchronized short getLastWriteEpoch(final int p_index) {
+        return m_records.getShort(p_index * RECORD_SIZE + EPOCH_OFFSET);
+    }
+
+    /**
+     * Returns whether given segment was reorganized in the current eon.
+     *
+     * @param p_index
+     *         the segment index
+     * @return true if the segment was reorganized in the current eon
+     */
+    synchronized boolean wasReorganized(final int p_index) {
+        return (m_records.getShort(p_index * RECORD_SIZE + FLAGS_OFFSET) & FLAG_REORGANIZED) != 0;
+    }
+
+    /**
+     * Returns the smallest chunk ID in given segment.
+     *
+     * @param p_index
+     *         the segment index
+     * @return the smallest chunk ID
+     */
+    synchronized long getMinChunkID(final int p_index) {
+        return m_records.getLong(p_index * RECORD_SIZE + MIN_CID_OFFSET);
+    }
+
+    /**
+     * Returns the largest chunk ID in given segment.
+     *
+     * @param p_index
+     *         the segment index
+     * @return the largest chunk ID
+     */
+    synchronized long getMaxChunkID(final int p_index) {
+        return m_records.getLong(p_index * RECORD_SIZE + MAX_CID_OFFSET);
+    }
+
+    /**
+     * Updates the record of given segment after writing log entries to it. Writing to the beginning of a segment
+     * resets the record (new or rewritten segment).
+     *
+     * @param p_index
+     *         the segment index
+     * @param p_segmentOffset
+     *         the offset within the segment the data was written to
+     * @param p_data
+     *         the written log entries
+     * @param p_dataOffset
+     *         the offset within the buffer
+     * @param p_length
+     *         the number of written bytes
+     * @param p_epoch
+     *         the current epoch (including eon bit)
+     */
+    synchronized void recordWrite(final int p_index, final int p_segmentOffset, final ByteBuffer p_data,
+            final int p_dataOffset, final int p_length, final short p_epoch) {
+        int offset = p_index * RECORD_SIZE;
+        int entryCount = 0;
+        long minChunkID = Long.MAX_VALUE;
+        long maxChunkID = Long.MIN_VALUE;
+
+        if (p_segmentOffset > 0) {
+            entryCount = m_records.getInt(offset + ENTRY_COUNT_OFFSET);
+            minChunkID = m_records.getLong(offset + MIN_CID_OFFSET);
+            maxChunkID = m_records.getLong(offset + MAX_CID_OFFSET);
+        }
+
+        int dataOffset = p_dataOffset;
+        while (dataOffset < p_dataOffset + p_length) {
+            short type = (short) (p_data.get(dataOffset) & 0xFF);
+            AbstractSecLogEntryHeader logEntryHeader = AbstractSecLogEntryHeader.getHeader(type);
+            long chunkID = logEntryHeader.getCID(type, p_data, dataOffset);
+            if (!logEntryHeader.isMigrated()) {
+                chunkID = ((long) m_originalOwner << 48) + chunkID;
+            }
+            minChunkID = Math.min(minChunkID, chunkID);
+            maxChunkID = Math.max(maxChunkID, chunkID);
+            entryCount++;
+
+            dataOffset += logEntryHeader.getHeaderSize(type) + logEntryHeader.getLength(type, p_data, dataOffset);
+        }
+
+        m_records.putInt(offset + USED_BYTES_OFFSET, p_segmentOffset + p_length);
+        m_records.putInt(offset + ENTRY_COUNT_OFFSET, entryCount);
+        m_records.putShort(offset + EPOCH_OFFSET, p_epoch);
+        m_records.putLong(offset + MIN_CID_OFFSET, minChunkID);
+        m_records.putLong(offset + MAX_CID_OFFSET, maxChunkID);
+        m_records.putShort(offset + FLAGS_OFFSET,
+                (short) (m_records.getShort(offset + FLAGS_OFFSET) | FLAG_VALID));
+        m_dirtyRecords.set(p_index);
+    }
+
+    /**
+     * Sets the record of given segment after scanning it (reopened secondary log).
+     *
+     * @param p_header
+     *         the segment header
+     * @param p_entryCount
+     *         the number of log entries
+     * @param p_minChunkID
+     *         the smallest chunk ID
+     * @param p_maxChunkID
+     *         the largest chunk ID
+     * @param p_epoch
+     *         the current epoch (including eon bit)
+     */
+    synchronized void recordScan(final SegmentHeader p_header, final int p_entryCount, final long p_minChunkID,
+            final long p_maxChunkID, final short p_epoch) {
+        int offset = p_header.getIndex() * RECORD_SIZE;
+
+        m_records.putInt(offset + USED_BYTES_OFFSET, p_header.getUsedBytes());
+        m_records.putInt(offset + ENTRY_COUNT_OFFSET, p_entryCount);
+        m_records.putShort(offset + EPOCH_OFFSET, p_epoch);
+        m_records.putShort(offset + FLAGS_OFFSET, FLAG_VALID);
+        m_records.putLong(offset + MIN_CID_OFFSET, p_minChunkID);
+        m_records.putLong(offset + MAX_CID_OFFSET, p_maxChunkID);
+        m_dirtyRecords.set(p_header.getIndex());
+    }
+
+    /**
+     * Invalidates the record of given segment on disk. Must be called before a segment is rewritten (it might shrink)
+     * to never trust a record which is larger than the segment's content.
+     *
+     * @param p_index
+     *         the segment index
+     * @throws IOException
+     *         if the record could not be written
+     */
+    synchronized void invalidate(final int p_index) throws IOException {
+        int offset = p_index * RECORD_SIZE;
+
+        m_records.putShort(offset + FLAGS_OFFSET, (short) 0);
+        writeRecords(p_index, p_index + 1);
+    }
+
+    /**
+     * Resets the record of given segment on disk after freeing the segment.
+     *
+     * @param p_index
+     *         the segment index
+     * @throws IOException
+     *         if the record could not be written
+     */
+    synchronized void clear(final int p_index) throws IOException {
+        int offset = p_index * RECORD_SIZE;
+
+        for (int i = 0; i < RECORD_SIZE; i++) {
+            m_records.put(offset + i, (byte) 0);
+        }
+        m_records.putShort(offset + FLAGS_OFFSET, FLAG_VALID);
+        writeRecords(p_index, p_index + 1);
+    }
+
+    /**
+     * Marks all records dirty (e.g., after the reorganization flags were reset for a new eon).
+     */
+    synchronized void markAllDirty() {
+        m_dirtyRecords.set(0, m_numberOfSegments);
+    }
+
+    /**
+     * Writes all dirty records (coalesced to contiguous writes) to disk. The age and reorganization flag are taken
+     * from the segment headers.
+     *
+     * @param p_segmentHeaders
+     *         the segment headers
+     * @param p_currentTime
+     *         the current time in seconds
+     * @param p_force
+     *         whether to force the table to the storage device or not
+     * @throws IOException
+     *         if the table could not be written
+     */
+    synchronized void flush(final SegmentHeader[] p_segmentHeaders, final int p_currentTime, final boolean p_force)
+            throws IOException {
+        int start = m_dirtyRecords.nextSetBit(0);
+        while (start != -1) {
+            int end = m_dirtyRecords.nextClearBit(start);
+            for (int i = start; i < end; i++) {
+                SegmentHeader header = p_segmentHeaders[i];
+                int offset = i * RECORD_SIZE;
+                short flags = m_records.getShort(offset + FLAGS_OFFSET);
+
+                if (header != null) {
+                    m_records.putInt(offset + AGE_OFFSET, header.getAge(p_currentTime));
+                    flags = (short) (header.wasNotReorganized() ? flags & ~FLAG_REORGANIZED :
+                            flags | FLAG_REORGANIZED);
+                    m_records.putShort(offset + FLAGS_OFFSET, flags);
+                }
+            }
+            writeRecords(start, end);
+            m_dirtyRecords.clear(start, end);
+
+            start = m_dirtyRecords.nextSetBit(end);
+        }
+
+        if (p_force) {
+            m_channel.force(false);
+        }
+    }
+
+    /**
+     * Closes the table.
+     *
+     * @throws IOException
+     *         if the table could not be closed
+     */
+    synchronized void close() throws IOException {
+        m_channel.close();
+    }
+
+    /**
+     * Closes the table and deletes the sidecar file.
+     *
+     * @throws IOException
+     *         if the table could not be closed
+     */
+    synchronized void closeAndRemove() throws IOException {
+        m_channel.close();
+        Files.deleteIfExists(m_file.toPath());
+    }
+
+    /**
+     * Renames the sidecar file after the secondary log was renamed.
+     *
+     * @param p_newLogFile
+     *         the new secondary log file
+     * @throws IOException
+     *         if the table could not be renamed
+     */
+    synchronized void rename(final File p_newLogFile) throws IOException {
+        File newFile = new File(p_newLogFile.getPath() + POSTFIX_FILENAME);
+
+        m_channel.close();
+        Files.move(m_file.toPath(), newFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        m_file = newFile;
+        m_channel = FileChannel.open(m_file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads the table from disk.
+     *
+     * @return whether a table matching the configuration was read
+     * @throws IOException
+     *         if the table could not be read
+     */
+    private boolean load() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        if (m_channel.size() != HEADER_SIZE + m_records.capacity()) {
+            return false;
+        }
+
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != m_logSegmentSize ||
+                header.getInt(8) != m_numberOfSegments) {
+            return false;
+        }
+
+        m_records.clear();
+        readFully(m_records, HEADER_SIZE);
+        m_records.clear();
+
+        return true;
+    }
+
+    /**
+     * Writes the table header and all records (empty).
+     *
+     * @param p_valid
+     *         whether the empty records are valid (new secondary log) or not (existing secondary log without
+     *         matching table)
+     * @throws IOException
+     *         if the table could not be written
+     */
+    private void initialize(final boolean p_valid) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        for (int i = 0; i < m_records.capacity(); i++) {
+            m_records.put(i, (byte) 0);
+        }
+        if (p_valid) {
+            for (int i = 0; i < m_numberOfSegments; i++) {
+                m_records.putShort(i * RECORD_SIZE + FLAGS_OFFSET, FLAG_VALID);
+            }
+        }
+
+        header.putInt(MAGIC);
+        header.putInt(m_logSegmentSize);
+        header.putInt(m_numberOfSegments);
+        header.putInt(0);
+        header.flip();
+
+        m_channel.truncate(0);
+        while (header.hasRemaining()) {
+            m_channel.write(header, header.position());
+        }
+        writeRecords(0, m_numberOfSegments);
+    }
+
+    /**
+     * Writes a contiguous range of records (updates the checksums first).
+     *
+     * @param p_start
+     *         the first record
+     * @param p_end
+     *         the record after the last one
+     * @throws IOException
+     *         if the records could not be written
+     */
+    private void writeRecords(final int p_start, final int p_end) throws IOException {
+        for (int i = p_start; i < p_end; i++) {
+            m_records.putInt(i * RECORD_SIZE + CHECKSUM_OFFSET, calculateChecksum(i * RECORD_SIZE));
+        }
+
+        ByteBuffer records = m_records.duplicate();
+        records.limit(p_end * RECORD_SIZE);
+        records.position(p_start * RECORD_SIZE);
+        long writePos = HEADER_SIZE + (long) p_start * RECORD_SIZE;
+        while (records.hasRemaining()) {
+            writePos += m_channel.write(records, writePos);
+        }
+    }
+
+    /**
+     * Reads from the table file until the buffer is full.
+     *
+     * @param p_buffer
+     *         the buffer
+     * @param p_readPos
+     *         the position within the file
+     * @throws IOException
+     *         if the file could not be read
+     */
+    private void readFully(final ByteBuffer p_buffer, final long p_readPos) throws IOException {
+        long readPos = p_readPos;
+        while (p_buffer.hasRemaining()) {
+            int read = m_channel.read(p_buffer, readPos);
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment table " + m_file.getName());
+            }
+            readPos += read;
+        }
+    }
+
+    /**
+     * Calculates the checksum of a record (all fields in front of the checksum).
+     *
+     * @param p_offset
+     *         the record's offset
+     * @return the checksum
+     */
+    private int calculateChecksum(final int p_offset) {
+        ByteBuffer record = m_records.duplicate();
+        record.limit(p_offset + CHECKSUM_OFFSET);
+        record.position(p_offset);
+
+        m_crc.reset();
+        m_crc.update(record);
+
+        return (int) m_crc.getValue();
+    }
+}
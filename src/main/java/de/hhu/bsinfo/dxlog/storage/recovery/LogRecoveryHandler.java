@@ -320,6 +320,7 @@ public final class LogRecoveryHandler {
         int combinedSize = 0;
         long chunkID;
         ByteBuffer segmentData;
+        DirectByteBufferWrapper segmentWrapper;
         Version currentVersion;
         Version entryVersion;
         AbstractSecLogEntryHeader logEntryHeader;
@@ -330,8 +331,15 @@ public final class LogRecoveryHandler {
 
             SOP_READ_SEGMENT.start();
 
-            segmentLength = p_secondaryLog.readSegment(p_wrapper, p_segmentIndex);
-            segmentData = p_wrapper.getBuffer();
+            // Parse the segment in place if the log is memory-mapped; read it into the buffer otherwise
+            segmentWrapper = p_secondaryLog.mapSegment(p_segmentIndex);
+            if (segmentWrapper != null) {
+                segmentLength = segmentWrapper.getBuffer().capacity();
+            } else {
+                segmentLength = p_secondaryLog.readSegment(p_wrapper, p_segmentIndex);
+                segmentWrapper = p_wrapper;
+            }
+            segmentData = segmentWrapper.getBuffer();
 
             SOP_READ_SEGMENT.stop();
 
@@ -372,7 +380,7 @@ public final class LogRecoveryHandler {
                         // Create chunk only if log entry complete
                         if (DO_CRC_CHECK) {
                             if (ChecksumHandler
-                                    .calculateChecksumOfPayload(p_wrapper, readBytes + headerSize, payloadSize) !=
+                                    .calculateChecksumOfPayload(segmentWrapper, readBytes + headerSize, payloadSize) !=
                                     logEntryHeader.getChecksum(type, segmentData, readBytes)) {
 
                                 LOGGER.error("Corrupt data. Could not recover 0x%X!", chunkID);
@@ -431,8 +439,8 @@ public final class LogRecoveryHandler {
                                 SOP_PUT_REGULAR_CHUNKS.start();
 
                                 p_dxmemRecoveryOp
-                                        .createAndPutRecovered(chunkIDs, p_wrapper.getAddress(), offsets, lengths,
-                                                length);
+                                        .createAndPutRecovered(chunkIDs, segmentWrapper.getAddress(), offsets,
+                                                lengths, length);
 
                                 SOP_PUT_REGULAR_CHUNKS.stop();
 
@@ -459,7 +467,8 @@ public final class LogRecoveryHandler {
                 if (index != 0) {
                     SOP_PUT_REGULAR_CHUNKS.start();
 
-                    p_dxmemRecoveryOp.createAndPutRecovered(chunkIDs, p_wrapper.getAddress(), offsets, lengths, length);
+                    p_dxmemRecoveryOp
+                            .createAndPutRecovered(chunkIDs, segmentWrapper.getAddress(), offsets, lengths, length);
 
                     SOP_PUT_REGULAR_CHUNKS.stop();
 
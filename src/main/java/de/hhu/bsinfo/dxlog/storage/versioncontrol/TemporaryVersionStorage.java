@@ -76,6 +76,16 @@ public final class TemporaryVersionStorage {
         m_versionHashTable.clear();
     }
 
+    /**
+     * Returns the memory occupied by the version data structures.
+     *
+     * @return the number of bytes
+     */
+    public long getMemoryUsage() {
+        return (long) m_versionArray.capacity() * 2 * Integer.BYTES +
+                (long) m_versionHashTable.getTable().length * Long.BYTES;
+    }
+
     /**
      * Returns the current version for given ChunkID.
      *
@@ -41,6 +41,42 @@ public final class Version {
         m_version = p_version;
     }
 
+    /**
+     * Packs epoch and version into a long (epoch in the upper, version in the lower 32 bits).
+     * Used to pass versions without allocating a Version object per log entry.
+     *
+     * @param p_epoch
+     *         the epoch
+     * @param p_version
+     *         the version
+     * @return the packed version
+     */
+    public static long pack(final short p_epoch, final int p_version) {
+        return (long) p_epoch << 32 | p_version & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the epoch of a packed version.
+     *
+     * @param p_packedVersion
+     *         the packed version
+     * @return the epoch
+     */
+    public static short getPackedEpoch(final long p_packedVersion) {
+        return (short) (p_packedVersion >> 32);
+    }
+
+    /**
+     * Returns the version of a packed version.
+     *
+     * @param p_packedVersion
+     *         the packed version
+     * @return the version
+     */
+    public static int getPackedVersion(final long p_packedVersion) {
+        return (int) p_packedVersion;
+    }
+
     /**
      * Returns the version.
      *
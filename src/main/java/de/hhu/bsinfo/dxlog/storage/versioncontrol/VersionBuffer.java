@@ -30,6 +30,9 @@ import de.hhu.bsinfo.dxlog.storage.header.AbstractSecLogEntryHeader;
 import de.hhu.bsinfo.dxmem.data.ChunkID;
 import de.hhu.bsinfo.dxutils.hashtable.LongHashTable;
 import de.hhu.bsinfo.dxutils.hashtable.LongIntHashTable;
+import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
+import de.hhu.bsinfo.dxutils.stats.TimePool;
+import de.hhu.bsinfo.dxutils.stats.ValuePool;
 
 /**
  * The version buffer, based on a hash table to store versions (Linear probing).
@@ -40,6 +43,8 @@ import de.hhu.bsinfo.dxutils.hashtable.LongIntHashTable;
  * VersionBuffer). The total size needed in log is 13 bytes (8 bytes for chunk ID, 3 bytes for version, 2 bytes for
  * epoch). The version hash table used for reorganization and recovery uses 16 bytes to store chunk ID, version
  * tuples (8 bytes for chunk ID, 8 bytes for version + epoch).
+ * Optionally, the version log consists of runs sorted by chunk ID (see VersionRunList): every flush appends a
+ * sorted run and the runs are merged by the reorganization (or by the flushing thread if too many runs piled up).
  *
  * @author Kevin Beineke, kevin.beineke@hhu.de, 23.02.2016
  */
@@ -54,16 +59,38 @@ public final class VersionBuffer extends LongIntHashTable {
 
     private static final Logger LOGGER = LogManager.getFormatterLogger(VersionBuffer.class.getSimpleName());
 
+    private static final TimePool SOP_MERGE_VERSION_RUNS = new TimePool(VersionBuffer.class, "MergeVersionRuns");
+    private static final ValuePool SOP_MERGE_VERSION_RUNS_SIZE =
+            new ValuePool(VersionBuffer.class, "MergeVersionRunsSize");
+
+    static {
+        StatisticsManager.get().registerOperation(VersionBuffer.class, SOP_MERGE_VERSION_RUNS);
+        StatisticsManager.get().registerOperation(VersionBuffer.class, SOP_MERGE_VERSION_RUNS_SIZE);
+    }
+
     private static final DirectByteBufferWrapper FLUSH_BUFFER_WRAPPER =
             new DirectByteBufferWrapper(SSD_ENTRY_SIZE * VERSIONS_BUFFER_CAPACITY, true);
     private static final ByteBuffer FLUSH_BUFFER = FLUSH_BUFFER_WRAPPER.getBuffer();
 
-    private static DirectByteBufferWrapper ms_reorgBufferWrapper =
-            new DirectByteBufferWrapper(READ_BUFFER_CHUNK_SIZE, true);
+    // One buffer per thread as several reorganization threads read and write back version logs concurrently
+    private static final ThreadLocal<DirectByteBufferWrapper> REORG_BUFFER_WRAPPER =
+            new ThreadLocal<DirectByteBufferWrapper>() {
+                @Override
+                protected DirectByteBufferWrapper initialValue() {
+                    return new DirectByteBufferWrapper(READ_BUFFER_CHUNK_SIZE, true);
+                }
+            };
+    // Second buffer for merging sorted runs (allocated on first use)
+    private static final ThreadLocal<DirectByteBufferWrapper> MERGE_BUFFER_WRAPPER =
+            new ThreadLocal<DirectByteBufferWrapper>();
+
+    // Chunk ID, version pairs to sort a flushed version buffer (guarded by FLUSH_BUFFER_WRAPPER)
+    private static long[] ms_sortTable;
 
     private final Scheduler m_scheduler;
 
     private VersionLog m_log;
+    private final VersionRunList m_runList;
 
     private final short m_originalOwner;
     private final int m_windowSize;
@@ -73,8 +100,15 @@ public final class VersionBuffer extends LongIntHashTable {
 
     private long m_numberOfCIDs = 0;
 
+    // Incremented whenever the version log is rewritten or versions are not appended to it (see VersionSnapshot).
+    // Written by the writer, reorganization and removing threads without the access lock -> volatile. A lost
+    // increment is harmless as the generation changes either way
+    private volatile int m_generation;
+
     private volatile double m_averageLID = 0;
 
+    private volatile boolean m_closed;
+
     private ReentrantLock m_accessLock;
 
     /**
@@ -88,9 +122,13 @@ public final class VersionBuffer extends LongIntHashTable {
      *         the backup range size
      * @param p_logFileName
      *         the file name (including backup directory) of the version log
+     * @param p_reopen
+     *         whether to reopen an existing version log (see restoreFromLog()) instead of creating a new one
+     * @param p_sortedRuns
+     *         whether the version log consists of runs sorted by chunk ID
      */
     VersionBuffer(final Scheduler p_scheduler, final short p_originalOwner, final long p_backupRangeSize,
-            final String p_logFileName) {
+            final String p_logFileName, final boolean p_reopen, final boolean p_sortedRuns) {
         super(VERSIONS_BUFFER_CAPACITY);
 
         m_scheduler = p_scheduler;
@@ -102,8 +140,10 @@ public final class VersionBuffer extends LongIntHashTable {
         m_eon = 0;
         m_epoch = 0;
 
+        m_runList = p_sortedRuns ? new VersionRunList(SSD_ENTRY_SIZE) : null;
+
         try {
-            m_log = new VersionLog(new File(p_logFileName));
+            m_log = new VersionLog(new File(p_logFileName), p_reopen);
         } catch (final IOException e) {
             LOGGER.error("Could not create version log.", e);
         }
@@ -115,6 +155,7 @@ public final class VersionBuffer extends LongIntHashTable {
      * Closes the version buffer and version log.
      */
     public void close() throws IOException {
+        m_closed = true;
         m_log.close();
     }
 
@@ -122,9 +163,23 @@ public final class VersionBuffer extends LongIntHashTable {
      * Closes the version buffer and deletes the version log.
      */
     public void closeAndRemoveLog() throws IOException {
+        m_closed = true;
+        m_generation++;
+        if (m_runList != null) {
+            m_runList.clear();
+        }
         m_log.closeAndRemove();
     }
 
+    /**
+     * Returns whether the version buffer was closed (the backup range was closed or removed).
+     *
+     * @return true if the version buffer was closed
+     */
+    boolean isClosed() {
+        return m_closed;
+    }
+
     /**
      * Returns the number of keys in VersionBuffer.
      *
@@ -220,6 +275,111 @@ public final class VersionBuffer extends LongIntHashTable {
         return new Version((short) (m_epoch + (m_eon << 15)), 1);
     }
 
+    /**
+     * Returns the next packed version (see Version.pack()) for the specified key.
+     *
+     * @param p_key
+     *         the searched key (is incremented before insertion to avoid 0)
+     * @return the packed epoch and 1 + value to which the key is mapped in VersionBuffer
+     */
+    final long getNextPackedVersion(final long p_key) {
+        long ret;
+
+        // Avoid rehashing by waiting
+        while (isFull()) {
+            m_scheduler.flushWriteBuffer();
+        }
+
+        m_accessLock.lock(); // do not update version while it is flushed to disk
+
+        updateRangeBarriers(p_key);
+
+        // Increment key to avoid ChunkID 0
+        long oldValue = add(p_key + 1, 1);
+        ret = Version.pack((short) (m_epoch + (m_eon << 15)), oldValue != -1 ? (int) (oldValue + 1) : 1);
+
+        m_accessLock.unlock();
+
+        return ret;
+    }
+
+    /**
+     * Returns the next packed versions (see Version.pack()) for all given keys. All versions are assigned with a
+     * single lock acquisition unless the hash table fills up in between (the lock is released to let the version
+     * buffer be flushed).
+     *
+     * @param p_keys
+     *         the searched keys (are incremented before insertion to avoid 0)
+     * @param p_numberOfKeys
+     *         the number of keys to process
+     * @param p_versions
+     *         the array to store the packed versions in (same order as the keys)
+     */
+    final void getNextPackedVersions(final long[] p_keys, final int p_numberOfKeys, final long[] p_versions) {
+        int i = 0;
+        long oldValue;
+        short epoch;
+
+        while (i < p_numberOfKeys) {
+            // Avoid rehashing by waiting
+            while (isFull()) {
+                m_scheduler.flushWriteBuffer();
+            }
+
+            m_accessLock.lock(); // do not update versions while they are flushed to disk
+
+            epoch = (short) (m_epoch + (m_eon << 15));
+            while (i < p_numberOfKeys && !isFull()) {
+                updateRangeBarriers(p_keys[i]);
+
+                // Increment key to avoid ChunkID 0
+                oldValue = add(p_keys[i] + 1, 1);
+                p_versions[i] = Version.pack(epoch, oldValue != -1 ? (int) (oldValue + 1) : 1);
+                i++;
+            }
+
+            m_accessLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the next packed versions (see Version.pack()) for all given keys without waiting for the version
+     * buffer to be flushed. Either all versions or none are assigned. A batch starting below the fill limit is
+     * assigned completely, even if it exceeds the limit (the hash table has room left until it is flushed).
+     *
+     * @param p_keys
+     *         the searched keys (are incremented before insertion to avoid 0)
+     * @param p_numberOfKeys
+     *         the number of keys to process
+     * @param p_versions
+     *         the array to store the packed versions in (same order as the keys)
+     * @return whether the versions were assigned or not (the version buffer is full)
+     */
+    final boolean tryGetNextPackedVersions(final long[] p_keys, final int p_numberOfKeys, final long[] p_versions) {
+        long oldValue;
+        short epoch;
+
+        m_accessLock.lock(); // do not update versions while they are flushed to disk
+        try {
+            if (isFull() || size() + p_numberOfKeys >= VERSIONS_BUFFER_CAPACITY) {
+                return false;
+            }
+
+            epoch = (short) (m_epoch + (m_eon << 15));
+            for (int i = 0; i < p_numberOfKeys; i++) {
+                updateRangeBarriers(p_keys[i]);
+
+                // Increment key to avoid ChunkID 0
+                oldValue = add(p_keys[i] + 1, 1);
+                p_versions[i] = Version.pack(epoch, oldValue != -1 ? (int) (oldValue + 1) : 1);
+            }
+        } finally {
+            m_accessLock.unlock();
+        }
+
+        return true;
+    }
+
     /**
      * Updates the range barriers.
      * Assumes
@@ -290,6 +450,93 @@ public final class VersionBuffer extends LongIntHashTable {
         m_accessLock.unlock();
     }
 
+    /**
+     * Maps the given key to the given version in VersionBuffer if the key is not mapped to a higher version, yet.
+     * Used to restore the versions of the current epoch after reopening the logs.
+     *
+     * @param p_key
+     *         the key (is incremented before insertion to avoid 0)
+     * @param p_version
+     *         the version
+     */
+    public final void restoreVersion(final long p_key, final int p_version) {
+        m_accessLock.lock();
+        try {
+            if (isFull()) {
+                LOGGER.warn("Could not restore version of chunk 0x%X as current epoch is full", p_key);
+
+                return;
+            }
+
+            // Increment key to avoid ChunkID 0
+            long oldValue = get(p_key + 1);
+            if (oldValue == -1 || oldValue < p_version) {
+                put(p_key + 1, p_version);
+            }
+        } finally {
+            m_accessLock.unlock();
+        }
+    }
+
+    /**
+     * Restores the epoch and eon of a reopened version log. The epoch following the newest logged epoch becomes the
+     * current epoch (versions of the current epoch are not in the version log, yet). The newest epoch and eon are
+     * the ones of the last log entry: flushes are appended, merging runs keeps the newest run last and writing back
+     * the compacted versions repeats an entry of the newest epoch at the end (see writeBackToLog()). The highest
+     * logged epoch is not used as entries of previous eons with the same eon bit might still be in the log.
+     * The range barriers are determined from the logged chunk IDs as well. If the version log consists of sorted
+     * runs, the run list is rebuilt and too many runs (e.g. of an unsorted version log) are merged.
+     *
+     * @throws IOException
+     *         if the version log could not be read
+     */
+    public void restoreFromLog() throws IOException {
+        int eon;
+        int epoch;
+        int length;
+        short epochAndEon = 0;
+        long fileSize = getLogFileSize();
+        long readPos = 0;
+        DirectByteBufferWrapper readBufferWrapper =
+                new DirectByteBufferWrapper(READ_BUFFER_CHUNK_SIZE / SSD_ENTRY_SIZE * SSD_ENTRY_SIZE, true);
+        ByteBuffer readBuffer = readBufferWrapper.getBuffer();
+
+        m_accessLock.lock();
+        try {
+            while (readPos + SSD_ENTRY_SIZE <= fileSize) {
+                length = (int) Math.min(readBuffer.capacity(), (fileSize - readPos) / SSD_ENTRY_SIZE * SSD_ENTRY_SIZE);
+                m_log.readFromLog(readBufferWrapper, length, readPos);
+
+                readBuffer.clear();
+                if (m_runList != null) {
+                    m_runList.append(readPos, readBuffer, 0, length);
+                }
+                for (int i = 0; i < length; i += SSD_ENTRY_SIZE) {
+                    updateRangeBarriers(readBuffer.getLong(i));
+                }
+                epochAndEon = readBuffer.getShort(length - SSD_ENTRY_SIZE + 8);
+                readPos += length;
+            }
+
+            if (readPos > 0) {
+                eon = epochAndEon >> 15 & 1;
+                epoch = epochAndEon & 0x7FFF;
+
+                m_eon = (byte) eon;
+                m_epoch = (short) epoch;
+                incrementEpoch();
+            }
+        } finally {
+            m_accessLock.unlock();
+        }
+
+        if (m_runList != null) {
+            mergeRuns();
+        }
+
+        LOGGER.debug("Restored version log: %d bytes, epoch %d, eon %d", readPos, m_epoch, m_eon);
+    }
+
     /**
      * Writes all versions to SSD and clears the hash table.
      *
@@ -310,40 +557,95 @@ public final class VersionBuffer extends LongIntHashTable {
             ret = incrementEpoch();
             m_accessLock.unlock();
 
-            try {
-                // Re-use ByteBuffer
-                FLUSH_BUFFER.position(0);
-
-                // Iterate over all entries
-                for (int i = 0; i < oldTable.length; i += 3) {
-                    chunkID = (long) oldTable[i] << 32 | oldTable[i + 1];
-                    if (chunkID != 0) {
-                        // ChunkID (-1 because 1 is added before putting to avoid CID 0)
-                        FLUSH_BUFFER.putLong(chunkID - 1);
-                        // Epoch (2 Bytes in persistent table; was incremented before!)
-                        FLUSH_BUFFER.putShort((short) (m_epoch - 1 + (m_eon << 15)));
-                        // Version (8 Bytes in hash table, 3 in persistent table)
-                        version = oldTable[i + 2];
-                        FLUSH_BUFFER.put((byte) (version >>> 16));
-                        FLUSH_BUFFER.put((byte) (version >>> 8));
-                        FLUSH_BUFFER.put((byte) version);
+            // The flush buffer is shared by all version buffers (flushed by writer and reorganization threads)
+            synchronized (FLUSH_BUFFER_WRAPPER) {
+                try {
+                    // Re-use ByteBuffer
+                    FLUSH_BUFFER.position(0);
+
+                    if (m_runList != null) {
+                        putSortedEntries(oldTable, count);
+                    } else {
+                        // Iterate over all entries
+                        for (int i = 0; i < oldTable.length; i += 3) {
+                            chunkID = (long) oldTable[i] << 32 | oldTable[i + 1];
+                            if (chunkID != 0) {
+                                // ChunkID (-1 because 1 is added before putting to avoid CID 0)
+                                FLUSH_BUFFER.putLong(chunkID - 1);
+                                // Epoch (2 Bytes in persistent table; was incremented before!)
+                                FLUSH_BUFFER.putShort((short) (m_epoch - 1 + (m_eon << 15)));
+                                // Version (8 Bytes in hash table, 3 in persistent table)
+                                version = oldTable[i + 2];
+                                FLUSH_BUFFER.put((byte) (version >>> 16));
+                                FLUSH_BUFFER.put((byte) (version >>> 8));
+                                FLUSH_BUFFER.put((byte) version);
+                            }
+                        }
                     }
-                }
 
-                m_log.appendToLog(FLUSH_BUFFER_WRAPPER, 0, count * SSD_ENTRY_SIZE);
+                    long logSize = m_log.appendToLog(FLUSH_BUFFER_WRAPPER, 0, count * SSD_ENTRY_SIZE);
+                    if (m_runList != null) {
+                        m_runList.append(logSize - count * SSD_ENTRY_SIZE, FLUSH_BUFFER, 0, count * SSD_ENTRY_SIZE);
+                    }
 
-            } catch (final IOException e) {
-                LOGGER.error("Could write to versions file", e);
+                } catch (final IOException e) {
+                    LOGGER.error("Could write to versions file", e);
+                }
             }
         } else {
             m_accessLock.unlock();
         }
 
+        if (m_runList != null && m_runList.isMergeOverdue()) {
+            // The reorganization did not merge the runs in time -> merge now (snapshots are outdated)
+            m_generation++;
+            try {
+                mergeRuns();
+            } catch (final IOException e) {
+                LOGGER.error("Could not merge version log runs", e);
+            }
+        }
+
         return ret;
     }
 
     /**
-     * Reads all versions from SSD, adds current versions and writes back (if specified, only).
+     * Sorts the entries of a flushed version buffer by chunk ID and puts them into the flush buffer.
+     *
+     * @param p_oldTable
+     *         the hash table of the version buffer
+     * @param p_count
+     *         the number of entries
+     */
+    private void putSortedEntries(final int[] p_oldTable, final int p_count) {
+        int pairs = 0;
+        long chunkID;
+        short epoch = (short) (m_epoch - 1 + (m_eon << 15));
+
+        if (ms_sortTable == null) {
+            ms_sortTable = new long[2 * VERSIONS_BUFFER_CAPACITY];
+        }
+
+        for (int i = 0; i < p_oldTable.length; i += 3) {
+            chunkID = (long) p_oldTable[i] << 32 | p_oldTable[i + 1];
+            if (chunkID != 0) {
+                // ChunkID (-1 because 1 is added before putting to avoid CID 0)
+                ms_sortTable[pairs * 2] = chunkID - 1;
+                ms_sortTable[pairs * 2 + 1] = p_oldTable[i + 2];
+                pairs++;
+            }
+        }
+        VersionSorter.sortByChunkID(ms_sortTable, p_count);
+
+        for (int i = 0; i < p_count; i++) {
+            putEntry(FLUSH_BUFFER, ms_sortTable[i * 2], epoch, (int) ms_sortTable[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * Reads all versions from SSD, adds current versions and writes back (if specified, only). If there is nothing
+     * to write back, sorted runs are merged instead (the reorganization does not bring snapshots up to date without
+     * a snapshot cache, see readIncrementally()).
      * Note: if the reorganization thread executes this method, it might get interrupted to clear the way for the
      * recovery.
      *
@@ -379,8 +681,11 @@ public final class VersionBuffer extends LongIntHashTable {
         long highestLID = lowestLID + size - 1;
         long lowestCID = ((long) m_originalOwner << 48) + lowestLID;
 
+        // The version buffer is drained and the log might be rewritten -> snapshots are outdated
+        m_generation++;
+
         try {
-            update = readFromLog(lowestLID, highestLID, lowestCID, versionArray, versionHashTable);
+            update = readFromLog(lowestLID, highestLID, lowestCID, versionArray, versionHashTable, 0);
         } catch (final IOException e) {
             LOGGER.error("Could not read from version log", e);
             throw e;
@@ -398,12 +703,94 @@ public final class VersionBuffer extends LongIntHashTable {
                 } catch (final IOException e) {
                     LOGGER.error("Could not write to version log", e);
                 }
+            } else if (p_writeBack && m_runList != null) {
+                try {
+                    mergeRuns();
+                } catch (final IOException e) {
+                    LOGGER.error("Could not merge version log runs", e);
+                }
             }
         }
 
         return lowestCID;
     }
 
+    /**
+     * Brings a snapshot of all versions up to date. The versions of the current epoch are appended to the version
+     * log (like flushing the version buffer) and all versions appended since the snapshot was taken are applied to
+     * it. The version log is compacted if less than half of its entries are current (sorted runs are merged,
+     * otherwise). If the snapshot is invalid, the version log was rewritten in the meantime or the range barriers
+     * moved too far, all versions are read (see readAll()).
+     *
+     * @param p_snapshot
+     *         the snapshot
+     * @return the lowest CID of the snapshot's version array
+     * @throws IOException
+     *         if versions could not be read from log
+     */
+    long readIncrementally(final VersionSnapshot p_snapshot) throws IOException {
+        long lowestCID;
+        long lowestLID;
+        long logLength = p_snapshot.getLogLength();
+        TemporaryVersionStorage versions = p_snapshot.getVersions();
+        VersionArray versionArray = versions.getVersionsArray();
+        LongHashTable versionHashTable = versions.getVersionsHashTable();
+        int size = versionArray.capacity();
+
+        // See readAll() for the access locking
+        if (logLength == -1 || p_snapshot.getGeneration() != m_generation || logLength > getLogFileSize() ||
+                Math.abs(Math.max(0, (long) m_averageLID - size / 2) -
+                        ChunkID.getLocalID(p_snapshot.getLowestCID())) > size / 4) {
+            versions.clear();
+            lowestCID = readAll(versions, true);
+            if (Thread.currentThread().isInterrupted()) {
+                p_snapshot.invalidate();
+            } else {
+                p_snapshot.set(lowestCID, getLogFileSize(), m_generation);
+            }
+
+            return lowestCID;
+        }
+
+        // The epoch is incremented like in migrateVersionsFromVersionBuffer()
+        if (flush()) {
+            p_snapshot.markEonBegun();
+        }
+        if (p_snapshot.getGeneration() != m_generation) {
+            // The runs were merged during the flush -> read all versions
+            return readIncrementally(p_snapshot);
+        }
+
+        lowestCID = p_snapshot.getLowestCID();
+        lowestLID = ChunkID.getLocalID(lowestCID);
+        try {
+            readFromLog(lowestLID, lowestLID + size - 1, lowestCID, versionArray, versionHashTable, logLength);
+        } catch (final IOException e) {
+            p_snapshot.invalidate();
+            LOGGER.error("Could not read from version log", e);
+            throw e;
+        }
+
+        if (Thread.currentThread().isInterrupted()) {
+            p_snapshot.invalidate();
+        } else {
+            try {
+                if (getLogFileSize() > 2L * (versionArray.size() + versionHashTable.size()) * SSD_ENTRY_SIZE) {
+                    writeBackToLog(lowestCID, versionArray, versionHashTable);
+                } else if (m_runList != null) {
+                    mergeRuns();
+                }
+            } catch (final IOException e) {
+                // The log might be incomplete -> read all versions the next time
+                m_generation++;
+                LOGGER.error("Could not write to version log", e);
+            }
+            p_snapshot.set(lowestCID, getLogFileSize(), m_generation);
+        }
+
+        return lowestCID;
+    }
+
     /**
      * Reads all versions from version log and puts them into the version array (versions within range barriers) or
      * version hash table (outside range like migrations).
@@ -418,29 +805,34 @@ public final class VersionBuffer extends LongIntHashTable {
      *         the version array
      * @param p_versionHashTable
      *         the version hash table
+     * @param p_readPos
+     *         the position to start reading at (entries in front were applied before)
      * @return true if version data structures have been updated
      * @throws IOException
      *         if the version log could not be read
      */
     private boolean readFromLog(final long p_lowestLID, final long p_highestLID, final long p_lowestCID,
-            final VersionArray p_versionArray, final LongHashTable p_versionHashTable) throws IOException {
+            final VersionArray p_versionArray, final LongHashTable p_versionHashTable, final long p_readPos)
+            throws IOException {
         boolean ret = false;
-        int length = (int) getLogFileSize();
+        int length = (int) (getLogFileSize() - p_readPos);
 
         if (length > 0) {
             // Read all entries from SSD to hash table
 
             // Read old versions from SSD and add to hash table
             // Then read all new versions from versions log and add to hash table (overwrites older entries!)
-            ByteBuffer readBuffer = ms_reorgBufferWrapper.getBuffer();
+            DirectByteBufferWrapper reorgBufferWrapper = REORG_BUFFER_WRAPPER.get();
+            ByteBuffer readBuffer = reorgBufferWrapper.getBuffer();
             if (length > readBuffer.capacity()) {
-                ms_reorgBufferWrapper =
+                reorgBufferWrapper =
                         new DirectByteBufferWrapper(length + READ_BUFFER_CHUNK_SIZE - length % READ_BUFFER_CHUNK_SIZE,
                                 true);
-                readBuffer = ms_reorgBufferWrapper.getBuffer();
+                REORG_BUFFER_WRAPPER.set(reorgBufferWrapper);
+                readBuffer = reorgBufferWrapper.getBuffer();
             }
 
-            m_log.readFromLog(ms_reorgBufferWrapper, length, 0);
+            m_log.readFromLog(reorgBufferWrapper, length, p_readPos);
 
             if (!Thread.currentThread().isInterrupted()) {
                 readBuffer.clear();
@@ -463,7 +855,8 @@ public final class VersionBuffer extends LongIntHashTable {
                     }
                 }
 
-                if ((p_versionArray.size() + p_versionHashTable.size()) * SSD_ENTRY_SIZE < length) {
+                // The last entry might be repeated (see writeBackToLog())
+                if ((p_versionArray.size() + p_versionHashTable.size() + 1) * SSD_ENTRY_SIZE < length) {
                     // Versions log was not empty -> compact
                     ret = true;
                 }
@@ -551,6 +944,10 @@ public final class VersionBuffer extends LongIntHashTable {
     /**
      * Writes the version data structures (array and hash table) to version log. Outdated entries have been disposed
      * during the filling of the data structures. Therefore, the versions are written to log in the most compact way.
+     * If the version log consists of sorted runs, the versions are written as one run.
+     * The epoch and eon of the last entry determine the current epoch after reopening the version log (see
+     * restoreFromLog()).
+     * Thus, an entry of the newest epoch is repeated at the end if the last entry is of an older epoch.
      *
      * @param p_lowestCID
      *         the lower range barrier + creator
@@ -563,18 +960,44 @@ public final class VersionBuffer extends LongIntHashTable {
      */
     private void writeBackToLog(final long p_lowestCID, final VersionArray p_versionArray,
             final LongHashTable p_versionHashTable) throws IOException {
-
-        // Write back current hash table compactified
-        int length = (p_versionArray.size() + p_versionHashTable.size()) * SSD_ENTRY_SIZE;
-        ByteBuffer writeBuffer = ms_reorgBufferWrapper.getBuffer();
+        long[] sortedEntries = null;
+        int entries = 0;
+        int lowerEntries = 0;
+
+        // Write back current hash table compactified (plus one repeated entry of the newest epoch)
+        int length = (p_versionArray.size() + p_versionHashTable.size() + 1) * SSD_ENTRY_SIZE;
+        DirectByteBufferWrapper reorgBufferWrapper = REORG_BUFFER_WRAPPER.get();
+        ByteBuffer writeBuffer = reorgBufferWrapper.getBuffer();
         if (length > writeBuffer.capacity()) {
-            ms_reorgBufferWrapper =
+            reorgBufferWrapper =
                     new DirectByteBufferWrapper(length + READ_BUFFER_CHUNK_SIZE - length % READ_BUFFER_CHUNK_SIZE,
                             true);
-            writeBuffer = ms_reorgBufferWrapper.getBuffer();
+            REORG_BUFFER_WRAPPER.set(reorgBufferWrapper);
+            writeBuffer = reorgBufferWrapper.getBuffer();
         }
         writeBuffer.clear();
 
+        if (m_runList != null) {
+            // Sort the entries of the hash table; entries in front of the array's range are written first
+            long[] hashTable = p_versionHashTable.getTable();
+            sortedEntries = new long[2 * p_versionHashTable.size()];
+            for (int i = 0; i < hashTable.length; i += 2) {
+                if (hashTable[i] != 0) {
+                    // ChunkID (-1 because 1 is added before putting to avoid CID 0)
+                    sortedEntries[entries * 2] = hashTable[i] - 1;
+                    sortedEntries[entries * 2 + 1] = hashTable[i + 1];
+                    entries++;
+                }
+            }
+            VersionSorter.sortByChunkID(sortedEntries, entries);
+
+            while (lowerEntries < entries && sortedEntries[lowerEntries * 2] < p_lowestCID) {
+                long value = sortedEntries[lowerEntries * 2 + 1];
+                putEntry(writeBuffer, sortedEntries[lowerEntries * 2], (short) (value >> 32), (int) value);
+                lowerEntries++;
+            }
+        }
+
         // Gather all entries from array
         for (int i = 0; i < p_versionArray.capacity(); i++) {
             long chunkID = i + p_lowestCID;
@@ -591,24 +1014,259 @@ public final class VersionBuffer extends LongIntHashTable {
             }
         }
 
-        // Gather all entries from hash table
-        long[] hashTable = p_versionHashTable.getTable();
-        for (int i = 0; i < hashTable.length; i += 2) {
-            long chunkID = hashTable[i];
-            if (chunkID != 0) {
-                // ChunkID (-1 because 1 is added before putting to avoid CID 0)
-                writeBuffer.putLong(chunkID - 1);
-                // Epoch (4 Bytes in hash table, 2 in persistent table)
-                writeBuffer.putShort((short) (hashTable[i + 1] >> 32));
-                // Version (4 Bytes in hash table, 3 in persistent table)
-                int version = (int) hashTable[i + 1];
-                writeBuffer.put((byte) (version >>> 16));
-                writeBuffer.put((byte) (version >>> 8));
-                writeBuffer.put((byte) version);
+        if (sortedEntries != null) {
+            // Remaining entries of the hash table behind the array's range
+            for (int i = lowerEntries; i < entries; i++) {
+                putEntry(writeBuffer, sortedEntries[i * 2], (short) (sortedEntries[i * 2 + 1] >> 32),
+                        (int) sortedEntries[i * 2 + 1]);
+            }
+        } else {
+            // Gather all entries from hash table
+            long[] hashTable = p_versionHashTable.getTable();
+            for (int i = 0; i < hashTable.length; i += 2) {
+                long chunkID = hashTable[i];
+                if (chunkID != 0) {
+                    // ChunkID (-1 because 1 is added before putting to avoid CID 0)
+                    writeBuffer.putLong(chunkID - 1);
+                    // Epoch (4 Bytes in hash table, 2 in persistent table)
+                    writeBuffer.putShort((short) (hashTable[i + 1] >> 32));
+                    // Version (4 Bytes in hash table, 3 in persistent table)
+                    int version = (int) hashTable[i + 1];
+                    writeBuffer.put((byte) (version >>> 16));
+                    writeBuffer.put((byte) (version >>> 8));
+                    writeBuffer.put((byte) version);
+                }
             }
         }
+        appendNewestEpochEntry(writeBuffer);
+        length = writeBuffer.position();
+
+        m_log.writeToLog(reorgBufferWrapper, 0, 0, length, false);
+
+        if (m_runList != null) {
+            m_runList.clear();
+            m_runList.append(0, writeBuffer, 0, length);
+        }
+    }
+
+    /**
+     * Repeats an entry of the newest flushed epoch at the end of a rewritten version log if the last entry is of an
+     * older epoch. The newest epoch has an entry unless the version log is empty as its entries cannot be outdated.
+     *
+     * @param p_buffer
+     *         the buffer containing the rewritten version log (position behind the last entry)
+     */
+    private void appendNewestEpochEntry(final ByteBuffer p_buffer) {
+        int end = p_buffer.position();
+        // The epoch was incremented after the last flush (the eon is switched for epoch 0)
+        short newestEpoch = (short) (m_epoch - 1 + (m_eon << 15));
+
+        if (end == 0 || p_buffer.getShort(end - SSD_ENTRY_SIZE + 8) == newestEpoch) {
+            return;
+        }
 
-        m_log.writeToLog(ms_reorgBufferWrapper, 0, 0, length, false);
+        for (int i = 0; i < end; i += SSD_ENTRY_SIZE) {
+            if (p_buffer.getShort(i + 8) == newestEpoch) {
+                copyEntry(p_buffer, i, p_buffer, end);
+                p_buffer.position(end + SSD_ENTRY_SIZE);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Merges the runs of the version log determined by the run list (see VersionRunList.getMergeStart()). The
+     * merged runs are replaced by one run without outdated entries, followed by the newest run.
+     *
+     * @throws IOException
+     *         if the version log could not be read or written
+     */
+    private void mergeRuns() throws IOException {
+        int first = m_runList.getMergeStart();
+        int newest;
+        int newestLength;
+        int runs;
+        int length;
+        int written;
+        int merged;
+        long start;
+        int[] bounds;
+        ByteBuffer mergedRun;
+        ByteBuffer newestRun;
+        DirectByteBufferWrapper source;
+        DirectByteBufferWrapper target;
+        DirectByteBufferWrapper swap;
+
+        if (first == -1) {
+            return;
+        }
+
+        SOP_MERGE_VERSION_RUNS.start();
+
+        newest = m_runList.size() - 1;
+        newestLength = m_runList.getLength(newest);
+        runs = newest - first;
+        start = m_runList.getOffset(first);
+        length = (int) (m_runList.getOffset(newest) - start);
+        SOP_MERGE_VERSION_RUNS_SIZE.add(length);
+
+        bounds = new int[runs + 1];
+        for (int i = 0; i < runs; i++) {
+            bounds[i] = (int) (m_runList.getOffset(first + i) - start);
+        }
+        bounds[runs] = length;
+
+        source = getBuffer(REORG_BUFFER_WRAPPER, length + newestLength);
+        target = getBuffer(MERGE_BUFFER_WRAPPER, length + newestLength);
+        m_log.readFromLog(source, length, start);
+
+        // Merge neighboring runs pairwise until one run is left
+        while (runs > 1) {
+            written = 0;
+            merged = 0;
+            for (int i = 0; i < runs; i += 2) {
+                int from = bounds[i];
+                int middle = bounds[i + 1];
+                int to = i + 2 <= runs ? bounds[i + 2] : middle;
+
+                bounds[merged++] = written;
+                written = mergeTwoRuns(source.getBuffer(), from, middle, to, target.getBuffer(), written);
+            }
+            bounds[merged] = written;
+            runs = merged;
+
+            swap = source;
+            source = target;
+            target = swap;
+        }
+        length = bounds[1];
+
+        // Move the newest run behind the merged run
+        mergedRun = source.getBuffer();
+        newestRun = target.getBuffer();
+        newestRun.clear();
+        m_log.readFromLog(target, newestLength, m_runList.getOffset(newest));
+        newestRun.position(0);
+        newestRun.limit(newestLength);
+        mergedRun.position(length);
+        mergedRun.put(newestRun);
+        mergedRun.clear();
+        newestRun.clear();
+
+        m_log.writeToLog(source, 0, start, length + newestLength, false);
+
+        m_runList.truncate(first);
+        m_runList.append(start, mergedRun, 0, length + newestLength);
+
+        SOP_MERGE_VERSION_RUNS.stop();
+    }
+
+    /**
+     * Merges two neighboring sorted runs. If both runs contain an entry for the same chunk, the entry of the newer
+     * (second) run is kept.
+     *
+     * @param p_source
+     *         the buffer containing both runs
+     * @param p_from
+     *         the offset of the older run
+     * @param p_middle
+     *         the offset of the newer run (end of the older run)
+     * @param p_to
+     *         the end of the newer run
+     * @param p_target
+     *         the buffer to write the merged run to
+     * @param p_targetOffset
+     *         the offset to write the merged run at
+     * @return the end of the merged run within the target buffer
+     */
+    static int mergeTwoRuns(final ByteBuffer p_source, final int p_from, final int p_middle, final int p_to,
+            final ByteBuffer p_target, final int p_targetOffset) {
+        int older = p_from;
+        int newer = p_middle;
+        int offset = p_targetOffset;
+
+        while (older < p_middle || newer < p_to) {
+            if (newer == p_to || older < p_middle && p_source.getLong(older) < p_source.getLong(newer)) {
+                copyEntry(p_source, older, p_target, offset);
+                older += SSD_ENTRY_SIZE;
+            } else {
+                if (older < p_middle && p_source.getLong(older) == p_source.getLong(newer)) {
+                    // The older entry is outdated
+                    older += SSD_ENTRY_SIZE;
+                }
+                copyEntry(p_source, newer, p_target, offset);
+                newer += SSD_ENTRY_SIZE;
+            }
+            offset += SSD_ENTRY_SIZE;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Copies a version log entry.
+     *
+     * @param p_source
+     *         the buffer containing the entry
+     * @param p_sourceOffset
+     *         the offset of the entry
+     * @param p_target
+     *         the buffer to copy the entry to
+     * @param p_targetOffset
+     *         the offset to copy the entry to
+     */
+    private static void copyEntry(final ByteBuffer p_source, final int p_sourceOffset, final ByteBuffer p_target,
+            final int p_targetOffset) {
+        // Chunk ID (8 bytes), epoch (2 bytes) and version (3 bytes)
+        p_target.putLong(p_targetOffset, p_source.getLong(p_sourceOffset));
+        p_target.putInt(p_targetOffset + 8, p_source.getInt(p_sourceOffset + 8));
+        p_target.put(p_targetOffset + 12, p_source.get(p_sourceOffset + 12));
+    }
+
+    /**
+     * Appends a version log entry to a buffer.
+     *
+     * @param p_buffer
+     *         the buffer
+     * @param p_chunkID
+     *         the chunk ID
+     * @param p_epoch
+     *         the epoch (including eon)
+     * @param p_version
+     *         the version
+     */
+    private static void putEntry(final ByteBuffer p_buffer, final long p_chunkID, final short p_epoch,
+            final int p_version) {
+        p_buffer.putLong(p_chunkID);
+        // Epoch (2 Bytes in persistent table)
+        p_buffer.putShort(p_epoch);
+        // Version (3 Bytes in persistent table)
+        p_buffer.put((byte) (p_version >>> 16));
+        p_buffer.put((byte) (p_version >>> 8));
+        p_buffer.put((byte) p_version);
+    }
+
+    /**
+     * Returns the calling thread's buffer. The buffer is replaced by a larger one, if necessary.
+     *
+     * @param p_buffers
+     *         the thread-local buffers
+     * @param p_length
+     *         the minimum capacity
+     * @return the cleared buffer
+     */
+    private static DirectByteBufferWrapper getBuffer(final ThreadLocal<DirectByteBufferWrapper> p_buffers,
+            final int p_length) {
+        DirectByteBufferWrapper ret = p_buffers.get();
+
+        if (ret == null || p_length > ret.getBuffer().capacity()) {
+            ret = new DirectByteBufferWrapper(p_length + READ_BUFFER_CHUNK_SIZE - p_length % READ_BUFFER_CHUNK_SIZE,
+                    true);
+            p_buffers.set(ret);
+        }
+        ret.getBuffer().clear();
+
+        return ret;
     }
 
 }
@@ -7,6 +7,7 @@ import org.apache.logging.log4j.Logger;
 
 import de.hhu.bsinfo.dxlog.storage.BackupRangeCatalog;
 import de.hhu.bsinfo.dxlog.storage.Scheduler;
+import de.hhu.bsinfo.dxlog.storage.logs.secondarylog.SecondaryLogBuffer;
 
 /**
  * For accessing the version buffer (and log) from outside of this package.
@@ -21,6 +22,7 @@ public final class VersionHandler {
     private final BackupRangeCatalog m_backupRangeCatalog;
 
     private final long m_backupRangeSize;
+    private final boolean m_sortedVersionLogs;
 
     /**
      * Creates an instance of VersionHandler.
@@ -31,13 +33,16 @@ public final class VersionHandler {
      *         the backup range catalog to get the version buffer for a owner-rangeID pair
      * @param p_secondaryLogSize
      *         the secondary log size
+     * @param p_sortedVersionLogs
+     *         whether version logs consist of runs sorted by chunk ID
      */
     public VersionHandler(final Scheduler p_scheduler, final BackupRangeCatalog p_backupRangeCatalog,
-            final long p_secondaryLogSize) {
+            final long p_secondaryLogSize, final boolean p_sortedVersionLogs) {
         m_scheduler = p_scheduler;
         m_backupRangeCatalog = p_backupRangeCatalog;
 
         m_backupRangeSize = p_secondaryLogSize / 2;
+        m_sortedVersionLogs = p_sortedVersionLogs;
     }
 
     /**
@@ -54,10 +59,13 @@ public final class VersionHandler {
      *         the owner
      * @param p_fileName
      *         the file name including backup directory
+     * @param p_reopen
+     *         whether to reopen an existing version log instead of creating a new one
      * @return the new version buffer
      */
-    public VersionBuffer createVersionBuffer(final short p_owner, final String p_fileName) {
-        return new VersionBuffer(m_scheduler, p_owner, m_backupRangeSize, p_fileName);
+    public VersionBuffer createVersionBuffer(final short p_owner, final String p_fileName, final boolean p_reopen) {
+        return new VersionBuffer(m_scheduler, p_owner, m_backupRangeSize, p_fileName, p_reopen,
+                m_sortedVersionLogs);
     }
 
     /**
@@ -83,6 +91,78 @@ public final class VersionHandler {
         return versionBuffer.getNextVersion(p_chunkID);
     }
 
+    /**
+     * Returns new versions for a batch of chunks of the same backup range. The versions are packed
+     * (see Version.pack()) and assigned with one catalog lookup and one lock acquisition.
+     *
+     * @param p_chunkIDs
+     *         the chunk IDs
+     * @param p_numberOfChunks
+     *         the number of chunk IDs to process
+     * @param p_ownerID
+     *         the owner
+     * @param p_rangeID
+     *         the range ID
+     * @param p_versions
+     *         the array to store the packed versions in
+     * @return whether the versions were assigned or not
+     */
+    public boolean getVersions(final long[] p_chunkIDs, final int p_numberOfChunks, final short p_ownerID,
+            final short p_rangeID, final long[] p_versions) {
+        VersionBuffer versionBuffer = m_backupRangeCatalog.getVersionBuffer(p_ownerID, p_rangeID);
+
+        if (versionBuffer == null) {
+            LOGGER.error("No version buffer available for range %d of peer 0x%d", p_rangeID, p_ownerID);
+            return false;
+        }
+
+        versionBuffer.getNextPackedVersions(p_chunkIDs, p_numberOfChunks, p_versions);
+
+        return true;
+    }
+
+    /**
+     * Returns new versions for a batch of chunks of the same backup range without waiting for the version buffer
+     * to be flushed (see getVersions()).
+     *
+     * @param p_chunkIDs
+     *         the chunk IDs
+     * @param p_numberOfChunks
+     *         the number of chunk IDs to process
+     * @param p_ownerID
+     *         the owner
+     * @param p_rangeID
+     *         the range ID
+     * @param p_versions
+     *         the array to store the packed versions in
+     * @return 1 if the versions were assigned, 0 if the version buffer is full and -1 if there is no version
+     * buffer for the backup range
+     */
+    public int tryGetVersions(final long[] p_chunkIDs, final int p_numberOfChunks, final short p_ownerID,
+            final short p_rangeID, final long[] p_versions) {
+        VersionBuffer versionBuffer = m_backupRangeCatalog.getVersionBuffer(p_ownerID, p_rangeID);
+
+        if (versionBuffer == null) {
+            LOGGER.error("No version buffer available for range %d of peer 0x%d", p_rangeID, p_ownerID);
+            return -1;
+        }
+
+        return versionBuffer.tryGetNextPackedVersions(p_chunkIDs, p_numberOfChunks, p_versions) ? 1 : 0;
+    }
+
+    /**
+     * Returns a new packed version (see Version.pack()) for given chunk.
+     *
+     * @param p_versionBuffer
+     *         the version buffer of the chunk's backup range (see getVersionBuffer())
+     * @param p_chunkID
+     *         the chunk ID
+     * @return the new packed version
+     */
+    public long getPackedVersion(final VersionBuffer p_versionBuffer, final long p_chunkID) {
+        return p_versionBuffer.getNextPackedVersion(p_chunkID);
+    }
+
     /**
      * Invalidates a chunk (makes all log entries of given chunk disposable).
      *
@@ -100,6 +180,12 @@ public final class VersionHandler {
         for (int i = 0; i < p_chunkIDs.length; i++) {
             versionBuffer.putVersion(p_chunkIDs[i], Version.INVALID_VERSION);
         }
+
+        // Account the invalidated log entries in the segments of the secondary log
+        SecondaryLogBuffer secondaryLogBuffer = m_backupRangeCatalog.getSecondaryLogBuffer(p_ownerID, p_rangeID);
+        if (secondaryLogBuffer != null) {
+            secondaryLogBuffer.getLog().invalidateChunks(p_chunkIDs);
+        }
     }
 
     /**
@@ -145,4 +231,26 @@ public final class VersionHandler {
             return versionBuffer.readAll(p_allVersions, false);
         }
     }
+
+    /**
+     * Gets current versions by updating the cached snapshot of given backup range (see
+     * VersionSnapshotCache.getCurrentVersions()).
+     *
+     * @param p_snapshots
+     *         the snapshot cache of the calling reorganization thread
+     * @return the lowest CID of the snapshot's version array
+     * @throws IOException
+     *         if versions could not be read from log
+     */
+    public final long getCurrentVersions(final short p_ownerID, final short p_rangeID,
+            final VersionSnapshotCache p_snapshots) throws IOException {
+        VersionBuffer versionBuffer = m_backupRangeCatalog.getVersionBuffer(p_ownerID, p_rangeID);
+
+        if (versionBuffer == null) {
+            LOGGER.error("No version buffer available for range %d of peer 0x%d", p_rangeID, p_ownerID);
+            return -1;
+        }
+
+        return p_snapshots.update(versionBuffer);
+    }
 }
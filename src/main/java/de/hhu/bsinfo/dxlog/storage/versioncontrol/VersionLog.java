@@ -32,11 +32,17 @@ final class VersionLog extends Log {
      *
      * @param p_logFile
      *         the file
+     * @param p_reopen
+     *         whether to reopen an existing versions log instead of creating a new one
      */
-    VersionLog(final File p_logFile) throws IOException {
+    VersionLog(final File p_logFile, final boolean p_reopen) throws IOException {
         super(p_logFile, 0);
 
-        createLog();
+        if (p_reopen) {
+            reopenLog();
+        } else {
+            createLog();
+        }
     }
 
     /**
@@ -55,7 +61,7 @@ final class VersionLog extends Log {
 
         SOP_READ_VERSIONS_LOG_TIME.start();
 
-        final long bytesUntilEnd = p_length - p_readPos;
+        final long bytesUntilEnd = getFileSize() - p_readPos;
 
         if (p_length > 0) {
             assert p_length <= bytesUntilEnd;
@@ -74,6 +80,7 @@ final class VersionLog extends Log {
         SOP_WRITE_VERSIONS_LOG_TIME.start();
 
         ms_logAccess.write(m_log, p_data, p_bufferOffset, p_writePos, p_length, true);
+        markDirty();
 
         SOP_WRITE_VERSIONS_LOG_TIME.stop();
     }
@@ -87,6 +94,7 @@ final class VersionLog extends Log {
 
         long fileSize = getFileSize();
         ms_logAccess.append(m_log, p_data, p_bufferOffset, getFileSize(), p_length);
+        markDirty();
 
         SOP_WRITE_VERSIONS_LOG_TIME.stop();
 
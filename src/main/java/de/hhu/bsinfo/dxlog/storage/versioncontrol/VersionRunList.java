@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.versioncontrol;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Runs of a version log sorted by chunk ID. Every run is a contiguous area of the version log with strictly
+ * ascending chunk IDs; later runs are newer. The list determines which runs are merged (see
+ * VersionBuffer.mergeRuns()). It is kept in memory and rebuilt from the version log after reopening it.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class VersionRunList {
+
+    private static final int INITIAL_RUNS = 16;
+    // Runs are merged if there are more (the newest run is not counted)
+    private static final int MAX_RUNS = 4;
+    // An older run is merged with the newer runs if it is at most MERGE_RATIO times larger than all of them
+    private static final int MERGE_RATIO = 2;
+
+    private final int m_entrySize;
+
+    private long[] m_offsets;
+    private int[] m_lengths;
+    private int m_runs;
+    private long m_lastChunkID;
+
+    /**
+     * Creates an instance of VersionRunList.
+     *
+     * @param p_entrySize
+     *         the size of a version log entry
+     */
+    VersionRunList(final int p_entrySize) {
+        m_entrySize = p_entrySize;
+
+        m_offsets = new long[INITIAL_RUNS];
+        m_lengths = new int[INITIAL_RUNS];
+    }
+
+    /**
+     * Returns the number of runs.
+     *
+     * @return the number of runs
+     */
+    synchronized int size() {
+        return m_runs;
+    }
+
+    /**
+     * Returns the position of a run in the version log.
+     *
+     * @param p_run
+     *         the run
+     * @return the position of the first entry
+     */
+    synchronized long getOffset(final int p_run) {
+        return m_offsets[p_run];
+    }
+
+    /**
+     * Returns the length of a run.
+     *
+     * @param p_run
+     *         the run
+     * @return the number of bytes
+     */
+    synchronized int getLength(final int p_run) {
+        return m_lengths[p_run];
+    }
+
+    /**
+     * Removes all runs (e.g. after the version log was rewritten).
+     */
+    synchronized void clear() {
+        m_runs = 0;
+    }
+
+    /**
+     * Removes all runs starting with given run (e.g. to replace them with a merged run).
+     *
+     * @param p_run
+     *         the first run to remove
+     */
+    synchronized void truncate(final int p_run) {
+        m_runs = p_run;
+        // Do not continue the last run with the next entries appended
+        m_lastChunkID = Long.MAX_VALUE;
+    }
+
+    /**
+     * Registers entries written to the version log. The entries continue the last run as long as the chunk IDs are
+     * ascending and the entries follow the last run in the version log. Otherwise, a new run is started.
+     *
+     * @param p_logOffset
+     *         the position of the entries in the version log
+     * @param p_data
+     *         the buffer containing the entries
+     * @param p_dataOffset
+     *         the offset of the first entry within the buffer
+     * @param p_length
+     *         the number of bytes
+     */
+    synchronized void append(final long p_logOffset, final ByteBuffer p_data, final int p_dataOffset,
+            final int p_length) {
+        long chunkID;
+
+        for (int i = 0; i < p_length; i += m_entrySize) {
+            chunkID = p_data.getLong(p_dataOffset + i);
+            if (m_runs == 0 || chunkID <= m_lastChunkID ||
+                    m_offsets[m_runs - 1] + m_lengths[m_runs - 1] != p_logOffset + i) {
+                startRun(p_logOffset + i);
+            }
+
+            m_lengths[m_runs - 1] += m_entrySize;
+            m_lastChunkID = chunkID;
+        }
+    }
+
+    /**
+     * Determines the runs to merge. The newest runs are merged with older runs as long as the older run is not
+     * much larger (size-tiered) or there are too many runs. The newest run is never merged as its entries determine
+     * the current eon after reopening the version log (see VersionBuffer.restoreFromLog()).
+     *
+     * @return the first run to merge (all runs up to the newest run are merged) or -1 if no merge is necessary
+     */
+    synchronized int getMergeStart() {
+        int last = m_runs - 2;
+        int first = last;
+        long newerBytes;
+
+        if (last < 1) {
+            return -1;
+        }
+
+        newerBytes = m_lengths[last];
+        while (first > 0 && (first >= MAX_RUNS - 1 || m_lengths[first - 1] <= MERGE_RATIO * newerBytes)) {
+            first--;
+            newerBytes += m_lengths[first];
+        }
+
+        return first < last ? first : -1;
+    }
+
+    /**
+     * Checks whether the runs must be merged without waiting for the reorganization to do so.
+     *
+     * @return true if there are twice as many runs as allowed
+     */
+    synchronized boolean isMergeOverdue() {
+        return m_runs > 2 * MAX_RUNS;
+    }
+
+    /**
+     * Starts a new run.
+     *
+     * @param p_logOffset
+     *         the position of the run in the version log
+     */
+    private void startRun(final long p_logOffset) {
+        if (m_runs == m_offsets.length) {
+            m_offsets = Arrays.copyOf(m_offsets, m_runs * 2);
+            m_lengths = Arrays.copyOf(m_lengths, m_runs * 2);
+        }
+
+        m_offsets[m_runs] = p_logOffset;
+        m_lengths[m_runs] = 0;
+        m_runs++;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.versioncontrol;
+
+/**
+ * Versions of one backup range read by a reorganization thread (see VersionSnapshotCache). The snapshot covers the
+ * version log up to a given length. If the version log was not rewritten in the meantime, only versions appended
+ * afterwards have to be applied to bring the snapshot up to date.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+final class VersionSnapshot {
+
+    private final TemporaryVersionStorage m_versions;
+
+    private long m_lowestCID;
+    private long m_logLength;
+    private int m_generation;
+    private boolean m_eonBegun;
+
+    /**
+     * Creates an instance of VersionSnapshot. The snapshot is invalid until it was set.
+     *
+     * @param p_versions
+     *         the (cleared) version storage
+     */
+    VersionSnapshot(final TemporaryVersionStorage p_versions) {
+        m_versions = p_versions;
+
+        m_logLength = -1;
+    }
+
+    /**
+     * Returns the version storage.
+     *
+     * @return the version array and hash table
+     */
+    TemporaryVersionStorage getVersions() {
+        return m_versions;
+    }
+
+    /**
+     * Returns the lowest CID of the version array.
+     *
+     * @return the lowest CID at the time the versions were read-in the first time
+     */
+    long getLowestCID() {
+        return m_lowestCID;
+    }
+
+    /**
+     * Returns the number of version log bytes covered by the snapshot.
+     *
+     * @return the covered log length or -1 if the snapshot is invalid
+     */
+    long getLogLength() {
+        return m_logLength;
+    }
+
+    /**
+     * Returns the generation of the version log the snapshot was read from (see VersionBuffer).
+     *
+     * @return the generation
+     */
+    int getGeneration() {
+        return m_generation;
+    }
+
+    /**
+     * Marks the snapshot as up to date.
+     *
+     * @param p_lowestCID
+     *         the lowest CID of the version array
+     * @param p_logLength
+     *         the number of version log bytes covered by the snapshot
+     * @param p_generation
+     *         the generation of the version log
+     */
+    void set(final long p_lowestCID, final long p_logLength, final int p_generation) {
+        m_lowestCID = p_lowestCID;
+        m_logLength = p_logLength;
+        m_generation = p_generation;
+    }
+
+    /**
+     * Records that the epoch overflowed while the snapshot was updated (a new eon began).
+     */
+    void markEonBegun() {
+        m_eonBegun = true;
+    }
+
+    /**
+     * Returns and resets whether a new eon began while the snapshot was updated.
+     *
+     * @return true if a new eon began since the last call
+     */
+    boolean takeEonBegun() {
+        boolean ret = m_eonBegun;
+        m_eonBegun = false;
+
+        return ret;
+    }
+
+    /**
+     * Invalidates the snapshot. The versions are read from the whole version log the next time.
+     */
+    void invalidate() {
+        m_logLength = -1;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.versioncontrol;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
+import de.hhu.bsinfo.dxutils.stats.ValuePool;
+
+/**
+ * Caches the versions of recently reorganized backup ranges for one reorganization thread. Entering a backup range
+ * again applies the epochs flushed since the last visit, only, instead of reading (and rewriting) the entire version
+ * log. The least recently used snapshot is evicted if another snapshot would exceed the memory budget or a snapshot
+ * outgrew it; at least one snapshot is kept. Snapshots of closed or removed backup ranges are dropped.
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public final class VersionSnapshotCache {
+
+    private static final ValuePool SOP_EVICTED_SNAPSHOTS =
+            new ValuePool(VersionSnapshotCache.class, "EvictedSnapshots");
+
+    static {
+        StatisticsManager.get().registerOperation(VersionSnapshotCache.class, SOP_EVICTED_SNAPSHOTS);
+    }
+
+    private final long m_secondaryLogSize;
+    private final long m_memoryBudget;
+    private final LinkedHashMap<VersionBuffer, VersionSnapshot> m_snapshots;
+
+    private VersionSnapshot m_current;
+
+    /**
+     * Creates an instance of VersionSnapshotCache.
+     *
+     * @param p_secondaryLogSize
+     *         the size of the secondary logs (determines the size of a snapshot)
+     * @param p_memoryBudget
+     *         the number of bytes all snapshots may occupy
+     */
+    public VersionSnapshotCache(final long p_secondaryLogSize, final long p_memoryBudget) {
+        m_secondaryLogSize = p_secondaryLogSize;
+        m_memoryBudget = p_memoryBudget;
+
+        // Access order -> the first entry is the least recently used one
+        m_snapshots = new LinkedHashMap<VersionBuffer, VersionSnapshot>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the versions of the backup range updated last (see VersionHandler.getCurrentVersions()).
+     *
+     * @return the version array and hash table
+     */
+    public TemporaryVersionStorage getCurrentVersions() {
+        return m_current.getVersions();
+    }
+
+    /**
+     * Returns whether a new eon began while the snapshot of the backup range updated last was brought up to date.
+     * The secondary log must begin the new eon as well (see SecondaryLog.beginEon()).
+     *
+     * @return true if a new eon began
+     */
+    public boolean takeEonBegun() {
+        return m_current != null && m_current.takeEonBegun();
+    }
+
+    /**
+     * Brings the snapshot of given backup range up to date. A new snapshot is created if there is none.
+     *
+     * @param p_versionBuffer
+     *         the version buffer of the backup range
+     * @return the lowest CID of the version array
+     * @throws IOException
+     *         if the version log could not be read
+     */
+    long update(final VersionBuffer p_versionBuffer) throws IOException {
+        long ret;
+        VersionSnapshot snapshot;
+
+        removeClosed();
+
+        snapshot = m_snapshots.get(p_versionBuffer);
+        if (snapshot == null) {
+            snapshot = new VersionSnapshot(getVersionStorage());
+            m_snapshots.put(p_versionBuffer, snapshot);
+        }
+        m_current = snapshot;
+
+        ret = p_versionBuffer.readIncrementally(snapshot);
+
+        // The version hash table grows with the number of versions outside of the array
+        evict(snapshot);
+
+        return ret;
+    }
+
+    /**
+     * Drops the snapshots of closed or removed backup ranges.
+     */
+    private void removeClosed() {
+        Iterator<Map.Entry<VersionBuffer, VersionSnapshot>> iter = m_snapshots.entrySet().iterator();
+
+        while (iter.hasNext()) {
+            Map.Entry<VersionBuffer, VersionSnapshot> entry = iter.next();
+            if (entry.getKey().isClosed()) {
+                if (entry.getValue() == m_current) {
+                    m_current = null;
+                }
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used snapshots until the memory budget is met again.
+     *
+     * @param p_current
+     *         the snapshot updated last (never evicted)
+     */
+    private void evict(final VersionSnapshot p_current) {
+        long memoryUsage = 0;
+        Iterator<VersionSnapshot> iter;
+
+        for (VersionSnapshot snapshot : m_snapshots.values()) {
+            memoryUsage += snapshot.getVersions().getMemoryUsage();
+        }
+
+        iter = m_snapshots.values().iterator();
+        while (memoryUsage > m_memoryBudget && iter.hasNext()) {
+            VersionSnapshot snapshot = iter.next();
+            if (snapshot != p_current) {
+                memoryUsage -= snapshot.getVersions().getMemoryUsage();
+                iter.remove();
+                SOP_EVICTED_SNAPSHOTS.inc();
+            }
+        }
+    }
+
+    /**
+     * Returns an empty version storage for a new snapshot: a new one if the memory budget permits, the storage of
+     * the least recently used snapshot otherwise.
+     *
+     * @return the version storage
+     */
+    private TemporaryVersionStorage getVersionStorage() {
+        long memoryUsage = 0;
+        TemporaryVersionStorage ret;
+        Iterator<Map.Entry<VersionBuffer, VersionSnapshot>> iter;
+
+        for (VersionSnapshot snapshot : m_snapshots.values()) {
+            memoryUsage += snapshot.getVersions().getMemoryUsage();
+        }
+
+        iter = m_snapshots.entrySet().iterator();
+        if (!iter.hasNext() || memoryUsage + iter.next().getValue().getVersions().getMemoryUsage() <= m_memoryBudget) {
+            return new TemporaryVersionStorage(m_secondaryLogSize);
+        }
+
+        // Evict least recently used snapshot
+        iter = m_snapshots.entrySet().iterator();
+        ret = iter.next().getValue().getVersions();
+        iter.remove();
+        ret.clear();
+        SOP_EVICTED_SNAPSHOTS.inc();
+
+        return ret;
+    }
+}
@@ -17,6 +17,7 @@ import de.hhu.bsinfo.dxutils.hashtable.LongHashTable;
 public final class VersionSorter {
 
     private static final int SORT_THRESHOLD = 100000;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
 
     private static final Logger LOGGER = LogManager.getFormatterLogger(VersionSorter.class.getSimpleName());
 
@@ -74,6 +75,61 @@ public final class VersionSorter {
         return ret;
     }
 
+    /**
+     * Sorts chunk ID, version pairs by chunk ID (iterative quicksort). In contrast to the hash table sort, the pairs
+     * must be stored without gaps.
+     *
+     * @param p_table
+     *         the array with chunk IDs at even and versions at odd indices
+     * @param p_numberOfPairs
+     *         the number of pairs to sort
+     */
+    static void sortByChunkID(final long[] p_table, final int p_numberOfPairs) {
+        int left;
+        int right;
+        int pivot;
+        int top = -1;
+        // The larger partition is put on the stack -> at most 64 partitions are pending
+        int[] stack = new int[2 * Long.SIZE];
+
+        stack[++top] = 0;
+        stack[++top] = p_numberOfPairs - 1;
+
+        while (top >= 0) {
+            right = stack[top--];
+            left = stack[top--];
+
+            while (right - left >= INSERTION_SORT_THRESHOLD) {
+                pivot = partitionPairs(p_table, left, right);
+
+                if (pivot - left < right - pivot) {
+                    stack[++top] = pivot + 1;
+                    stack[++top] = right;
+                    right = pivot - 1;
+                } else {
+                    stack[++top] = left;
+                    stack[++top] = pivot - 1;
+                    left = pivot + 1;
+                }
+            }
+
+            // Insertion sort for small partitions
+            for (int i = left + 1; i <= right; i++) {
+                long chunkID = p_table[i * 2];
+                long version = p_table[i * 2 + 1];
+                int j = i - 1;
+
+                while (j >= left && p_table[j * 2] > chunkID) {
+                    p_table[(j + 1) * 2] = p_table[j * 2];
+                    p_table[(j + 1) * 2 + 1] = p_table[j * 2 + 1];
+                    j--;
+                }
+                p_table[(j + 1) * 2] = chunkID;
+                p_table[(j + 1) * 2 + 1] = version;
+            }
+        }
+    }
+
     /**
      * Determines all ChunkID ranges in versions array
      *
@@ -229,6 +285,64 @@ public final class VersionSorter {
         return i + 1;
     }
 
+    /**
+     * Helper method for sortByChunkID() to partition the range (median of three as pivot)
+     *
+     * @param p_table
+     *         the array with chunk ID, version pairs
+     * @param p_left
+     *         the first pair of the range
+     * @param p_right
+     *         the last pair of the range
+     * @return the partition index
+     */
+    private static int partitionPairs(final long[] p_table, final int p_left, final int p_right) {
+        int middle = p_left + (p_right - p_left) / 2;
+        long pivot;
+        int i = p_left - 1;
+
+        if (p_table[middle * 2] < p_table[p_left * 2]) {
+            swapPairs(p_table, middle, p_left);
+        }
+        if (p_table[p_right * 2] < p_table[p_left * 2]) {
+            swapPairs(p_table, p_right, p_left);
+        }
+        if (p_table[middle * 2] < p_table[p_right * 2]) {
+            swapPairs(p_table, middle, p_right);
+        }
+        pivot = p_table[p_right * 2];
+
+        for (int j = p_left; j < p_right; j++) {
+            if (p_table[j * 2] < pivot) {
+                i++;
+                swapPairs(p_table, i, j);
+            }
+        }
+        swapPairs(p_table, i + 1, p_right);
+
+        return i + 1;
+    }
+
+    /**
+     * Helper method for sortByChunkID() to swap two pairs
+     *
+     * @param p_table
+     *         the array with chunk ID, version pairs
+     * @param p_index1
+     *         the first pair
+     * @param p_index2
+     *         the second pair
+     */
+    private static void swapPairs(final long[] p_table, final int p_index1, final int p_index2) {
+        long chunkID = p_table[p_index1 * 2];
+        long version = p_table[p_index1 * 2 + 1];
+
+        p_table[p_index1 * 2] = p_table[p_index2 * 2];
+        p_table[p_index1 * 2 + 1] = p_table[p_index2 * 2 + 1];
+        p_table[p_index2 * 2] = chunkID;
+        p_table[p_index2 * 2 + 1] = version;
+    }
+
     /**
      * Helper method for quicksort and insertion sort to swap to elements
      *
@@ -18,8 +18,9 @@ package de.hhu.bsinfo.dxlog.storage.writebuffer;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.locks.LockSupport;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -27,6 +28,7 @@ import org.apache.logging.log4j.Logger;
 import de.hhu.bsinfo.dxlog.DXLog;
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
 import de.hhu.bsinfo.dxlog.storage.Scheduler;
+import de.hhu.bsinfo.dxlog.storage.WakeupSignal;
 import de.hhu.bsinfo.dxlog.storage.header.AbstractPrimLogEntryHeader;
 import de.hhu.bsinfo.dxlog.storage.logs.LogHandler;
 import de.hhu.bsinfo.dxutils.hashtable.GenericHashTable;
@@ -47,9 +49,13 @@ final class ProcessThread extends Thread {
     private final Scheduler m_scheduler;
     private final LogHandler m_logHandler;
 
-    private final WriteBuffer m_writeBuffer;
+    private final WriteBuffer[] m_writeBuffers;
     private final BufferPool m_bufferPool;
+    private final WakeupSignal m_wakeupSignal;
     private final GenericHashTable<BufferNode> m_rangeBufferHashTable;
+    private final long[] m_jobCounters; // Reused for posted and durable jobs per writer job queue
+    private final long[] m_postedJobsBeforeFlush;
+    private final List<long[]> m_failedJobs; // Failed write jobs which might belong to a pending flush
 
     private final int m_flushThreshold;
     private final int m_secondaryLogBufferSize;
@@ -63,26 +69,33 @@ final class ProcessThread extends Thread {
      *         the log handler needed for posting write jobs
      * @param p_scheduler
      *         the scheduler to grant access to the reorganization thread
-     * @param p_writeBuffer
-     *         the write buffer for acquiring buffer segment to flush
+     * @param p_writeBuffers
+     *         the write buffer stripes for acquiring buffer segments to flush
      * @param p_bufferPool
      *         the buffer pool
+     * @param p_wakeupSignal
+     *         the signal to wait on if there is nothing to do
      * @param p_flushThreshold
-     *         the flush threshold
+     *         the flush threshold (per stripe)
      * @param p_secondaryLogBufferSize
      *         the secondary log buffer size
      */
-    ProcessThread(final LogHandler p_logHandler, final Scheduler p_scheduler, final WriteBuffer p_writeBuffer,
-            final BufferPool p_bufferPool, final int p_flushThreshold, final int p_secondaryLogBufferSize) {
+    ProcessThread(final LogHandler p_logHandler, final Scheduler p_scheduler, final WriteBuffer[] p_writeBuffers,
+            final BufferPool p_bufferPool, final WakeupSignal p_wakeupSignal, final int p_flushThreshold,
+            final int p_secondaryLogBufferSize) {
         m_logHandler = p_logHandler;
         m_scheduler = p_scheduler;
 
-        m_writeBuffer = p_writeBuffer;
+        m_writeBuffers = p_writeBuffers;
         m_flushThreshold = p_flushThreshold;
         m_secondaryLogBufferSize = p_secondaryLogBufferSize;
         m_bufferPool = p_bufferPool;
+        m_wakeupSignal = p_wakeupSignal;
 
         m_rangeBufferHashTable = new GenericHashTable<>();
+        m_jobCounters = new long[p_logHandler.getNumberOfWriterThreads()];
+        m_postedJobsBeforeFlush = new long[p_logHandler.getNumberOfWriterThreads()];
+        m_failedJobs = new ArrayList<>();
     }
 
     @Override
@@ -91,15 +104,26 @@ final class ProcessThread extends Thread {
         long timeLastFlush = System.currentTimeMillis();
 
         while (!m_isShuttingDown) {
-            if (m_writeBuffer.needsToBeFlushed()) {
-                flush = true;
+            for (WriteBuffer writeBuffer : m_writeBuffers) {
+                // Check all stripes to reset every priority flush flag
+                if (writeBuffer.needsToBeFlushed() || writeBuffer.getBytesInBuffer() > m_flushThreshold) {
+                    flush = true;
+                }
             }
 
-            if (m_writeBuffer.getBytesInBuffer() > m_flushThreshold ||
-                    System.currentTimeMillis() - timeLastFlush > PROCESSTHREAD_TIMEOUTTIME) {
+            if (System.currentTimeMillis() - timeLastFlush > PROCESSTHREAD_TIMEOUTTIME) {
                 flush = true;
             }
 
+            m_logHandler.getNumberOfDurableWriteJobs(m_jobCounters);
+            m_logHandler.collectFailedWriteJobs(m_failedJobs);
+            for (WriteBuffer writeBuffer : m_writeBuffers) {
+                writeBuffer.completeDurableData(m_jobCounters, m_failedJobs);
+            }
+            if (!m_failedJobs.isEmpty()) {
+                removeHandledFailedJobs();
+            }
+
             if (flush) {
                 flush();
 
@@ -108,8 +132,10 @@ final class ProcessThread extends Thread {
             } else {
                 m_scheduler.grantAccessToReorganization();
 
-                // Wait
-                LockSupport.parkNanos(100);
+                // Wait for a signal (write buffer above threshold, priority flush, durable data or reorganization
+                // request) or until the next timed flush
+                long timeout = timeLastFlush + PROCESSTHREAD_TIMEOUTTIME - System.currentTimeMillis();
+                m_wakeupSignal.await(Math.max(1, timeout) * 1000 * 1000);
             }
             flush = false;
         }
@@ -120,6 +146,7 @@ final class ProcessThread extends Thread {
      */
     void close() {
         m_isShuttingDown = true;
+        m_wakeupSignal.signal();
 
         try {
             join();
@@ -129,16 +156,43 @@ final class ProcessThread extends Thread {
     }
 
     /**
-     * Flushes the write buffer.
+     * Removes all failed write jobs which cannot belong to a pending flush of any stripe anymore.
+     */
+    private void removeHandledFailedJobs() {
+        Iterator<long[]> iterator = m_failedJobs.iterator();
+        while (iterator.hasNext()) {
+            long[] failedJobs = iterator.next();
+            boolean pending = false;
+            for (WriteBuffer writeBuffer : m_writeBuffers) {
+                if (writeBuffer.hasPendingFlushBefore((int) failedJobs[0], failedJobs[2])) {
+                    pending = true;
+                    break;
+                }
+            }
+
+            if (!pending) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Flushes all write buffer stripes. The stripes are drained one after another as the buffer pool
+     * is sized for the ranges of one stripe, only.
      */
     private void flush() {
-        AtomicMetadata metadata = m_writeBuffer.getMetadata();
+        for (WriteBuffer writeBuffer : m_writeBuffers) {
+            AtomicMetadata metadata = writeBuffer.getMetadata();
 
-        if (metadata != null) {
-            sortAndPost(metadata.getByteBuffer(), metadata.getTotalLength(), metadata.getAllLengths());
+            if (metadata != null) {
+                m_logHandler.getNumberOfPostedWriteJobs(m_postedJobsBeforeFlush);
+                sortAndPost(metadata.getByteBuffer(), metadata.getTotalLength(), metadata.getAllLengths());
 
-            if (metadata.getTotalLength() > 0) {
-                m_writeBuffer.updateMetadata(metadata.getTotalLength());
+                if (metadata.getTotalLength() > 0) {
+                    writeBuffer.updateMetadata(metadata.getTotalLength());
+                    m_logHandler.getNumberOfPostedWriteJobs(m_jobCounters);
+                    writeBuffer.flushPosted(m_postedJobsBeforeFlush, m_jobCounters);
+                }
             }
         }
     }
@@ -16,21 +16,27 @@
 
 package de.hhu.bsinfo.dxlog.storage.writebuffer;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.hhu.bsinfo.dxlog.storage.DirectByteBufferWrapper;
+import de.hhu.bsinfo.dxlog.storage.WakeupSignal;
 import de.hhu.bsinfo.dxlog.storage.header.AbstractLogEntryHeader;
 import de.hhu.bsinfo.dxlog.storage.header.AbstractPrimLogEntryHeader;
-import de.hhu.bsinfo.dxlog.storage.versioncontrol.Version;
 import de.hhu.bsinfo.dxnet.core.AbstractMessageImporter;
 import de.hhu.bsinfo.dxutils.hashtable.IntHashTable;
+import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
+import de.hhu.bsinfo.dxutils.stats.ValuePool;
 
 /**
  * Write buffer. Implemented as a ring buffer on a ByteBuffer. The
@@ -38,7 +44,8 @@ import de.hhu.bsinfo.dxutils.hashtable.IntHashTable;
  * ring buffer all read and write accesses are done by using pointers. All
  * readable bytes are between read and write pointer. Unused bytes between write
  * and read pointer. This class is designed for one producer and one
- * consumer (process thread).
+ * consumer (process thread). Producers must acquire the producer lock before appending. Several write buffers
+ * (stripes) can be used in parallel to serve several producer threads (see WriteBufferHandler).
  *
  * @author Kevin Beineke, kevin.beineke@hhu.de, 06.06.2014
  */
@@ -48,8 +55,25 @@ public class WriteBuffer {
 
     private static final int WRITE_BUFFER_MAX_SIZE = 1024 * 1024 * 1024;
 
+    // Upper bound for parking while waiting for the process thread (the process thread signals after every flush)
+    private static final long FLUSH_PARK_TIMEOUT_NS = 1000 * 1000;
+
+    private static final ValuePool SOP_SPACE_SPIN_WAKEUPS = new ValuePool(WriteBuffer.class, "SpaceSpinWakeups");
+    private static final ValuePool SOP_SPACE_PARK_WAKEUPS = new ValuePool(WriteBuffer.class, "SpaceParkWakeups");
+    private static final ValuePool SOP_FLUSH_SPIN_WAKEUPS = new ValuePool(WriteBuffer.class, "FlushSpinWakeups");
+    private static final ValuePool SOP_FLUSH_PARK_WAKEUPS = new ValuePool(WriteBuffer.class, "FlushParkWakeups");
+
+    static {
+        StatisticsManager.get().registerOperation(WriteBuffer.class, SOP_SPACE_SPIN_WAKEUPS);
+        StatisticsManager.get().registerOperation(WriteBuffer.class, SOP_SPACE_PARK_WAKEUPS);
+        StatisticsManager.get().registerOperation(WriteBuffer.class, SOP_FLUSH_SPIN_WAKEUPS);
+        StatisticsManager.get().registerOperation(WriteBuffer.class, SOP_FLUSH_PARK_WAKEUPS);
+    }
+
     private final int m_writeBufferSize;
     private final int m_writeCapacity;
+    private final int m_flushThreshold;
+    private final WakeupSignal m_processThreadSignal;
     private final boolean m_useChecksum;
     private final boolean m_native;
 
@@ -58,12 +82,26 @@ public class WriteBuffer {
     private final ByteBuffer m_bufferCopy; /* for process thread to access write buffer concurrently */
     private final IntHashTable m_rangeSizeHashTable;
 
+    private final ReentrantLock m_producerLock;
+    // Wakes up the producer waiting for space (serialized by the producer lock) and the thread waiting for a flush
+    // (serialized by the flush lock) after the process thread flushed
+    private final WakeupSignal m_spaceSignal;
+    private final ReentrantLock m_flushLock;
+    private final WakeupSignal m_flushSignal;
     private final AtomicBoolean m_metadataLock;
     private volatile long m_bufferReadPointer;
     private volatile long m_bufferWritePointer;
 
     private volatile boolean m_priorityFlush;
 
+    // Absolute byte counters (not wrapped around) to determine which data has been written to disk
+    private long m_appendedBytes; // Accessed by producer holding the producer lock, only
+    private long m_flushedBytes; // Accessed by process thread, only
+    private long m_durableBytes; // Accessed by process thread, only
+    private long m_failedBytes; // Data up to this position belongs to a flush with a failed write job
+    private final ArrayDeque<long[]> m_postedFlushes; // Accessed by process thread, only
+    private final ConcurrentLinkedQueue<PendingCompletion> m_pendingCompletions;
+
     /**
      * Creates an instance of WriteBuffer with user-specific configuration
      *
@@ -75,16 +113,26 @@ public class WriteBuffer {
      *         whether checksums are used
      * @param p_writeCapacity
      *         the write capacity when logging large chunks
+     * @param p_flushThreshold
+     *         the number of bytes in buffer to wake up the process thread
+     * @param p_processThreadSignal
+     *         the signal to wake up the process thread
      */
     WriteBuffer(final int p_writeBufferSize, final int p_flashPageSize, final boolean p_useChecksum,
-            final int p_writeCapacity) {
+            final int p_writeCapacity, final int p_flushThreshold, final WakeupSignal p_processThreadSignal) {
         m_writeBufferSize = p_writeBufferSize;
         m_writeCapacity = p_writeCapacity;
+        m_flushThreshold = p_flushThreshold;
+        m_processThreadSignal = p_processThreadSignal;
         m_useChecksum = p_useChecksum;
 
         m_bufferReadPointer = 0;
         m_bufferWritePointer = 0;
 
+        m_producerLock = new ReentrantLock(false);
+        m_spaceSignal = new WakeupSignal(SOP_SPACE_SPIN_WAKEUPS, SOP_SPACE_PARK_WAKEUPS);
+        m_flushLock = new ReentrantLock(false);
+        m_flushSignal = new WakeupSignal(SOP_FLUSH_SPIN_WAKEUPS, SOP_FLUSH_PARK_WAKEUPS);
         m_metadataLock = new AtomicBoolean(false);
         if (m_writeBufferSize < p_flashPageSize || m_writeBufferSize > WRITE_BUFFER_MAX_SIZE ||
                 Integer.bitCount(m_writeBufferSize) != 1) {
@@ -98,6 +146,9 @@ public class WriteBuffer {
         m_native = m_buffer.isDirect();
         m_rangeSizeHashTable = new IntHashTable();
 
+        m_postedFlushes = new ArrayDeque<>();
+        m_pendingCompletions = new ConcurrentLinkedQueue<>();
+
         LOGGER.trace("Initialized primary write buffer (%d)", m_writeBufferSize);
 
     }
@@ -106,7 +157,209 @@ public class WriteBuffer {
      * Cleans the write buffer and resets the pointer
      */
     public final void close() {
-        // Nothing to do here
+        PendingCompletion completion;
+        while ((completion = m_pendingCompletions.poll()) != null) {
+            completion.m_completion.completeExceptionally(new IllegalStateException("Write buffer was closed"));
+        }
+    }
+
+    /**
+     * Returns the maximum number of bytes needed in write buffer for a log entry (including all headers if the
+     * log entry is split).
+     *
+     * @param p_payloadLength
+     *         the payload length
+     * @return the maximum number of bytes
+     */
+    static int getMaxBytesToWrite(final int p_payloadLength) {
+        int headerSize = AbstractLogEntryHeader.getMaxHeaderSize();
+        int numberOfHeaders = p_payloadLength / (AbstractLogEntryHeader.getMaxLogEntrySize() - headerSize) + 1;
+
+        return p_payloadLength + numberOfHeaders * headerSize;
+    }
+
+    /**
+     * Tries to get exclusive producer access to this write buffer.
+     *
+     * @return whether the producer lock was acquired or not
+     */
+    boolean tryAcquireProducerAccess() {
+        return m_producerLock.tryLock();
+    }
+
+    /**
+     * Gets exclusive producer access to this write buffer. Blocks until the producer lock is acquired.
+     */
+    void acquireProducerAccess() {
+        m_producerLock.lock();
+    }
+
+    /**
+     * Releases the producer lock.
+     */
+    void releaseProducerAccess() {
+        m_producerLock.unlock();
+    }
+
+    /**
+     * Returns the number of free bytes in write buffer.
+     *
+     * @return the number of free bytes
+     */
+    int getFreeBytes() {
+        return m_writeBufferSize - getBytesInBuffer();
+    }
+
+    /**
+     * Checks if the given number of bytes can be appended without waiting for the process thread. The result stays
+     * valid as long as the producer lock is held as the process thread only frees space.
+     *
+     * @param p_bytesToWrite
+     *         the number of bytes to append (must be an upper bound, see getMaxBytesToWrite())
+     * @return whether there is enough space or not
+     */
+    boolean hasSpaceFor(final int p_bytesToWrite) {
+        // One new range might be registered in the range size hash table
+        return p_bytesToWrite < getFreeBytes() &&
+                m_rangeSizeHashTable.size() + 1 < BufferPool.getTotalNumberOfBuffers();
+    }
+
+    /**
+     * Sets priority flush flag and wakes up the process thread without waiting for the flush.
+     */
+    void requestFlush() {
+        m_priorityFlush = true;
+        m_processThreadSignal.signal();
+    }
+
+    /**
+     * Registers a completion which is completed as soon as all data appended so far is written to disk.
+     * The caller must hold the producer lock.
+     *
+     * @param p_completion
+     *         the completion
+     */
+    void registerCompletion(final CompletableFuture<Void> p_completion) {
+        m_pendingCompletions.add(new PendingCompletion(m_appendedBytes, p_completion));
+    }
+
+    /**
+     * Returns whether a registered completion waits for its data to be written to disk.
+     *
+     * @return true if there is a pending completion
+     */
+    boolean hasPendingCompletions() {
+        return !m_pendingCompletions.isEmpty();
+    }
+
+    /**
+     * Stores the write jobs that must be executed until the data flushed so far is on disk.
+     * Called by the process thread after posting all write jobs of a flush.
+     *
+     * @param p_postedJobsBefore
+     *         the number of write jobs posted before the flush (per writer job queue)
+     * @param p_postedJobs
+     *         the number of write jobs posted so far (per writer job queue)
+     */
+    void flushPosted(final long[] p_postedJobsBefore, final long[] p_postedJobs) {
+        long[] flush = new long[2 * p_postedJobs.length + 1];
+        flush[0] = m_flushedBytes;
+        System.arraycopy(p_postedJobsBefore, 0, flush, 1, p_postedJobsBefore.length);
+        System.arraycopy(p_postedJobs, 0, flush, 1 + p_postedJobs.length, p_postedJobs.length);
+        m_postedFlushes.add(flush);
+    }
+
+    /**
+     * Completes all registered completions whose data has been written to disk. Completions covering the data of a
+     * flush with a failed write job are completed exceptionally. Called by the process thread.
+     *
+     * @param p_durableJobs
+     *         the durable watermark (per writer job queue)
+     * @param p_failedJobs
+     *         the failed write jobs not covered by the durable watermark read before ({writer job queue, first job,
+     *         last job})
+     */
+    void completeDurableData(final long[] p_durableJobs, final List<long[]> p_failedJobs) {
+        long[] flush;
+        PendingCompletion completion;
+
+        while ((flush = m_postedFlushes.peek()) != null && isDurable(flush, p_durableJobs)) {
+            if (!p_failedJobs.isEmpty() && containsFailedJob(flush, p_failedJobs)) {
+                m_failedBytes = flush[0];
+            }
+            m_durableBytes = flush[0];
+            m_postedFlushes.poll();
+        }
+
+        while ((completion = m_pendingCompletions.peek()) != null && completion.m_position <= m_durableBytes) {
+            m_pendingCompletions.poll();
+            if (completion.m_position <= m_failedBytes) {
+                completion.m_completion.completeExceptionally(new IOException("Could not write data to disk"));
+            } else {
+                completion.m_completion.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Checks if there is a pending flush which posted write jobs after the given job of a writer job queue.
+     * Called by the process thread.
+     *
+     * @param p_queue
+     *         the writer job queue
+     * @param p_job
+     *         the job number
+     * @return whether a pending flush might contain the job
+     */
+    boolean hasPendingFlushBefore(final int p_queue, final long p_job) {
+        for (long[] flush : m_postedFlushes) {
+            if (flush[1 + p_queue] < p_job) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if all write jobs of a posted flush are durable (or failed).
+     *
+     * @param p_flush
+     *         the flushed bytes followed by the number of posted jobs before and after the flush per writer job queue
+     * @param p_durableJobs
+     *         the durable watermark per writer job queue
+     * @return whether all write jobs of the flush have been handled
+     */
+    private static boolean isDurable(final long[] p_flush, final long[] p_durableJobs) {
+        for (int i = 0; i < p_durableJobs.length; i++) {
+            if (p_flush[1 + p_durableJobs.length + i] > p_durableJobs[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if one of the write jobs posted by a flush failed.
+     *
+     * @param p_flush
+     *         the flushed bytes followed by the number of posted jobs before and after the flush per writer job queue
+     * @param p_failedJobs
+     *         the failed write jobs ({writer job queue, first job, last job})
+     * @return whether the flush contains a failed job
+     */
+    private static boolean containsFailedJob(final long[] p_flush, final List<long[]> p_failedJobs) {
+        int queues = (p_flush.length - 1) / 2;
+
+        for (long[] failedJobs : p_failedJobs) {
+            int queue = (int) failedJobs[0];
+            if (failedJobs[1] <= p_flush[1 + queues + queue] && failedJobs[2] > p_flush[1 + queue]) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -116,10 +369,19 @@ public class WriteBuffer {
      */
     void flush() {
         long writePointer = m_bufferWritePointer;
-        m_priorityFlush = true;
-
-        while (m_bufferWritePointer == writePointer && getBytesInBuffer() != 0) {
-            LockSupport.parkNanos(1);
+        requestFlush();
+
+        if (m_bufferWritePointer == writePointer && getBytesInBuffer() != 0) {
+            // The flush signal has a single consumer -> serialize waiting threads. The process thread does not
+            // acquire any lock, so this lock can be acquired while holding a producer lock.
+            m_flushLock.lock();
+            try {
+                while (m_bufferWritePointer == writePointer && getBytesInBuffer() != 0) {
+                    m_flushSignal.await(FLUSH_PARK_TIMEOUT_NS);
+                }
+            } finally {
+                m_flushLock.unlock();
+            }
         }
     }
 
@@ -150,7 +412,7 @@ public class WriteBuffer {
     }
 
     /**
-     * Writes log entries to primary write buffer.
+     * Writes log entries to primary write buffer. The caller must hold the producer lock.
      *
      * @param p_importer
      *         the message importer
@@ -163,12 +425,12 @@ public class WriteBuffer {
      * @param p_owner
      *         the current owner
      * @param p_version
-     *         the version
+     *         the packed version (see Version.pack())
      * @param p_timestamp
      *         the time since initialization in seconds
      */
     final void putLogData(final AbstractMessageImporter p_importer, final long p_chunkID, final int p_payloadLength,
-            final short p_rangeID, final short p_owner, final Version p_version, final int p_timestamp) {
+            final short p_rangeID, final short p_owner, final long p_version, final int p_timestamp) {
         AbstractPrimLogEntryHeader logEntryHeader;
         byte headerSize;
         int bytesToWrite;
@@ -245,16 +507,21 @@ public class WriteBuffer {
 
                 // Set buffer write pointer and byte counter
                 m_bufferWritePointer = writePointerAbsolute + bytesToWrite & 0x7FFFFFFF;
+                m_appendedBytes += bytesToWrite;
 
                 // Leave critical area by resetting spin lock
                 m_metadataLock.set(false);
 
+                if (getBytesInBuffer() > m_flushThreshold) {
+                    m_processThreadSignal.signal();
+                }
+
                 break;
             } else {
-                // There is not enough space to append the log entry -> wait
-                m_priorityFlush = true;
+                // There is not enough space to append the log entry -> wait for the process thread to flush
+                requestFlush();
 
-                LockSupport.parkNanos(100);
+                m_spaceSignal.await(FLUSH_PARK_TIMEOUT_NS);
             }
         }
     }
@@ -452,5 +719,30 @@ public class WriteBuffer {
     void updateMetadata(final long p_flushedBytes) {
         m_bufferReadPointer =
                 m_bufferReadPointer + p_flushedBytes & 0x7FFFFFFF; // Read pointer is updated by process thread, only
+        m_flushedBytes += p_flushedBytes;
+
+        m_spaceSignal.signal();
+        m_flushSignal.signal();
+    }
+
+    /**
+     * A completion waiting for all data up to a position (absolute number of appended bytes) to be written to disk.
+     */
+    private static final class PendingCompletion {
+        private final long m_position;
+        private final CompletableFuture<Void> m_completion;
+
+        /**
+         * Creates an instance of PendingCompletion.
+         *
+         * @param p_position
+         *         the absolute number of appended bytes
+         * @param p_completion
+         *         the completion
+         */
+        private PendingCompletion(final long p_position, final CompletableFuture<Void> p_completion) {
+            m_position = p_position;
+            m_completion = p_completion;
+        }
     }
 }
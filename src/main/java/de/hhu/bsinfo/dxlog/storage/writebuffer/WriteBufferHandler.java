@@ -17,17 +17,21 @@
 package de.hhu.bsinfo.dxlog.storage.writebuffer;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 import de.hhu.bsinfo.dxlog.storage.Scheduler;
+import de.hhu.bsinfo.dxlog.storage.WakeupSignal;
 import de.hhu.bsinfo.dxlog.storage.logs.LogHandler;
-import de.hhu.bsinfo.dxlog.storage.versioncontrol.Version;
+import de.hhu.bsinfo.dxlog.storage.versioncontrol.VersionBuffer;
 import de.hhu.bsinfo.dxlog.storage.versioncontrol.VersionHandler;
 import de.hhu.bsinfo.dxmem.data.ChunkID;
 import de.hhu.bsinfo.dxnet.core.MessageHeader;
 import de.hhu.bsinfo.dxnet.core.MessageImporterDefault;
 import de.hhu.bsinfo.dxutils.ByteBufferHelper;
+import de.hhu.bsinfo.dxutils.serialization.ObjectSizeUtil;
 import de.hhu.bsinfo.dxutils.stats.StatisticsManager;
 import de.hhu.bsinfo.dxutils.stats.TimePool;
+import de.hhu.bsinfo.dxutils.stats.ValuePool;
 
 /**
  * For accessing the write buffer from outside of this package.
@@ -38,15 +42,22 @@ public final class WriteBufferHandler {
 
     private static final TimePool SOP_LOG_BATCH = new TimePool(WriteBufferHandler.class, "LogBatch");
     private static final TimePool SOP_PUT_ENTRY_AND_HEADER = new TimePool(WriteBufferHandler.class, "LogSingle");
+    private static final ValuePool SOP_PROCESS_THREAD_SPIN_WAKEUPS =
+            new ValuePool(WriteBufferHandler.class, "ProcessThreadSpinWakeups");
+    private static final ValuePool SOP_PROCESS_THREAD_PARK_WAKEUPS =
+            new ValuePool(WriteBufferHandler.class, "ProcessThreadParkWakeups");
 
     static {
         StatisticsManager.get().registerOperation(WriteBufferHandler.class, SOP_LOG_BATCH);
         StatisticsManager.get().registerOperation(WriteBufferHandler.class, SOP_PUT_ENTRY_AND_HEADER);
+        StatisticsManager.get().registerOperation(WriteBufferHandler.class, SOP_PROCESS_THREAD_SPIN_WAKEUPS);
+        StatisticsManager.get().registerOperation(WriteBufferHandler.class, SOP_PROCESS_THREAD_PARK_WAKEUPS);
     }
 
     private final VersionHandler m_versionHandler;
 
-    private final WriteBuffer m_writeBuffer;
+    private final WriteBuffer[] m_writeBuffers;
+    private final WakeupSignal m_processThreadSignal;
     private final ProcessThread m_processThread;
 
     private final boolean m_useTimestamps;
@@ -65,7 +76,9 @@ public final class WriteBufferHandler {
      * @param p_bufferPool
      *         the buffer pool storing buffer wrappers
      * @param p_writeBufferSize
-     *         the write buffer size
+     *         the write buffer size (sum of all stripes)
+     * @param p_numberOfStripes
+     *         the number of write buffer stripes (must be a power of two)
      * @param p_secondaryLogBufferSize
      *         the secondary log buffer size
      * @param p_flashPageSize
@@ -79,18 +92,24 @@ public final class WriteBufferHandler {
      */
     public WriteBufferHandler(final LogHandler p_logHandler, final VersionHandler p_versionHandler,
             final Scheduler p_scheduler, final BufferPool p_bufferPool, final int p_writeBufferSize,
-            final int p_secondaryLogBufferSize, final int p_flashPageSize, final boolean p_useChecksum,
-            final boolean p_useTimestamps, final long p_initTime) {
+            final int p_numberOfStripes, final int p_secondaryLogBufferSize, final int p_flashPageSize,
+            final boolean p_useChecksum, final boolean p_useTimestamps, final long p_initTime) {
         m_versionHandler = p_versionHandler;
 
         m_useTimestamps = p_useTimestamps;
         m_initTime = p_initTime;
 
-        m_writeBuffer =
-                new WriteBuffer(p_writeBufferSize, p_flashPageSize, p_useChecksum, p_logHandler.getWriteCapacity());
+        int stripeSize = p_writeBufferSize / p_numberOfStripes;
+        int flushThreshold = (int) (stripeSize * 0.45);
+        m_processThreadSignal = new WakeupSignal(SOP_PROCESS_THREAD_SPIN_WAKEUPS, SOP_PROCESS_THREAD_PARK_WAKEUPS);
+        m_writeBuffers = new WriteBuffer[p_numberOfStripes];
+        for (int i = 0; i < p_numberOfStripes; i++) {
+            m_writeBuffers[i] = new WriteBuffer(stripeSize, p_flashPageSize, p_useChecksum,
+                    p_logHandler.getWriteCapacity(), flushThreshold, m_processThreadSignal);
+        }
 
-        m_processThread = new ProcessThread(p_logHandler, p_scheduler, m_writeBuffer, p_bufferPool,
-                (int) (p_writeBufferSize * 0.45), p_secondaryLogBufferSize);
+        m_processThread = new ProcessThread(p_logHandler, p_scheduler, m_writeBuffers, p_bufferPool,
+                m_processThreadSignal, flushThreshold, p_secondaryLogBufferSize);
         m_processThread.setName("Logging: Process Thread");
         m_processThread.start();
     }
@@ -100,14 +119,40 @@ public final class WriteBufferHandler {
      */
     public void close() {
         m_processThread.close();
-        m_writeBuffer.close();
+        for (WriteBuffer writeBuffer : m_writeBuffers) {
+            writeBuffer.close();
+        }
+    }
+
+    /**
+     * Wakes up the process thread.
+     */
+    public void wakeUpProcessThread() {
+        m_processThreadSignal.signal();
     }
 
     /**
-     * Flush the write buffer.
+     * Returns whether a completion of any stripe waits for its data to be written to disk.
+     *
+     * @return true if there is a pending completion
+     */
+    public boolean hasPendingCompletions() {
+        for (WriteBuffer writeBuffer : m_writeBuffers) {
+            if (writeBuffer.hasPendingCompletions()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Flush the write buffer (all stripes).
      */
     public void flushWriteBuffer() {
-        m_writeBuffer.flush();
+        for (WriteBuffer writeBuffer : m_writeBuffers) {
+            writeBuffer.flush();
+        }
     }
 
     /**
@@ -119,7 +164,9 @@ public final class WriteBufferHandler {
      *         the range ID
      */
     public void flushWriteBuffer(final short p_owner, final short p_range) {
-        m_writeBuffer.flush(p_owner, p_range);
+        for (WriteBuffer writeBuffer : m_writeBuffers) {
+            writeBuffer.flush(p_owner, p_range);
+        }
     }
 
     /**
@@ -136,11 +183,129 @@ public final class WriteBufferHandler {
      */
     public void postData(final short p_owner, final short p_rangeID, final int p_numberOfDataStructures,
             final ByteBuffer p_buffer) {
+        postData(p_owner, p_rangeID, p_numberOfDataStructures, p_buffer, null);
+    }
+
+    /**
+     * Posts data on write buffer. Called after message serialization (if message was split).
+     *
+     * @param p_owner
+     *         the owner
+     * @param p_rangeID
+     *         the range ID
+     * @param p_numberOfDataStructures
+     *         the number of data structures to write
+     * @param p_buffer
+     *         the buffer containing all data structures
+     * @param p_completion
+     *         completed as soon as all data structures are written to disk (may be null)
+     */
+    public void postData(final short p_owner, final short p_rangeID, final int p_numberOfDataStructures,
+            final ByteBuffer p_buffer, final CompletableFuture<Void> p_completion) {
+        long address = ByteBufferHelper.getDirectAddress(p_buffer);
+        long[] chunkIDs = new long[p_numberOfDataStructures];
+        long[] versions = new long[p_numberOfDataStructures];
+
+        // The whole batch is accessible -> assign all versions at once
+        scanDataStructures(address, p_buffer.capacity(), p_numberOfDataStructures, chunkIDs);
+        if (!m_versionHandler.getVersions(chunkIDs, p_numberOfDataStructures, p_owner, p_rangeID, versions)) {
+            failCompletion(p_completion);
+            return;
+        }
+
         MessageImporterDefault importer = new MessageImporterDefault();
-        importer.setBuffer(ByteBufferHelper.getDirectAddress(p_buffer), p_buffer.capacity(), 0);
+        importer.setBuffer(address, p_buffer.capacity(), 0);
         importer.setNumberOfReadBytes(0);
 
-        processDataStructures(importer, p_numberOfDataStructures, p_owner, p_rangeID);
+        // All log entries of one message are written to the same stripe
+        WriteBuffer writeBuffer = acquireWriteBuffer();
+        try {
+            processDataStructures(importer, p_numberOfDataStructures, p_owner, p_rangeID, versions, null, writeBuffer);
+            if (p_completion != null) {
+                writeBuffer.registerCompletion(p_completion);
+            }
+        } finally {
+            writeBuffer.releaseProducerAccess();
+        }
+    }
+
+    /**
+     * Posts data on write buffer if there is enough space in the write buffer. Returns immediately if the data
+     * cannot be appended without waiting for the process thread.
+     *
+     * @param p_owner
+     *         the owner
+     * @param p_rangeID
+     *         the range ID
+     * @param p_numberOfDataStructures
+     *         the number of data structures to write
+     * @param p_buffer
+     *         the buffer containing all data structures
+     * @param p_completion
+     *         completed as soon as all data structures are written to disk (may be null; untouched if nothing was
+     *         posted)
+     * @return 0 if the data was posted (or discarded because the backup range does not exist), the number of bytes
+     * to be flushed before retrying otherwise
+     */
+    public int tryPostData(final short p_owner, final short p_rangeID, final int p_numberOfDataStructures,
+            final ByteBuffer p_buffer, final CompletableFuture<Void> p_completion) {
+        WriteBuffer writeBuffer = null;
+        long address = ByteBufferHelper.getDirectAddress(p_buffer);
+        long[] chunkIDs = new long[p_numberOfDataStructures];
+
+        int bytesToWrite = scanDataStructures(address, p_buffer.capacity(), p_numberOfDataStructures, chunkIDs);
+
+        // Try all stripes starting with the thread's home stripe
+        int mask = m_writeBuffers.length - 1;
+        int home = (int) Thread.currentThread().getId() & mask;
+        int maxFreeBytes = 0;
+        for (int i = 0; i < m_writeBuffers.length; i++) {
+            WriteBuffer stripe = m_writeBuffers[home + i & mask];
+            if (stripe.tryAcquireProducerAccess()) {
+                // Space can only grow while the producer lock is held
+                if (stripe.hasSpaceFor(bytesToWrite)) {
+                    writeBuffer = stripe;
+                    break;
+                }
+                maxFreeBytes = Math.max(maxFreeBytes, stripe.getFreeBytes());
+                stripe.releaseProducerAccess();
+            }
+        }
+
+        if (writeBuffer == null) {
+            // Trigger flushing but do not wait for it
+            m_writeBuffers[home].requestFlush();
+
+            return Math.max(bytesToWrite - maxFreeBytes, 1);
+        }
+
+        try {
+            long[] versions = new long[p_numberOfDataStructures];
+            // Never wait for the version buffer to be flushed while holding the producer lock
+            int ret = m_versionHandler.tryGetVersions(chunkIDs, p_numberOfDataStructures, p_owner, p_rangeID,
+                    versions);
+            if (ret == -1) {
+                failCompletion(p_completion);
+                return 0;
+            } else if (ret == 0) {
+                // The version buffer is flushed with the next log entries written to the secondary log
+                writeBuffer.requestFlush();
+                return Math.max(bytesToWrite, 1);
+            }
+
+            MessageImporterDefault importer = new MessageImporterDefault();
+            importer.setBuffer(address, p_buffer.capacity(), 0);
+            importer.setNumberOfReadBytes(0);
+
+            processDataStructures(importer, p_numberOfDataStructures, p_owner, p_rangeID, versions, null, writeBuffer);
+            if (p_completion != null) {
+                writeBuffer.registerCompletion(p_completion);
+            }
+        } finally {
+            writeBuffer.releaseProducerAccess();
+        }
+
+        return 0;
     }
 
     /**
@@ -150,6 +315,18 @@ public final class WriteBufferHandler {
      *         the message header containing all information to access the messages's data
      */
     public void postData(final MessageHeader p_messageHeader) {
+        postData(p_messageHeader, null);
+    }
+
+    /**
+     * Posts data on write buffer. Includes serialization (if message is complete)
+     *
+     * @param p_messageHeader
+     *         the message header containing all information to access the messages's data
+     * @param p_completion
+     *         completed as soon as all data structures are written to disk (may be null)
+     */
+    public void postData(final MessageHeader p_messageHeader, final CompletableFuture<Void> p_completion) {
         MessageImporterDefault importer = new MessageImporterDefault();
         p_messageHeader.initExternalImporter(importer);
 
@@ -157,8 +334,95 @@ public final class WriteBufferHandler {
         short rangeID = importer.readShort((short) 0);
         int numberOfDataStructures = importer.readInt(0);
 
-        processDataStructures(importer, numberOfDataStructures, owner, rangeID);
+        // The message might not be completely accessible -> assign versions one by one but look-up the version
+        // buffer once
+        VersionBuffer versionBuffer = m_versionHandler.getVersionBuffer(owner, rangeID);
+        if (versionBuffer == null) {
+            failCompletion(p_completion);
+            return;
+        }
+
+        // All log entries of one message are written to the same stripe
+        WriteBuffer writeBuffer = acquireWriteBuffer();
+        try {
+            processDataStructures(importer, numberOfDataStructures, owner, rangeID, null, versionBuffer, writeBuffer);
+            if (p_completion != null) {
+                writeBuffer.registerCompletion(p_completion);
+            }
+        } finally {
+            writeBuffer.releaseProducerAccess();
+        }
+    }
+
+    /**
+     * Completes a completion exceptionally as the data could not be logged.
+     *
+     * @param p_completion
+     *         the completion (may be null)
+     */
+    private static void failCompletion(final CompletableFuture<Void> p_completion) {
+        if (p_completion != null) {
+            p_completion.completeExceptionally(new IllegalStateException("No backup range available"));
+        }
+    }
+
+    /**
+     * Determines a write buffer stripe for the calling thread and acquires the producer lock of the stripe.
+     * The thread's home stripe is preferred. If it is in use by another producer, the other stripes are tried once
+     * before waiting for the home stripe.
+     *
+     * @return the locked write buffer stripe
+     */
+    private WriteBuffer acquireWriteBuffer() {
+        WriteBuffer ret;
+        int mask = m_writeBuffers.length - 1;
+        int home = (int) Thread.currentThread().getId() & mask;
+
+        for (int i = 0; i < m_writeBuffers.length; i++) {
+            ret = m_writeBuffers[home + i & mask];
+            if (ret.tryAcquireProducerAccess()) {
+                return ret;
+            }
+        }
+
+        ret = m_writeBuffers[home];
+        ret.acquireProducerAccess();
+
+        return ret;
+    }
+
+    /**
+     * Reads the chunk IDs of all data structures of a batch by skipping the payloads.
+     *
+     * @param p_address
+     *         the address of the buffer containing all data structures
+     * @param p_size
+     *         the buffer size
+     * @param p_numberOfDataStructures
+     *         the number of data structures
+     * @param p_chunkIDs
+     *         the array to store the chunk IDs in
+     * @return the maximum number of bytes needed in write buffer to store all data structures
+     */
+    private static int scanDataStructures(final long p_address, final int p_size, final int p_numberOfDataStructures,
+            final long[] p_chunkIDs) {
+        int offset = 0;
+        int length = -1;
+        int bytesToWrite = 0;
+        MessageImporterDefault importer = new MessageImporterDefault();
+
+        for (int i = 0; i < p_numberOfDataStructures; i++) {
+            importer.setBuffer(p_address, p_size, offset);
+            importer.setNumberOfReadBytes(0);
+
+            p_chunkIDs[i] = importer.readLong(ChunkID.INVALID_ID);
+            length = importer.readCompactNumber(length);
+
+            offset += Long.BYTES + ObjectSizeUtil.sizeofCompactedNumber(length) + length;
+            bytesToWrite += WriteBuffer.getMaxBytesToWrite(length);
+        }
 
+        return bytesToWrite;
     }
 
     /**
@@ -172,10 +436,17 @@ public final class WriteBufferHandler {
      *         the owner
      * @param p_rangeID
      *         the range ID
+     * @param p_versions
+     *         the packed versions assigned in advance or null
+     * @param p_versionBuffer
+     *         the version buffer to get versions from if they were not assigned in advance
+     * @param p_writeBuffer
+     *         the write buffer stripe (the producer lock must be held)
      */
     private void processDataStructures(final MessageImporterDefault p_importer, final int p_numberOfDataStructures,
-            final short p_owner, final short p_rangeID) {
-        Version version;
+            final short p_owner, final short p_rangeID, final long[] p_versions, final VersionBuffer p_versionBuffer,
+            final WriteBuffer p_writeBuffer) {
+        long version;
         long chunkID = ChunkID.INVALID_ID;
         int length = -1;
 
@@ -196,9 +467,13 @@ public final class WriteBufferHandler {
 
             SOP_PUT_ENTRY_AND_HEADER.start();
 
-            version = m_versionHandler.getVersion(chunkID, p_owner, p_rangeID);
+            if (p_versions != null) {
+                version = p_versions[i];
+            } else {
+                version = m_versionHandler.getPackedVersion(p_versionBuffer, chunkID);
+            }
 
-            m_writeBuffer.putLogData(p_importer, chunkID, length, p_rangeID, p_owner, version, timestamp);
+            p_writeBuffer.putLogData(p_importer, chunkID, length, p_rangeID, p_owner, version, timestamp);
 
             SOP_PUT_ENTRY_AND_HEADER.stop();
         }
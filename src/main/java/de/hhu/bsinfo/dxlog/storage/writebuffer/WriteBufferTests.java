@@ -37,7 +37,7 @@ final class WriteBufferTests {
      * @param p_chunkID
      *         the chunk ID
      * @param p_version
-     *         the version
+     *         the packed version
      * @param p_rangeID
      *         the range ID
      * @param p_owner
@@ -49,7 +49,7 @@ final class WriteBufferTests {
      * @return whether the header is correct or not
      */
     static boolean checkHeader(final ByteBuffer p_header, final AbstractPrimLogEntryHeader p_logEntryHeader,
-            final long p_chunkID, final Version p_version, final short p_rangeID, final short p_owner,
+            final long p_chunkID, final long p_version, final short p_rangeID, final short p_owner,
             final int p_timestamp, final int p_numberOfHeaders) {
         boolean ret = true;
 
@@ -79,9 +79,11 @@ final class WriteBufferTests {
             ret = false;
         }
         Version v = p_logEntryHeader.getVersion(p_header, 0);
-        if (!p_version.isEqual(v)) {
+        if (Version.getPackedEpoch(p_version) != v.getEpoch() ||
+                Version.getPackedVersion(p_version) != v.getVersion()) {
             LOGGER.error("Header field check: Different version %d,%d != %d,%d in created header.",
-                    p_version.getEpoch(), p_version.getVersion(), v.getEpoch(), v.getVersion());
+                    Version.getPackedEpoch(p_version), Version.getPackedVersion(p_version), v.getEpoch(),
+                    v.getVersion());
             ret = false;
         }
         if (p_timestamp != -1 && p_timestamp != p_logEntryHeader.getTimestamp(p_header, 0)) {
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.hhu.bsinfo.dxlog.storage.header.AbstractLogEntryHeader;
+import de.hhu.bsinfo.dxlog.storage.header.ChecksumHandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the accounting of invalidated bytes per segment (see ChunkLocationTable).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public class ChunkLocationTableTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int SEGMENTS = 4;
+    private static final short OWNER = 1;
+
+    // Type: default log entry, 2 bytes LocalID, 1 byte length, epoch only (no version field)
+    private static final byte TYPE = 0x14;
+    // Type, LocalID, length and epoch (no timestamp, chaining and checksum)
+    private static final int HEADER_SIZE = 6;
+    private static final int PAYLOAD_SIZE = 10;
+    private static final int ENTRY_SIZE = HEADER_SIZE + PAYLOAD_SIZE;
+
+    private SegmentHeader[] m_headers;
+    private SegmentSpaceIndex m_spaceIndex;
+
+    /**
+     * Disables checksums and timestamps and creates a header for every segment.
+     */
+    @Before
+    public void setUp() {
+        ChecksumHandler.setCRCSize(false);
+        AbstractLogEntryHeader.setTimestampSize(false);
+
+        m_headers = new SegmentHeader[SEGMENTS];
+        m_spaceIndex = new SegmentSpaceIndex(SEGMENTS, SEGMENT_SIZE);
+        for (int i = 0; i < SEGMENTS; i++) {
+            m_headers[i] = new SegmentHeader(i, SEGMENT_SIZE / 2, 0);
+            m_spaceIndex.put(m_headers[i]);
+        }
+    }
+
+    /**
+     * Writing a newer log entry of a chunk invalidates the previous log entry in its segment.
+     */
+    @Test
+    public void writeInvalidatesPreviousEntry() {
+        ChunkLocationTable table = new ChunkLocationTable(SEGMENTS, OWNER, m_spaceIndex);
+
+        table.recordWrite(m_headers, 0, createEntries(1, 2), 0, 2 * ENTRY_SIZE);
+        assertEquals(0, m_headers[0].getInvalidBytes());
+        assertFalse(m_spaceIndex.hasReclaimableSegments());
+
+        table.recordWrite(m_headers, 1, createEntries(1), 0, ENTRY_SIZE);
+        assertEquals(ENTRY_SIZE, m_headers[0].getInvalidBytes());
+        assertEquals(0, m_headers[1].getInvalidBytes());
+        assertTrue(m_spaceIndex.hasReclaimableSegments());
+
+        table.recordWrite(m_headers, 1, createEntries(1), 0, ENTRY_SIZE);
+        assertEquals(ENTRY_SIZE, m_headers[0].getInvalidBytes());
+        assertEquals(ENTRY_SIZE, m_headers[1].getInvalidBytes());
+    }
+
+    /**
+     * Removing a chunk invalidates its newest log entry once.
+     */
+    @Test
+    public void removeInvalidatesNewestEntry() {
+        ChunkLocationTable table = new ChunkLocationTable(SEGMENTS, OWNER, m_spaceIndex);
+        long[] chunkIDs = {getChunkID(2)};
+
+        table.recordWrite(m_headers, 0, createEntries(1, 2), 0, 2 * ENTRY_SIZE);
+        table.remove(m_headers, chunkIDs);
+        assertEquals(ENTRY_SIZE, m_headers[0].getInvalidBytes());
+
+        table.remove(m_headers, chunkIDs);
+        assertEquals(ENTRY_SIZE, m_headers[0].getInvalidBytes());
+    }
+
+    /**
+     * Moved log entries are tracked in the reorganized segment; log entries outdated by a write during the
+     * reorganization are invalidated immediately.
+     */
+    @Test
+    public void rewriteMovesAndInvalidatesEntries() {
+        ChunkLocationTable table = new ChunkLocationTable(SEGMENTS, OWNER, m_spaceIndex);
+
+        table.recordWrite(m_headers, 0, createEntries(1, 2), 0, 2 * ENTRY_SIZE);
+        // Chunk 1 is updated while segment 0 is reorganized
+        table.recordWrite(m_headers, 1, createEntries(1), 0, ENTRY_SIZE);
+
+        table.recordRewrite(m_headers, 2, createEntries(1, 2), 2 * ENTRY_SIZE, new int[] {0});
+        assertEquals(ENTRY_SIZE, m_headers[2].getInvalidBytes());
+
+        // Chunk 2 was moved to segment 2
+        table.recordWrite(m_headers, 3, createEntries(2), 0, ENTRY_SIZE);
+        assertEquals(2 * ENTRY_SIZE, m_headers[2].getInvalidBytes());
+        assertEquals(0, m_headers[3].getInvalidBytes());
+    }
+
+    /**
+     * Chunks not tracked because the table is full make the invalidated bytes of their segment unknown.
+     */
+    @Test
+    public void fullTableMarksSegmentUnknown() {
+        // One segment -> the table is full after 1024 chunks
+        ChunkLocationTable table = new ChunkLocationTable(1, OWNER, m_spaceIndex);
+
+        for (int i = 0; i < 1024; i++) {
+            table.recordWrite(m_headers, 0, createEntries(i), 0, ENTRY_SIZE);
+        }
+        assertTrue(m_headers[0].isInvalidBytesKnown());
+
+        table.recordWrite(m_headers, 1, createEntries(1024), 0, ENTRY_SIZE);
+        assertFalse(m_headers[1].isInvalidBytesKnown());
+
+        // Tracked chunks are still accounted
+        table.recordWrite(m_headers, 2, createEntries(1), 0, ENTRY_SIZE);
+        assertTrue(m_headers[2].isInvalidBytesKnown());
+        assertEquals(ENTRY_SIZE, m_headers[0].getInvalidBytes());
+    }
+
+    /**
+     * Returns the chunk ID of a non-migrated chunk.
+     *
+     * @param p_localID
+     *         the LocalID
+     * @return the chunk ID
+     */
+    private static long getChunkID(final long p_localID) {
+        return ((long) OWNER << 48) + p_localID;
+    }
+
+    /**
+     * Creates consecutive log entries.
+     *
+     * @param p_localIDs
+     *         the LocalIDs of the log entries (less than 65536)
+     * @return the buffer containing the log entries
+     */
+    private static ByteBuffer createEntries(final int... p_localIDs) {
+        ByteBuffer buffer = ByteBuffer.allocate(p_localIDs.length * ENTRY_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < p_localIDs.length; i++) {
+            buffer.put(i * ENTRY_SIZE, TYPE);
+            buffer.putShort(i * ENTRY_SIZE + 1, (short) p_localIDs[i]);
+            buffer.put(i * ENTRY_SIZE + 3, (byte) PAYLOAD_SIZE);
+        }
+
+        return buffer;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the free space index of secondary logs (see SegmentSpaceIndex).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public class SegmentSpaceIndexTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int SEGMENTS = 8;
+    private static final BitSet NO_SEGMENTS = new BitSet();
+
+    /**
+     * The occupied bytes follow added, updated and removed segments.
+     */
+    @Test
+    public void occupiedBytes() {
+        SegmentSpaceIndex index = new SegmentSpaceIndex(SEGMENTS, SEGMENT_SIZE);
+
+        index.put(new SegmentHeader(0, 100, 0));
+        index.put(new SegmentHeader(1, 300, 0));
+        assertEquals(400, index.getOccupiedBytes());
+
+        index.put(new SegmentHeader(0, 200, 0));
+        assertEquals(500, index.getOccupiedBytes());
+
+        index.remove(1);
+        assertEquals(200, index.getOccupiedBytes());
+    }
+
+    /**
+     * The empty segment with the lowest index is returned; reserved and excluded segments are skipped.
+     */
+    @Test
+    public void emptySegment() {
+        SegmentSpaceIndex index = new SegmentSpaceIndex(SEGMENTS, SEGMENT_SIZE);
+        BitSet reserved = new BitSet();
+
+        assertEquals(0, index.getEmptySegment(NO_SEGMENTS, -1));
+
+        reserved.set(0);
+        assertEquals(2, index.getEmptySegment(reserved, 1));
+
+        index.put(new SegmentHeader(2, 100, 0));
+        assertEquals(3, index.getEmptySegment(reserved, 1));
+
+        index.remove(2);
+        assertEquals(2, index.getEmptySegment(reserved, 1));
+    }
+
+    /**
+     * The used segment with the least free bytes that can store the data is the best fit.
+     */
+    @Test
+    public void bestFit() {
+        SegmentSpaceIndex index = createIndex();
+        BitSet reserved = new BitSet();
+
+        assertEquals(2, index.getBestFit(100, NO_SEGMENTS, -1, -1));
+        assertEquals(1, index.getBestFit(300, NO_SEGMENTS, -1, -1));
+        assertEquals(-1, index.getBestFit(600, NO_SEGMENTS, -1, -1));
+
+        assertEquals(1, index.getBestFit(100, NO_SEGMENTS, 2, -1));
+        assertEquals(1, index.getBestFit(100, NO_SEGMENTS, -1, 2));
+        reserved.set(2);
+        assertEquals(1, index.getBestFit(100, reserved, -1, -1));
+        assertEquals(-1, index.getBestFit(100, reserved, 1, -1));
+    }
+
+    /**
+     * The used segment with most free bytes is returned if no segment can store the data.
+     */
+    @Test
+    public void maxFreeSegment() {
+        SegmentSpaceIndex index = createIndex();
+
+        assertEquals(1, index.getMaxFreeSegment(600, NO_SEGMENTS, -1, -1));
+        assertEquals(2, index.getMaxFreeSegment(600, NO_SEGMENTS, 1, -1));
+        assertEquals(0, index.getMaxFreeSegment(100, NO_SEGMENTS, -1, -1));
+        assertEquals(-1, index.getMaxFreeSegment(10, NO_SEGMENTS, -1, -1));
+    }
+
+    /**
+     * Cold segments are not filled by the writer thread but count as occupied and are found for cold log entries.
+     */
+    @Test
+    public void coldSegmentsAreSeparated() {
+        SegmentSpaceIndex index = new SegmentSpaceIndex(SEGMENTS, SEGMENT_SIZE);
+        SegmentHeader header = new SegmentHeader(0, 100, 0);
+        SegmentHeader fullHeader = new SegmentHeader(2, 900, 0);
+        BitSet reserved = new BitSet();
+
+        header.markCold();
+        index.put(header);
+        fullHeader.markCold();
+        index.put(fullHeader);
+
+        assertEquals(1000, index.getOccupiedBytes());
+        assertEquals(-1, index.getBestFit(10, NO_SEGMENTS, -1, -1));
+        assertEquals(-1, index.getMaxFreeSegment(SEGMENT_SIZE, NO_SEGMENTS, -1, -1));
+        assertEquals(1, index.getEmptySegment(NO_SEGMENTS, -1));
+
+        assertEquals(0, index.getMaxFreeColdSegment(NO_SEGMENTS, -1, -1));
+        assertEquals(2, index.getMaxFreeColdSegment(NO_SEGMENTS, 0, -1));
+        reserved.set(2);
+        assertEquals(-1, index.getMaxFreeColdSegment(reserved, -1, 0));
+
+        index.remove(0);
+        assertEquals(2, index.getMaxFreeColdSegment(NO_SEGMENTS, -1, -1));
+    }
+
+    /**
+     * Segments with invalidated or an unknown number of invalidated bytes are reclaimable until they are removed.
+     */
+    @Test
+    public void reclaimableSegments() {
+        SegmentSpaceIndex index = new SegmentSpaceIndex(SEGMENTS, SEGMENT_SIZE);
+        SegmentHeader header = new SegmentHeader(0, 100, 0);
+
+        index.put(header);
+        assertFalse(index.hasReclaimableSegments());
+
+        index.markReclaimable(0);
+        assertTrue(index.hasReclaimableSegments());
+        index.remove(0);
+        assertFalse(index.hasReclaimableSegments());
+
+        // Empty segments are never reclaimable
+        index.markReclaimable(3);
+        assertFalse(index.hasReclaimableSegments());
+
+        header.addInvalidBytes(10);
+        index.put(header);
+        assertTrue(index.hasReclaimableSegments());
+
+        header = new SegmentHeader(0, 100, 0);
+        index.put(header);
+        assertFalse(index.hasReclaimableSegments());
+        header.markInvalidBytesUnknown();
+        index.put(header);
+        assertTrue(index.hasReclaimableSegments());
+    }
+
+    /**
+     * Non-empty segments not reorganized in the current eon are tracked.
+     */
+    @Test
+    public void segmentsNotReorganized() {
+        SegmentSpaceIndex index = new SegmentSpaceIndex(SEGMENTS, SEGMENT_SIZE);
+        SegmentHeader header = new SegmentHeader(0, 100, 0);
+
+        index.put(header);
+        assertFalse(index.hasSegmentsNotReorganized());
+
+        header.beginEon();
+        index.put(header);
+        assertTrue(index.hasSegmentsNotReorganized());
+
+        header.markSegmentAsReorganized();
+        index.put(header);
+        assertFalse(index.hasSegmentsNotReorganized());
+
+        header.beginEon();
+        index.put(header);
+        index.remove(0);
+        assertFalse(index.hasSegmentsNotReorganized());
+    }
+
+    /**
+     * Creates an index with three used segments (24, 524 and 224 free bytes).
+     *
+     * @return the index
+     */
+    private static SegmentSpaceIndex createIndex() {
+        SegmentSpaceIndex index = new SegmentSpaceIndex(SEGMENTS, SEGMENT_SIZE);
+
+        index.put(new SegmentHeader(0, 1000, 0));
+        index.put(new SegmentHeader(1, 500, 0));
+        index.put(new SegmentHeader(2, 800, 0));
+
+        return index;
+    }
+}
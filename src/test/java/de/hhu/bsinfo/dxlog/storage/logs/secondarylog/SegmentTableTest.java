@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.logs.secondarylog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.hhu.bsinfo.dxlog.storage.header.AbstractLogEntryHeader;
+import de.hhu.bsinfo.dxlog.storage.header.ChecksumHandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for encoding and decoding the persistent segment table (see SegmentTable).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public class SegmentTableTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int SEGMENTS = 4;
+    private static final short OWNER = 1;
+
+    // Table header and record layout (see SegmentTable)
+    private static final int TABLE_HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 40;
+
+    // Type: default log entry, 2 bytes LocalID, 1 byte length, epoch only (no version field)
+    private static final byte TYPE = 0x14;
+    // Type, LocalID, length and epoch (no timestamp, chaining and checksum)
+    private static final int HEADER_SIZE = 6;
+    private static final int PAYLOAD_SIZE = 10;
+    private static final int ENTRY_SIZE = HEADER_SIZE + PAYLOAD_SIZE;
+
+    private File m_logFile;
+    private SegmentHeader[] m_headers;
+
+    /**
+     * Disables checksums and timestamps and creates a log file name in a new temporary directory.
+     *
+     * @throws IOException
+     *         if the temporary directory could not be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        ChecksumHandler.setCRCSize(false);
+        AbstractLogEntryHeader.setTimestampSize(false);
+
+        File directory = Files.createTempDirectory("segmenttable").toFile();
+        directory.deleteOnExit();
+        m_logFile = new File(directory, "sec1_0.log");
+        m_headers = new SegmentHeader[SEGMENTS];
+    }
+
+    /**
+     * Flushed records are decoded after reopening the table.
+     *
+     * @throws IOException
+     *         if the table could not be accessed
+     */
+    @Test
+    public void flushedRecordsAreRestored() throws IOException {
+        SegmentTable table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, false);
+
+        m_headers[0] = new SegmentHeader(0, 3 * ENTRY_SIZE, 10);
+        m_headers[0].setAge(5);
+        table.recordWrite(0, 0, createEntries(5, 3), 0, 2 * ENTRY_SIZE, (short) 7);
+        table.recordWrite(0, 2 * ENTRY_SIZE, createEntries(9), 0, ENTRY_SIZE, (short) 8);
+        table.flush(m_headers, 20, true);
+        table.close();
+
+        table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, true);
+        assertTrue(table.isValid(0));
+        assertEquals(3 * ENTRY_SIZE, table.getUsedBytes(0));
+        assertEquals(15, table.getAge(0));
+        assertEquals(3, table.getEntryCount(0));
+        assertEquals((short) 8, table.getLastWriteEpoch(0));
+        assertEquals(getChunkID(3), table.getMinChunkID(0));
+        assertEquals(getChunkID(9), table.getMaxChunkID(0));
+        assertTrue(table.wasReorganized(0));
+
+        // Segments of a new secondary log are empty and valid
+        assertTrue(table.isValid(1));
+        assertEquals(0, table.getUsedBytes(1));
+        assertEquals(0, table.getEntryCount(1));
+        table.closeAndRemove();
+    }
+
+    /**
+     * Writing to the beginning of a segment resets its record.
+     *
+     * @throws IOException
+     *         if the table could not be accessed
+     */
+    @Test
+    public void writeToSegmentStartResetsRecord() throws IOException {
+        SegmentTable table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, false);
+
+        table.recordWrite(1, 0, createEntries(5, 3), 0, 2 * ENTRY_SIZE, (short) 7);
+        table.recordWrite(1, 0, createEntries(9), 0, ENTRY_SIZE, (short) 8);
+
+        assertEquals(ENTRY_SIZE, table.getUsedBytes(1));
+        assertEquals(1, table.getEntryCount(1));
+        assertEquals(getChunkID(9), table.getMinChunkID(1));
+        assertEquals(getChunkID(9), table.getMaxChunkID(1));
+        table.closeAndRemove();
+    }
+
+    /**
+     * Records which were not flushed and invalidated records are not trusted after reopening the table.
+     *
+     * @throws IOException
+     *         if the table could not be accessed
+     */
+    @Test
+    public void unflushedAndInvalidatedRecords() throws IOException {
+        SegmentTable table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, false);
+
+        m_headers[0] = new SegmentHeader(0, ENTRY_SIZE, 0);
+        table.recordWrite(0, 0, createEntries(1), 0, ENTRY_SIZE, (short) 1);
+        table.flush(m_headers, 0, false);
+        table.invalidate(0);
+        // Appends are written with the next flush, only
+        table.recordWrite(1, 0, createEntries(2), 0, ENTRY_SIZE, (short) 1);
+        table.close();
+
+        table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, true);
+        assertFalse(table.isValid(0));
+        assertTrue(table.isValid(1));
+        assertEquals(0, table.getUsedBytes(1));
+
+        table.clear(0);
+        table.close();
+        table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, true);
+        assertTrue(table.isValid(0));
+        assertEquals(0, table.getUsedBytes(0));
+        table.closeAndRemove();
+    }
+
+    /**
+     * The reorganization flag follows the segment headers when flushing.
+     *
+     * @throws IOException
+     *         if the table could not be accessed
+     */
+    @Test
+    public void reorganizationFlag() throws IOException {
+        SegmentTable table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, false);
+
+        m_headers[2] = new SegmentHeader(2, ENTRY_SIZE, 0);
+        table.recordWrite(2, 0, createEntries(1), 0, ENTRY_SIZE, (short) 1);
+        table.flush(m_headers, 0, false);
+        assertTrue(table.wasReorganized(2));
+
+        m_headers[2].beginEon();
+        table.markAllDirty();
+        table.flush(m_headers, 0, false);
+        table.close();
+
+        table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, true);
+        assertTrue(table.isValid(2));
+        assertFalse(table.wasReorganized(2));
+        table.closeAndRemove();
+    }
+
+    /**
+     * A record with a wrong checksum is invalid; the other records are still valid.
+     *
+     * @throws IOException
+     *         if the table could not be accessed
+     */
+    @Test
+    public void corruptedRecordIsInvalid() throws IOException {
+        SegmentTable table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, false);
+
+        m_headers[0] = new SegmentHeader(0, ENTRY_SIZE, 0);
+        table.recordWrite(0, 0, createEntries(1), 0, ENTRY_SIZE, (short) 1);
+        table.flush(m_headers, 0, true);
+        table.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(m_logFile.getPath() + SegmentTable.POSTFIX_FILENAME, "rw")) {
+            // Flip a bit of the used bytes of the first record
+            file.seek(TABLE_HEADER_SIZE);
+            int value = file.read();
+            file.seek(TABLE_HEADER_SIZE);
+            file.write(value ^ 1);
+        }
+
+        table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, true);
+        assertFalse(table.isValid(0));
+        assertTrue(table.isValid(1));
+        table.closeAndRemove();
+    }
+
+    /**
+     * A table of a different configuration is discarded and all segments are scanned.
+     *
+     * @throws IOException
+     *         if the table could not be accessed
+     */
+    @Test
+    public void mismatchingTableIsDiscarded() throws IOException {
+        SegmentTable table = new SegmentTable(m_logFile, SEGMENTS, SEGMENT_SIZE, OWNER, false);
+        table.close();
+
+        table = new SegmentTable(m_logFile, 2 * SEGMENTS, SEGMENT_SIZE, OWNER, true);
+        for (int i = 0; i < 2 * SEGMENTS; i++) {
+            assertFalse(table.isValid(i));
+        }
+        table.close();
+
+        // The discarded table was replaced by an empty one with invalid records
+        assertEquals(TABLE_HEADER_SIZE + 2 * SEGMENTS * RECORD_SIZE,
+                new File(m_logFile.getPath() + SegmentTable.POSTFIX_FILENAME).length());
+        table = new SegmentTable(m_logFile, 2 * SEGMENTS, SEGMENT_SIZE, OWNER, true);
+        assertFalse(table.isValid(0));
+        table.closeAndRemove();
+    }
+
+    /**
+     * Returns the chunk ID of a non-migrated chunk.
+     *
+     * @param p_localID
+     *         the LocalID
+     * @return the chunk ID
+     */
+    private static long getChunkID(final long p_localID) {
+        return ((long) OWNER << 48) + p_localID;
+    }
+
+    /**
+     * Creates consecutive log entries.
+     *
+     * @param p_localIDs
+     *         the LocalIDs of the log entries (less than 65536)
+     * @return the buffer containing the log entries
+     */
+    private static ByteBuffer createEntries(final int... p_localIDs) {
+        ByteBuffer buffer = ByteBuffer.allocate(p_localIDs.length * ENTRY_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < p_localIDs.length; i++) {
+            buffer.put(i * ENTRY_SIZE, TYPE);
+            buffer.putShort(i * ENTRY_SIZE + 1, (short) p_localIDs[i]);
+            buffer.put(i * ENTRY_SIZE + 3, (byte) PAYLOAD_SIZE);
+        }
+
+        return buffer;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.versioncontrol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for merging sorted runs of a version log (see VersionBuffer.mergeTwoRuns()).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public class VersionBufferTest {
+
+    private static final int ENTRY_SIZE = 13;
+
+    /**
+     * The merged run is sorted; for a chunk in both runs, the entry of the newer run is kept.
+     */
+    @Test
+    public void mergeTwoRunsKeepsNewerEntry() {
+        ByteBuffer source = createRuns(new long[] {1, 3, 5, 7}, 1, new long[] {2, 3, 8}, 2);
+        ByteBuffer target = allocate(7);
+
+        int end = VersionBuffer.mergeTwoRuns(source, 0, 4 * ENTRY_SIZE, 7 * ENTRY_SIZE, target, 0);
+
+        assertEquals(6 * ENTRY_SIZE, end);
+        checkEntries(target, 0, new long[] {1, 2, 3, 5, 7, 8}, new short[] {1, 2, 2, 1, 1, 2});
+    }
+
+    /**
+     * All entries of the newer run are kept if both runs contain the same chunks.
+     */
+    @Test
+    public void mergeTwoRunsIdenticalChunks() {
+        ByteBuffer source = createRuns(new long[] {4, 5, 6}, 1, new long[] {4, 5, 6}, 2);
+        ByteBuffer target = allocate(6);
+
+        int end = VersionBuffer.mergeTwoRuns(source, 0, 3 * ENTRY_SIZE, 6 * ENTRY_SIZE, target, 0);
+
+        assertEquals(3 * ENTRY_SIZE, end);
+        checkEntries(target, 0, new long[] {4, 5, 6}, new short[] {2, 2, 2});
+    }
+
+    /**
+     * The last run of an odd number of runs is merged with an empty run: it is copied unchanged.
+     */
+    @Test
+    public void mergeTwoRunsOddRunCount() {
+        ByteBuffer source = createRuns(new long[] {1, 2}, 1, new long[] {9, 10, 11}, 3);
+        ByteBuffer target = allocate(5);
+
+        // Bottom-up merging: the target already contains the first merged pair
+        int end = VersionBuffer.mergeTwoRuns(source, 2 * ENTRY_SIZE, 5 * ENTRY_SIZE, 5 * ENTRY_SIZE, target,
+                2 * ENTRY_SIZE);
+
+        assertEquals(5 * ENTRY_SIZE, end);
+        checkEntries(target, 2 * ENTRY_SIZE, new long[] {9, 10, 11}, new short[] {3, 3, 3});
+    }
+
+    /**
+     * An empty older run yields the newer run.
+     */
+    @Test
+    public void mergeTwoRunsEmptyOlderRun() {
+        ByteBuffer source = createRuns(new long[0], 1, new long[] {1, 2}, 2);
+        ByteBuffer target = allocate(2);
+
+        int end = VersionBuffer.mergeTwoRuns(source, 0, 0, 2 * ENTRY_SIZE, target, 0);
+
+        assertEquals(2 * ENTRY_SIZE, end);
+        checkEntries(target, 0, new long[] {1, 2}, new short[] {2, 2});
+    }
+
+    /**
+     * Creates a buffer with two neighboring runs. The version of every entry is its chunk ID.
+     *
+     * @param p_olderChunkIDs
+     *         the sorted chunk IDs of the older run
+     * @param p_olderEpoch
+     *         the epoch of the older run
+     * @param p_newerChunkIDs
+     *         the sorted chunk IDs of the newer run
+     * @param p_newerEpoch
+     *         the epoch of the newer run
+     * @return the buffer
+     */
+    private static ByteBuffer createRuns(final long[] p_olderChunkIDs, final int p_olderEpoch,
+            final long[] p_newerChunkIDs, final int p_newerEpoch) {
+        ByteBuffer ret = allocate(p_olderChunkIDs.length + p_newerChunkIDs.length);
+
+        for (long chunkID : p_olderChunkIDs) {
+            putEntry(ret, chunkID, (short) p_olderEpoch);
+        }
+        for (long chunkID : p_newerChunkIDs) {
+            putEntry(ret, chunkID, (short) p_newerEpoch);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Allocates a buffer for version log entries.
+     *
+     * @param p_entries
+     *         the number of entries
+     * @return the buffer
+     */
+    private static ByteBuffer allocate(final int p_entries) {
+        ByteBuffer ret = ByteBuffer.allocate(p_entries * ENTRY_SIZE);
+        ret.order(ByteOrder.LITTLE_ENDIAN);
+
+        return ret;
+    }
+
+    /**
+     * Appends a version log entry (chunk ID, epoch and three bytes of version).
+     *
+     * @param p_buffer
+     *         the buffer
+     * @param p_chunkID
+     *         the chunk ID (used as version, too)
+     * @param p_epoch
+     *         the epoch
+     */
+    private static void putEntry(final ByteBuffer p_buffer, final long p_chunkID, final short p_epoch) {
+        p_buffer.putLong(p_chunkID);
+        p_buffer.putShort(p_epoch);
+        p_buffer.put((byte) (p_chunkID >>> 16));
+        p_buffer.put((byte) (p_chunkID >>> 8));
+        p_buffer.put((byte) p_chunkID);
+    }
+
+    /**
+     * Checks the entries of a merged run.
+     *
+     * @param p_buffer
+     *         the buffer containing the merged run
+     * @param p_offset
+     *         the offset of the merged run
+     * @param p_chunkIDs
+     *         the expected chunk IDs
+     * @param p_epochs
+     *         the expected epochs
+     */
+    private static void checkEntries(final ByteBuffer p_buffer, final int p_offset, final long[] p_chunkIDs,
+            final short[] p_epochs) {
+        for (int i = 0; i < p_chunkIDs.length; i++) {
+            int offset = p_offset + i * ENTRY_SIZE;
+            assertEquals(p_chunkIDs[i], p_buffer.getLong(offset));
+            assertEquals(p_epochs[i], p_buffer.getShort(offset + 8));
+            assertEquals(p_chunkIDs[i], p_buffer.get(offset + 12) & 0xFF);
+        }
+    }
+}
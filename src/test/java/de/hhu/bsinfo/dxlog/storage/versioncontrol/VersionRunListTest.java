@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.versioncontrol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the run list of sorted version logs (see VersionRunList).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public class VersionRunListTest {
+
+    private static final int ENTRY_SIZE = 13;
+
+    /**
+     * Ascending chunk IDs appended in several calls continue one run.
+     */
+    @Test
+    public void appendContinuesRun() {
+        VersionRunList runs = new VersionRunList(ENTRY_SIZE);
+
+        append(runs, 0, 1, 10);
+        append(runs, 10 * ENTRY_SIZE, 11, 5);
+
+        assertEquals(1, runs.size());
+        assertEquals(0, runs.getOffset(0));
+        assertEquals(15 * ENTRY_SIZE, runs.getLength(0));
+    }
+
+    /**
+     * A chunk ID less than or equal to the last one starts a new run (duplicates are never within one run).
+     */
+    @Test
+    public void appendStartsRunForSmallerOrEqualChunkID() {
+        VersionRunList runs = new VersionRunList(ENTRY_SIZE);
+
+        append(runs, 0, 1, 10);
+        append(runs, 10 * ENTRY_SIZE, 10, 5);
+        append(runs, 15 * ENTRY_SIZE, 3, 1);
+
+        assertEquals(3, runs.size());
+        assertEquals(10 * ENTRY_SIZE, runs.getOffset(1));
+        assertEquals(5 * ENTRY_SIZE, runs.getLength(1));
+        assertEquals(15 * ENTRY_SIZE, runs.getOffset(2));
+        assertEquals(ENTRY_SIZE, runs.getLength(2));
+    }
+
+    /**
+     * Entries not following the last run in the version log start a new run.
+     */
+    @Test
+    public void appendStartsRunForGap() {
+        VersionRunList runs = new VersionRunList(ENTRY_SIZE);
+
+        append(runs, 0, 1, 10);
+        append(runs, 20 * ENTRY_SIZE, 100, 10);
+
+        assertEquals(2, runs.size());
+        assertEquals(20 * ENTRY_SIZE, runs.getOffset(1));
+    }
+
+    /**
+     * The run array grows with the number of runs.
+     */
+    @Test
+    public void appendManyRuns() {
+        VersionRunList runs = new VersionRunList(ENTRY_SIZE);
+
+        for (int i = 0; i < 100; i++) {
+            append(runs, i * ENTRY_SIZE, 1, 1);
+        }
+
+        assertEquals(100, runs.size());
+        assertEquals(99 * ENTRY_SIZE, runs.getOffset(99));
+        assertTrue(runs.isMergeOverdue());
+    }
+
+    /**
+     * Truncated runs are removed and the next entries start a new run.
+     */
+    @Test
+    public void truncate() {
+        VersionRunList runs = new VersionRunList(ENTRY_SIZE);
+
+        append(runs, 0, 1, 10);
+        append(runs, 10 * ENTRY_SIZE, 1, 10);
+        runs.truncate(1);
+        assertEquals(1, runs.size());
+
+        // Ascending and contiguous, but the merged run replaces the truncated runs
+        append(runs, 10 * ENTRY_SIZE, 20, 10);
+        assertEquals(2, runs.size());
+
+        runs.clear();
+        assertEquals(0, runs.size());
+    }
+
+    /**
+     * Nothing is merged with less than three runs as the newest run is never merged.
+     */
+    @Test
+    public void mergeStartTooFewRuns() {
+        VersionRunList runs = new VersionRunList(ENTRY_SIZE);
+
+        assertEquals(-1, runs.getMergeStart());
+        appendRuns(runs, 10, 10);
+        assertEquals(-1, runs.getMergeStart());
+    }
+
+    /**
+     * A much larger older run is not merged with small newer runs.
+     */
+    @Test
+    public void mergeStartSizeTiered() {
+        VersionRunList runs = new VersionRunList(ENTRY_SIZE);
+
+        appendRuns(runs, 1000, 10, 10);
+        assertEquals(-1, runs.getMergeStart());
+
+        runs.clear();
+        appendRuns(runs, 1000, 10, 10, 10);
+        assertEquals(1, runs.getMergeStart());
+
+        runs.clear();
+        appendRuns(runs, 20, 10, 10);
+        assertEquals(0, runs.getMergeStart());
+    }
+
+    /**
+     * Too many runs are merged regardless of their sizes.
+     */
+    @Test
+    public void mergeStartTooManyRuns() {
+        VersionRunList runs = new VersionRunList(ENTRY_SIZE);
+
+        appendRuns(runs, 100000, 50000, 250, 125, 10, 10);
+        assertEquals(2, runs.getMergeStart());
+        assertFalse(runs.isMergeOverdue());
+    }
+
+    /**
+     * Appends runs of given sizes.
+     *
+     * @param p_runs
+     *         the run list
+     * @param p_entries
+     *         the number of entries of every run
+     */
+    private static void appendRuns(final VersionRunList p_runs, final int... p_entries) {
+        long offset = 0;
+
+        for (int entries : p_entries) {
+            append(p_runs, offset, 1, entries);
+            offset += entries * ENTRY_SIZE;
+        }
+    }
+
+    /**
+     * Appends entries with ascending chunk IDs.
+     *
+     * @param p_runs
+     *         the run list
+     * @param p_logOffset
+     *         the position of the entries in the version log
+     * @param p_firstChunkID
+     *         the chunk ID of the first entry
+     * @param p_entries
+     *         the number of entries
+     */
+    private static void append(final VersionRunList p_runs, final long p_logOffset, final long p_firstChunkID,
+            final int p_entries) {
+        ByteBuffer buffer = ByteBuffer.allocate(p_entries * ENTRY_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < p_entries; i++) {
+            buffer.putLong(i * ENTRY_SIZE, p_firstChunkID + i);
+        }
+        p_runs.append(p_logOffset, buffer, 0, p_entries * ENTRY_SIZE);
+    }
+}
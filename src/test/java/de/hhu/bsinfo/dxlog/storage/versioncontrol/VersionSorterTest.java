@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 Heinrich-Heine-Universitaet Duesseldorf, Institute of Computer Science,
+ * Department Operating Systems
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.hhu.bsinfo.dxlog.storage.versioncontrol;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for sorting chunk ID, version pairs (see VersionSorter.sortByChunkID()).
+ *
+ * @author agent, agent@local, 16.10.2026
+ */
+public class VersionSorterTest {
+
+    /**
+     * Sorts fewer pairs than the insertion sort threshold.
+     */
+    @Test
+    public void sortSmallTable() {
+        long[] table = {5, 50, 1, 10, 3, 30};
+
+        VersionSorter.sortByChunkID(table, 3);
+
+        assertArrayEquals(new long[] {1, 10, 3, 30, 5, 50}, table);
+    }
+
+    /**
+     * Sorts many random pairs; every version must stay with its chunk ID.
+     */
+    @Test
+    public void sortLargeTable() {
+        int pairs = 10000;
+        long[] table = new long[2 * pairs];
+        Random random = new Random(42);
+
+        for (int i = 0; i < pairs; i++) {
+            long chunkID = random.nextLong() & Long.MAX_VALUE;
+            table[i * 2] = chunkID;
+            table[i * 2 + 1] = chunkID % 1000;
+        }
+
+        VersionSorter.sortByChunkID(table, pairs);
+
+        for (int i = 0; i < pairs; i++) {
+            if (i > 0) {
+                assertTrue(table[(i - 1) * 2] <= table[i * 2]);
+            }
+            assertEquals(table[i * 2] % 1000, table[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * Sorts pairs with duplicate chunk IDs (e.g. already sorted or descending input); no pair may get lost.
+     */
+    @Test
+    public void sortDuplicates() {
+        int pairs = 1000;
+        long[] table = new long[2 * pairs];
+        long[] expected;
+
+        for (int i = 0; i < pairs; i++) {
+            table[i * 2] = (pairs - i) / 10;
+            table[i * 2 + 1] = i;
+        }
+        expected = encode(table, pairs);
+        Arrays.sort(expected);
+
+        VersionSorter.sortByChunkID(table, pairs);
+
+        for (int i = 1; i < pairs; i++) {
+            assertTrue(table[(i - 1) * 2] <= table[i * 2]);
+        }
+        long[] sorted = encode(table, pairs);
+        Arrays.sort(sorted);
+        assertArrayEquals(expected, sorted);
+    }
+
+    /**
+     * Pairs behind the given number of pairs must not be touched.
+     */
+    @Test
+    public void sortPrefix() {
+        long[] table = {3, 30, 2, 20, 1, 10, 0, 0};
+
+        VersionSorter.sortByChunkID(table, 3);
+
+        assertArrayEquals(new long[] {1, 10, 2, 20, 3, 30, 0, 0}, table);
+
+        VersionSorter.sortByChunkID(table, 0);
+        VersionSorter.sortByChunkID(table, 1);
+        assertArrayEquals(new long[] {1, 10, 2, 20, 3, 30, 0, 0}, table);
+    }
+
+    /**
+     * Encodes every pair as one long to compare the pairs independent of their order.
+     *
+     * @param p_table
+     *         the pairs
+     * @param p_pairs
+     *         the number of pairs
+     * @return the encoded pairs
+     */
+    private static long[] encode(final long[] p_table, final int p_pairs) {
+        long[] ret = new long[p_pairs];
+
+        for (int i = 0; i < p_pairs; i++) {
+            ret[i] = p_table[i * 2] << 32 | p_table[i * 2 + 1];
+        }
+
+        return ret;
+    }
+}